@@ -15,14 +15,21 @@
  */
 package org.tohu.examples.domain;
 
+import org.tohu.Question;
+import org.tohu.domain.QuestionBinding;
 
 /**
+ * The questions bound to a person's properties, and their associations, are created by the generated
+ * <code>PersonBindings</code>.
+ * 
  * @author Damon Horrell
  */
 public class Person {
 
+	@QuestionBinding(id = "name", answerType = Question.TYPE_TEXT, preLabel = "Name:")
 	private String fullName;
 
+	@QuestionBinding(id = "age", answerType = Question.TYPE_NUMBER, preLabel = "Age:")
 	private int age;
 
 	private boolean eligibleToVote;
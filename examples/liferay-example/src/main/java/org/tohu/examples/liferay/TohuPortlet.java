@@ -25,10 +25,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import org.apache.commons.io.IOUtils;
-import org.drools.core.runtime.help.impl.XStreamXML;
 import org.kie.api.command.Command;
 import org.kie.internal.runtime.StatefulKnowledgeSession;
 import org.tohu.server.ExecutionServerHelper;
+import org.tohu.xml.TohuConverters;
 
 import com.liferay.portal.kernel.portlet.LiferayPortletRequest;
 import com.thoughtworks.xstream.XStream;
@@ -49,7 +49,7 @@ public class TohuPortlet extends com.liferay.util.bridges.mvc.MVCPortlet {
 	private XStream xstream;
 
 	public TohuPortlet() {
-		xstream = XStreamXML.newXStreamMarshaller(new XStream());
+		xstream = TohuConverters.newXStreamMarshaller();
 	}
 
 	/**
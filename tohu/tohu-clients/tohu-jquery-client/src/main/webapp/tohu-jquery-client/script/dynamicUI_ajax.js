@@ -24,6 +24,12 @@ var droolsURL = null;
 
 var droolsBusy = false;
 
+// Protocol for AJAX calls to Tohu Execution Server, either "xml" or "json".
+var droolsProtocol = "xml";
+
+// Whether updated facts are sent back as deltas (just the id and the changed fields).
+var droolsDeltas = false;
+
 /**
 * Gets the URL to the rules servlet
  *
@@ -42,11 +48,59 @@ function setDroolsURL(url) {
 	droolsURL = url;
 }
 
+/**
+ * Gets the protocol used to talk to the rules servlet
+ *
+ * @return "xml" or "json".
+ */
+function getDroolsProtocol() {
+	return droolsProtocol;
+}
+
+/**
+ * Sets the protocol used to talk to the rules servlet. JSON is smaller on the wire and quicker to
+ * process than XML but any onBatchExecution hooks must then return JSON requests.
+ * 
+ * @param protocol "xml" or "json".
+ */
+function setDroolsProtocol(protocol) {
+	droolsProtocol = protocol;
+}
+
+/**
+ * Gets whether updated facts are sent back as deltas.
+ *
+ * @return boolean
+ */
+function getDroolsDeltas() {
+	return droolsDeltas;
+}
+
+/**
+ * Sets whether updated facts are sent back as deltas. This makes the responses much smaller when questions
+ * have long labels or lots of possible answers, at the cost of remembering the fields of every fact, but any
+ * onBatchExecutionQuestionAnswer hook must then ask for deltas itself.
+ * 
+ * @param deltas boolean
+ */
+function setDroolsDeltas(deltas) {
+	droolsDeltas = deltas;
+}
+
+/**
+ * Return true if the JSON protocol is in use.
+ * 
+ * @return boolean
+ */
+function isJsonProtocol() {
+	return droolsProtocol == "json";
+}
+
 /**
  * Makes an AJAX request to the Tohu Execution Server.
  * 
- * @param request XML string to send to Drools.
- * @return XML string returned from Drools.
+ * @param request XML (or JSON) string to send to Drools.
+ * @return XML (or JSON) string returned from Drools.
  */
 function callDrools(request) {
 	while(droolsBusy) {
@@ -63,7 +117,7 @@ function callDrools(request) {
 		$.ajax( {
 			type : "POST",
 			url : droolsURL,
-			contentType : "text/xml",
+			contentType : isJsonProtocol() ? "application/json; charset=UTF-8" : "text/xml",
 			processData : false,
 			async : false,
 			data : request,
@@ -40,11 +40,17 @@ var temporaryState = null;
  * @return ResultSetObject
  */
 function getInitialQuestionnaire() {
-	var request = 
-		"<batch-execution>\n"
-	  + "	<fire-all-rules />\n"
-	  + "	<query out-identifier='activeObjects' name='activeObjects'/>\n"
-	  + "</batch-execution>\n";
+	var request;
+	if (isJsonProtocol()) {
+		request = '[{"fire":{}},{"query":"activeObjects"}]';
+	}
+	else {
+		request = 
+			"<batch-execution>\n"
+		  + "	<fire-all-rules />\n"
+		  + "	<query out-identifier='activeObjects' name='activeObjects'/>\n"
+		  + "</batch-execution>\n";
+	}
 	// allows one to customize the batchExcecutioner
 	if (window.onBatchExecutionInitialQuestionnaire) {
 		request = onBatchExecutionInitialQuestionnaire();
@@ -62,19 +68,28 @@ function getInitialQuestionnaire() {
  * @return ResultSetObject
  */
 function setQuestionAnswer(questionID, answer) {
-	var request = 
-		  "<batch-execution>\n"
-		+ "		<insert out-identifier='changes'>\n"
-		+ "			<org.tohu.xml.ChangeCollector/>\n"
-		+ "		</insert>\n"
-		+ "		<insert>\n"
-		+ "			<org.tohu.Answer>\n"
-		+ "				<questionId>" + xmlEscape(questionID) + "</questionId>\n"
-		+ "				<value>" + xmlEscape(answer) + "</value>\n"
-		+ "			</org.tohu.Answer>\n"
-		+ "		</insert>\n"
-		+ "		<fire-all-rules />\n"
-	    + "</batch-execution>";
+	var request;
+	if (isJsonProtocol()) {
+		request = '[{"insert":{"t":"xml.ChangeCollector"' + (getDroolsDeltas() ? ',"deltas":true' : '') + '},"out":"changes"},'
+			+ '{"insert":{"t":"Answer","questionId":' + jsonString(questionID) + ',"value":' + jsonString(answer) + '}},'
+			+ '{"fire":{}}]';
+	}
+	else {
+		request = 
+			  "<batch-execution>\n"
+			+ "		<insert out-identifier='changes'>\n"
+			+ (getDroolsDeltas() ? "			<org.tohu.xml.ChangeCollector><deltas>true</deltas></org.tohu.xml.ChangeCollector>\n"
+					: "			<org.tohu.xml.ChangeCollector/>\n")
+			+ "		</insert>\n"
+			+ "		<insert>\n"
+			+ "			<org.tohu.Answer>\n"
+			+ "				<questionId>" + xmlEscape(questionID) + "</questionId>\n"
+			+ "				<value>" + xmlEscape(answer) + "</value>\n"
+			+ "			</org.tohu.Answer>\n"
+			+ "		</insert>\n"
+			+ "		<fire-all-rules />\n"
+		    + "</batch-execution>";
+	}
 	// allows one to customize the batchExcecutioner	
 	if (window.onBatchExecutionQuestionAnswer) {
 		request = onBatchExecutionQuestionAnswer(questionID, answer);
@@ -90,14 +105,22 @@ function setQuestionAnswer(questionID, answer) {
  * @return ResultSetObject
  */
 function setActiveItem(activeItem) {
-	var request = 
-		  "<batch-execution>\n"
-		+ "		<modify fact-handle='" + xmlEscape(persistentState.questionnaire.factHandle) + "'>\n"
-		+ "			<set accessor='activeItem' value='" + activeItem + "' />\n"
-		+ "		</modify>\n"
-		+ "		<fire-all-rules />\n"
-		+ "		<query out-identifier='activeObjects' name='activeObjects' />\n"
-	    + "</batch-execution>";
+	var request;
+	if (isJsonProtocol()) {
+		request = '[{"modify":' + jsonString(persistentState.questionnaire.factHandle)
+			+ ',"set":{"activeItem":' + jsonString(activeItem) + '}},'
+			+ '{"fire":{}},{"query":"activeObjects"}]';
+	}
+	else {
+		request = 
+			  "<batch-execution>\n"
+			+ "		<modify fact-handle='" + xmlEscape(persistentState.questionnaire.factHandle) + "'>\n"
+			+ "			<set accessor='activeItem' value='" + activeItem + "' />\n"
+			+ "		</modify>\n"
+			+ "		<fire-all-rules />\n"
+			+ "		<query out-identifier='activeObjects' name='activeObjects' />\n"
+		    + "</batch-execution>";
+	}
 	// allows one to customize the batchExcecutioner	
 	if (window.onBatchExecutionActiveItem) {
 		request = onBatchExecutionActiveItem(activeItem);
@@ -118,15 +141,15 @@ function setActiveItem(activeItem) {
  * handled.  additionally the action points will be dynamically determined 
  * by the questionnaire and what state they are in (e.g validation errors exist)
  * 
- * @param response The XML string of the AJAX response.
+ * @param response The XML (or JSON) string of the AJAX response.
  * @return A ResultSetObject with only the createList populated.
  */
 function preProcessServerQuestionnaire(response) {
 	var retVal = new ResultSetObject();
 
-	var xml = string2xml(response);
-	if (xml != null) {
-		preProcessServerCreateList("result > query-results > row", xml, false, retVal);
+	var parsed = parseServerResponse(response);
+	if (parsed != null) {
+		preProcessServerCreateList(selectFacts(parsed, "result > query-results > row"), false, retVal);
 
 		// Add generated Actions.
 		var actions = getQuestionnaireActions(persistentState.questionnaire);
@@ -149,23 +172,23 @@ function preProcessServerQuestionnaire(response) {
  * or delete HTML elements, thus refreshing the content to 
  * reflect the response of the rules engine
  *
- * @param response The XML string of the AJAX response.
+ * @param response The XML (or JSON) string of the AJAX response.
  * @return A ResultSetObject.
  */
 function preProcessServerChanges(response) {
 	var retVal = new ResultSetObject();
 
-	var xml = string2xml(response);
-	if (xml != null) {
+	var parsed = parseServerResponse(response);
+	if (parsed != null) {
 
 		// Process delete list.
-		preProcessServerDeleteList("result > * > delete > *", xml, retVal);
+		preProcessServerDeleteList(selectFacts(parsed, "result > * > delete > *", "delete"), retVal);
 
 		// Process update list.
-		preProcessServerUpdateList("result > * > update > *", xml, retVal);
+		preProcessServerUpdateList(selectFacts(parsed, "result > * > update > *", "update"), retVal);
 
 		// Process create list.
-		preProcessServerCreateList("result > * > create > entry", xml, true, retVal);
+		preProcessServerCreateList(selectFacts(parsed, "result > * > create > entry", "create"), true, retVal);
 
 		if (temporaryState.questionnaireChanged) {
 			var possibleActions = getQuestionnaireActions(persistentState.questionnaire);			
@@ -222,28 +245,77 @@ function preProcessServerChanges(response) {
 }
 
 /**
- * Iterate through the XML response looking for Fact Objects to be created and 
+ * Parses the AJAX response according to the protocol in use.
+ * 
+ * @param response The XML or JSON string of the AJAX response.
+ * @return XML DOM or javascript object, or null if the response could not be parsed.
+ */
+function parseServerResponse(response) {
+	if (isJsonProtocol()) {
+		return string2json(response);
+	}
+	return string2xml(response);
+}
+
+/**
+ * Selects facts from a parsed AJAX response.
+ * 
+ * The JSON response is keyed by out-identifier. Query results are arrays of facts and ChangeCollector
+ * results are objects holding create, update and delete arrays of facts.
+ * 
+ * @param parsed XML DOM or javascript object returned by parseServerResponse.
+ * @param jQueryPath String The JQuery selection path for the facts in an XML response.
+ * @param changeList String The ChangeCollector list to select from a JSON response, or undefined to select query results.
+ * @return Array of XML DOM elements or javascript objects.
+ */
+function selectFacts(parsed, jQueryPath, changeList) {
+	var facts = new Array();
+	if (isJsonFact(parsed)) {
+		for (var identifier in parsed) {
+			var result = parsed[identifier];
+			if (!isNull(result) && !isNull(changeList)) {
+				result = (result.constructor == Array) ? null : result[changeList];
+			}
+			if (!isNull(result) && (result.constructor == Array)) {
+				for (var i = 0; i < result.length; i++) {
+					facts.push(result[i]);
+				}
+			}
+		}
+	}
+	else {
+		$(jQueryPath, parsed).each(function () {
+			facts.push(this);
+		});
+	}
+	return facts;
+}
+
+/**
+ * Iterate through the facts from the response looking for Fact Objects to be created and 
  * update the ResultSetObject with these new Fact Objects.
  * The ResultSetObject will be referenced later to determine which content
  * needs to be added during this rendering process.
  * 
- * @param jQueryPath String The JQuery selection path for the created facts in the ajax response.
- * @param xml XMLDOM The ajax response.
+ * @param facts Array The created facts selected from the ajax response.
  * @param changes Boolean flag indicating if we are processing changes. 
  * @param resultSet ResultSetObject to populate. 
  */
-function preProcessServerCreateList(jQueryPath, xml, changes, resultSet) {
+function preProcessServerCreateList(facts, changes, resultSet) {
 	if (isDebug()) {
-		debug("preProcessServerCreateList() jQueryPath=" + jQueryPath + " changes=" + changes
-				+ " xml=" + $(xml).toXML() + " resultSet=" + objectToString(resultSet));
+		debug("preProcessServerCreateList() facts=" + facts.length + " changes=" + changes
+				+ " resultSet=" + objectToString(resultSet));
 	}
 	var obj = null;
 	var i, j;
 	var noLongerPlaceHolders = new Array();
 	
-	$(jQueryPath, xml).each(function () {
+	jQuery.each(facts, function () {
 		//debug("preProcessCreateList() found=" + $(this).toXML());
 		obj = createFactObject(this, false);
+		if ((obj != null) && getDroolsDeltas() && (obj.objType != ERROR_OBJECT)) {
+			persistentState.facts[obj.id] = getFactFields(this);
+		}
 		if (obj != null) {
 			var hierarchy = persistentState.hierarchy[obj.id];
 			if (isNull(hierarchy) || hierarchy.placeHolder) {
@@ -347,23 +419,21 @@ function preProcessServerCreateObject(obj) {
 }
 
 /**
- * Iterate through the XML response looking for Fact Objects to be updated and 
+ * Iterate through the facts from the response looking for Fact Objects to be updated and 
  * update the ResultSetObject with these Fact Objects.
  * The ResultSetObject will be referenced later to determine which content
  * needs to be updated during this rendering process.
  * 
- * @param jQueryPath String The JQuery selection path for the updated facts in the ajax response.
- * @param xml XMLDOM The ajax response.
+ * @param facts Array The updated facts selected from the ajax response.
  * @param resultSet ResultSetObject to populate. 
  */
-function preProcessServerUpdateList(jQueryPath, xml, resultSet) {
+function preProcessServerUpdateList(facts, resultSet) {
 	if (isDebug()) {
-		debug("preProcessServerUpdateList() jQueryPath=" + jQueryPath + " xml=" + $(xml).toXML()
-				+ " resultSet=" + objectToString(resultSet));
+		debug("preProcessServerUpdateList() facts=" + facts.length + " resultSet=" + objectToString(resultSet));
 	}
 	
-	$(jQueryPath, xml).each(function () {
-		var obj = createFactObject(this, false);
+	jQuery.each(facts, function () {
+		var obj = createFactObject(getDroolsDeltas() ? mergeFactFields(this) : this, false);
 		if (obj != null) {
 			debug("preProcessServerUpdateList() id=" + obj.id);
 			preProcessServerUpdateObject(obj);
@@ -394,24 +464,25 @@ function preProcessServerUpdateObject(obj) {
 }
 
 /**
- * Iterate through the XML response looking for Fact Objects to be deleted and 
+ * Iterate through the facts from the response looking for Fact Objects to be deleted and 
  * Update the ResultSetObject with these Fact Objects.
  * The ResultSetObject will be referenced later to determine which content
  * needs to be removed during this rendering process.
  * 
- * @param jQueryPath String The JQuery selection path for the deleted facts in the ajax response.
- * @param xml XMLDOM The ajax response.
+ * @param facts Array The deleted facts selected from the ajax response.
  * @param resultSet ResultSetObject to populate. 
  */
-function preProcessServerDeleteList(jQueryPath, xml, resultSet) {
+function preProcessServerDeleteList(facts, resultSet) {
 	if (isDebug()) {
-		debug("preProcessServerDeleteList() jQueryPath=" + jQueryPath + " xml=" + $(xml).toXML()
-				+ " resultSet=" + objectToString(resultSet));
+		debug("preProcessServerDeleteList() facts=" + facts.length + " resultSet=" + objectToString(resultSet));
 	}
 	
-	$(jQueryPath, xml).each(function () {
+	jQuery.each(facts, function () {
 		var obj = createFactObject(this, true);
 		if (obj != null) {
+			if (!obj.error) {
+				delete persistentState.facts[obj.id];
+			}
 			preProcessServerDeleteObject(obj);
 			resultSet.deleteList.push(obj);
 		}
@@ -617,7 +688,7 @@ function getQuestionnaireActions(questionnaire) {
 /**
  * Create a custom object for the specified xml fact.
  * 
- * @param xml XML DOM of the query result row containing the fact.
+ * @param xml XML DOM of the query result row containing the fact, or the fact from a JSON response.
  * @param isDelete Boolean flag indicating that we are processing deletes
  * @return Custom javascript object or null if xml is not a valid fact.
  */
@@ -625,16 +696,25 @@ function createFactObject(xml, isDelete) {
 	//debug("createFactObject() in " + $(xml).toXML());
 	var obj = null;
 	var items = null;
-	var jq = $(xml);
-	// JQuery doesn't like .'s in XML tag names, so get the name from the wrapped XML DOM. 
-	var tagName = jq.get(0).tagName;
-	if ((tagName == "row") || (tagName == "entry")) {
-		// Initial query wraps facts in "row" tags, the ChangeCollector wraps the create list in "entry" tags.
-		jq = $(xml).children(":first");
+	var jq;
+	var tagName;
+	if (isJsonFact(xml)) {
+		// JSON facts hold their fields directly, the type is "t" less the "org.tohu." prefix.
+		jq = xml;
+		tagName = "org.tohu." + xml.t;
+	}
+	else {
+		jq = $(xml);
+		// JQuery doesn't like .'s in XML tag names, so get the name from the wrapped XML DOM. 
 		tagName = jq.get(0).tagName;
+		if ((tagName == "row") || (tagName == "entry")) {
+			// Initial query wraps facts in "row" tags, the ChangeCollector wraps the create list in "entry" tags.
+			jq = $(xml).children(":first");
+			tagName = jq.get(0).tagName;
+		}
 	}
 	if (isDebug()) {
-		debug("createFactObject() tagName=" + tagName + " xml=" + jq.toXML());
+		debug("createFactObject() tagName=" + tagName + " xml=" + (jq.jquery ? jq.toXML() : objectToString(jq)));
 	}
 	switch (tagName) {
 	case "org.tohu.Questionnaire":
@@ -656,7 +736,7 @@ function createFactObject(xml, isDelete) {
 		obj.completionAction = getChildText(jq, "completionAction");
 		obj.enableActionValidation = getChildBoolean(jq, "enableActionValidation");
 		obj.hasErrors = getChildBoolean(jq, "invalidAnswers");
-		obj.factHandle = $("fact-handle", xml).attr("external-form");
+		obj.factHandle = isJsonFact(xml) ? xml.h : $("fact-handle", xml).attr("external-form");
 		obj.markupAllowed = getChildBoolean(jq, "markupAllowed");
 		break;
 	case "org.tohu.Group":
@@ -764,6 +844,70 @@ function createFactObject(xml, isDelete) {
 	return obj;
 }
 
+/**
+ * Return the fields of a fact as a JSON fact, which createFactObject accepts whichever protocol is in use.
+ * 
+ * @param xml XML DOM of the fact (or of the row or entry containing it), or the fact from a JSON response.
+ * @return Javascript object holding the type as "t" and the field values as strings, or null for fields cleared in a delta.
+ */
+function getFactFields(xml) {
+	var fields = new Object();
+	if (isJsonFact(xml)) {
+		for (var name in xml) {
+			fields[name] = xml[name];
+		}
+	}
+	else {
+		var jq = $(xml);
+		if ((jq.get(0).tagName == "row") || (jq.get(0).tagName == "entry")) {
+			jq = jq.children(":first");
+		}
+		fields.t = jq.get(0).tagName.substring("org.tohu.".length);
+		jq.children().each(function () {
+			fields[this.tagName] = ($(this).attr("null") == "true") ? null : $(this).text();
+		});
+	}
+	return fields;
+}
+
+/**
+ * Apply a delta from the update list to the fields last received for the same fact.
+ * Null fields in the delta have been cleared. Empty fields are now empty strings.
+ * 
+ * @param xml XML DOM of the delta, or the delta from a JSON response.
+ * @return Javascript object holding the merged fields.
+ */
+function mergeFactFields(xml) {
+	var delta = getFactFields(xml);
+	var fields = persistentState.facts[delta.id];
+	if (isNull(fields)) {
+		// Not a delta, e.g. the id itself has changed.
+		fields = delta;
+	}
+	else {
+		for (var name in delta) {
+			if (delta[name] === null) {
+				delete fields[name];
+			}
+			else {
+				fields[name] = delta[name];
+			}
+		}
+	}
+	persistentState.facts[delta.id] = fields;
+	return fields;
+}
+
+/**
+ * Return true if the fact came from a JSON response rather than an XML one.
+ * 
+ * @param fact XML DOM, JQuery object or javascript object.
+ * @return boolean
+ */
+function isJsonFact(fact) {
+	return !isNull(fact) && !fact.jquery && isNull(fact.nodeType);
+}
+
 /**
  * Return a single immediate child of an XML element.
  * 
@@ -791,7 +935,7 @@ function getChild(xml, child) {
 /**
  * Return the text of an immediate child of an XML element.
  * 
- * @param xml Either an XML DOM or a JQuery object containing an XML DOM.
+ * @param xml Either an XML DOM, a JQuery object containing an XML DOM or a JSON fact.
  * @param child Name of the child to return (assumed to be unique).
  * @param defaultText String Optional default text to return.
  * @return String The child text (with whitespace trimmed) or the default text if no such child.
@@ -799,13 +943,20 @@ function getChild(xml, child) {
 function getChildText(xml, child, defaultText) {
 	//debug("getChildText() xml=" + xml.toXML() + " child=" + child + " defaultText=" + defaultText);
 	var retVal = null;
-	var childXml = getChild(xml, child);
-	if (childXml != null) {
-		if (childXml.jquery) {
-			retVal = jQuery.trim(childXml.text());
+	if (isJsonFact(xml)) {
+		if (!isNull(xml[child])) {
+			retVal = jQuery.trim(String(xml[child]));
 		}
-		else {
-			retVal = jQuery.trim($(childXml).text());
+	}
+	else {
+		var childXml = getChild(xml, child);
+		if (childXml != null) {
+			if (childXml.jquery) {
+				retVal = jQuery.trim(childXml.text());
+			}
+			else {
+				retVal = jQuery.trim($(childXml).text());
+			}
 		}
 	}
 	//debug("getChildText() retVal=" + retVal);
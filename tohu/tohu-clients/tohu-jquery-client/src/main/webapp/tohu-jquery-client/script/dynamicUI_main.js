@@ -288,6 +288,8 @@ function processCreateList(theList) {
  * Iterates through the ResultSetObject's "updateList" array and
  * updates all HTML elements whose ID matches that with the 
  * corresponding Fact Object's ID found in the array.
+ * When deltas are in use the interface module has already merged them with the
+ * previous fields, so these are always whole fact objects.
  * 
  * @param theList Array of fact objects.
  */
@@ -69,6 +69,15 @@ var ERROR_TYPES = {
 		LOG: true,
 		CONTINUE: false 
 	},
+	// Invalid JSON was returned from the execution server.
+	JSON_PARSE: {
+		NAME: "JSON Parse Error",
+		TEXT: "The rules server has returned invalid JSON, contact support.",
+		PARAMS: 0,
+		DISPLAY: DISPLAY_TYPES.ALERT,
+		LOG: true,
+		CONTINUE: false 
+	},
 	// The rules have not been defined properly.
 	RULES_DEFINITION: {
 		NAME: "Rules Definition Error",
@@ -47,6 +47,8 @@ function PersistentStateObject() {
 	this.actions = new Object();
 	// Sequence number to generate unique IDs for errors.
 	this.errorSequence = 0;
+	// Hash map of the fields of each fact last received (as a JSON fact), keyed by ID. Only used for deltas.
+	this.facts = new Object();
 }
 
 // Fact Objects.
@@ -301,6 +301,28 @@ function string2xml(xml) {
 	return null;
 }
 
+/**
+ * Convert a JSON string to a javascript object.
+ * 
+ * @param json JSON string.
+ * @return javascript object.
+ */
+function string2json(json) {
+	if (!isNull(json)) {
+		try {
+			if (window.JSON && window.JSON.parse) {
+				return window.JSON.parse(json);
+			}
+			// Older browsers without a native parser, the response is from our own server.
+			return eval("(" + json + ")");
+		}
+		catch (e) {
+			handleError(ERROR_TYPES.JSON_PARSE, null, "dynamicUI_utility.string2json", "exception=" + e);
+		}
+	}
+	return null;
+}
+
 /**
  * Convert an XML DOM object to an XML string.
  * 
@@ -369,6 +391,15 @@ function xmlEscape(text) {
 	return text.replace(/&/g, "&amp;").replace(/"/g, "&quot;").replace(/'/g, "&#39;").replace(/</g, "&lt;").replace(/>/g, "&gt;");
 }
 
+/**
+ * Quotes some text as a JSON string, escaping special characters.
+ */
+function jsonString(text) {
+	return '"' + String(text).replace(/[\\"]/g, "\\$&").replace(/[\u0000-\u001f\u2028\u2029]/g, function (c) {
+		return "\\u" + ("000" + c.charCodeAt(0).toString(16)).slice(-4);
+	}) + '"';
+}
+
 /**
  * Escape the text unless the Questionnaire specifically allows markup, which defaults to false
  */
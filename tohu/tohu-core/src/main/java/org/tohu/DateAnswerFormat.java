@@ -0,0 +1,106 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+/**
+ * <p>
+ * Formats and parses date answers in the transport format yyyy-MM-dd, in the default time zone.
+ * </p>
+ *
+ * <p>
+ * Unlike <code>SimpleDateFormat</code> this holds no state so it is safe to use from concurrent sessions. Out of range fields are
+ * rolled over in the same way as <code>SimpleDateFormat</code>, e.g. 2009-13-01 is 2010-01-01, but text after the date is not
+ * ignored.
+ * </p>
+ */
+public final class DateAnswerFormat {
+
+	private static final char SEPARATOR = '-';
+
+	private DateAnswerFormat() {
+	}
+
+	/**
+	 * @param date
+	 * @return the date as yyyy-MM-dd
+	 */
+	public static String format(Date date) {
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTime(date);
+		StringBuilder sb = new StringBuilder(10);
+		append(sb, calendar.get(Calendar.YEAR), 4);
+		sb.append(SEPARATOR);
+		append(sb, calendar.get(Calendar.MONTH) + 1, 2);
+		sb.append(SEPARATOR);
+		append(sb, calendar.get(Calendar.DAY_OF_MONTH), 2);
+		return sb.toString();
+	}
+
+	/**
+	 * @param text
+	 *            yyyy-MM-dd (any number of digits may be used for each field)
+	 * @return the start of that day
+	 * @throws ParseException
+	 *             if the text isn't three numbers separated by hyphens
+	 */
+	public static Date parse(String text) throws ParseException {
+		int[] fields = new int[3];
+		int position = 0;
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				if (position >= text.length() || text.charAt(position) != SEPARATOR) {
+					throw new ParseException("Unparseable date: \"" + text + "\"", position);
+				}
+				position++;
+			}
+			int start = position;
+			int value = 0;
+			while (position < text.length() && Character.isDigit(text.charAt(position))) {
+				int digit = Character.digit(text.charAt(position), 10);
+				if (value > (Integer.MAX_VALUE - digit) / 10) {
+					throw new ParseException("Unparseable date: \"" + text + "\"", start);
+				}
+				value = value * 10 + digit;
+				position++;
+			}
+			if (position == start) {
+				throw new ParseException("Unparseable date: \"" + text + "\"", position);
+			}
+			fields[i] = value;
+		}
+		if (position < text.length()) {
+			throw new ParseException("Unparseable date: \"" + text + "\"", position);
+		}
+		Calendar calendar = new GregorianCalendar();
+		calendar.clear();
+		calendar.set(fields[0], fields[1] - 1, fields[2]);
+		return calendar.getTime();
+	}
+
+	private static void append(StringBuilder sb, int value, int digits) {
+		String string = Integer.toString(value);
+		for (int i = string.length(); i < digits; i++) {
+			sb.append('0');
+		}
+		sb.append(string);
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Tokenizes the delimited strings that Tohu uses to hold lists, e.g. item ids, presentation styles, list answers and possible
+ * answers.
+ * </p>
+ *
+ * <p>
+ * If escapes are enabled then a delimiter which is preceded by a backslash is part of the token, and the backslash is dropped. e.g.
+ * <code>a\,b,c</code> is <code>a,b</code> and <code>c</code>. (A token which is at the end of the text and ends with a backslash is
+ * ignored.) Backslashes anywhere else are left as they are.
+ * </p>
+ *
+ * <p>
+ * The tokenizer steps through the text in place. Each call to <code>next()</code> moves on to the next token, which can then be
+ * compared with <code>tokenEquals</code> without creating any objects, or copied with <code>token</code>. Every token is returned,
+ * including empty ones, so there is always at least one. A tokenizer is not thread-safe, but it is cheap to create one per use.
+ * </p>
+ */
+public final class DelimitedTokenizer {
+
+	public static final char ESCAPE = '\\';
+
+	/**
+	 * Callback for <code>visit</code>.
+	 */
+	public interface Visitor {
+
+		/**
+		 * @param tokenizer
+		 *            positioned on the current token
+		 * @return false to stop
+		 */
+		boolean visit(DelimitedTokenizer tokenizer);
+
+	}
+
+	private final String text;
+
+	private final char delimiter;
+
+	private final boolean escapes;
+
+	private int start;
+
+	private int end;
+
+	private boolean escaped;
+
+	/**
+	 * Position after the delimiter which ended the current token, or -1 if there are no more tokens.
+	 */
+	private int next;
+
+	/**
+	 * @param text
+	 * @param delimiter
+	 * @param escapes
+	 *            true if delimiters may be escaped with a backslash
+	 */
+	public DelimitedTokenizer(String text, char delimiter, boolean escapes) {
+		this.text = text;
+		this.delimiter = delimiter;
+		this.escapes = escapes;
+	}
+
+	/**
+	 * Moves on to the next token.
+	 *
+	 * @return false if there are no more tokens
+	 */
+	public boolean next() {
+		if (next < 0) {
+			return false;
+		}
+		start = next;
+		escaped = false;
+		int length = text.length();
+		int i = start;
+		while (true) {
+			i = text.indexOf(delimiter, i);
+			if (i < 0) {
+				end = length;
+				next = -1;
+				// a trailing escape has nothing to escape
+				return !(escapes && end > start && text.charAt(end - 1) == ESCAPE);
+			}
+			if (escapes && i > start && text.charAt(i - 1) == ESCAPE) {
+				escaped = true;
+				i++;
+			} else {
+				end = i;
+				next = i + 1;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the current token, with any escapes removed
+	 */
+	public String token() {
+		if (!escaped) {
+			return text.substring(start, end);
+		}
+		// every delimiter within the token is escaped by the backslash before it
+		StringBuilder sb = new StringBuilder(end - start);
+		int from = start;
+		for (int i = text.indexOf(delimiter, start); i >= 0 && i < end; i = text.indexOf(delimiter, i + 1)) {
+			sb.append(text, from, i - 1);
+			from = i;
+		}
+		sb.append(text, from, end);
+		return sb.toString();
+	}
+
+	/**
+	 * Compares the current token with a string without copying it.
+	 *
+	 * @param string
+	 * @return true if the token (with any escapes removed) is equal to <code>string</code>
+	 */
+	public boolean tokenEquals(String string) {
+		if (!escaped) {
+			return end - start == string.length() && text.regionMatches(start, string, 0, end - start);
+		}
+		int j = 0;
+		int from = start;
+		for (int i = text.indexOf(delimiter, start); i >= 0 && i < end; i = text.indexOf(delimiter, i + 1)) {
+			if (!text.regionMatches(from, string, j, i - 1 - from)) {
+				return false;
+			}
+			j += i - 1 - from;
+			from = i;
+		}
+		return j + end - from == string.length() && text.regionMatches(from, string, j, end - from);
+	}
+
+	/**
+	 * @return true if the current token is empty
+	 */
+	public boolean isTokenEmpty() {
+		return start == end;
+	}
+
+	/**
+	 * Visits each token in turn.
+	 *
+	 * @param text
+	 * @param delimiter
+	 * @param escapes
+	 * @param visitor
+	 * @return false if the visitor stopped
+	 */
+	public static boolean visit(String text, char delimiter, boolean escapes, Visitor visitor) {
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(text, delimiter, escapes);
+		while (tokenizer.next()) {
+			if (!visitor.visit(tokenizer)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether any token is equal to a string.
+	 *
+	 * @param text
+	 * @param delimiter
+	 * @param escapes
+	 * @param string
+	 * @return
+	 */
+	public static boolean contains(String text, char delimiter, boolean escapes, String string) {
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(text, delimiter, escapes);
+		while (tokenizer.next()) {
+			if (tokenizer.tokenEquals(string)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Splits text with escaped delimiters into tokens, keeping empty ones.
+	 *
+	 * @param text
+	 * @param delimiter
+	 * @return
+	 */
+	public static String[] split(String text, char delimiter) {
+		List<String> tokens = new ArrayList<String>();
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(text, delimiter, true);
+		while (tokenizer.next()) {
+			tokens.add(tokenizer.token());
+		}
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Splits text without escapes into tokens in the same way as <code>String.split</code> i.e. trailing empty tokens are dropped
+	 * unless there is no delimiter at all.
+	 *
+	 * @param text
+	 * @param delimiter
+	 * @return
+	 */
+	public static String[] splitPlain(String text, char delimiter) {
+		int end = text.length();
+		while (end > 0 && text.charAt(end - 1) == delimiter) {
+			end--;
+		}
+		int count = end == 0 ? 0 : 1;
+		for (int i = text.indexOf(delimiter); i >= 0 && i < end; i = text.indexOf(delimiter, i + 1)) {
+			count++;
+		}
+		if (count == 0) {
+			// String.split only drops the trailing empty tokens if there is a delimiter
+			return end == text.length() ? new String[] { text } : new String[0];
+		}
+		String[] tokens = new String[count];
+		int start = 0;
+		for (int i = 0; i < count - 1; i++) {
+			int next = text.indexOf(delimiter, start);
+			tokens[i] = text.substring(start, next);
+			start = next + 1;
+		}
+		tokens[count - 1] = text.substring(start, end);
+		return tokens;
+	}
+
+}
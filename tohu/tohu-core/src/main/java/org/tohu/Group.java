@@ -15,8 +15,12 @@
  */
 package org.tohu;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -42,12 +46,18 @@ public class Group extends Item {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The serialized form holds items as the comma-delimited string it always has, so it is compatible with earlier versions.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("label", String.class),
+			new ObjectStreamField("items", String.class) };
+
 	private String label;
 
 	/**
-	 * Items are represented internally as a comma-delimited string for efficient XML transport.
+	 * Items are held as an immutable list with an index for fast lookups. They are still transported as a comma-delimited string.
 	 */
-	private String items;
+	private ItemIds items;
 
 	public Group() {
 	}
@@ -58,7 +68,20 @@ public class Group extends Item {
 
 	public Group(String id, String label) {
 		super(id);
-		this.label = label;
+		this.label = SharedMetadata.share(label);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("label", label);
+		fields.put("items", items == null ? null : items.toString());
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		label = (String) fields.get("label", null);
+		items = ItemIds.parse((String) fields.get("items", null));
 	}
 
 	public String getLabel() {
@@ -66,7 +89,8 @@ public class Group extends Item {
 	}
 
 	public void setLabel(String label) {
-		this.label = label;
+		changing();
+		this.label = SharedMetadata.share(label);
 	}
 
 	/**
@@ -75,7 +99,20 @@ public class Group extends Item {
 	 * @return
 	 */
 	public String[] getItems() {
-		return items == null ? null : items.split(COMMA_SEPARATOR);
+		return items == null ? null : items.getIds();
+	}
+
+	/**
+	 * Gets the item ids as a read-only list. Unlike <code>getItems()</code> this doesn't copy the ids and <code>contains</code> is
+	 * a hash lookup, so rules should use e.g. <code>itemIds contains $item.id</code>.
+	 * 
+	 * @return
+	 */
+	public List<String> getItemIds() {
+		if (items == null) {
+			return Collections.emptyList();
+		}
+		return items;
 	}
 
 	/**
@@ -99,24 +136,23 @@ public class Group extends Item {
 	 * @param items
 	 */
 	public void setItems(String[] items) {
+		changing();
 		if (items == null) {
 			this.items = null;
 		} else {
-			StringBuilder sb = new StringBuilder();
+			String[] validItems = new String[items.length];
+			int count = 0;
 			for (int i = 0; i < items.length; i++) {
-				String temp = items[i];
-				if (validItemId(temp)) {
-					if (sb.length() > 0) {
-						sb.append(COMMA_SEPARATOR);
-					}
-					sb.append(items[i]);
+				if (validItemId(items[i])) {
+					validItems[count++] = items[i];
 				}
 			}
-			if (sb.length() > 0) {
-				this.items = sb.toString();
-			} else {
-				this.items = null;
+			if (count < items.length) {
+				String[] temp = new String[count];
+				System.arraycopy(validItems, 0, temp, 0, count);
+				validItems = temp;
 			}
+			this.items = ItemIds.valueOf(validItems);
 		}
 	}
 
@@ -127,11 +163,12 @@ public class Group extends Item {
 	 *            - cannot contain a comma
 	 */
 	public void addItem(String itemId) {
+		changing();
 		if (validItemId(itemId)) {
-			if ((this.items == null) || (this.items.length() == 0)) {
-				this.items = itemId;
+			if (this.items == null) {
+				this.items = ItemIds.valueOf(new String[] { itemId });
 			} else {
-				this.items = this.items + COMMA_SEPARATOR + itemId;
+				this.items = this.items.plus(this.items.size(), itemId);
 			}
 		}
 	}
@@ -146,16 +183,15 @@ public class Group extends Item {
 	 *            The entry before which the new item is to be inserted
 	 */
 	public void insertItem(String itemId, String beforeItemId) {
+		changing();
 		if ((beforeItemId == null) || (beforeItemId.length() == 0) || (this.items == null)) {
 			addItem(itemId);
 		} else if (validItemId(itemId)) {
-			List<String> items = new ArrayList<String>(Arrays.asList(getItems()));
-			int pos = items.indexOf(beforeItemId);
+			int pos = this.items.indexOf(beforeItemId);
 			if (pos < 0) {
 				addItem(itemId);
 			} else {
-				items.add(pos, itemId);
-				setItems(items.toArray());
+				this.items = this.items.plus(pos, itemId);
 			}
 		}
 	}
@@ -170,16 +206,15 @@ public class Group extends Item {
 	 *            The entry after which the new item is to be inserted
 	 */
 	public void appendItem(String itemId, String afterItemId) {
+		changing();
 		if ((afterItemId == null) || (afterItemId.length() == 0) || (this.items == null)) {
 			addItem(itemId);
 		} else if (validItemId(itemId)) {
-			List<String> items = new ArrayList<String>(Arrays.asList(getItems()));
-			int pos = items.indexOf(afterItemId);
-			if ((pos < 0) || ((pos + 1) == items.size())) {
+			int pos = this.items.indexOf(afterItemId);
+			if ((pos < 0) || ((pos + 1) == this.items.size())) {
 				addItem(itemId);
 			} else {
-				items.add(pos + 1, itemId);
-				setItems(items.toArray());
+				this.items = this.items.plus(pos + 1, itemId);
 			}
 		}
 	}
@@ -192,16 +227,11 @@ public class Group extends Item {
 	 * @return The index of the removed item, or -1 if not found
 	 */
 	public int removeItem(String itemId) {
-		if (validItemId(itemId)) {
-			List<String> items = new ArrayList<String>(Arrays.asList(getItems()));
-			int pos = items.indexOf(itemId);
+		if (validItemId(itemId) && (this.items != null)) {
+			int pos = this.items.indexOf(itemId);
 			if (pos >= 0) {
-				if (items.size() == 1) {
-					this.items = null;
-				} else {
-					items.remove(itemId);
-					setItems(items.toArray());
-				}
+				changing();
+				this.items = this.items.minus(pos);
 				return pos;
 			}
 		}
@@ -219,6 +249,7 @@ public class Group extends Item {
 	 * @param items
 	 */
 	public void setItems(Object[] items) {
+		changing();
 		if (items == null) {
 			this.items = null;
 		} else {
@@ -235,7 +266,7 @@ public class Group extends Item {
 	 * @deprecated
 	 */
 	public String getItemsAsString() {
-		return items;
+		return items == null ? null : items.toString();
 	}
 
 	/**
@@ -244,7 +275,7 @@ public class Group extends Item {
 	 * @return
 	 */
 	String getInternalItemsAsString() {
-		return items;
+		return items == null ? null : items.toString();
 	}
 
 	/**
@@ -258,10 +289,8 @@ public class Group extends Item {
 	 * @deprecated
 	 */
 	public void setItemsAsString(String items) {
-		if (items != null && items.equals("")) {
-			items = null;
-		}
-		this.items = items;
+		changing();
+		this.items = ItemIds.parse(items);
 	}
 
 	/**
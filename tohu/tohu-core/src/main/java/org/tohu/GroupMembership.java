@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.io.Serializable;
+
+/**
+ * Records that an item is one of the items of a group.
+ *
+ * The Tohu built-in rules insert one of these for each item id of each Group, so that rules can join an item to its parent groups (or
+ * a group to its children) on an indexed id instead of searching every group's list of items. The rules retract it again when the
+ * item is removed from the group or the group is retracted.
+ */
+public class GroupMembership implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String groupId;
+
+	private final String itemId;
+
+	public GroupMembership(String groupId, String itemId) {
+		this.groupId = groupId;
+		this.itemId = itemId;
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+
+	public String getItemId() {
+		return itemId;
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
+		result = prime * result + ((itemId == null) ? 0 : itemId.hashCode());
+		return result;
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final GroupMembership other = (GroupMembership) obj;
+		if (groupId == null) {
+			if (other.groupId != null)
+				return false;
+		} else if (!groupId.equals(other.groupId))
+			return false;
+		if (itemId == null) {
+			if (other.itemId != null)
+				return false;
+		} else if (!itemId.equals(other.itemId))
+			return false;
+		return true;
+	}
+
+	/**
+	 * For debugging purposes.
+	 */
+	@Override
+	public String toString() {
+		return this.getClass().getName() + ": groupId=" + groupId + " itemId=" + itemId;
+	}
+
+}
@@ -58,6 +58,7 @@ public class InvalidAnswer extends TohuObject {
 	}
 
 	public void setQuestionId(String questionId) {
+		changing();
 		if (this.questionId != null && !this.questionId.equals(questionId)) {
 			throw new IllegalStateException("questionId may not be changed");
 		}
@@ -69,6 +70,7 @@ public class InvalidAnswer extends TohuObject {
 	}
 
 	public void setReason(String reason) {
+		changing();
 		if (this.reason != null && !this.reason.equals(reason)) {
 			throw new IllegalStateException("reason may not be changed");
 		}
@@ -96,6 +98,7 @@ public class InvalidAnswer extends TohuObject {
 	 * @param type
 	 */
 	public void setType(String type) {
+		changing();
 		this.type = type;
 	}
 
@@ -15,9 +15,7 @@
  */
 package org.tohu;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
 /**
  * Base class for all items contained within a <code>Questionnaire</code>.
@@ -34,6 +32,14 @@ public abstract class Item extends TohuObject {
 	 * Styles are represented internally as a comma-delimited string for efficient XML transport.
 	 */
 	private String presentationStyles;
+
+	/**
+	 * Bit set of <code>presentationStyles</code> from {@link PresentationStyleRegistry}, for the string held in
+	 * <code>presentationStyleBitsSource</code>.
+	 */
+	private transient long presentationStyleBits;
+
+	private transient String presentationStyleBitsSource;
 	
 	/**
 	 * This is a way of optionally abstractly grouping elements for use outside Tohu.
@@ -71,6 +77,7 @@ public abstract class Item extends TohuObject {
 	 * To be used outside of Tohu.
 	 */
 	public void setCategory(String category) {
+		changing();
 		this.category = category;
 	}
 
@@ -80,6 +87,7 @@ public abstract class Item extends TohuObject {
 	 * @param id
 	 */
 	public void setId(String id) {
+		changing();
 		if (id == null || id.contains(",") || id.contains(".")) {
 			throw new IllegalArgumentException("Invalid item id");
 		}
@@ -95,7 +103,33 @@ public abstract class Item extends TohuObject {
 	 * @return
 	 */
 	public String[] getPresentationStyles() {
-		return presentationStyles == null ? null : presentationStyles.split(",");
+		return presentationStyles == null ? null : DelimitedTokenizer.splitPlain(presentationStyles, ',');
+	}
+
+	/**
+	 * Checks whether this item has a presentation style, without splitting the list.
+	 * 
+	 * @param presentationStyle
+	 * @return
+	 */
+	public boolean hasPresentationStyle(String presentationStyle) {
+		if (presentationStyles == null || presentationStyle == null) {
+			return false;
+		}
+		long bit = PresentationStyleRegistry.bit(presentationStyle);
+		if (bit == 0) {
+			return DelimitedTokenizer.contains(presentationStyles, ',', false, presentationStyle);
+		}
+		return (getPresentationStyleBits() & bit) != 0;
+	}
+
+	private long getPresentationStyleBits() {
+		String presentationStyles = this.presentationStyles;
+		if (presentationStyleBitsSource != presentationStyles) {
+			presentationStyleBits = PresentationStyleRegistry.bits(presentationStyles);
+			presentationStyleBitsSource = presentationStyles;
+		}
+		return presentationStyleBits;
 	}
 
 	/**
@@ -116,6 +150,7 @@ public abstract class Item extends TohuObject {
 	 * @param presentationStyles
 	 */
 	public void setPresentationStyles(String[] presentationStyles) {
+		changing();
 		if (presentationStyles == null) {
 			this.presentationStyles = null;
 		} else {
@@ -131,7 +166,7 @@ public abstract class Item extends TohuObject {
 					sb.append(presentationStyles[i]);
 				}
 			}
-			this.presentationStyles = sb.toString();
+			this.presentationStyles = SharedMetadata.share(sb.toString());
 		}
 	}
 
@@ -146,6 +181,7 @@ public abstract class Item extends TohuObject {
 	 * @param presentationStyles
 	 */
 	public void setPresentationStyles(Object[] presentationStyles) {
+		changing();
 		if (presentationStyles == null || presentationStyles.length == 0) {
 			this.presentationStyles = null;
 		} else {
@@ -154,18 +190,23 @@ public abstract class Item extends TohuObject {
 	}
 
 	/**
-	 * Adds a presentation style to the list. Duplicates and nulls ignored.
+	 * Adds a presentation style to the end of the list. Duplicates and nulls ignored.
 	 * 
 	 * @param presentationStyle
 	 */
 	public void addPresentationStyle(String presentationStyle) {
-		if (presentationStyle != null) {
-			if (this.presentationStyles == null) {
-				this.presentationStyles = presentationStyle;
-			} else {
-				this.presentationStyles = this.presentationStyles + "," + presentationStyle;
-			}
+		if (presentationStyle == null || hasPresentationStyle(presentationStyle)) {
+			return;
 		}
+		changing();
+		long bits = getPresentationStyleBits() | PresentationStyleRegistry.bit(presentationStyle);
+		if (this.presentationStyles == null) {
+			this.presentationStyles = SharedMetadata.share(presentationStyle);
+		} else {
+			this.presentationStyles = SharedMetadata.share(this.presentationStyles + "," + presentationStyle);
+		}
+		presentationStyleBits = bits;
+		presentationStyleBitsSource = this.presentationStyles;
 	}
 
 	/**
@@ -174,18 +215,24 @@ public abstract class Item extends TohuObject {
 	 * @param presentationStyle
 	 */
 	public void removePresentationStyle(String presentationStyle) {
-		if (presentationStyle != null) {
-			List<String> presentationStyles = new ArrayList<String>(Arrays.asList(getPresentationStyles()));
-			int pos = presentationStyles.indexOf(presentationStyle);
-			if (pos >= 0) {
-				if (presentationStyles.size() == 1) {
-					this.presentationStyles = null;
-				} else {
-					presentationStyles.remove(presentationStyle);
-					setPresentationStyles(presentationStyles.toArray());
+		if (presentationStyle == null || !hasPresentationStyle(presentationStyle)) {
+			return;
+		}
+		changing();
+		long bits = getPresentationStyleBits() & ~PresentationStyleRegistry.bit(presentationStyle);
+		StringBuilder sb = new StringBuilder(this.presentationStyles.length());
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(this.presentationStyles, ',', false);
+		while (tokenizer.next()) {
+			if (!tokenizer.isTokenEmpty() && !tokenizer.tokenEquals(presentationStyle)) {
+				if (sb.length() > 0) {
+					sb.append(",");
 				}
+				sb.append(tokenizer.token());
 			}
 		}
+		this.presentationStyles = sb.length() == 0 ? null : SharedMetadata.share(sb.toString());
+		presentationStyleBits = bits;
+		presentationStyleBitsSource = this.presentationStyles;
 	}
 
 	/**
@@ -209,10 +256,11 @@ public abstract class Item extends TohuObject {
 	 * @deprecated
 	 */
 	public void setPresentationStylesAsString(String presentationStyles) {
+		changing();
 		if (presentationStyles != null && presentationStyles.length() == 0) {
 			this.presentationStyles = null;
 		} else {
-			this.presentationStyles = presentationStyles;
+			this.presentationStyles = SharedMetadata.share(presentationStyles);
 		}
 	}
 
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * Immutable list of the item ids in a <code>Group</code>.
+ * </p>
+ *
+ * <p>
+ * The ids are held in an array with a hash index from each id to its first position, so <code>contains</code> and
+ * <code>indexOf</code> don't need to scan the list. The index and the comma-delimited form are only built when first needed, and
+ * are published through volatile fields. Changes return a new instance, so instances can be shared between a <code>Group</code> and
+ * its clones, including across threads.
+ * </p>
+ */
+public final class ItemIds extends AbstractList<String> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String[] ids;
+
+	// built completely before it is assigned, so another thread either sees all of it or builds its own
+	private transient volatile Map<String, Integer> index;
+
+	private transient volatile String string;
+
+	private ItemIds(String[] ids, String string) {
+		this.ids = ids;
+		this.string = string;
+	}
+
+	/**
+	 * Creates a list from an array of ids. The ids are not validated.
+	 *
+	 * @param ids
+	 * @return null if <code>ids</code> is null or empty
+	 */
+	public static ItemIds valueOf(String[] ids) {
+		if (ids == null || ids.length == 0) {
+			return null;
+		}
+		String[] copy = new String[ids.length];
+		System.arraycopy(ids, 0, copy, 0, ids.length);
+		return new ItemIds(copy, null);
+	}
+
+	/**
+	 * Parses a comma-delimited string of ids. <code>toString()</code> returns the same string.
+	 *
+	 * @param items
+	 * @return null if <code>items</code> is null or empty
+	 */
+	public static ItemIds parse(String items) {
+		if (items == null || items.length() == 0) {
+			return null;
+		}
+		return new ItemIds(DelimitedTokenizer.splitPlain(items, ','), items);
+	}
+
+	@Override
+	public String get(int index) {
+		return ids[index];
+	}
+
+	@Override
+	public int size() {
+		return ids.length;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return index().containsKey(o);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		Integer i = index().get(o);
+		return i == null ? -1 : i.intValue();
+	}
+
+	/**
+	 * @return a copy of the ids
+	 */
+	public String[] getIds() {
+		String[] copy = new String[ids.length];
+		System.arraycopy(ids, 0, copy, 0, ids.length);
+		return copy;
+	}
+
+	/**
+	 * Returns a new list with <code>id</code> inserted at <code>position</code>.
+	 *
+	 * @param position
+	 * @param id
+	 * @return
+	 */
+	ItemIds plus(int position, String id) {
+		String[] copy = new String[ids.length + 1];
+		System.arraycopy(ids, 0, copy, 0, position);
+		copy[position] = id;
+		System.arraycopy(ids, position, copy, position + 1, ids.length - position);
+		String joined = null;
+		if (string != null && position == ids.length && !string.endsWith(Group.COMMA_SEPARATOR)) {
+			joined = string + Group.COMMA_SEPARATOR + id;
+		}
+		return new ItemIds(copy, joined);
+	}
+
+	/**
+	 * Returns a new list without the id at <code>position</code>.
+	 *
+	 * @param position
+	 * @return null if the list would be empty
+	 */
+	ItemIds minus(int position) {
+		if (ids.length == 1) {
+			return null;
+		}
+		String[] copy = new String[ids.length - 1];
+		System.arraycopy(ids, 0, copy, 0, position);
+		System.arraycopy(ids, position + 1, copy, position, copy.length - position);
+		return new ItemIds(copy, null);
+	}
+
+	private Map<String, Integer> index() {
+		Map<String, Integer> index = this.index;
+		if (index == null) {
+			index = new HashMap<String, Integer>(ids.length * 2);
+			for (int i = ids.length - 1; i >= 0; i--) {
+				index.put(ids[i], Integer.valueOf(i));
+			}
+			this.index = index;
+		}
+		return index;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ItemIds) {
+			return Arrays.equals(ids, ((ItemIds) o).ids);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(ids);
+	}
+
+	/**
+	 * @return the ids as a comma-delimited string
+	 */
+	@Override
+	public String toString() {
+		String string = this.string;
+		if (string == null) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < ids.length; i++) {
+				if (i > 0) {
+					sb.append(Group.COMMA_SEPARATOR);
+				}
+				sb.append(ids[i]);
+			}
+			string = sb.toString();
+			this.string = string;
+		}
+		return string;
+	}
+
+}
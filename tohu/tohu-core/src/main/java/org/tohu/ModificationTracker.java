@@ -0,0 +1,40 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+/**
+ * Receives Tohu objects just before they are first changed.
+ * 
+ * @see TohuObject#startTracking(ModificationTracker)
+ */
+public interface ModificationTracker {
+
+	/**
+	 * Returns the epoch obtained from {@link TohuObject#nextEpoch()} when tracking started.
+	 * 
+	 * @return
+	 */
+	long getEpoch();
+
+	/**
+	 * Called once per epoch for each object that existed before tracking started, before it is first changed. The object still has
+	 * its original values.
+	 * 
+	 * @param object
+	 */
+	void beforeFirstChange(TohuObject object);
+
+}
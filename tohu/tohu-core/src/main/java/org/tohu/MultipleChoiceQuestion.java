@@ -17,7 +17,10 @@ package org.tohu;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -34,6 +37,8 @@ public class MultipleChoiceQuestion extends Question {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final SharedMetadata<PossibleAnswerIndex> POSSIBLE_ANSWER_INDEXES = new SharedMetadata<PossibleAnswerIndex>();
+
 	/**
 	 * Possible answers are represented internally as comma-delimited value/label pairs i.e. value1=label1,value2=label2,... for efficient XML transport.
 	 * 
@@ -43,6 +48,12 @@ public class MultipleChoiceQuestion extends Question {
 	 */
 	private String possibleAnswers;
 
+	/**
+	 * <code>possibleAnswers</code> as parsed. It is looked up again when <code>possibleAnswers</code> is no longer the string it was
+	 * parsed from. It is immutable so it is shared by every question with the same possible answers.
+	 */
+	private transient PossibleAnswerIndex possibleAnswerIndex;
+
 	public MultipleChoiceQuestion() {
 	}
 
@@ -55,24 +66,39 @@ public class MultipleChoiceQuestion extends Question {
 	}
 	
 	protected List<PossibleAnswer> getListOfPossibleAnswers() {
-		List<PossibleAnswer> result = new ArrayList<PossibleAnswer>();
-		String[] split = split(possibleAnswers, ",");
-		for (int i = 0; i < split.length; i++) {
-			String s = split[i];
-			String[] valueLabel = split(s, "=");
-			String value = valueLabel[0];
-			if (value.equals("null")) {
-				value = null;
-			}
-			String label = valueLabel[1];
-			if (label.equals("")) {
-				label = null;
-			}
-			result.add(new PossibleAnswer(value, label));
+		PossibleAnswer[] possibleAnswers = getPossibleAnswerIndex().possibleAnswers;
+		List<PossibleAnswer> result = new ArrayList<PossibleAnswer>(possibleAnswers.length);
+		for (int i = 0; i < possibleAnswers.length; i++) {
+			result.add(new PossibleAnswer(possibleAnswers[i].value, possibleAnswers[i].label));
 		}
 		return result;
 	}
 
+	/**
+	 * Gets the parsed possible answers, parsing them if they have changed and no other question has parsed the same ones.
+	 * 
+	 * @return
+	 */
+	private PossibleAnswerIndex getPossibleAnswerIndex() {
+		String possibleAnswers = this.possibleAnswers;
+		PossibleAnswerIndex index = possibleAnswerIndex;
+		if (index == null || index.source != possibleAnswers) {
+			if (possibleAnswers == null) {
+				index = new PossibleAnswerIndex(null);
+			} else {
+				index = POSSIBLE_ANSWER_INDEXES.get(possibleAnswers);
+				if (index == null) {
+					String source = SharedMetadata.share(possibleAnswers);
+					index = POSSIBLE_ANSWER_INDEXES.share(source, new PossibleAnswerIndex(source));
+				}
+				// the same value, but the shared instance so the index is found straight away next time
+				this.possibleAnswers = index.source;
+			}
+			possibleAnswerIndex = index;
+		}
+		return index;
+	}
+
 	/**
 	 * Gets list of possible answers.
 	 * 
@@ -83,7 +109,7 @@ public class MultipleChoiceQuestion extends Question {
 			return null;
 		}
 		List<PossibleAnswer> result = getListOfPossibleAnswers();
-		return result.toArray(new PossibleAnswer[] {});
+		return result.toArray(new PossibleAnswer[result.size()]);
 	}
 	
 	protected String formatValue(String valueStr) {
@@ -102,6 +128,7 @@ public class MultipleChoiceQuestion extends Question {
 	 * @param possibleAnswers
 	 */
 	public void setPossibleAnswers(PossibleAnswer[] possibleAnswers) {
+		changing();
 		if (possibleAnswers == null) {
 			this.possibleAnswers = null;
 		} else {
@@ -120,7 +147,7 @@ public class MultipleChoiceQuestion extends Question {
 				}
 			}
 			if (sb.length() > 0) {
-				this.possibleAnswers = sb.toString();
+				this.possibleAnswers = SharedMetadata.share(sb.toString());
 			} else {
 				this.possibleAnswers = null;
 			}
@@ -142,6 +169,7 @@ public class MultipleChoiceQuestion extends Question {
 	 * @param possibleAnswers
 	 */
 	public void setPossibleAnswers(Object[] possibleAnswers) {
+		changing();
 		if (possibleAnswers == null) {
 			this.possibleAnswers = null;
 		} else {
@@ -160,6 +188,7 @@ public class MultipleChoiceQuestion extends Question {
 	 * @param theValue of the possibleAnswer
 	 */
 	public void removePossibleAnswer(String theValue) {
+		changing();
 		List<PossibleAnswer> list = getListOfPossibleAnswers();
 		PossibleAnswer pos = null;
 		for (PossibleAnswer pa : list) {
@@ -181,20 +210,43 @@ public class MultipleChoiceQuestion extends Question {
 	 * Checks to see if there is a possible answer with the value passed in.
 	 * 
 	 * This method is provided to support the dynamic alteration of possible answers.
-	 * Uses String.indexOf internally.  
+	 * The values are looked up in an index which is only rebuilt when the possible answers change.
 	 * 
 	 * @param theValue of the possibleAnswer
 	 * @return
 	 */
 	public boolean hasPossibleAnswer(String theValue) {
-		String value = formatValue(theValue) + "=";
-		if (possibleAnswers.startsWith(value)) {
+		return getPossibleAnswerIndex().values.containsKey("null".equals(theValue) ? null : theValue);
+	}
+
+	/**
+	 * Gets the values of the possible answers, in order. The list is cached so iterating over it doesn't parse the possible answers
+	 * or create any objects.
+	 * 
+	 * @return an unmodifiable list, empty if there are no possible answers
+	 */
+	public List<String> getPossibleAnswerValues() {
+		return getPossibleAnswerIndex().valueList;
+	}
+
+	/**
+	 * Checks whether the answer is one of the possible answers. For a list answer, at least one of the selected values must be.
+	 * 
+	 * This is used by the Tohu built-in rules to discard invalid answers.
+	 * 
+	 * @return true if the question hasn't been answered, false if it has been answered but there are no possible answers
+	 */
+	public boolean isAnswerPossible() {
+		Object answer = getAnswer();
+		if (answer == null) {
 			return true;
 		}
-		// try and avoid an issue where we have an = sign in the description
-		value = "," + value;
-		if (possibleAnswers.indexOf(value) >= 0) {
-			return true;
+		Map<String, Integer> values = getPossibleAnswerIndex().values;
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(String.valueOf(answer), ',', true);
+		while (tokenizer.next()) {
+			if (values.containsKey(tokenizer.token())) {
+				return true;
+			}
 		}
 		return false;
 	}
@@ -212,6 +264,7 @@ public class MultipleChoiceQuestion extends Question {
 	 * @param atIndex If >= size of array then the answer is added to the end
 	 */
 	public void insertPossibleAnswer(PossibleAnswer possibleAnswer, int atIndex) {
+		changing();
 		if (possibleAnswers == null) {
 			// Really should be discouraged from doing this! Least efficient way of building up the list.
 			PossibleAnswer[] pa = new PossibleAnswer[1];
@@ -264,10 +317,22 @@ public class MultipleChoiceQuestion extends Question {
 	 * @deprecated
 	 */
 	public void setPossibleAnswersAsString(String possibleAnswers) {
+		changing();
 		if (possibleAnswers != null && possibleAnswers.equals("")) {
 			possibleAnswers = null;
 		}
-		this.possibleAnswers = possibleAnswers;
+		this.possibleAnswers = SharedMetadata.share(possibleAnswers);
+	}
+
+	/**
+	 * Looks up the parsed possible answers first so that clones don't need to, e.g. when sessions are restored from a template.
+	 * 
+	 * @see org.tohu.TohuObject#clone()
+	 */
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		getPossibleAnswerIndex();
+		return super.clone();
 	}
 
 	/**
@@ -278,6 +343,52 @@ public class MultipleChoiceQuestion extends Question {
 		return super.toString() + " possibleAnswers=" + possibleAnswers;
 	}
 
+	/**
+	 * The possible answers parsed from the comma-delimited string, with an index from each value to its first position.
+	 */
+	private static final class PossibleAnswerIndex {
+
+		private final String source;
+
+		private final PossibleAnswer[] possibleAnswers;
+
+		private final List<String> valueList;
+
+		private final Map<String, Integer> values;
+
+		private PossibleAnswerIndex(String source) {
+			this.source = source;
+			if (source == null) {
+				possibleAnswers = new PossibleAnswer[0];
+				valueList = Collections.emptyList();
+				values = Collections.emptyMap();
+				return;
+			}
+			String[] split = DelimitedTokenizer.split(source, ',');
+			possibleAnswers = new PossibleAnswer[split.length];
+			String[] valueArray = new String[split.length];
+			values = new HashMap<String, Integer>(split.length * 2);
+			for (int i = 0; i < split.length; i++) {
+				String[] valueLabel = DelimitedTokenizer.split(split[i], '=');
+				String value = valueLabel[0];
+				if (value.equals("null")) {
+					value = null;
+				}
+				String label = valueLabel[1];
+				if (label.equals("")) {
+					label = null;
+				}
+				possibleAnswers[i] = new PossibleAnswer(value, label);
+				valueArray[i] = value;
+				if (!values.containsKey(value)) {
+					values.put(value, Integer.valueOf(i));
+				}
+			}
+			valueList = Collections.unmodifiableList(Arrays.asList(valueArray));
+		}
+
+	}
+
 	public static class PossibleAnswer {
 
 		private String value;
@@ -49,7 +49,7 @@ public class Note extends Item {
 
 	public Note(String id, String label) {
 		super(id);
-		this.label = label;
+		this.label = SharedMetadata.share(label);
 	}
 
 	public String getLabel() {
@@ -57,7 +57,8 @@ public class Note extends Item {
 	}
 
 	public void setLabel(String label) {
-		this.label = label;
+		changing();
+		this.label = SharedMetadata.share(label);
 	}
 
 	/**
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * Gives each presentation style name a bit so that items can hold their styles as a bit set, and test and toggle them without
+ * searching the comma-delimited string.
+ * </p>
+ *
+ * <p>
+ * Only the first 64 names that are used get a bit. This is far more than a questionnaire normally uses, but styles are free text so
+ * any others are left without one and <code>Item</code> falls back to searching the string for them. Bits are only meaningful within
+ * this JVM so they are never serialized; the comma-delimited string remains the persistent form.
+ * </p>
+ *
+ * <p>
+ * Looking up a bit never locks. Only giving a new style a bit does, which happens at most 64 times. Each <code>Item</code> caches the
+ * bit set of its own string.
+ * </p>
+ */
+final class PresentationStyleRegistry {
+
+	static final String READONLY = "readonly";
+
+	static final String READONLY_INHERITED = "readonly-inherited";
+
+	private static final int MAX_BITS = 64;
+
+	private static final ConcurrentMap<String, Long> bits = new ConcurrentHashMap<String, Long>();
+
+	private static final Long NONE = Long.valueOf(0);
+
+	/**
+	 * Set once all the bits have been given out, so that styles without one don't have to wait for the lock.
+	 */
+	private static volatile boolean full;
+
+	static {
+		// the built-in styles are used by the ReadOnly rules for every item
+		bit(READONLY);
+		bit(READONLY_INHERITED);
+	}
+
+	private PresentationStyleRegistry() {
+	}
+
+	/**
+	 * @param presentationStyle
+	 * @return the bit for a style, or 0 if all the bits have been given out to other styles
+	 */
+	static long bit(String presentationStyle) {
+		Long bit = bits.get(presentationStyle);
+		if (bit == null) {
+			if (full) {
+				return 0;
+			}
+			bit = register(presentationStyle);
+		}
+		return bit.longValue();
+	}
+
+	private static synchronized Long register(String presentationStyle) {
+		Long bit = bits.get(presentationStyle);
+		if (bit == null) {
+			int size = bits.size();
+			if (size >= MAX_BITS) {
+				return NONE;
+			}
+			bit = Long.valueOf(1L << size);
+			bits.put(presentationStyle, bit);
+			full = size + 1 == MAX_BITS;
+		}
+		return bit;
+	}
+
+	/**
+	 * @param presentationStyles
+	 *            comma-delimited
+	 * @return the bit set of the styles
+	 */
+	static long bits(String presentationStyles) {
+		if (presentationStyles == null) {
+			return 0;
+		}
+		long set = 0;
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer(presentationStyles, ',', false);
+		while (tokenizer.next()) {
+			if (!tokenizer.isTokenEmpty()) {
+				set |= bit(tokenizer.token());
+			}
+		}
+		return set;
+	}
+
+}
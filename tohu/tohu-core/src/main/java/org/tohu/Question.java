@@ -21,9 +21,7 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.math.BigDecimal;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -71,7 +69,10 @@ public class Question extends Item {
 
 	private static final long serialVersionUID = 1L;
 
-	private static final DateFormat DATE_TRANSPORT_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+	/**
+	 * Characters which have a special meaning in a regular expression.
+	 */
+	private static final String REGEX_CHARACTERS = ".$|()[{^?*+\\";
 
 	public static final String TYPE_TEXT = "text";
 
@@ -115,6 +116,14 @@ public class Question extends Item {
 	@AnswerField
 	private String dateAnswer;
 
+	/**
+	 * <code>dateAnswer</code> as parsed, so that <code>getAnswer()</code> doesn't have to parse it every time. It is reparsed if
+	 * <code>dateAnswer</code> is no longer the string it was parsed from.
+	 */
+	private transient String parsedDateAnswer;
+
+	private transient long parsedDateAnswerTime;
+
 	/**
 	 * List is stored as a delimited string
 	 */
@@ -130,7 +139,7 @@ public class Question extends Item {
 
 	public Question(String id, String label) {
 		super(id);
-		this.preLabel = label;
+		this.preLabel = SharedMetadata.share(label);
 	}
 
 	public String getPreLabel() {
@@ -138,7 +147,8 @@ public class Question extends Item {
 	}
 
 	public void setPreLabel(String preLabel) {
-		this.preLabel = preLabel;
+		changing();
+		this.preLabel = SharedMetadata.share(preLabel);
 	}
 
 	public String getPostLabel() {
@@ -146,7 +156,8 @@ public class Question extends Item {
 	}
 
 	public void setPostLabel(String postLabel) {
-		this.postLabel = postLabel;
+		changing();
+		this.postLabel = SharedMetadata.share(postLabel);
 	}
 
 	public boolean isRequired() {
@@ -159,6 +170,7 @@ public class Question extends Item {
 	 * @param required
 	 */
 	public void setRequired(boolean required) {
+		changing();
 		this.required = required;
 	}
 
@@ -167,6 +179,7 @@ public class Question extends Item {
 	}
 
 	public void setAnswerType(String answerType) {
+		changing();
 		String previousBasicAnswerType = answerTypeToBasicAnswerType(this.answerType);
 		String basicAnswerType = answerTypeToBasicAnswerType(answerType);
 		if (basicAnswerType == null
@@ -207,6 +220,7 @@ public class Question extends Item {
 	}
 
 	public void setTextAnswer(String textAnswer) {
+		changing();
 		checkType(TYPE_TEXT);
 		this.textAnswer = textAnswer;
 	}
@@ -217,6 +231,7 @@ public class Question extends Item {
 	}
 
 	public void setNumberAnswer(Long numberAnswer) {
+		changing();
 		checkType(TYPE_NUMBER);
 		this.numberAnswer = numberAnswer;
 	}
@@ -227,6 +242,7 @@ public class Question extends Item {
 	}
 
 	public void setDecimalAnswer(BigDecimal decimalAnswer) {
+		changing();
 		checkType(TYPE_DECIMAL);
 		this.decimalAnswer = decimalAnswer;
 	}
@@ -237,23 +253,43 @@ public class Question extends Item {
 	}
 
 	public void setBooleanAnswer(Boolean booleanAnswer) {
+		changing();
 		checkType(TYPE_BOOLEAN);
 		this.booleanAnswer = booleanAnswer;
 	}
 
 	public Date getDateAnswer() {
 		checkType(TYPE_DATE);
-		try {
-			return dateAnswer == null ? null : DATE_TRANSPORT_FORMAT.parse(dateAnswer);
-		} catch (ParseException e) {
-			// can't actually happen because we formatted the string in the first place
-			throw new IllegalStateException();
+		String dateAnswer = this.dateAnswer;
+		if (dateAnswer == null) {
+			return null;
 		}
+		if (dateAnswer != parsedDateAnswer) {
+			try {
+				parsedDateAnswerTime = DateAnswerFormat.parse(dateAnswer).getTime();
+			} catch (ParseException e) {
+				// can't actually happen because we formatted the string in the first place
+				throw new IllegalStateException();
+			}
+			parsedDateAnswer = dateAnswer;
+		}
+		return new Date(parsedDateAnswerTime);
+	}
+
+	/**
+	 * For internal use only.
+	 * 
+	 * @return the date answer as it is stored, in the format of {@link DateAnswerFormat}
+	 */
+	public String getDateAnswerString() {
+		checkType(TYPE_DATE);
+		return dateAnswer;
 	}
 
 	public void setDateAnswer(Date dateAnswer) {
+		changing();
 		checkType(TYPE_DATE);
-		this.dateAnswer = dateAnswer == null ? null : DATE_TRANSPORT_FORMAT.format(dateAnswer);
+		this.dateAnswer = dateAnswer == null ? null : DateAnswerFormat.format(dateAnswer);
 	}
 
 	/**
@@ -263,8 +299,9 @@ public class Question extends Item {
 	 * @throws ParseException
 	 */
 	public void setDateAnswer(String dateAnswer) throws ParseException {
+		changing();
 		checkType(TYPE_DATE);
-		this.dateAnswer = dateAnswer == null ? null : DATE_TRANSPORT_FORMAT.format(DATE_TRANSPORT_FORMAT.parse(dateAnswer));
+		this.dateAnswer = dateAnswer == null ? null : DateAnswerFormat.format(DateAnswerFormat.parse(dateAnswer));
 	}
 
 	public String getListAnswer() {
@@ -273,6 +310,7 @@ public class Question extends Item {
 	}
 
 	public void setListAnswer(String listAnswer) {
+		changing();
 		checkType(TYPE_LIST);
 		this.listAnswer = listAnswer;
 	}
@@ -373,29 +411,29 @@ public class Question extends Item {
 	 * 
 	 * Occurrences of the delimiter d within the text are expected to be escaped as \d
 	 * 
+	 * A single character delimiter is handled by <code>DelimitedTokenizer</code>. Anything else is treated as a regular expression.
+	 * 
 	 * @param string
 	 * @param delimiter
 	 * @return
 	 */
 	public String[] split(String text, String delimiter) {
+		if (delimiter.length() == 1 && REGEX_CHARACTERS.indexOf(delimiter.charAt(0)) < 0) {
+			return DelimitedTokenizer.split(text, delimiter.charAt(0));
+		}
 		List<String> result = new ArrayList<String>();
 		String[] split = text.split(delimiter, -1);
+		StringBuilder sb = new StringBuilder();
 		for (int i = 0; i < split.length; i++) {
-		}
-		int i = 0;
-		String s = "";
-		while (i < split.length) {
-			boolean continues = split[i].endsWith("\\");
-			if (continues) {
-				s += split[i].substring(0, split[i].length() - 1) + delimiter;
+			if (split[i].endsWith("\\")) {
+				sb.append(split[i], 0, split[i].length() - 1).append(delimiter);
 			} else {
-				s += split[i];
-				result.add(s);
-				s = "";
+				sb.append(split[i]);
+				result.add(sb.toString());
+				sb.setLength(0);
 			}
-			i++;
 		}
-		return result.toArray(new String[] {});
+		return result.toArray(new String[result.size()]);
 	}
 
 	/**
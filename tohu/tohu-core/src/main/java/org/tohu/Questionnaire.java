@@ -15,8 +15,17 @@
  */
 package org.tohu;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +54,14 @@ public class Questionnaire extends Group {
 
 	public static final String COMPLETION_ACTION_RETURN = "#return";
 
+	/**
+	 * As for <code>Group</code>, available items are serialized as a comma-delimited string.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = { new ObjectStreamField("activeItem", String.class),
+			new ObjectStreamField("completionAction", String.class), new ObjectStreamField("invalidAnswers", Boolean.TYPE),
+			new ObjectStreamField("enableActionValidation", Boolean.TYPE), new ObjectStreamField("availableItems", String.class),
+			new ObjectStreamField("clientDateFormat", String.class), new ObjectStreamField("markupAllowed", Boolean.TYPE) };
+
 	private String activeItem;
 
 	private transient ArrayList<NavigationStackEntry> navigationStack = new ArrayList<NavigationStackEntry>();
@@ -55,7 +72,7 @@ public class Questionnaire extends Group {
 
 	private boolean enableActionValidation;
 
-	private String availableItems;
+	private ItemIds availableItems;
 
 	private String clientDateFormat = DEFAULT_CLIENT_DATE_FORMAT;
 	
@@ -63,6 +80,29 @@ public class Questionnaire extends Group {
 	// TODO remove this.  It is specific to the jquery client and should be implemented elsewhere.  The model should be kept independent from any particular UI implementation.  
 	private boolean markupAllowed;
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("activeItem", activeItem);
+		fields.put("completionAction", completionAction);
+		fields.put("invalidAnswers", invalidAnswers);
+		fields.put("enableActionValidation", enableActionValidation);
+		fields.put("availableItems", availableItems == null ? null : availableItems.toString());
+		fields.put("clientDateFormat", clientDateFormat);
+		fields.put("markupAllowed", markupAllowed);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		activeItem = (String) fields.get("activeItem", null);
+		completionAction = (String) fields.get("completionAction", null);
+		invalidAnswers = fields.get("invalidAnswers", false);
+		enableActionValidation = fields.get("enableActionValidation", false);
+		availableItems = ItemIds.parse((String) fields.get("availableItems", null));
+		clientDateFormat = (String) fields.get("clientDateFormat", null);
+		markupAllowed = fields.get("markupAllowed", false);
+	}
+
 	public Questionnaire() {
 		super.setActive(true);
 	}
@@ -92,6 +132,7 @@ public class Questionnaire extends Group {
 	 * @param activeItem
 	 */
 	public void setActiveItem(String activeItem) {
+		changing();
 		this.activeItem = activeItem;
 	}
 
@@ -118,6 +159,7 @@ public class Questionnaire extends Group {
 	}
 
 	public void setCompletionAction(String completionAction) {
+		changing();
 		this.completionAction = completionAction;
 	}
 
@@ -131,6 +173,7 @@ public class Questionnaire extends Group {
 	 * @param invalidAnswers
 	 */
 	public void setInvalidAnswers(boolean invalidAnswers) {
+		changing();
 		this.invalidAnswers = invalidAnswers;
 	}
 
@@ -143,6 +186,19 @@ public class Questionnaire extends Group {
 				+ " pushedActiveItems=" + navigationStack + " invalidAnswers=" + invalidAnswers;
 	}
 
+	/**
+	 * The navigation stack is copied so that a clone can branch and return independently of the original.
+	 * 
+	 * @see org.tohu.TohuObject#clone()
+	 */
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		Questionnaire clone = (Questionnaire) super.clone();
+		clone.navigationStack = navigationStack == null ? new ArrayList<NavigationStackEntry>()
+				: new ArrayList<NavigationStackEntry>(navigationStack);
+		return clone;
+	}
+
 	/**
 	 * This is used to push a new navigation path onto the questionnaire. On completion, the user will be returned to the previous
 	 * path.
@@ -165,6 +221,7 @@ public class Questionnaire extends Group {
 	 * @return
 	 */
 	public void navigationBranch(String[] newItems, String newActiveItem, String newCompletionAction) {
+		changing();
 		if ((newItems == null) || (newItems.length == 0)) {
 			throw new IllegalArgumentException("There are no valid new items to push onto stack.");
 		}
@@ -181,6 +238,7 @@ public class Questionnaire extends Group {
 	 * @return
 	 */
 	public void navigationReturn() {
+		changing();
 		if (navigationStack.size() == 0) {
 			throw new IllegalStateException();
 		}
@@ -223,6 +281,7 @@ public class Questionnaire extends Group {
 	 * @param enableActionValidation
 	 */
 	public void setEnableActionValidation(boolean enableActionValidation) {
+		changing();
 		this.enableActionValidation = enableActionValidation;
 	}
 
@@ -232,7 +291,20 @@ public class Questionnaire extends Group {
 	 * @return
 	 */
 	public String[] getAvailableItems() {
-		return availableItems == null ? null : availableItems.split(COMMA_SEPARATOR);
+		return availableItems == null ? null : availableItems.getIds();
+	}
+
+	/**
+	 * Gets list of available item ids, for use in rules. <code>contains</code> and <code>memberOf</code> are looked up in an
+	 * index.
+	 * 
+	 * @return an empty list if there are none
+	 */
+	public List<String> getAvailableItemIds() {
+		if (availableItems == null) {
+			return Collections.emptyList();
+		}
+		return availableItems;
 	}
 
 	/**
@@ -241,25 +313,96 @@ public class Questionnaire extends Group {
 	 * @param availableItems
 	 */
 	public void setAvailableItems(String[] availableItems) {
+		changing();
 		if (logger.isDebugEnabled()) {
 			logger.debug("Available Items are: " + Arrays.toString(availableItems));
 		}
-		if (availableItems == null) {
-			this.availableItems = null;
-		} else {
-			StringBuilder sb = new StringBuilder();
-			for (int i = 0; i < availableItems.length; i++) {
-				if (sb.length() > 0) {
-					sb.append(COMMA_SEPARATOR);
+		ItemIds ids = ItemIds.valueOf(availableItems);
+		if (ids != null && ids.toString().length() == 0) {
+			ids = null;
+		}
+		this.availableItems = ids;
+	}
+
+	/**
+	 * Adds items to the list of available item ids, keeping them in the same order as the questionnaire's items.
+	 * 
+	 * This is invoked by the Tohu built-in rules. Do not call it directly.
+	 * 
+	 * @param itemIds
+	 */
+	public void addAvailableItems(Collection<String> itemIds) {
+		changing();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Available Items added: " + itemIds);
+		}
+		Set<String> available = new HashSet<String>(itemIds);
+		available.addAll(getAvailableItemIds());
+		availableItems = filterItems(available);
+	}
+
+	/**
+	 * Removes any items which are not in <code>itemIds</code> from the list of available item ids.
+	 * 
+	 * This is invoked by the Tohu built-in rules. Do not call it directly.
+	 * 
+	 * @param itemIds
+	 */
+	public void retainAvailableItems(Collection<String> itemIds) {
+		changing();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Available Items retained: " + itemIds);
+		}
+		List<String> retained = new ArrayList<String>(getAvailableItemIds());
+		retained.retainAll(itemIds);
+		availableItems = ItemIds.valueOf(retained.toArray(new String[retained.size()]));
+	}
+
+	/**
+	 * Checks whether the available item ids are in the same order as the questionnaire's items. They may not be after the items
+	 * have been reordered.
+	 * 
+	 * @return
+	 */
+	public boolean isAvailableItemsOrdered() {
+		if (availableItems != null) {
+			List<String> itemIds = getItemIds();
+			int previous = -1;
+			for (int i = 0; i < availableItems.size(); i++) {
+				int position = itemIds.indexOf(availableItems.get(i));
+				if (position <= previous) {
+					return false;
 				}
-				sb.append(availableItems[i]);
+				previous = position;
 			}
-			if (sb.length() > 0) {
-				this.availableItems = sb.toString();
-			} else {
-				this.availableItems = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the available item ids back into the same order as the questionnaire's items.
+	 * 
+	 * This is invoked by the Tohu built-in rules. Do not call it directly.
+	 */
+	public void orderAvailableItems() {
+		changing();
+		availableItems = filterItems(getAvailableItemIds());
+	}
+
+	/**
+	 * @param itemIds
+	 * @return the items which are in <code>itemIds</code>, in order and without duplicates
+	 */
+	private ItemIds filterItems(Collection<String> itemIds) {
+		List<String> items = getItemIds();
+		List<String> filtered = new ArrayList<String>(itemIds.size());
+		for (int i = 0; i < items.size(); i++) {
+			String itemId = items.get(i);
+			if (itemIds.contains(itemId) && items.indexOf(itemId) == i) {
+				filtered.add(itemId);
 			}
 		}
+		return ItemIds.valueOf(filtered.toArray(new String[filtered.size()]));
 	}
 
 	public String getClientDateFormat() {
@@ -275,6 +418,7 @@ public class Questionnaire extends Group {
 	 * @param clientDateFormat
 	 */
 	public void setClientDateFormat(String clientDateFormat) {
+		changing();
 		this.clientDateFormat = clientDateFormat;
 	}
 
@@ -292,6 +436,7 @@ public class Questionnaire extends Group {
 	 * @param markupAllowed
 	 */
 	public void setMarkupAllowed(boolean markupAllowed) {
+		changing();
 		this.markupAllowed = markupAllowed;
 	}
 }
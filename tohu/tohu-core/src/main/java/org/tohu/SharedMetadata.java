@@ -0,0 +1,170 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A table of values shared between every item that has an equal value, such as labels and possible answers.
+ * </p>
+ *
+ * <p>
+ * Items are created separately in each session but their labels, possible answers, presentation styles etc. are usually identical
+ * in every session of the same questionnaire. Setters pass these values through a table so that all the sessions hold one copy.
+ * Values are only weakly held by the table so they are discarded once no item uses them.
+ * </p>
+ *
+ * <p>
+ * The table is only used while the current thread is sharing, i.e. between {@link #startSharing()} and {@link #stopSharing()}.
+ * This is done while the questionnaire is built: when a session template is built, or during the first request to a session that
+ * isn't restored from a template. At other times setters keep their own values without looking them up, so that values which only
+ * exist for a while in one session, such as presentation styles toggled by rules, neither fill up the table nor pay for a lookup.
+ * Lookups don't lock.
+ * </p>
+ */
+public final class SharedMetadata<T> {
+
+	private static final SharedMetadata<String> STRINGS = new SharedMetadata<String>();
+
+	private static final ThreadLocal<Boolean> sharing = new ThreadLocal<Boolean>();
+
+	private final ConcurrentMap<Key, WeakReference<T>> values = new ConcurrentHashMap<Key, WeakReference<T>>();
+
+	private final ReferenceQueue<String> queue = new ReferenceQueue<String>();
+
+	/**
+	 * A weakly held key, like the keys of a <code>WeakHashMap</code>. Once the key has been discarded it is only equal to itself so
+	 * that the entry can still be removed.
+	 */
+	private static class Key extends WeakReference<String> {
+
+		private final int hash;
+
+		private Key(String key, ReferenceQueue<String> queue) {
+			super(key, queue);
+			hash = key.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			String key = get();
+			return key != null && key.equals(((Key) o).get());
+		}
+
+	}
+
+	SharedMetadata() {
+	}
+
+	/**
+	 * Starts adding values set by the current thread to the tables.
+	 */
+	public static void startSharing() {
+		sharing.set(Boolean.TRUE);
+	}
+
+	/**
+	 * Stops adding values set by the current thread to the tables.
+	 */
+	public static void stopSharing() {
+		sharing.remove();
+	}
+
+	/**
+	 * @param string
+	 * @return the shared string equal to <code>string</code>
+	 */
+	static String share(String string) {
+		if (string == null) {
+			return null;
+		}
+		return STRINGS.share(string, string);
+	}
+
+	/**
+	 * @param key
+	 * @return the value shared for <code>key</code>, or null if there isn't one or the current thread isn't sharing
+	 */
+	T get(String key) {
+		if (sharing.get() == null) {
+			return null;
+		}
+		WeakReference<T> reference = values.get(new Key(key, null));
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * Shares a value unless a value has already been shared for the key. <code>key</code> must be strongly referenced by
+	 * <code>value</code> (if it isn't the value itself) so that it is kept while the value is in use.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the value shared for <code>key</code>, or <code>value</code> if the current thread isn't sharing
+	 */
+	T share(String key, T value) {
+		if (sharing.get() == null) {
+			return value;
+		}
+		WeakReference<T> current = values.get(new Key(key, null));
+		T shared = current == null ? null : current.get();
+		if (shared != null) {
+			return shared;
+		}
+		purge();
+		Key weakKey = new Key(key, queue);
+		WeakReference<T> reference = new WeakReference<T>(value);
+		while (true) {
+			WeakReference<T> existing = values.putIfAbsent(weakKey, reference);
+			if (existing == null) {
+				return value;
+			}
+			shared = existing.get();
+			if (shared != null) {
+				return shared;
+			}
+			// the existing value has been discarded but its key is still in use
+			if (values.replace(weakKey, existing, reference)) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Removes the entries of discarded keys.
+	 */
+	private void purge() {
+		Object key;
+		while ((key = queue.poll()) != null) {
+			values.remove(key);
+		}
+	}
+
+}
@@ -16,9 +16,23 @@
 package org.tohu;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * <p>
  * Base class for all Tohu objects.
+ * </p>
+ *
+ * <p>
+ * Changes can be tracked per thread by a {@link ModificationTracker}. While one is tracking, the first time an object that existed
+ * beforehand is changed the tracker is told about it so that it can take a copy of the original. Every method that changes a field
+ * must therefore call {@link #changing()} first. This includes methods of subclasses.
+ * </p>
+ *
+ * <p>
+ * A tracker may also record a fingerprint of the values it last reported (see {@link #setFingerprint(long)}) so that it can still
+ * detect a change made without calling {@link #changing()}.
+ * </p>
  *
  * @author Damon Horrell
  */
@@ -26,8 +40,55 @@ public abstract class TohuObject implements Cloneable, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final AtomicLong epochs = new AtomicLong();
+
+	private static final ThreadLocal<ModificationTracker> trackers = new ThreadLocal<ModificationTracker>();
+
 	private transient boolean active;
 
+	/**
+	 * The epoch of the tracker that last saw this object, either because it was created or because it was changed.
+	 */
+	private transient long epoch;
+
+	/**
+	 * A tracker's fingerprint of the values of this object when it was last reported, or zero if it hasn't been.
+	 */
+	private transient long fingerprint;
+
+	public TohuObject() {
+		ModificationTracker tracker = trackers.get();
+		if (tracker != null) {
+			// new objects have no original
+			epoch = tracker.getEpoch();
+		}
+	}
+
+	/**
+	 * Returns a new, unique, non-zero epoch for a tracker.
+	 *
+	 * @return
+	 */
+	public static long nextEpoch() {
+		return epochs.incrementAndGet();
+	}
+
+	/**
+	 * Starts tracking changes made by the current thread.
+	 *
+	 * @param tracker
+	 */
+	public static void startTracking(ModificationTracker tracker) {
+		trackers.set(tracker);
+	}
+
+	/**
+	 * Stops tracking changes made by the current thread.
+	 */
+	public static void stopTracking() {
+		trackers.remove();
+	}
+
 	/**
 	 * Unique identifier for this object.
 	 *
@@ -49,9 +110,40 @@ public abstract class TohuObject implements Cloneable, Serializable {
 	 * @param active
 	 */
 	public void setActive(boolean active) {
+		changing();
 		this.active = active;
 	}
 
+	/**
+	 * Used by change trackers. Do not call it directly.
+	 *
+	 * @return
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Used by change trackers. Do not call it directly.
+	 *
+	 * @param fingerprint
+	 */
+	public void setFingerprint(long fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Must be called before any field of this object is changed. If changes are being tracked and this object existed before
+	 * tracking started and hasn't been changed since then the tracker is notified.
+	 */
+	public final void changing() {
+		ModificationTracker tracker = trackers.get();
+		if (tracker != null && epoch != tracker.getEpoch()) {
+			epoch = tracker.getEpoch();
+			tracker.beforeFirstChange(this);
+		}
+	}
+
 	/**
 	 * @see java.lang.Object#clone()
 	 */
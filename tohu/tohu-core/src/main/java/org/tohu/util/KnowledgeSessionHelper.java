@@ -29,6 +29,7 @@ import org.kie.api.runtime.rule.QueryResults;
 import org.kie.api.runtime.rule.QueryResultsRow;
 import org.kie.internal.runtime.StatefulKnowledgeSession;
 import org.tohu.Answer;
+import org.tohu.GroupMembership;
 import org.tohu.Question;
 import org.tohu.Questionnaire;
 import org.tohu.TohuObject;
@@ -93,7 +94,7 @@ public class KnowledgeSessionHelper {
 	 * 
 	 * It excludes any objects which were created with insertLogical since they would lose their truth maintenance if reloaded. An Answer
 	 * object is returned for each Question which was logically inserted. Other Items shouldn't need to be persisted as the rules should
-	 * recreate them again.
+	 * recreate them again. GroupMembership objects are excluded too since the rules recreate them from the Groups.
 	 * 
 	 * To use this correctly you need to ensure that your rules use "insert" for everything that needs to be persisted other than answers to
 	 * questions. You should use "insertLogical" for anything that doesn't need to be persisted, or in fact must not be persisted. Think
@@ -109,6 +110,9 @@ public class KnowledgeSessionHelper {
 			InternalFactHandle internalFactHandle = (InternalFactHandle) factHandle;
 			Object object = internalFactHandle.getObject();
 			boolean insertedLogically = internalFactHandle.getEqualityKey().getStatus() == EqualityKey.JUSTIFIED;
+			if (object instanceof GroupMembership) {
+				continue;
+			}
 			if (!insertedLogically) {
 				objects.add(object);
 			} else if (object instanceof Question) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class DateAnswerFormatTest {
+
+	@Test
+	public void testFormat() throws ParseException {
+		assertEquals("1999-01-02", DateAnswerFormat.format(new SimpleDateFormat("yyyy-MM-dd").parse("1999-01-02")));
+		assertEquals("2009-12-31", DateAnswerFormat.format(new GregorianCalendar(2009, Calendar.DECEMBER, 31, 23, 59).getTime()));
+		assertEquals("0099-03-04", DateAnswerFormat.format(new GregorianCalendar(99, Calendar.MARCH, 4).getTime()));
+	}
+
+	@Test
+	public void testParse() throws ParseException {
+		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		assertEquals(simpleDateFormat.parse("1999-01-02"), DateAnswerFormat.parse("1999-01-02"));
+		assertEquals(simpleDateFormat.parse("2004-3-1"), DateAnswerFormat.parse("2004-3-1"));
+		assertEquals(simpleDateFormat.parse("2009-13-01"), DateAnswerFormat.parse("2009-13-01"));
+		assertEquals(simpleDateFormat.parse("2010-01-01"), DateAnswerFormat.parse("2009-13-01"));
+		assertEquals(simpleDateFormat.parse("2009-02-29"), DateAnswerFormat.parse("2009-02-29"));
+	}
+
+	@Test
+	public void testUnparseable() {
+		String[] texts = { "", "1999", "1999-01", "1999-01-", "1999/01/02", "-1999-01-02", "1999-01-02x", "abc", "99999999999-01-01" };
+		for (int i = 0; i < texts.length; i++) {
+			try {
+				DateAnswerFormat.parse(texts[i]);
+				fail(texts[i]);
+			} catch (ParseException e) {
+			}
+		}
+	}
+
+	/**
+	 * Answers and reads back date questions from many threads at once, as concurrent sessions do on a server.
+	 */
+	@Test
+	public void testConcurrentSessions() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 32; i++) {
+				final int session = i;
+				results.add(executor.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						Question question = new Question("question" + session);
+						question.setAnswerType(Question.TYPE_DATE);
+						int checked = 0;
+						for (int day = 0; day < 1000; day++) {
+							Date date = new GregorianCalendar(1990 + session, Calendar.JANUARY, 1 + day).getTime();
+							question.setAnswer(date);
+							assertEquals(date, question.getAnswer());
+							String text = DateAnswerFormat.format(date);
+							question.setDateAnswer(text);
+							assertEquals(date, question.getDateAnswer());
+							assertEquals(text, DateAnswerFormat.format(question.getDateAnswer()));
+							checked++;
+						}
+						return Integer.valueOf(checked);
+					}
+				}));
+			}
+			for (Future<Integer> result : results) {
+				assertEquals(1000, result.get().intValue());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+/**
+ * <p>
+ * Compares <code>DelimitedTokenizer</code> with the regular expression splitting it replaced, at the main call sites: possible
+ * answers (300 escaped value=label pairs), a list answer (20 values), presentation styles and item ids (50 ids).
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method.
+ * </p>
+ */
+public class DelimitedTokenizerBenchmark {
+
+	private static final int ITERATIONS = 200000;
+
+	private static int found;
+
+	public static void main(String[] args) {
+		StringBuilder possibleAnswers = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			possibleAnswers.append(i == 0 ? "" : ",").append("code").append(i).append("=Label\\, with comma\\=").append(i);
+		}
+		StringBuilder listAnswer = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			listAnswer.append(i == 0 ? "" : ",").append("value").append(i);
+		}
+		StringBuilder itemIds = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			itemIds.append(i == 0 ? "" : ",").append("page1_question").append(i);
+		}
+		run("possible answers", possibleAnswers.toString(), true);
+		run("list answer", listAnswer.toString(), true);
+		run("presentation styles", "wide,readonly,mandatory", false);
+		run("item ids", itemIds.toString(), false);
+		System.out.println("(" + found + ")");
+	}
+
+	private static void run(String name, String text, boolean escapes) {
+		long start = 0;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += escapes ? DelimitedTokenizerTest.regexSplit(text, ",").length : text.split(",").length;
+		}
+		long regex = (System.nanoTime() - start) / ITERATIONS;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += escapes ? DelimitedTokenizer.split(text, ',').length : DelimitedTokenizer.splitPlain(text, ',').length;
+		}
+		long tokenizer = (System.nanoTime() - start) / ITERATIONS;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			DelimitedTokenizer delimitedTokenizer = new DelimitedTokenizer(text, ',', escapes);
+			while (delimitedTokenizer.next()) {
+				if (delimitedTokenizer.tokenEquals("value5")) {
+					found++;
+				}
+			}
+		}
+		long iterate = (System.nanoTime() - start) / ITERATIONS;
+		System.out.println(name + ": regex split " + regex + "ns, tokenizer split " + tokenizer + "ns, tokenizer iterate " + iterate
+				+ "ns");
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DelimitedTokenizerTest {
+
+	private static final char[] ALPHABET = { 'a', 'b', ',', '=', '\\' };
+
+	@Test
+	public void testSplit() {
+		assertArrayEquals(new String[] { "a", "b,c", "", "d=\\e" }, DelimitedTokenizer.split("a,b\\,c,,d=\\e", ','));
+		assertArrayEquals(new String[] { "a\\,b" }, DelimitedTokenizer.split("a\\\\,b", ','));
+		assertArrayEquals(new String[] { "" }, DelimitedTokenizer.split("", ','));
+		assertArrayEquals(new String[] { "a", "" }, DelimitedTokenizer.split("a,", ','));
+		assertArrayEquals(new String[] { "a" }, DelimitedTokenizer.split("a,b\\", ','));
+	}
+
+	@Test
+	public void testSplitPlain() {
+		assertArrayEquals(new String[] { "a", "b\\", "c" }, DelimitedTokenizer.splitPlain("a,b\\,c,,", ','));
+		assertArrayEquals(new String[] { "" }, DelimitedTokenizer.splitPlain("", ','));
+		assertArrayEquals(new String[0], DelimitedTokenizer.splitPlain(",,", ','));
+	}
+
+	@Test
+	public void testTokenEquals() {
+		DelimitedTokenizer tokenizer = new DelimitedTokenizer("apple,b\\,c,", ',', true);
+		assertTrue(tokenizer.next());
+		assertTrue(tokenizer.tokenEquals("apple"));
+		assertFalse(tokenizer.tokenEquals("appl"));
+		assertTrue(tokenizer.next());
+		assertTrue(tokenizer.tokenEquals("b,c"));
+		assertFalse(tokenizer.tokenEquals("b\\,c"));
+		assertTrue(tokenizer.next());
+		assertTrue(tokenizer.isTokenEmpty());
+		assertFalse(tokenizer.next());
+		assertTrue(DelimitedTokenizer.contains("a,b,c", ',', false, "b"));
+		assertFalse(DelimitedTokenizer.contains("a,b,c", ',', false, "d"));
+	}
+
+	@Test
+	public void testVisit() {
+		final List<String> tokens = new ArrayList<String>();
+		assertFalse(DelimitedTokenizer.visit("a,b,c", ',', false, new DelimitedTokenizer.Visitor() {
+			public boolean visit(DelimitedTokenizer tokenizer) {
+				tokens.add(tokenizer.token());
+				return !tokenizer.tokenEquals("b");
+			}
+		}));
+		assertEquals(Arrays.asList(new String[] { "a", "b" }), tokens);
+	}
+
+	/**
+	 * Checks every string of up to 7 characters made from letters, delimiters and backslashes, then some longer random ones,
+	 * against what Question.split() used to do and against String.split().
+	 */
+	@Test
+	public void testSameAsRegexSplit() {
+		for (int length = 0; length <= 7; length++) {
+			int count = (int) Math.pow(ALPHABET.length, length);
+			for (int n = 0; n < count; n++) {
+				char[] chars = new char[length];
+				for (int i = 0, m = n; i < length; i++, m /= ALPHABET.length) {
+					chars[i] = ALPHABET[m % ALPHABET.length];
+				}
+				check(new String(chars));
+			}
+		}
+		Random random = new Random(0);
+		for (int n = 0; n < 10000; n++) {
+			char[] chars = new char[8 + random.nextInt(40)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+			}
+			check(new String(chars));
+		}
+	}
+
+	private void check(String text) {
+		for (char delimiter : new char[] { ',', '=' }) {
+			String[] expected = regexSplit(text, String.valueOf(delimiter));
+			assertArrayEquals(text, expected, DelimitedTokenizer.split(text, delimiter));
+			assertArrayEquals(text, text.split(String.valueOf(delimiter)), DelimitedTokenizer.splitPlain(text, delimiter));
+			DelimitedTokenizer tokenizer = new DelimitedTokenizer(text, delimiter, true);
+			for (int i = 0; i < expected.length; i++) {
+				assertTrue(text, tokenizer.next());
+				assertTrue(text, tokenizer.tokenEquals(expected[i]));
+				assertFalse(text, tokenizer.tokenEquals(expected[i] + "a"));
+				assertEquals(text, expected[i].length() == 0, tokenizer.isTokenEmpty());
+			}
+			assertFalse(text, tokenizer.next());
+		}
+	}
+
+	/**
+	 * What Question.split() used to do.
+	 */
+	static String[] regexSplit(String text, String delimiter) {
+		List<String> result = new ArrayList<String>();
+		String[] split = text.split(delimiter, -1);
+		int i = 0;
+		String s = "";
+		while (i < split.length) {
+			boolean continues = split[i].endsWith("\\");
+			if (continues) {
+				s += split[i].substring(0, split[i].length() - 1) + delimiter;
+			} else {
+				s += split[i];
+				result.add(s);
+				s = "";
+			}
+			i++;
+		}
+		return result.toArray(new String[] {});
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Compares group membership checks and edits on indexed item ids with the comma-delimited string that Group used to hold. The
+ * membership check is what the Active and ReadOnly rules do for every item against every group. The edits insert each child
+ * before, append it after and then remove it from the middle of the group.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional child count (default 500).
+ * </p>
+ */
+public class GroupBenchmark {
+
+	private static final int ITERATIONS = 200;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		String[] ids = new String[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = "item" + i;
+		}
+		Group group = new Group("group");
+		group.setItems(ids);
+		String items = group.getInternalItemsAsString();
+		System.out.println("Children: " + count);
+
+		long start = 0;
+		int found = 0;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			for (int j = 0; j < count; j++) {
+				if (Arrays.asList(items.split(Group.COMMA_SEPARATOR)).contains(ids[j])) {
+					found++;
+				}
+			}
+		}
+		report("string contains", start, count);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			for (int j = 0; j < count; j++) {
+				if (group.getItemIds().contains(ids[j])) {
+					found++;
+				}
+			}
+		}
+		report("indexed contains", start, count);
+
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			String edited = items;
+			for (int j = 0; j < count; j += 10) {
+				edited = insert(edited, "new" + j, ids[j], 0);
+				edited = insert(edited, "after" + j, ids[j], 1);
+				edited = remove(edited, ids[count / 2]);
+				edited = insert(edited, ids[count / 2], null, 0);
+			}
+			found += edited.length();
+		}
+		report("string edits", start, count / 10 * 4);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			Group edited = new Group("edited");
+			edited.setItemsAsString(items);
+			for (int j = 0; j < count; j += 10) {
+				edited.insertItem("new" + j, ids[j]);
+				edited.appendItem("after" + j, ids[j]);
+				edited.removeItem(ids[count / 2]);
+				edited.addItem(ids[count / 2]);
+			}
+			found += edited.getItemIds().size();
+		}
+		report("indexed edits", start, count / 10 * 4);
+		System.out.println("(" + found + ")");
+	}
+
+	/**
+	 * What Group.insertItem() and appendItem() used to do.
+	 */
+	private static String insert(String items, String itemId, String otherItemId, int offset) {
+		List<String> list = new ArrayList<String>(Arrays.asList(items.split(Group.COMMA_SEPARATOR)));
+		int pos = otherItemId == null ? -1 : list.indexOf(otherItemId);
+		list.add(pos < 0 ? list.size() : pos + offset, itemId);
+		return join(list);
+	}
+
+	/**
+	 * What Group.removeItem() used to do.
+	 */
+	private static String remove(String items, String itemId) {
+		List<String> list = new ArrayList<String>(Arrays.asList(items.split(Group.COMMA_SEPARATOR)));
+		list.remove(itemId);
+		return join(list);
+	}
+
+	private static String join(List<String> list) {
+		StringBuilder sb = new StringBuilder();
+		for (String id : list) {
+			if (sb.length() > 0) {
+				sb.append(Group.COMMA_SEPARATOR);
+			}
+			sb.append(id);
+		}
+		return sb.toString();
+	}
+
+	private static void report(String name, long start, int operations) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / ITERATIONS / operations + "ns per operation");
+	}
+
+}
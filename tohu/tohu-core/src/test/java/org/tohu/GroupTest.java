@@ -17,7 +17,17 @@ package org.tohu;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
@@ -298,6 +308,57 @@ public class GroupTest {
 		assertEquals(null, group.getInternalItemsAsString());
 	}
 
+	@Test
+	public void testItemIds() {
+		Group group = new Group();
+		assertTrue(group.getItemIds().isEmpty());
+		group.setItems(new String[] { "a", "b", "a", "c" });
+		assertEquals(Arrays.asList("a", "b", "a", "c"), group.getItemIds());
+		assertTrue(group.getItemIds().contains("c"));
+		assertFalse(group.getItemIds().contains("d"));
+		assertFalse(group.getItemIds().contains(null));
+		assertEquals(0, group.getItemIds().indexOf("a"));
+		assertEquals(2, group.getItemIds().lastIndexOf("a"));
+		try {
+			group.getItemIds().add("d");
+			fail();
+		} catch (UnsupportedOperationException e) {
+		}
+
+		group.removeItem("a");
+		assertEquals(Arrays.asList("b", "a", "c"), group.getItemIds());
+		assertEquals(1, group.getItemIds().indexOf("a"));
+		group.insertItem("d", "a");
+		assertEquals("b,d,a,c", group.getInternalItemsAsString());
+		assertEquals(1, group.getItemIds().indexOf("d"));
+	}
+
+	@Test
+	public void testCloneItems() throws Exception {
+		Group group = new Group("group");
+		group.setItems(new String[] { "a", "b" });
+		Group clone = (Group) group.clone();
+		clone.addItem("c");
+		clone.removeItem("a");
+		assertEquals("a,b", group.getInternalItemsAsString());
+		assertEquals("b,c", clone.getInternalItemsAsString());
+	}
+
+	@Test
+	public void testSerializeItems() throws Exception {
+		Group group = new Group("group");
+		group.setItems(new String[] { "a", "b" });
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(group);
+		out.close();
+		Group copy = (Group) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertEquals("a,b", copy.getInternalItemsAsString());
+		assertTrue(copy.getItemIds().contains("b"));
+		// the serialized form is unchanged from when items were held as a string
+		assertEquals(String.class, ObjectStreamClass.lookup(Group.class).getField("items").getType());
+	}
+
 	@Test
 	public void testAssigningCategory() {
 		Group group = new Group();
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tohu.MultipleChoiceQuestion.PossibleAnswer;
+
+/**
+ * <p>
+ * Compares validating the answer to a multiple choice question against its possible answers, as the "discard invalid multiple
+ * choice answers" rule does, with parsing the possible answers and searching them on every check which is what the rule used to do.
+ * The answer is the last possible answer.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional possible answer count (default 300).
+ * </p>
+ */
+public class PossibleAnswersBenchmark {
+
+	private static final int ITERATIONS = 20000;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		PossibleAnswer[] possibleAnswers = new PossibleAnswer[count];
+		for (int i = 0; i < count; i++) {
+			possibleAnswers[i] = new PossibleAnswer("code" + i, "Label for code " + i);
+		}
+		MultipleChoiceQuestion question = new MultipleChoiceQuestion("question");
+		question.setAnswerType(Question.TYPE_TEXT);
+		question.setPossibleAnswers(possibleAnswers);
+		question.setAnswer("code" + (count - 1));
+		System.out.println("Possible answers: " + count);
+
+		long start = 0;
+		int found = 0;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			if (isAnswerPossible(question)) {
+				found++;
+			}
+		}
+		report("parse and search", start);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			if (question.isAnswerPossible()) {
+				found++;
+			}
+		}
+		report("indexed", start);
+		System.out.println("(" + found + ")");
+	}
+
+	/**
+	 * What the rule used to do, with what getPossibleAnswers() used to do.
+	 */
+	@SuppressWarnings("deprecation")
+	private static boolean isAnswerPossible(MultipleChoiceQuestion question) {
+		List<PossibleAnswer> possibleAnswers = new ArrayList<PossibleAnswer>();
+		String[] split = question.split(question.getPossibleAnswersAsString(), ",");
+		for (int i = 0; i < split.length; i++) {
+			String[] valueLabel = question.split(split[i], "=");
+			possibleAnswers.add(new PossibleAnswer(valueLabel[0].equals("null") ? null : valueLabel[0], valueLabel[1]));
+		}
+		String[] allAnswers = question.split(String.valueOf(question.getAnswer()), ",");
+		for (int i = 0; i < allAnswers.length; i++) {
+			for (PossibleAnswer possibleAnswer : possibleAnswers) {
+				if (allAnswers[i].equals(possibleAnswer.getValue())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static void report(String name, long start) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / ITERATIONS + "ns per check");
+	}
+
+}
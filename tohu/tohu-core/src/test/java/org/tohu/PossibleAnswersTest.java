@@ -20,8 +20,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 import org.tohu.MultipleChoiceQuestion;
 import org.tohu.MultipleChoiceQuestion.PossibleAnswer;
@@ -158,6 +162,77 @@ public class PossibleAnswersTest {
 		question.removePossibleAnswer("b");
 		assertNull("The answer was not set to null when the associated possible answer was removed", question.getAnswer());
 	}
-	
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testPossibleAnswerValues() {
+		MultipleChoiceQuestion question = new MultipleChoiceQuestion();
+		assertEquals(0, question.getPossibleAnswerValues().size());
+		question.setPossibleAnswersAsString("null=select...,a=apple,c=carrot\\, cucumber,e\\=?=e\\=mc^2");
+		assertEquals(Arrays.asList(new String[] { null, "a", "c", "e=?" }), question.getPossibleAnswerValues());
+		assertTrue(question.hasPossibleAnswer(null));
+		assertTrue(question.hasPossibleAnswer("null"));
+		assertTrue(question.hasPossibleAnswer("e=?"));
+		assertFalse(question.hasPossibleAnswer("cucumber"));
+		question.setPossibleAnswersAsString("b=banana");
+		assertEquals(Arrays.asList(new String[] { "b" }), question.getPossibleAnswerValues());
+		assertFalse(question.hasPossibleAnswer("a"));
+		question.setPossibleAnswers(null);
+		assertFalse(question.hasPossibleAnswer("b"));
+	}
+
+	@Test
+	public void testSharedPossibleAnswers() {
+		SharedMetadata.startSharing();
+		MultipleChoiceQuestion question1;
+		try {
+			question1 = new MultipleChoiceQuestion("question1", "Fruit");
+			question1.setPossibleAnswers(new PossibleAnswer[] { new PossibleAnswer("a", "apple"), new PossibleAnswer("b", "banana") });
+			question1.getPossibleAnswerValues();
+		} finally {
+			SharedMetadata.stopSharing();
+		}
+		// as if built by another session
+		SharedMetadata.startSharing();
+		MultipleChoiceQuestion question2;
+		try {
+			question2 = new MultipleChoiceQuestion("question2", new String("Fruit"));
+			question2.setPossibleAnswers(new PossibleAnswer[] { new PossibleAnswer("a", "apple"), new PossibleAnswer("b", "banana") });
+			question2.getPossibleAnswerValues();
+		} finally {
+			SharedMetadata.stopSharing();
+		}
+		assertSame(question1.getInternalPossibleAnswersAsString(), question2.getInternalPossibleAnswersAsString());
+		assertSame(question1.getPreLabel(), question2.getPreLabel());
+		assertSame(question1.getPossibleAnswerValues(), question2.getPossibleAnswerValues());
+		question2.insertPossibleAnswer(new PossibleAnswer("c", "cherry"), 2);
+		assertEquals(Arrays.asList(new String[] { "a", "b" }), question1.getPossibleAnswerValues());
+		assertEquals(Arrays.asList(new String[] { "a", "b", "c" }), question2.getPossibleAnswerValues());
+	}
+
+	@Test
+	public void testNotSharedOutsideSharing() {
+		MultipleChoiceQuestion question1 = new MultipleChoiceQuestion("question1", new String("Vegetable"));
+		MultipleChoiceQuestion question2 = new MultipleChoiceQuestion("question2", new String("Vegetable"));
+		assertNotSame(question1.getPreLabel(), question2.getPreLabel());
+	}
+
+	@Test
+	public void testAnswerPossible() {
+		MultipleChoiceQuestion question = new MultipleChoiceQuestion();
+		question.setAnswerType(Question.TYPE_LIST);
+		assertTrue(question.isAnswerPossible());
+		question.setAnswer("a");
+		assertFalse(question.isAnswerPossible());
+		question.setPossibleAnswers(new PossibleAnswer[] { new PossibleAnswer(null, "select..."), new PossibleAnswer("a", "apple"),
+				new PossibleAnswer("b", "banana") });
+		assertTrue(question.isAnswerPossible());
+		question.setAnswer("x,b");
+		assertTrue(question.isAnswerPossible());
+		question.setAnswer("x,y");
+		assertFalse(question.isAnswerPossible());
+		question.setAnswer("null");
+		assertFalse(question.isAnswerPossible());
+	}
 
 }
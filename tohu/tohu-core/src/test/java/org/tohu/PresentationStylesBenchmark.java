@@ -0,0 +1,81 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+/**
+ * <p>
+ * Compares the presentation style checks that the ReadOnly rules make for every item, using the bit set and searching the
+ * comma-delimited string, and times toggling <code>readonly-inherited</code> on and off.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method.
+ * </p>
+ */
+public class PresentationStylesBenchmark {
+
+	private static final int ITERATIONS = 5000000;
+
+	private static final String[] STYLES = { "wide", "radio", "required", "client-highlight", "readonly" };
+
+	public static void main(String[] args) {
+		Question question = new Question("question");
+		question.setPresentationStyles(STYLES);
+		@SuppressWarnings("deprecation")
+		String styles = question.getPresentationStylesAsString();
+
+		int found = 0;
+		long start = 0;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			if (DelimitedTokenizer.contains(styles, ',', false, "readonly")) {
+				found++;
+			}
+			if (DelimitedTokenizer.contains(styles, ',', false, "readonly-inherited")) {
+				found++;
+			}
+		}
+		report("string search", start);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			if (question.hasPresentationStyle("readonly")) {
+				found++;
+			}
+			if (question.hasPresentationStyle("readonly-inherited")) {
+				found++;
+			}
+		}
+		report("bit set", start);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			question.addPresentationStyle("readonly-inherited");
+			question.removePresentationStyle("readonly-inherited");
+		}
+		report("toggle", start);
+		System.out.println("(" + found + ")");
+	}
+
+	private static void report(String name, long start) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / ITERATIONS + "ns");
+	}
+
+}
@@ -17,6 +17,8 @@ package org.tohu;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.junit.Test;
@@ -73,4 +75,73 @@ public class PresentationStylesTest {
 		assertEquals(null, Note.getPresentationStylesAsString());
 	}
 
+	@Test
+	public void testHasPresentationStyle() {
+		Note note = new Note();
+		assertFalse(note.hasPresentationStyle("a"));
+		note.setPresentationStyles(new String[] { "abc", "b", "readonly" });
+		assertTrue(note.hasPresentationStyle("abc"));
+		assertTrue(note.hasPresentationStyle("b"));
+		assertTrue(note.hasPresentationStyle("readonly"));
+		assertFalse(note.hasPresentationStyle("a"));
+		assertFalse(note.hasPresentationStyle("bc"));
+		assertFalse(note.hasPresentationStyle("readonly-inherited"));
+		assertFalse(note.hasPresentationStyle(null));
+	}
+
+	@Test
+	public void testAddAndRemovePresentationStyle() {
+		Note note = new Note();
+		note.addPresentationStyle("b");
+		note.addPresentationStyle("a");
+		note.addPresentationStyle("b");
+		note.addPresentationStyle(null);
+		assertArrayEquals(new String[] { "b", "a" }, note.getPresentationStyles());
+		assertTrue(note.hasPresentationStyle("a"));
+		note.removePresentationStyle("c");
+		note.removePresentationStyle("b");
+		assertArrayEquals(new String[] { "a" }, note.getPresentationStyles());
+		assertFalse(note.hasPresentationStyle("b"));
+		assertTrue(note.hasPresentationStyle("a"));
+		note.removePresentationStyle("a");
+		assertArrayEquals(null, note.getPresentationStyles());
+		assertFalse(note.hasPresentationStyle("a"));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testPresentationStylesReplaced() throws CloneNotSupportedException {
+		Note note = new Note();
+		note.setPresentationStylesAsString("a,b");
+		assertTrue(note.hasPresentationStyle("b"));
+		Note copy = (Note) note.clone();
+		copy.addPresentationStyle("c");
+		assertFalse(note.hasPresentationStyle("c"));
+		assertTrue(copy.hasPresentationStyle("c"));
+		note.setPresentationStylesAsString("c");
+		assertFalse(note.hasPresentationStyle("b"));
+		assertTrue(note.hasPresentationStyle("c"));
+		assertEquals("a,b,c", copy.getPresentationStylesAsString());
+	}
+
+	@Test
+	public void testManyPresentationStyles() {
+		// more styles than there are bits
+		Note note = new Note();
+		for (int i = 0; i < 100; i++) {
+			note.addPresentationStyle("many" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertTrue(note.hasPresentationStyle("many" + i));
+		}
+		assertFalse(note.hasPresentationStyle("many100"));
+		for (int i = 0; i < 100; i += 2) {
+			note.removePresentationStyle("many" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i % 2 == 1, note.hasPresentationStyle("many" + i));
+		}
+		assertEquals(50, note.getPresentationStyles().length);
+	}
+
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * <p>
+ * Compares <code>getAnswer()</code> on a date question with parsing the stored answer on every call, which is what Question used
+ * to do with a shared <code>SimpleDateFormat</code>.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional call count (default 1000000).
+ * </p>
+ */
+public class QuestionBenchmark {
+
+	public static void main(String[] args) throws ParseException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		Question question = new Question("question");
+		question.setAnswerType(Question.TYPE_DATE);
+		question.setDateAnswer("2009-06-15");
+		String dateAnswer = "2009-06-15";
+
+		long start = 0;
+		long found = 0;
+		for (int i = -count; i < count; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += simpleDateFormat.parse(dateAnswer).getTime();
+		}
+		report("SimpleDateFormat.parse", start, count);
+		for (int i = -count; i < count; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += ((Date) question.getAnswer()).getTime();
+		}
+		report("getAnswer", start, count);
+		System.out.println("(" + found + ")");
+	}
+
+	private static void report(String name, long start, int count) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / count + "ns per call");
+	}
+
+}
@@ -156,8 +156,12 @@ public class QuestionTest {
 		q.setAnswer(d);
 		assertEquals(d, q.getAnswer());
 		assertEquals(d, q.getDateAnswer());
+		q.getDateAnswer().setTime(0);
+		assertEquals(d, q.getDateAnswer());
+		assertEquals("1999-01-02", q.getDateAnswerString());
 		q.setAnswer(null);
 		assertNull(q.getDateAnswer());
+		assertNull(q.getDateAnswerString());
 		q.setDateAnswer((String) null);
 		assertNull(q.getDateAnswer());
 		q.setDateAnswer((Date) null);
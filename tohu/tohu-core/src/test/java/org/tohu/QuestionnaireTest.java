@@ -17,8 +17,17 @@ package org.tohu;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
 import org.junit.Test;
 import org.tohu.Questionnaire;
 
@@ -75,6 +84,21 @@ public class QuestionnaireTest {
 		assertEquals("default", q.getCompletionAction());
 	}
 
+	@Test
+	public void testCloneBranchesIndependently() throws Exception {
+		Questionnaire q = new Questionnaire();
+		q.setItems(new String[] { "a", "b", "c" });
+		q.setActiveItem("a");
+		Questionnaire clone = (Questionnaire) q.clone();
+		clone.navigationBranch(new String[] { "x", "y", "z" }, "y");
+		assertTrue(clone.isBranched());
+		assertFalse(q.isBranched());
+		assertArrayEquals(new String[] { "a", "b", "c" }, q.getItems());
+		clone.navigationReturn();
+		assertArrayEquals(new String[] { "a", "b", "c" }, clone.getItems());
+		assertEquals("a", clone.getActiveItem());
+	}
+
 	@Test
 	public void testBranchInvalidEmpty() {
 		Questionnaire q = new Questionnaire();
@@ -119,4 +143,26 @@ public class QuestionnaireTest {
 		}
 	}
 
+	@Test
+	public void testSerialize() throws Exception {
+		Questionnaire q = new Questionnaire("q");
+		q.setItems(new String[] { "a", "b", "c" });
+		q.setAvailableItems(new String[] { "a", "c" });
+		q.setActiveItem("a");
+		q.setMarkupAllowed(true);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(q);
+		out.close();
+		Questionnaire copy = (Questionnaire) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertArrayEquals(new String[] { "a", "b", "c" }, copy.getItems());
+		assertArrayEquals(new String[] { "a", "c" }, copy.getAvailableItems());
+		assertEquals("a", copy.getActiveItem());
+		assertTrue(copy.isMarkupAllowed());
+		assertEquals(q.getClientDateFormat(), copy.getClientDateFormat());
+		assertNull(copy.getCompletionAction());
+		// the serialized form is unchanged from when available items were held as a string
+		assertEquals(String.class, ObjectStreamClass.lookup(Questionnaire.class).getField("availableItems").getType());
+	}
+
 }
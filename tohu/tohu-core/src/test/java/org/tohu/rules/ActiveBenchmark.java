@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Group;
+import org.tohu.Note;
+import org.tohu.Questionnaire;
+
+/**
+ * <p>
+ * Times the Active.drl rules for questionnaires of 100 to 10,000 items: the initial fire-all-rules and then moving from page to
+ * page. Each page has 5 groups of 9 notes.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with optional item counts (default 100 1000 10000).
+ * </p>
+ */
+public class ActiveBenchmark {
+
+	private static final int GROUPS_PER_PAGE = 5;
+
+	private static final int NOTES_PER_GROUP = 9;
+
+	private static final int ITEMS_PER_PAGE = 1 + GROUPS_PER_PAGE * (1 + NOTES_PER_GROUP);
+
+	private static final int PAGE_CHANGES = 20;
+
+	public static void main(String[] args) {
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		String[] counts = args.length > 0 ? args : new String[] { "100", "1000", "10000" };
+		// warm up
+		run(knowledgeBase, 1000, false);
+		for (int i = 0; i < counts.length; i++) {
+			run(knowledgeBase, Integer.parseInt(counts[i]), true);
+		}
+	}
+
+	private static void run(KnowledgeBase knowledgeBase, int count, boolean report) {
+		int pages = Math.max(2, count / ITEMS_PER_PAGE);
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			String[] pageIds = new String[pages];
+			for (int i = 0; i < pages; i++) {
+				pageIds[i] = "page" + i;
+			}
+			questionnaire.setItems(pageIds);
+			questionnaire.setActiveItem(pageIds[0]);
+			FactHandle handle = knowledgeSession.insert(questionnaire);
+			for (int i = 0; i < pages; i++) {
+				Group page = new Group(pageIds[i]);
+				for (int j = 0; j < GROUPS_PER_PAGE; j++) {
+					Group group = new Group(pageIds[i] + "_group" + j);
+					for (int k = 0; k < NOTES_PER_GROUP; k++) {
+						Note note = new Note(group.getId() + "_note" + k);
+						group.addItem(note.getId());
+						knowledgeSession.insert(note);
+					}
+					page.addItem(group.getId());
+					knowledgeSession.insert(group);
+				}
+				knowledgeSession.insert(page);
+			}
+			long start = System.nanoTime();
+			int fired = knowledgeSession.fireAllRules();
+			long initial = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 1; i <= PAGE_CHANGES; i++) {
+				questionnaire.setActiveItem(pageIds[i % pages]);
+				knowledgeSession.update(handle, questionnaire);
+				fired += knowledgeSession.fireAllRules();
+			}
+			long pageChange = (System.nanoTime() - start) / PAGE_CHANGES;
+			if (report) {
+				System.out.println(pages * ITEMS_PER_PAGE + " items: initial " + initial / 1000000 + "ms, page change "
+						+ pageChange / 1000000 + "ms (" + fired + " rules fired)");
+			}
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+}
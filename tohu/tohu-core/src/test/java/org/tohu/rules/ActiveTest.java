@@ -27,6 +27,7 @@ import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.ClassObjectFilter;
 import org.kie.api.runtime.rule.FactHandle;
 import org.kie.api.runtime.rule.QueryResults;
 import org.kie.api.runtime.rule.QueryResultsRow;
@@ -39,6 +40,7 @@ import org.kie.internal.runtime.StatefulKnowledgeSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tohu.Group;
+import org.tohu.GroupMembership;
 import org.tohu.Item;
 import org.tohu.Note;
 import org.tohu.Questionnaire;
@@ -377,6 +379,96 @@ public class ActiveTest {
 		}
 	}
 
+	@Test
+	public void testAvailableItemsChanges() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			questionnaire.setItems(new String[] { "group1", "group2", "group3", "group4" });
+			Group group1 = new Group("group1");
+			Group group3 = new Group("group3");
+			FactHandle questionnaireHandle = knowledgeSession.insert(questionnaire);
+			FactHandle group1Handle = knowledgeSession.insert(group1);
+			FactHandle group3Handle = knowledgeSession.insert(group3);
+			knowledgeSession.fireAllRules();
+			assertArrayEquals(new String[] { "group1", "group3" }, questionnaire.getAvailableItems());
+
+			knowledgeSession.insert(new Group("group2"));
+			knowledgeSession.fireAllRules();
+			assertArrayEquals(new String[] { "group1", "group2", "group3" }, questionnaire.getAvailableItems());
+
+			knowledgeSession.retract(group1Handle);
+			knowledgeSession.fireAllRules();
+			assertArrayEquals(new String[] { "group2", "group3" }, questionnaire.getAvailableItems());
+
+			group3.setLabel("changed");
+			knowledgeSession.update(group3Handle, group3);
+			assertEquals(0, knowledgeSession.fireAllRules());
+
+			questionnaire.setItems(new String[] { "group3", "group4", "group2" });
+			knowledgeSession.update(questionnaireHandle, questionnaire);
+			knowledgeSession.fireAllRules();
+			assertArrayEquals(new String[] { "group3", "group2" }, questionnaire.getAvailableItems());
+
+			questionnaire.removeItem("group2");
+			knowledgeSession.update(questionnaireHandle, questionnaire);
+			knowledgeSession.fireAllRules();
+			assertArrayEquals(new String[] { "group3" }, questionnaire.getAvailableItems());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	@Test
+	public void testGroupMembership() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			questionnaire.setItems(new String[] { "group1" });
+			questionnaire.setActiveItem("group1");
+			Group group1 = new Group("group1");
+			group1.setItems(new String[] { "group2", "note1" });
+			Group group2 = new Group("group2");
+			group2.setItems(new String[] { "note2" });
+			knowledgeSession.insert(questionnaire);
+			knowledgeSession.insert(group1);
+			FactHandle handleGroup2 = knowledgeSession.insert(group2);
+			knowledgeSession.insert(new Note("note1"));
+			knowledgeSession.insert(new Note("note2"));
+			knowledgeSession.fireAllRules();
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire>group1", "group1>group2", "group1>note1",
+					"group2>note2" })), getGroupMemberships(knowledgeSession));
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "group1", "group2", "note1", "note2" })),
+					getItemIds(knowledgeSession.getQueryResults("activeObjects")));
+
+			group2.setItems(new String[] { "note1" });
+			knowledgeSession.update(handleGroup2, group2);
+			knowledgeSession.fireAllRules();
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire>group1", "group1>group2", "group1>note1",
+					"group2>note1" })), getGroupMemberships(knowledgeSession));
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "group1", "group2", "note1" })),
+					getItemIds(knowledgeSession.getQueryResults("activeObjects")));
+
+			knowledgeSession.retract(handleGroup2);
+			knowledgeSession.fireAllRules();
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire>group1", "group1>group2", "group1>note1" })),
+					getGroupMemberships(knowledgeSession));
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "group1", "note1" })),
+					getItemIds(knowledgeSession.getQueryResults("activeObjects")));
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	private Set<String> getGroupMemberships(StatefulKnowledgeSession knowledgeSession) {
+		Set<String> groupMemberships = new HashSet<String>();
+		for (Object object : knowledgeSession.getObjects(new ClassObjectFilter(GroupMembership.class))) {
+			GroupMembership groupMembership = (GroupMembership) object;
+			groupMemberships.add(groupMembership.getGroupId() + ">" + groupMembership.getItemId());
+		}
+		return groupMemberships;
+	}
+
 	private Set<String> getItemIds(QueryResults queryResults) {
 		Set<String> itemIds = new HashSet<String>();
 		for (Iterator<QueryResultsRow> iterator = queryResults.iterator(); iterator.hasNext();) {
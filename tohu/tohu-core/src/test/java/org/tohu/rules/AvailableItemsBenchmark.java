@@ -0,0 +1,97 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+
+/**
+ * <p>
+ * Times maintaining Questionnaire.availableItems for a questionnaire whose top-level items are all questions: the initial
+ * fire-all-rules, answering every question in turn, and then retracting and reinserting every other question.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional question count (default 1000).
+ * </p>
+ */
+public class AvailableItemsBenchmark {
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		// warm up
+		run(knowledgeBase, count, false);
+		run(knowledgeBase, count, true);
+	}
+
+	private static void run(KnowledgeBase knowledgeBase, int count, boolean report) {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			Question[] questions = new Question[count];
+			FactHandle[] handles = new FactHandle[count];
+			for (int i = 0; i < count; i++) {
+				questions[i] = new Question("question" + i);
+				questions[i].setAnswerType(Question.TYPE_TEXT);
+				questionnaire.addItem(questions[i].getId());
+				handles[i] = knowledgeSession.insert(questions[i]);
+			}
+			knowledgeSession.insert(questionnaire);
+			long start = System.nanoTime();
+			int fired = knowledgeSession.fireAllRules();
+			long initial = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				questions[i].setAnswer("answer");
+				knowledgeSession.update(handles[i], questions[i]);
+				fired += knowledgeSession.fireAllRules();
+			}
+			long answer = (System.nanoTime() - start) / count;
+
+			start = System.nanoTime();
+			for (int i = 0; i < count; i += 2) {
+				knowledgeSession.retract(handles[i]);
+				fired += knowledgeSession.fireAllRules();
+				handles[i] = knowledgeSession.insert(questions[i]);
+				fired += knowledgeSession.fireAllRules();
+			}
+			long retract = (System.nanoTime() - start) / (count / 2);
+			if (report) {
+				System.out.println(count + " questions: initial " + initial / 1000000 + "ms, answer " + answer / 1000
+						+ "us, retract and reinsert " + retract / 1000 + "us (" + fired + " rules fired)");
+			}
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+}
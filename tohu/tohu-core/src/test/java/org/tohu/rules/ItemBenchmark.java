@@ -0,0 +1,105 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Group;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+
+/**
+ * <p>
+ * Times session start (inserting a questionnaire and the initial fire-all-rules) with the core rules, with and without the duplicate
+ * item id check in Item.drl. Questions are in groups of 50.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional item count (default 5000).
+ * </p>
+ */
+public class ItemBenchmark {
+
+	private static final String[] RULES = { "Active.drl", "Question.drl", "ReadOnly.drl", "Queries.drl" };
+
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		KnowledgeBase without = newKnowledgeBase(false);
+		KnowledgeBase with = newKnowledgeBase(true);
+		// warm up
+		start(without, count);
+		start(with, count);
+		long withoutTime = 0;
+		long withTime = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			withoutTime += start(without, count);
+			withTime += start(with, count);
+		}
+		System.out.println(count + " items: start " + withoutTime / ITERATIONS / 1000000 + "ms without Item.drl, " + withTime
+				/ ITERATIONS / 1000000 + "ms with");
+	}
+
+	private static KnowledgeBase newKnowledgeBase(boolean itemRules) {
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		for (int i = 0; i < RULES.length; i++) {
+			knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/" + RULES[i]), ResourceType.DRL);
+		}
+		if (itemRules) {
+			knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Item.drl"), ResourceType.DRL);
+		}
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		return knowledgeBase;
+	}
+
+	private static long start(KnowledgeBase knowledgeBase, int count) {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			long start = System.nanoTime();
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			Group group = null;
+			for (int i = 0; i < count; i++) {
+				if (i % 50 == 0) {
+					group = new Group("group" + i);
+					questionnaire.addItem(group.getId());
+				}
+				Question question = new Question("question" + i);
+				question.setAnswerType(Question.TYPE_TEXT);
+				group.addItem(question.getId());
+				knowledgeSession.insert(question);
+				if (i % 50 == 49 || i == count - 1) {
+					knowledgeSession.insert(group);
+				}
+			}
+			knowledgeSession.insert(questionnaire);
+			knowledgeSession.fireAllRules();
+			return System.nanoTime() - start;
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Group;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+
+/**
+ * <p>
+ * Times toggling readonly on the top-level group of a deep group hierarchy, alongside a number of other pages which aren't affected.
+ * Each group has 3 subgroups and 5 questions down to the given depth.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional depth (default 5) and number of other pages (default
+ * 10).
+ * </p>
+ */
+public class ReadOnlyBenchmark {
+
+	private static final int SUBGROUPS = 3;
+
+	private static final int QUESTIONS = 5;
+
+	private static final int TOGGLES = 20;
+
+	private static int count;
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int otherPages = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/ReadOnly.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			questionnaire.addItem("page");
+			Group page = createGroup(knowledgeSession, "page", depth);
+			FactHandle handle = knowledgeSession.insert(page);
+			for (int i = 0; i < otherPages; i++) {
+				questionnaire.addItem("other" + i);
+				knowledgeSession.insert(createGroup(knowledgeSession, "other" + i, depth));
+			}
+			knowledgeSession.insert(questionnaire);
+			long start = System.nanoTime();
+			knowledgeSession.fireAllRules();
+			System.out.println(count + " items: initial " + (System.nanoTime() - start) / 1000000 + "ms");
+
+			int fired = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < TOGGLES; i++) {
+				if (i % 2 == 0) {
+					page.addPresentationStyle("readonly");
+				} else {
+					page.removePresentationStyle("readonly");
+				}
+				knowledgeSession.update(handle, page);
+				fired += knowledgeSession.fireAllRules();
+			}
+			System.out.println("readonly toggle " + (System.nanoTime() - start) / TOGGLES / 1000000 + "ms (" + fired / TOGGLES
+					+ " rules fired per toggle)");
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	/**
+	 * Creates a group and inserts everything below it.
+	 */
+	private static Group createGroup(StatefulKnowledgeSession knowledgeSession, String id, int depth) {
+		Group group = new Group(id);
+		count++;
+		for (int i = 0; i < QUESTIONS; i++) {
+			Question question = new Question(id + "_question" + i);
+			question.setAnswerType(Question.TYPE_TEXT);
+			group.addItem(question.getId());
+			knowledgeSession.insert(question);
+			count++;
+		}
+		if (depth > 1) {
+			for (int i = 0; i < SUBGROUPS; i++) {
+				Group subgroup = createGroup(knowledgeSession, id + "_" + i, depth - 1);
+				group.addItem(subgroup.getId());
+				knowledgeSession.insert(subgroup);
+			}
+		}
+		return group;
+	}
+
+}
@@ -15,6 +15,7 @@
  */
 package org.tohu.rules;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
@@ -118,6 +119,51 @@ public class ReadOnlyTest {
 		}
 	}
 
+	@Test
+	public void testToggleReadOnly() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			questionnaire.setItems(new String[] { "group1" });
+			Group group1 = new Group("group1");
+			group1.setItems(new String[] { "group2" });
+			Group group2 = new Group("group2");
+			group2.setItems(new String[] { "question1", "group3" });
+			Group group3 = new Group("group3");
+			group3.setItems(new String[] { "question2" });
+			Question question1 = new Question("question1");
+			question1.setAnswerType(Question.TYPE_TEXT);
+			Question question2 = new Question("question2");
+			question2.setAnswerType(Question.TYPE_TEXT);
+			question2.setPresentationStyles(new String[] { "wide" });
+			knowledgeSession.insert(questionnaire);
+			FactHandle handleGroup1 = knowledgeSession.insert(group1);
+			knowledgeSession.insert(group2);
+			knowledgeSession.insert(group3);
+			knowledgeSession.insert(question1);
+			knowledgeSession.insert(question2);
+			knowledgeSession.fireAllRules();
+			assertEquals(false, isReadOnlyInherited(question1));
+			assertEquals(false, isReadOnlyInherited(question2));
+
+			group1.addPresentationStyle("readonly");
+			knowledgeSession.update(handleGroup1, group1);
+			knowledgeSession.fireAllRules();
+			assertEquals(true, group3.hasPresentationStyle("readonly-inherited"));
+			assertEquals(true, isReadOnlyInherited(question1));
+			assertEquals(true, isReadOnlyInherited(question2));
+
+			group1.removePresentationStyle("readonly");
+			knowledgeSession.update(handleGroup1, group1);
+			knowledgeSession.fireAllRules();
+			assertEquals(false, group3.hasPresentationStyle("readonly-inherited"));
+			assertEquals(false, isReadOnlyInherited(question1));
+			assertArrayEquals(new String[] { "wide" }, question2.getPresentationStyles());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
 	private boolean isReadOnlyInherited(Question question) {
 		return question.getPresentationStyles() != null && Arrays.asList(question.getPresentationStyles()).contains("readonly-inherited");
 	}
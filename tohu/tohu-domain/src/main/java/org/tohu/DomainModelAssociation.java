@@ -15,6 +15,8 @@
  */
 package org.tohu;
 
+import org.tohu.domain.PropertyBinding;
+
 /**
  * Defines an association between the answer to a Question and a property on a real domain model object instance.
  * 
@@ -23,6 +25,9 @@ package org.tohu;
  * All the basic Java types are supported. Adapters can be plugged in for custom extensions. (See
  * <code>org.tohu.domain.DomainModelSupport.registerAdapter</code>.)
  * 
+ * An association can be created with a <code>DomainObjectReference</code> rather than the object itself, in which case the object
+ * is only loaded while the question is active. <code>object</code> is null while it isn't loaded.
+ * 
  * @author Damon Horrell
  */
 public class DomainModelAssociation {
@@ -33,12 +38,19 @@ public class DomainModelAssociation {
 
 	private String property;
 
+	private DomainObjectReference reference;
+
 	/**
 	 * A copy is kept of the last know answer. This is necessary to determine whether it is the answer that has changed or the
 	 * underlying domain model that has changed.
 	 */
 	private Object lastAnswer;
 
+	/**
+	 * The binding of <code>property</code> for the class of <code>object</code>, looked up when first needed unless it was given.
+	 */
+	private transient PropertyBinding binding;
+
 	public DomainModelAssociation() {
 	}
 
@@ -48,6 +60,48 @@ public class DomainModelAssociation {
 		this.property = property;
 	}
 
+	/**
+	 * Creates an association which uses a particular binding, e.g. one generated for a class annotated with
+	 * <code>QuestionBinding</code>.
+	 * 
+	 * @param questionId
+	 * @param object
+	 * @param binding
+	 */
+	public DomainModelAssociation(String questionId, Object object, PropertyBinding binding) {
+		this.questionId = questionId;
+		this.object = object;
+		this.property = binding.getProperty();
+		this.binding = binding;
+	}
+
+	/**
+	 * Creates an association with an object which is loaded when it is needed.
+	 * 
+	 * @param questionId
+	 * @param reference
+	 * @param property
+	 */
+	public DomainModelAssociation(String questionId, DomainObjectReference reference, String property) {
+		this.questionId = questionId;
+		this.reference = reference;
+		this.property = property;
+	}
+
+	/**
+	 * Creates an association with an object which is loaded when it is needed, using a particular binding.
+	 * 
+	 * @param questionId
+	 * @param reference
+	 * @param binding
+	 */
+	public DomainModelAssociation(String questionId, DomainObjectReference reference, PropertyBinding binding) {
+		this.questionId = questionId;
+		this.reference = reference;
+		this.property = binding.getProperty();
+		this.binding = binding;
+	}
+
 	public String getQuestionId() {
 		return questionId;
 	}
@@ -64,6 +118,34 @@ public class DomainModelAssociation {
 		this.object = object;
 	}
 
+	/**
+	 * Returns the identity hash code of <code>object</code>, which unlike its hash code doesn't change when the object does. The
+	 * Tohu built-in rules join domain objects to their associations on this.
+	 * 
+	 * @return zero if there is no object
+	 */
+	public int getObjectIdentity() {
+		return object == null ? 0 : System.identityHashCode(object);
+	}
+
+	/**
+	 * Returns true if <code>object</code> is the same instance as the association's object, rather than just equal to it.
+	 * 
+	 * @param object
+	 * @return
+	 */
+	public boolean isObject(Object object) {
+		return object != null && object == this.object;
+	}
+
+	public DomainObjectReference getReference() {
+		return reference;
+	}
+
+	public void setReference(DomainObjectReference reference) {
+		this.reference = reference;
+	}
+
 	public String getProperty() {
 		return property;
 	}
@@ -72,6 +154,21 @@ public class DomainModelAssociation {
 		this.property = property;
 	}
 
+	/**
+	 * Returns the binding used by the Tohu built-in rules to get and set the property.
+	 * 
+	 * @return
+	 */
+	public PropertyBinding getBinding() {
+		PropertyBinding binding = this.binding;
+		if (binding == null || (object != null && !binding.getBeanClass().isInstance(object))
+				|| !binding.getProperty().equals(property)) {
+			binding = PropertyBinding.getBinding(object.getClass(), property);
+			this.binding = binding;
+		}
+		return binding;
+	}
+
 	public Object getLastAnswer() {
 		return lastAnswer;
 	}
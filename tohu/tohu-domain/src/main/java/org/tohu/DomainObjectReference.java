@@ -0,0 +1,115 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu;
+
+import org.tohu.domain.DomainObjectLoader;
+
+/**
+ * <p>
+ * A reference to a domain model object which is only loaded when it is needed. It is inserted into working memory in place of the
+ * object, and <code>DomainModelAssociation</code>s are created with the reference instead of the object.
+ * </p>
+ * 
+ * <p>
+ * The Tohu built-in rules load the object and insert it when a question associated with it becomes active, and retract and evict it
+ * again when none of them are active. While it is loaded, the associations' objects are set to it, so the answers are kept in sync
+ * as usual.
+ * </p>
+ * 
+ * <p>
+ * References are equal only if they are the same instance.
+ * </p>
+ * 
+ * @see org.tohu.domain.DomainObjectLoader
+ */
+public class DomainObjectReference {
+
+	private String key;
+
+	private DomainObjectLoader loader;
+
+	private Object object;
+
+	public DomainObjectReference() {
+	}
+
+	public DomainObjectReference(String key, DomainObjectLoader loader) {
+		this.key = key;
+		this.loader = loader;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public void setKey(String key) {
+		this.key = key;
+	}
+
+	public DomainObjectLoader getLoader() {
+		return loader;
+	}
+
+	public void setLoader(DomainObjectLoader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * @return the object if it is loaded, otherwise null
+	 */
+	public Object getObject() {
+		return object;
+	}
+
+	public boolean isLoaded() {
+		return object != null;
+	}
+
+	/**
+	 * Loads the object if it isn't already loaded.
+	 * 
+	 * @return the object
+	 */
+	public Object load() {
+		if (object == null) {
+			object = loader.load(key);
+			if (object == null) {
+				throw new IllegalStateException("No domain object was loaded for " + key);
+			}
+		}
+		return object;
+	}
+
+	/**
+	 * Passes the object back to the loader and forgets it, if it is loaded.
+	 */
+	public void evict() {
+		if (object != null) {
+			Object evicted = object;
+			object = null;
+			loader.evict(key, evicted);
+		}
+	}
+
+	/**
+	 * For debugging purposes.
+	 */
+	@Override
+	public String toString() {
+		return this.getClass().getName() + ": key=" + key + " loaded=" + isLoaded();
+	}
+
+}
@@ -16,8 +16,10 @@
 package org.tohu.domain;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.tohu.Question;
 
@@ -32,6 +34,12 @@ import org.tohu.Question;
  * <code>registerAdapter</code>.
  * </p>
  * 
+ * <p>
+ * Adapters may be registered while rules are running in other threads. The adapter for each class is looked up by name once and
+ * then cached until another adapter is registered. The cache holds the classes weakly so that it doesn't keep them (or their class
+ * loaders) from being unloaded.
+ * </p>
+ * 
  * @see org.tohu.domain.CharDomainModelAdapter
  * @see org.tohu.domain.DecimalDomainModelAdapter
  * @see org.tohu.domain.NumberDomainModelAdapter
@@ -41,7 +49,10 @@ import org.tohu.Question;
  */
 public class DomainModelSupport {
 
-	private static Map<String, DomainModelAdapter> adapters = new HashMap<String, DomainModelAdapter>();
+	private static final ConcurrentMap<String, DomainModelAdapter> adapters = new ConcurrentHashMap<String, DomainModelAdapter>();
+
+	// guarded by DomainModelSupport.class
+	private static final Map<Class<?>, DomainModelAdapter> classAdapters = new WeakHashMap<Class<?>, DomainModelAdapter>();
 
 	static {
 		registerAdapter(new StraightThroughDomainModelAdapter(Question.TYPE_TEXT, String.class));
@@ -68,10 +79,28 @@ public class DomainModelSupport {
 	 * 
 	 * @param adapter
 	 */
-	public static void registerAdapter(DomainModelAdapter adapter) {
+	public static synchronized void registerAdapter(DomainModelAdapter adapter) {
 		for (Class<?> clazz : adapter.getSupportedClasses()) {
 			adapters.put(createAdapterKey(clazz), adapter);
 		}
+		classAdapters.clear();
+	}
+
+	/**
+	 * Returns the adapter registered for a class, or null if there isn't one.
+	 * 
+	 * @param clazz
+	 * @return
+	 */
+	private static synchronized DomainModelAdapter getAdapter(Class<?> clazz) {
+		DomainModelAdapter adapter = classAdapters.get(clazz);
+		if (adapter == null) {
+			adapter = adapters.get(createAdapterKey(clazz));
+			if (adapter != null) {
+				classAdapters.put(clazz, adapter);
+			}
+		}
+		return adapter;
 	}
 
 	/**
@@ -89,7 +118,7 @@ public class DomainModelSupport {
 	 * @return
 	 */
 	public static Object answerToObject(String answerType, Object answer, Class<?> clazz) {
-		DomainModelAdapter adapter = adapters.get(createAdapterKey(clazz));
+		DomainModelAdapter adapter = getAdapter(clazz);
 		if (adapter == null) {
 			throw new UnsupportedOperationException("Unable to convert from answer type " + answerType + " to Java class "
 					+ clazz.getName());
@@ -115,7 +144,7 @@ public class DomainModelSupport {
 			return null;
 		}
 		Class<? extends Object> clazz = object.getClass();
-		DomainModelAdapter adapter = adapters.get(createAdapterKey(clazz));
+		DomainModelAdapter adapter = getAdapter(clazz);
 		if (adapter == null) {
 			throw new UnsupportedOperationException("Unable to convert from Java class " + clazz.getName() + " to answer type "
 					+ answerType);
@@ -137,7 +166,7 @@ public class DomainModelSupport {
 	 * @return
 	 */
 	public static String classToAnswerType(Class<?> clazz) {
-		DomainModelAdapter adapter = adapters.get(createAdapterKey(clazz));
+		DomainModelAdapter adapter = getAdapter(clazz);
 		if (adapter == null) {
 
 			throw new UnsupportedOperationException("Unable to support Java class " + clazz);
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+/**
+ * <p>
+ * Fetches domain model objects from wherever they are kept, e.g. a repository or a service, for a
+ * <code>DomainObjectReference</code>.
+ * </p>
+ * 
+ * <p>
+ * The Tohu built-in rules load an object when a question associated with it first becomes active, and evict it when none of them
+ * are active any more, so only the objects behind the active part of the questionnaire are held in working memory.
+ * </p>
+ * 
+ * @see org.tohu.DomainObjectReference
+ */
+public interface DomainObjectLoader {
+
+	/**
+	 * @param key
+	 *            identifies the object to the loader
+	 * @return the object, not null
+	 */
+	Object load(String key);
+
+	/**
+	 * Called when an object has been retracted from working memory. Any answers copied to it since it was loaded have been set on
+	 * it, so this is the place to save it if required.
+	 * 
+	 * @param key
+	 * @param object
+	 *            as returned by <code>load</code>
+	 */
+	void evict(String key, Object object);
+
+}
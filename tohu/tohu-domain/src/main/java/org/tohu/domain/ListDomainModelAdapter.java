@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.tohu.DelimitedTokenizer;
 import org.tohu.Question;
 
 /**
@@ -52,7 +53,8 @@ public class ListDomainModelAdapter implements DomainModelAdapter {
 	 * @see org.tohu.domain.DomainModelAdapter#answerToObject(java.lang.Object, java.lang.Class)
 	 */
 	public Object answerToObject(Object answer, Class<?> clazz) {
-		return answer == null ? new ArrayList<String>() : (List<String>) Arrays.asList(String.valueOf(answer).split(","));
+		return answer == null ? new ArrayList<String>() : (List<String>) Arrays.asList(DelimitedTokenizer.splitPlain(String
+				.valueOf(answer), ','));
 	}
 
 	/**
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * <p>
+ * Gets and sets a property of a domain model class for the Tohu built-in rules.
+ * </p>
+ *
+ * <p>
+ * <code>getBinding</code> returns a binding which uses reflection. Classes annotated with {@link QuestionBinding} have bindings
+ * generated at compile time which call the getters and setters directly.
+ * </p>
+ *
+ * <p>
+ * Bindings are immutable and shared by all threads.
+ * </p>
+ */
+public abstract class PropertyBinding {
+
+	private final Class<?> beanClass;
+
+	private final String property;
+
+	protected PropertyBinding(Class<?> beanClass, String property) {
+		this.beanClass = beanClass;
+		this.property = property;
+	}
+
+	/**
+	 * Returns the reflective binding of a property of a class.
+	 *
+	 * @param beanClass
+	 * @param property
+	 *            name or nested property path
+	 * @return
+	 */
+	public static PropertyBinding getBinding(Class<?> beanClass, String property) {
+		return ReflectivePropertyBinding.lookup(beanClass, property);
+	}
+
+	public Class<?> getBeanClass() {
+		return beanClass;
+	}
+
+	public String getProperty() {
+		return property;
+	}
+
+	/**
+	 * @param bean
+	 *            an instance of the bean class
+	 * @return the type of the property, or null if there is no such property
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 */
+	public abstract Class<?> getPropertyType(Object bean) throws IllegalAccessException, InvocationTargetException,
+			NoSuchMethodException;
+
+	/**
+	 * @param bean
+	 *            an instance of the bean class
+	 * @return
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 */
+	public abstract Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException,
+			NoSuchMethodException;
+
+	/**
+	 * @param bean
+	 *            an instance of the bean class
+	 * @param value
+	 * @throws IllegalAccessException
+	 * @throws InvocationTargetException
+	 * @throws NoSuchMethodException
+	 */
+	public abstract void setValue(Object bean, Object value) throws IllegalAccessException, InvocationTargetException,
+			NoSuchMethodException;
+
+	/**
+	 * For debugging purposes.
+	 */
+	@Override
+	public String toString() {
+		return this.getClass().getName() + ": beanClass=" + beanClass.getName() + " property=" + property;
+	}
+
+}
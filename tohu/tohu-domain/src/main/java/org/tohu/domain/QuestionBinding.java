@@ -0,0 +1,73 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Binds a property of a domain model class to a question. The property's field or getter is annotated, and the property must have
+ * both a getter and a setter.
+ * </p>
+ *
+ * <p>
+ * When a class with bound properties is compiled with tohu-domain on the classpath, <code>DomainModelProcessor</code> generates a
+ * class named <code>&lt;class name&gt;Bindings</code> in the same package. This has a <code>PropertyBinding</code> constant for each
+ * property, which calls the getter and setter directly, and methods which create the questions and the
+ * <code>DomainModelAssociation</code>s for an instance or a <code>DomainObjectReference</code>, e.g.
+ * </p>
+ *
+ * <pre>
+ * rule &quot;person&quot;
+ * when
+ * 	person : Person();
+ * then
+ * 	for (Question question : PersonBindings.createQuestions()) {
+ * 		insertLogical(question);
+ * 	}
+ * 	for (DomainModelAssociation association : PersonBindings.createAssociations(person)) {
+ * 		insertLogical(association);
+ * 	}
+ * end
+ * </pre>
+ *
+ * @see org.tohu.domain.processor.DomainModelProcessor
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target( { ElementType.FIELD, ElementType.METHOD })
+public @interface QuestionBinding {
+
+	/**
+	 * The question id.
+	 */
+	String id();
+
+	/**
+	 * The answer type of the question. If not specified, the Tohu built-in rules derive it from the type of the property.
+	 */
+	String answerType() default "";
+
+	/**
+	 * The question's pre-label, if any.
+	 */
+	String preLabel() default "";
+
+}
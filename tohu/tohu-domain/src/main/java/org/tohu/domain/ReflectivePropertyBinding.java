@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.DynaBean;
+import org.apache.commons.beanutils.MethodUtils;
+import org.apache.commons.beanutils.PropertyUtils;
+
+/**
+ * <p>
+ * Binding which gets and sets a property using reflection, with the same results as <code>PropertyUtils</code> but with the getter
+ * and setter looked up only once per class and property.
+ * </p>
+ *
+ * <p>
+ * Nested properties (e.g. <code>address.city</code>) are resolved one level at a time using the class of each value, since that
+ * may be a subclass of the declared type. Indexed and mapped properties, and maps and <code>DynaBean</code>s, are left to
+ * <code>PropertyUtils</code>, as are null nested values so that the same exception is thrown.
+ * </p>
+ *
+ * <p>
+ * Bindings are immutable and shared by all threads. The cache doesn't keep domain classes (or their class loaders) from being
+ * unloaded: classes are weakly held, and since each binding refers to its class, the bindings of a class are softly held.
+ * </p>
+ */
+final class ReflectivePropertyBinding extends PropertyBinding {
+
+	private static final Map<Class<?>, SoftReference<ConcurrentMap<String, ReflectivePropertyBinding>>> bindings =
+			new WeakHashMap<Class<?>, SoftReference<ConcurrentMap<String, ReflectivePropertyBinding>>>();
+
+	/**
+	 * The rest of a nested property after the first name, otherwise null.
+	 */
+	private final String nestedProperty;
+
+	/**
+	 * True if <code>PropertyUtils</code> is used instead.
+	 */
+	private final boolean delegated;
+
+	/**
+	 * Getter, setter and type of the first name. Null if there isn't one.
+	 */
+	private final Method getter;
+
+	private final Method setter;
+
+	private final Class<?> type;
+
+	private ReflectivePropertyBinding(Class<?> beanClass, String property) {
+		super(beanClass, property);
+		int dot = property.indexOf('.');
+		String name = dot < 0 ? property : property.substring(0, dot);
+		nestedProperty = dot < 0 ? null : property.substring(dot + 1);
+		PropertyDescriptor descriptor = null;
+		boolean delegated = Map.class.isAssignableFrom(beanClass) || DynaBean.class.isAssignableFrom(beanClass)
+				|| name.indexOf('[') >= 0 || name.indexOf('(') >= 0;
+		if (!delegated) {
+			descriptor = findDescriptor(beanClass, name);
+			delegated = descriptor instanceof IndexedPropertyDescriptor;
+		}
+		this.delegated = delegated;
+		if (delegated || descriptor == null) {
+			getter = null;
+			setter = null;
+			type = null;
+		} else {
+			getter = accessible(descriptor.getReadMethod());
+			setter = accessible(descriptor.getWriteMethod());
+			type = descriptor.getPropertyType();
+		}
+	}
+
+	/**
+	 * @see PropertyBinding#getBinding(Class, String)
+	 */
+	static ReflectivePropertyBinding lookup(Class<?> beanClass, String property) {
+		ConcurrentMap<String, ReflectivePropertyBinding> classBindings;
+		synchronized (bindings) {
+			SoftReference<ConcurrentMap<String, ReflectivePropertyBinding>> reference = bindings.get(beanClass);
+			classBindings = reference == null ? null : reference.get();
+			if (classBindings == null) {
+				classBindings = new ConcurrentHashMap<String, ReflectivePropertyBinding>();
+				bindings.put(beanClass, new SoftReference<ConcurrentMap<String, ReflectivePropertyBinding>>(classBindings));
+			}
+		}
+		ReflectivePropertyBinding binding = classBindings.get(property);
+		if (binding == null) {
+			// two threads may both create one, but they are equivalent
+			binding = new ReflectivePropertyBinding(beanClass, property);
+			classBindings.put(property, binding);
+		}
+		return binding;
+	}
+
+	/**
+	 * @see PropertyUtils#getPropertyType(Object, String)
+	 */
+	@Override
+	public Class<?> getPropertyType(Object bean) throws IllegalAccessException, InvocationTargetException,
+			NoSuchMethodException {
+		if (delegated) {
+			return PropertyUtils.getPropertyType(bean, getProperty());
+		}
+		if (nestedProperty == null) {
+			return type;
+		}
+		Object value = getFirst(bean);
+		if (value == null) {
+			return PropertyUtils.getPropertyType(bean, getProperty());
+		}
+		return lookup(value.getClass(), nestedProperty).getPropertyType(value);
+	}
+
+	/**
+	 * @see PropertyUtils#getProperty(Object, String)
+	 */
+	@Override
+	public Object getValue(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		if (delegated) {
+			return PropertyUtils.getProperty(bean, getProperty());
+		}
+		Object value = getFirst(bean);
+		if (nestedProperty == null) {
+			return value;
+		}
+		if (value == null) {
+			return PropertyUtils.getProperty(bean, getProperty());
+		}
+		return lookup(value.getClass(), nestedProperty).getValue(value);
+	}
+
+	/**
+	 * @see PropertyUtils#setProperty(Object, String, Object)
+	 */
+	@Override
+	public void setValue(Object bean, Object value) throws IllegalAccessException, InvocationTargetException,
+			NoSuchMethodException {
+		if (delegated) {
+			PropertyUtils.setProperty(bean, getProperty(), value);
+			return;
+		}
+		if (nestedProperty == null) {
+			if (setter == null) {
+				throw noSuchMethod("setter");
+			}
+			setter.invoke(bean, new Object[] { value });
+			return;
+		}
+		Object nestedBean = getFirst(bean);
+		if (nestedBean == null) {
+			PropertyUtils.setProperty(bean, getProperty(), value);
+			return;
+		}
+		lookup(nestedBean.getClass(), nestedProperty).setValue(nestedBean, value);
+	}
+
+	private Object getFirst(Object bean) throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		if (getter == null) {
+			throw noSuchMethod("getter");
+		}
+		return getter.invoke(bean, (Object[]) null);
+	}
+
+	private NoSuchMethodException noSuchMethod(String method) {
+		if (type == null) {
+			return new NoSuchMethodException("Unknown property '" + getProperty() + "' on class '" + getBeanClass() + "'");
+		}
+		return new NoSuchMethodException("Property '" + getProperty() + "' has no " + method + " method in class '" + getBeanClass() + "'");
+	}
+
+	private static PropertyDescriptor findDescriptor(Class<?> beanClass, String name) {
+		PropertyDescriptor[] descriptors;
+		try {
+			descriptors = Introspector.getBeanInfo(beanClass).getPropertyDescriptors();
+		} catch (IntrospectionException e) {
+			return null;
+		}
+		for (int i = 0; i < descriptors.length; i++) {
+			if (descriptors[i].getName().equals(name)) {
+				return descriptors[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a version of the method that can be called from here, e.g. declared by a public interface of a non-public class.
+	 */
+	private static Method accessible(Method method) {
+		return method == null ? null : MethodUtils.getAccessibleMethod(method);
+	}
+
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain.processor;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import org.tohu.domain.QuestionBinding;
+
+/**
+ * <p>
+ * Annotation processor which generates the bindings of classes with properties annotated with {@link QuestionBinding}.
+ * </p>
+ *
+ * <p>
+ * It is registered as a service by tohu-domain so javac runs it automatically. The generated code calls the getters and setters
+ * directly, so neither the questions and associations nor the bindings need any reflection at runtime.
+ * </p>
+ */
+@SupportedAnnotationTypes("org.tohu.domain.QuestionBinding")
+public class DomainModelProcessor extends AbstractProcessor {
+
+	/**
+	 * A bound property of a class.
+	 */
+	private static class Property {
+
+		private String name;
+
+		private QuestionBinding binding;
+
+		private ExecutableElement getter;
+
+		private ExecutableElement setter;
+
+	}
+
+	/**
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	/**
+	 * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Map<TypeElement, List<Element>> types = new LinkedHashMap<TypeElement, List<Element>>();
+		for (Element element : roundEnv.getElementsAnnotatedWith(QuestionBinding.class)) {
+			TypeElement type = (TypeElement) element.getEnclosingElement();
+			List<Element> elements = types.get(type);
+			if (elements == null) {
+				elements = new ArrayList<Element>();
+				types.put(type, elements);
+			}
+			elements.add(element);
+		}
+		for (Map.Entry<TypeElement, List<Element>> entry : types.entrySet()) {
+			List<Property> properties = getProperties(entry.getKey(), entry.getValue());
+			if (properties != null) {
+				try {
+					generate(entry.getKey(), properties);
+				} catch (IOException e) {
+					error("Unable to generate bindings: " + e, entry.getKey());
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the getter and setter of each annotated element.
+	 *
+	 * @return null if there are any errors
+	 */
+	private List<Property> getProperties(TypeElement type, List<Element> elements) {
+		boolean valid = true;
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.PRIVATE)
+				|| (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))) {
+			error("Bound properties must belong to a top-level or static nested class which isn't private", type);
+			valid = false;
+		}
+		List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+		List<Property> properties = new ArrayList<Property>();
+		Set<String> ids = new HashSet<String>();
+		// in the order they are declared
+		for (Element element : type.getEnclosedElements()) {
+			if (!elements.contains(element)) {
+				continue;
+			}
+			Property property = new Property();
+			property.binding = element.getAnnotation(QuestionBinding.class);
+			if (!ids.add(property.binding.id())) {
+				error("Duplicate question id " + property.binding.id(), element);
+				valid = false;
+			}
+			if (element.getKind() == ElementKind.FIELD) {
+				property.name = element.getSimpleName().toString();
+			} else {
+				property.name = getPropertyName((ExecutableElement) element);
+				if (property.name == null) {
+					error("Only getters can be bound", element);
+					valid = false;
+					continue;
+				}
+			}
+			String suffix = Character.toUpperCase(property.name.charAt(0)) + property.name.substring(1);
+			for (ExecutableElement method : methods) {
+				if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				String name = method.getSimpleName().toString();
+				if (method.getParameters().isEmpty()
+						&& (name.equals("get" + suffix) || name.equals("is" + suffix)
+								&& method.getReturnType().getKind() == TypeKind.BOOLEAN)) {
+					property.getter = method;
+				}
+			}
+			if (property.getter == null) {
+				error("Property " + property.name + " has no getter", element);
+				valid = false;
+				continue;
+			}
+			TypeMirror propertyType = property.getter.getReturnType();
+			for (ExecutableElement method : methods) {
+				if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC)) {
+					continue;
+				}
+				if (method.getSimpleName().toString().equals("set" + suffix) && method.getParameters().size() == 1
+						&& processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), propertyType)) {
+					property.setter = method;
+				}
+			}
+			if (property.setter == null) {
+				error("Property " + property.name + " has no setter", element);
+				valid = false;
+				continue;
+			}
+			properties.add(property);
+		}
+		return valid ? properties : null;
+	}
+
+	/**
+	 * @return the property name of a getter, or null if it isn't one
+	 */
+	private String getPropertyName(ExecutableElement method) {
+		String name = method.getSimpleName().toString();
+		if (!method.getParameters().isEmpty()) {
+			return null;
+		}
+		if (name.startsWith("get") && name.length() > 3 && method.getReturnType().getKind() != TypeKind.VOID) {
+			return Introspector.decapitalize(name.substring(3));
+		}
+		if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+			return Introspector.decapitalize(name.substring(2));
+		}
+		return null;
+	}
+
+	private void generate(TypeElement type, List<Property> properties) throws IOException {
+		String packageName = ((PackageElement) getPackage(type)).getQualifiedName().toString();
+		String typeName = type.getQualifiedName().toString();
+		String simpleName = packageName.length() == 0 ? typeName : typeName.substring(packageName.length() + 1);
+		String className = simpleName.replace('.', '_') + "Bindings";
+		String qualifiedClassName = packageName.length() == 0 ? className : packageName + "." + className;
+		PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedClassName, type).openWriter());
+		try {
+			if (packageName.length() > 0) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * Bindings of {@link " + typeName + "}. Generated by " + getClass().getName() + ", do not edit.");
+			out.println(" */");
+			out.println("public final class " + className + " {");
+			for (Property property : properties) {
+				generateBinding(out, typeName, property);
+			}
+			out.println();
+			out.println("\tprivate " + className + "() {");
+			out.println("\t}");
+
+			out.println();
+			out.println("\tpublic static java.util.List<org.tohu.Question> createQuestions() {");
+			out.println("\t\tjava.util.List<org.tohu.Question> questions = new java.util.ArrayList<org.tohu.Question>("
+					+ properties.size() + ");");
+			out.println("\t\torg.tohu.Question question;");
+			for (Property property : properties) {
+				out.println("\t\tquestion = new org.tohu.Question(" + literal(property.binding.id()) + ");");
+				if (property.binding.answerType().length() > 0) {
+					out.println("\t\tquestion.setAnswerType(" + literal(property.binding.answerType()) + ");");
+				}
+				if (property.binding.preLabel().length() > 0) {
+					out.println("\t\tquestion.setPreLabel(" + literal(property.binding.preLabel()) + ");");
+				}
+				out.println("\t\tquestions.add(question);");
+			}
+			out.println("\t\treturn questions;");
+			out.println("\t}");
+
+			generateCreateAssociations(out, properties, typeName + " bean");
+			generateCreateAssociations(out, properties, "org.tohu.DomainObjectReference bean");
+			out.println();
+			out.println("}");
+		} finally {
+			out.close();
+		}
+	}
+
+	private void generateCreateAssociations(PrintWriter out, List<Property> properties, String parameter) {
+		out.println();
+		out.println("\tpublic static java.util.List<org.tohu.DomainModelAssociation> createAssociations(" + parameter + ") {");
+		out.println("\t\tjava.util.List<org.tohu.DomainModelAssociation> associations = "
+				+ "new java.util.ArrayList<org.tohu.DomainModelAssociation>(" + properties.size() + ");");
+		for (Property property : properties) {
+			out.println("\t\tassociations.add(new org.tohu.DomainModelAssociation(" + literal(property.binding.id())
+					+ ", bean, " + constantName(property.name) + "));");
+		}
+		out.println("\t\treturn associations;");
+		out.println("\t}");
+	}
+
+	private void generateBinding(PrintWriter out, String typeName, Property property) {
+		TypeMirror propertyType = property.getter.getReturnType();
+		String erasure = processingEnv.getTypeUtils().erasure(propertyType).toString();
+		String boxed = propertyType.getKind().isPrimitive() ? boxedName(propertyType.getKind()) : erasure;
+		out.println();
+		out.println("\tpublic static final org.tohu.domain.PropertyBinding " + constantName(property.name)
+				+ " = new org.tohu.domain.PropertyBinding(" + typeName + ".class, " + literal(property.name) + ") {");
+		out.println();
+		out.println("\t\t@Override");
+		out.println("\t\tpublic Class<?> getPropertyType(Object bean) {");
+		out.println("\t\t\treturn " + erasure + ".class;");
+		out.println("\t\t}");
+		out.println();
+		out.println("\t\t@Override");
+		out.println("\t\tpublic Object getValue(Object bean) {");
+		out.println("\t\t\treturn ((" + typeName + ") bean)." + property.getter.getSimpleName() + "();");
+		out.println("\t\t}");
+		out.println();
+		if (!erasure.equals(propertyType.toString())) {
+			out.println("\t\t@SuppressWarnings(\"unchecked\")");
+		}
+		out.println("\t\t@Override");
+		out.println("\t\tpublic void setValue(Object bean, Object value) {");
+		String value = "(" + boxed + ") value";
+		if (propertyType.getKind().isPrimitive()) {
+			value = "(" + value + ")." + propertyType.getKind().name().toLowerCase() + "Value()";
+		} else if (!erasure.equals(propertyType.toString())) {
+			value = "(" + propertyType + ") value";
+		}
+		out.println("\t\t\t((" + typeName + ") bean)." + property.setter.getSimpleName() + "(" + value + ");");
+		out.println("\t\t}");
+		out.println();
+		out.println("\t};");
+	}
+
+	private static Element getPackage(Element element) {
+		while (element.getKind() != ElementKind.PACKAGE) {
+			element = element.getEnclosingElement();
+		}
+		return element;
+	}
+
+	private static String boxedName(TypeKind kind) {
+		switch (kind) {
+		case BOOLEAN:
+			return "Boolean";
+		case BYTE:
+			return "Byte";
+		case SHORT:
+			return "Short";
+		case INT:
+			return "Integer";
+		case LONG:
+			return "Long";
+		case CHAR:
+			return "Character";
+		case FLOAT:
+			return "Float";
+		default:
+			return "Double";
+		}
+	}
+
+	/**
+	 * e.g. fullName -> FULL_NAME
+	 */
+	private static String constantName(String propertyName) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < propertyName.length(); i++) {
+			char c = propertyName.charAt(i);
+			if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(propertyName.charAt(i - 1))) {
+				sb.append('_');
+			}
+			sb.append(Character.toUpperCase(c));
+		}
+		return sb.toString();
+	}
+
+	private static String literal(String string) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				// not a unicode escape, which would be translated before the literal is parsed
+				sb.append(String.format("\\%03o", Integer.valueOf(c)));
+			} else if (c > 0x7e) {
+				sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private void error(String message, Element element) {
+		Messager messager = processingEnv.getMessager();
+		messager.printMessage(Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.tohu.Question;
+
+/**
+ * Domain model with bound properties, for which the build generates <code>ApplicantBindings</code>.
+ */
+public class Applicant {
+
+	@QuestionBinding(id = "applicantName", answerType = Question.TYPE_TEXT, preLabel = "Name \"in full\":")
+	private String fullName;
+
+	private int age;
+
+	private boolean employed;
+
+	@QuestionBinding(id = "applicantIncome")
+	private BigDecimal income;
+
+	@QuestionBinding(id = "applicantDateOfBirth", answerType = Question.TYPE_DATE)
+	private Date dateOfBirth;
+
+	@QuestionBinding(id = "applicantLanguages", answerType = Question.TYPE_LIST)
+	private List<String> languages;
+
+	public String getFullName() {
+		return fullName;
+	}
+
+	public void setFullName(String fullName) {
+		this.fullName = fullName;
+	}
+
+	@QuestionBinding(id = "applicantAge", answerType = Question.TYPE_NUMBER)
+	public int getAge() {
+		return age;
+	}
+
+	public void setAge(int age) {
+		this.age = age;
+	}
+
+	@QuestionBinding(id = "applicantEmployed")
+	public boolean isEmployed() {
+		return employed;
+	}
+
+	public void setEmployed(boolean employed) {
+		this.employed = employed;
+	}
+
+	public BigDecimal getIncome() {
+		return income;
+	}
+
+	public void setIncome(BigDecimal income) {
+		this.income = income;
+	}
+
+	public Date getDateOfBirth() {
+		return dateOfBirth;
+	}
+
+	public void setDateOfBirth(Date dateOfBirth) {
+		this.dateOfBirth = dateOfBirth;
+	}
+
+	public List<String> getLanguages() {
+		return languages;
+	}
+
+	public void setLanguages(List<String> languages) {
+		this.languages = languages;
+	}
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.DomainModelAssociation;
+import org.tohu.DomainObjectReference;
+import org.tohu.Question;
+import org.tohu.domain.processor.DomainModelProcessor;
+
+public class DomainModelProcessorTest {
+
+	@Test
+	public void testCreateQuestions() {
+		// in the order they are declared
+		List<Question> questions = ApplicantBindings.createQuestions();
+		assertEquals(6, questions.size());
+		Question name = questions.get(0);
+		assertEquals("applicantName", name.getId());
+		assertEquals(Question.TYPE_TEXT, name.getAnswerType());
+		assertEquals("Name \"in full\":", name.getPreLabel());
+		Question income = questions.get(1);
+		assertEquals("applicantIncome", income.getId());
+		assertNull(income.getAnswerType());
+		assertNull(income.getPreLabel());
+	}
+
+	@Test
+	public void testBindings() throws Exception {
+		Applicant applicant = new Applicant();
+		assertEquals(int.class, ApplicantBindings.AGE.getPropertyType(applicant));
+		assertEquals("age", ApplicantBindings.AGE.getProperty());
+		assertSame(Applicant.class, ApplicantBindings.AGE.getBeanClass());
+		ApplicantBindings.AGE.setValue(applicant, 42);
+		assertEquals(42, applicant.getAge());
+		assertEquals(42, ApplicantBindings.AGE.getValue(applicant));
+
+		assertEquals(boolean.class, ApplicantBindings.EMPLOYED.getPropertyType(applicant));
+		ApplicantBindings.EMPLOYED.setValue(applicant, Boolean.TRUE);
+		assertEquals(Boolean.TRUE, ApplicantBindings.EMPLOYED.getValue(applicant));
+
+		assertEquals(List.class, ApplicantBindings.LANGUAGES.getPropertyType(applicant));
+		ApplicantBindings.LANGUAGES.setValue(applicant, Arrays.asList(new String[] { "en", "mi" }));
+		assertEquals(Arrays.asList(new String[] { "en", "mi" }), applicant.getLanguages());
+
+		List<DomainModelAssociation> associations = ApplicantBindings.createAssociations(applicant);
+		assertEquals(6, associations.size());
+		assertEquals("applicantName", associations.get(0).getQuestionId());
+		assertEquals("fullName", associations.get(0).getProperty());
+		assertSame(ApplicantBindings.FULL_NAME, associations.get(0).getBinding());
+		assertSame(applicant, associations.get(0).getObject());
+
+		DomainObjectReference reference = new DomainObjectReference("applicant", new InMemoryDomainObjectLoader());
+		associations = ApplicantBindings.createAssociations(reference);
+		assertEquals(6, associations.size());
+		assertSame(reference, associations.get(0).getReference());
+		assertSame(ApplicantBindings.FULL_NAME, associations.get(0).getBinding());
+		assertNull(associations.get(0).getObject());
+	}
+
+	@Test
+	public void testRules() {
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/DomainModel.drl"), ResourceType.DRL);
+		assertFalse(knowledgeBuilder.hasErrors());
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Applicant applicant = new Applicant();
+			applicant.setFullName("Jo");
+			applicant.setAge(30);
+			applicant.setIncome(new BigDecimal("123.45"));
+			knowledgeSession.insert(applicant);
+			Question[] questions = ApplicantBindings.createQuestions().toArray(new Question[0]);
+			FactHandle[] handles = new FactHandle[questions.length];
+			for (int i = 0; i < questions.length; i++) {
+				handles[i] = knowledgeSession.insert(questions[i]);
+			}
+			for (DomainModelAssociation association : ApplicantBindings.createAssociations(applicant)) {
+				knowledgeSession.insert(association);
+			}
+			knowledgeSession.fireAllRules();
+			assertEquals("Jo", questions[0].getTextAnswer());
+			assertEquals(Question.TYPE_DECIMAL, questions[1].getAnswerType());
+			assertEquals(123.45, questions[1].getDecimalAnswer().doubleValue(), 0);
+			assertEquals(30, questions[4].getNumberAnswer().intValue());
+			assertEquals(Question.TYPE_BOOLEAN, questions[5].getAnswerType());
+			assertEquals(Boolean.FALSE, questions[5].getBooleanAnswer());
+
+			questions[4].setNumberAnswer(31L);
+			knowledgeSession.update(handles[4], questions[4]);
+			knowledgeSession.fireAllRules();
+			assertEquals(31, applicant.getAge());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			// not running on a JDK
+			return;
+		}
+		File dir = File.createTempFile("processor", "");
+		dir.delete();
+		dir.mkdir();
+		try {
+			File source = new File(dir, "Invalid.java");
+			FileWriter writer = new FileWriter(source);
+			writer.write("public class Invalid {\n"
+					+ "	@org.tohu.domain.QuestionBinding(id = \"a\") private String noSetter;\n"
+					+ "	@org.tohu.domain.QuestionBinding(id = \"a\") private int duplicate;\n"
+					+ "	public String getNoSetter() { return noSetter; }\n"
+					+ "	public int getDuplicate() { return duplicate; }\n"
+					+ "	public void setDuplicate(int duplicate) { this.duplicate = duplicate; }\n" + "}\n");
+			writer.close();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int result = compiler.run(null, out, out, "-d", dir.getPath(), "-classpath", System.getProperty("java.class.path"),
+					"-processor", DomainModelProcessor.class.getName(), source.getPath());
+			String messages = out.toString();
+			assertTrue(result != 0);
+			assertTrue(messages, messages.contains("Property noSetter has no setter"));
+			assertTrue(messages, messages.contains("Duplicate question id a"));
+			assertFalse(new File(dir, "InvalidBindings.java").exists());
+		} finally {
+			File[] files = dir.listFiles();
+			for (int i = 0; i < files.length; i++) {
+				files[i].delete();
+			}
+			dir.delete();
+		}
+	}
+
+}
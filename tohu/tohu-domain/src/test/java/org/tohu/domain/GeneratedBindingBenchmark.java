@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.util.List;
+
+import org.tohu.DomainModelAssociation;
+import org.tohu.Question;
+
+/**
+ * <p>
+ * Compares the bindings generated for <code>Applicant</code> with reflective bindings: first the time to create the associations
+ * of the first applicant and read each property once (which for the reflective bindings includes introspecting the class), then
+ * what the DomainModel rules do with each answer, i.e. get the property type, convert and get or set the property value.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method. The startup times are only meaningful the first time in a JVM.
+ * </p>
+ */
+public class GeneratedBindingBenchmark {
+
+	private static final int ITERATIONS = 1000000;
+
+	private static final String[] PROPERTIES = { "fullName", "income", "dateOfBirth", "languages", "age", "employed" };
+
+	public static void main(String[] args) throws Exception {
+		Applicant applicant = new Applicant();
+		applicant.setAge(42);
+		Question.class.getName();
+		long found = 0;
+
+		long start = System.nanoTime();
+		for (DomainModelAssociation association : ApplicantBindings.createAssociations(applicant)) {
+			association.getBinding().getValue(applicant);
+		}
+		System.out.println("generated startup: " + (System.nanoTime() - start) / 1000 + "us");
+		start = System.nanoTime();
+		for (int i = 0; i < PROPERTIES.length; i++) {
+			DomainModelAssociation association = new DomainModelAssociation("question" + i, applicant, PROPERTIES[i]);
+			association.getBinding().getValue(applicant);
+		}
+		System.out.println("reflective startup: " + (System.nanoTime() - start) / 1000 + "us");
+
+		List<DomainModelAssociation> generated = ApplicantBindings.createAssociations(applicant);
+		PropertyBinding binding = generated.get(4).getBinding();
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += answer(binding, applicant);
+		}
+		report("generated answer", start);
+		binding = new DomainModelAssociation("question", applicant, "age").getBinding();
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			found += answer(binding, applicant);
+		}
+		report("reflective answer", start);
+		System.out.println("(" + found + ")");
+	}
+
+	private static long answer(PropertyBinding binding, Applicant applicant) throws Exception {
+		Class<?> propertyClass = binding.getPropertyType(applicant);
+		Object answer = DomainModelSupport.objectToAnswer(binding.getValue(applicant), Question.TYPE_NUMBER);
+		binding.setValue(applicant, DomainModelSupport.answerToObject(Question.TYPE_NUMBER, answer, propertyClass));
+		return ((Long) answer).longValue();
+	}
+
+	private static void report(String name, long start) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / ITERATIONS + "ns");
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A stand-in for a repository, which keeps the objects in a map and counts the loads and evictions.
+ */
+public class InMemoryDomainObjectLoader implements DomainObjectLoader {
+
+	private final Map<String, Object> objects = new HashMap<String, Object>();
+
+	private int loads;
+
+	private int evictions;
+
+	public void put(String key, Object object) {
+		objects.put(key, object);
+	}
+
+	public Object get(String key) {
+		return objects.get(key);
+	}
+
+	public Object load(String key) {
+		loads++;
+		return objects.get(key);
+	}
+
+	public void evict(String key, Object object) {
+		evictions++;
+		objects.put(key, object);
+	}
+
+	public int getLoads() {
+		return loads;
+	}
+
+	public int getEvictions() {
+		return evictions;
+	}
+
+}
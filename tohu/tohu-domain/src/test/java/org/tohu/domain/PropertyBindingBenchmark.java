@@ -0,0 +1,71 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import org.apache.commons.beanutils.PropertyUtils;
+import org.tohu.DummyData;
+import org.tohu.Question;
+
+/**
+ * <p>
+ * Compares what the DomainModel rules do for each firing, i.e. get the property type, convert and get or set the property value,
+ * using <code>PropertyUtils</code> and using a <code>PropertyBinding</code>.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method.
+ * </p>
+ */
+public class PropertyBindingBenchmark {
+
+	private static final int ITERATIONS = 1000000;
+
+	public static void main(String[] args) throws Exception {
+		DummyData data = new DummyData();
+		data.setPrimitiveInt(123);
+		long found = 0;
+		long start = 0;
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			Class<?> propertyClass = PropertyUtils.getPropertyType(data, "primitiveInt");
+			Object answer = DomainModelSupport.objectToAnswer(PropertyUtils.getProperty(data, "primitiveInt"),
+					Question.TYPE_NUMBER);
+			PropertyUtils.setProperty(data, "primitiveInt", DomainModelSupport.answerToObject(Question.TYPE_NUMBER, answer,
+					propertyClass));
+			found += ((Long) answer).longValue();
+		}
+		report("PropertyUtils", start);
+		for (int i = -ITERATIONS; i < ITERATIONS; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			PropertyBinding binding = PropertyBinding.getBinding(data.getClass(), "primitiveInt");
+			Class<?> propertyClass = binding.getPropertyType(data);
+			Object answer = DomainModelSupport.objectToAnswer(binding.getValue(data), Question.TYPE_NUMBER);
+			binding.setValue(data, DomainModelSupport.answerToObject(Question.TYPE_NUMBER, answer, propertyClass));
+			found += ((Long) answer).longValue();
+		}
+		report("PropertyBinding", start);
+		System.out.println("(" + found + ")");
+	}
+
+	private static void report(String name, long start) {
+		System.out.println(name + ": " + (System.nanoTime() - start) / ITERATIONS + "ns");
+	}
+
+}
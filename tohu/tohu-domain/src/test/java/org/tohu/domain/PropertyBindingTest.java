@@ -0,0 +1,183 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.beanutils.NestedNullException;
+import org.junit.Test;
+import org.tohu.DomainModelAssociation;
+import org.tohu.DummyData;
+import org.tohu.Question;
+
+public class PropertyBindingTest {
+
+	public static class Holder {
+
+		private DummyData data;
+
+		private List<String> values;
+
+		public DummyData getData() {
+			return data;
+		}
+
+		public void setData(DummyData data) {
+			this.data = data;
+		}
+
+		public String getValues(int index) {
+			return values.get(index);
+		}
+
+		public void setValues(int index, String value) {
+			values.set(index, value);
+		}
+
+		public List<String> getValues() {
+			return values;
+		}
+
+		public void setValues(List<String> values) {
+			this.values = values;
+		}
+
+		public String getReadOnly() {
+			return "readOnly";
+		}
+
+	}
+
+	public static class SubData extends DummyData {
+	}
+
+	@Test
+	public void testSimpleProperty() throws Exception {
+		DummyData data = new DummyData();
+		PropertyBinding binding = PropertyBinding.getBinding(DummyData.class, "primitiveInt");
+		assertSame(binding, PropertyBinding.getBinding(DummyData.class, "primitiveInt"));
+		assertEquals(int.class, binding.getPropertyType(data));
+		binding.setValue(data, 12);
+		assertEquals(12, data.getPrimitiveInt());
+		assertEquals(12, binding.getValue(data));
+
+		binding = PropertyBinding.getBinding(DummyData.class, "primitiveBoolean");
+		assertEquals(boolean.class, binding.getPropertyType(data));
+		binding.setValue(data, true);
+		assertEquals(Boolean.TRUE, binding.getValue(data));
+	}
+
+	@Test
+	public void testNestedProperty() throws Exception {
+		Holder holder = new Holder();
+		PropertyBinding binding = PropertyBinding.getBinding(Holder.class, "data.string");
+		try {
+			binding.getValue(holder);
+			fail();
+		} catch (NestedNullException e) {
+			// expected, as PropertyUtils
+		}
+		holder.setData(new SubData());
+		assertEquals(String.class, binding.getPropertyType(holder));
+		binding.setValue(holder, "abc");
+		assertEquals("abc", holder.getData().getString());
+		assertEquals("abc", binding.getValue(holder));
+		holder.setData(new DummyData());
+		assertNull(binding.getValue(holder));
+	}
+
+	@Test
+	public void testIndexedProperty() throws Exception {
+		Holder holder = new Holder();
+		holder.setValues(Arrays.asList(new String[] { "a", "b" }));
+		PropertyBinding binding = PropertyBinding.getBinding(Holder.class, "values[1]");
+		assertEquals("b", binding.getValue(holder));
+		binding.setValue(holder, "c");
+		assertEquals("c", holder.getValues().get(1));
+	}
+
+	@Test
+	public void testMapProperty() throws Exception {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("a", "b");
+		PropertyBinding binding = PropertyBinding.getBinding(HashMap.class, "a");
+		assertEquals("b", binding.getValue(map));
+		binding.setValue(map, "c");
+		assertEquals("c", map.get("a"));
+	}
+
+	@Test
+	public void testMissingProperty() throws Exception {
+		Holder holder = new Holder();
+		PropertyBinding binding = PropertyBinding.getBinding(Holder.class, "missing");
+		assertNull(binding.getPropertyType(holder));
+		try {
+			binding.getValue(holder);
+			fail();
+		} catch (NoSuchMethodException e) {
+			// expected
+		}
+		try {
+			binding.setValue(holder, "a");
+			fail();
+		} catch (NoSuchMethodException e) {
+			// expected
+		}
+		binding = PropertyBinding.getBinding(Holder.class, "readOnly");
+		assertEquals("readOnly", binding.getValue(holder));
+		try {
+			binding.setValue(holder, "a");
+			fail();
+		} catch (NoSuchMethodException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAssociationBinding() throws Exception {
+		DomainModelAssociation association = new DomainModelAssociation("question", new DummyData(), "string");
+		PropertyBinding binding = association.getBinding();
+		assertSame(binding, association.getBinding());
+		association.setObject(new SubData());
+		assertSame(binding, association.getBinding());
+		association.setProperty("date");
+		assertEquals("date", association.getBinding().getProperty());
+		association.setObject(new Holder());
+		association.setProperty("data");
+		assertSame(Holder.class, association.getBinding().getBeanClass());
+	}
+
+	@Test
+	public void testRegisterAdapter() {
+		try {
+			DomainModelSupport.classToAnswerType(Holder.class);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		DomainModelSupport.registerAdapter(new StraightThroughDomainModelAdapter(Question.TYPE_TEXT, Holder.class));
+		assertEquals(Question.TYPE_TEXT, DomainModelSupport.classToAnswerType(Holder.class));
+	}
+
+}
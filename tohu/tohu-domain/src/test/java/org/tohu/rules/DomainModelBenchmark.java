@@ -0,0 +1,108 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.DomainModelAssociation;
+import org.tohu.DummyData;
+import org.tohu.Question;
+
+/**
+ * <p>
+ * Times the DomainModel.drl rules with a number of questions associated with domain objects, among a larger number of other domain
+ * objects: the initial fire-all-rules, changing a domain object and answering a question.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional association count (default 1000) and domain object
+ * count (default 3000).
+ * </p>
+ */
+public class DomainModelBenchmark {
+
+	private static final int CHANGES = 50;
+
+	public static void main(String[] args) {
+		int associations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int objects = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/DomainModel.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		// warm up
+		run(knowledgeBase, associations, objects, false);
+		run(knowledgeBase, associations, objects, true);
+	}
+
+	private static void run(KnowledgeBase knowledgeBase, int associations, int objects, boolean report) {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			DummyData[] data = new DummyData[objects];
+			FactHandle[] dataHandles = new FactHandle[objects];
+			for (int i = 0; i < objects; i++) {
+				data[i] = new DummyData();
+				data[i].setString("value" + i);
+				dataHandles[i] = knowledgeSession.insert(data[i]);
+			}
+			Question[] questions = new Question[associations];
+			FactHandle[] questionHandles = new FactHandle[associations];
+			for (int i = 0; i < associations; i++) {
+				questions[i] = new Question("question" + i);
+				questionHandles[i] = knowledgeSession.insert(questions[i]);
+				knowledgeSession.insert(new DomainModelAssociation(questions[i].getId(), data[i % objects], "string"));
+			}
+			long start = System.nanoTime();
+			int fired = knowledgeSession.fireAllRules();
+			long initial = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < CHANGES; i++) {
+				int j = i * associations / CHANGES;
+				data[j].setString("changed" + i);
+				knowledgeSession.update(dataHandles[j], data[j]);
+				fired += knowledgeSession.fireAllRules();
+			}
+			long domainChange = (System.nanoTime() - start) / CHANGES;
+
+			start = System.nanoTime();
+			for (int i = 0; i < CHANGES; i++) {
+				int j = i * associations / CHANGES + 1;
+				questions[j].setTextAnswer("answered" + i);
+				knowledgeSession.update(questionHandles[j], questions[j]);
+				fired += knowledgeSession.fireAllRules();
+			}
+			long answer = (System.nanoTime() - start) / CHANGES;
+			if (report) {
+				System.out.println(associations + " associations, " + objects + " objects: initial " + initial / 1000000
+						+ "ms, domain object change " + domainChange / 1000 + "us, answer " + answer / 1000 + "us (" + fired
+						+ " rules fired)");
+			}
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+}
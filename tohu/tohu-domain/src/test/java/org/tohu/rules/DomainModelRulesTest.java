@@ -405,4 +405,110 @@ public class DomainModelRulesTest {
 		}
 	}
 
+	@Test
+	public void testDomainModelChanged() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			DummyData data1 = new DummyData();
+			data1.setString("a");
+			DummyData data2 = new DummyData();
+			data2.setString("b");
+			Question question1 = new Question("question1");
+			Question question2 = new Question("question2");
+			knowledgeSession.insert(data1);
+			FactHandle handle2 = knowledgeSession.insert(data2);
+			knowledgeSession.insert(question1);
+			knowledgeSession.insert(question2);
+			knowledgeSession.insert(new DomainModelAssociation("question1", data1, "string"));
+			knowledgeSession.insert(new DomainModelAssociation("question2", data2, "string"));
+			knowledgeSession.fireAllRules();
+			assertEquals("a", question1.getTextAnswer());
+			assertEquals("b", question2.getTextAnswer());
+
+			data2.setString("c");
+			knowledgeSession.update(handle2, data2);
+			knowledgeSession.fireAllRules();
+			assertEquals("a", question1.getTextAnswer());
+			assertEquals("c", question2.getTextAnswer());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	@Test
+	public void testDomainModelWithValueEquality() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			// equal to each other, and their hash codes change with the bound property
+			Name name1 = new Name("a");
+			Name name2 = new Name("a");
+			Question question1 = new Question("question1");
+			Question question2 = new Question("question2");
+			knowledgeSession.insert(name1);
+			FactHandle handle2 = knowledgeSession.insert(name2);
+			knowledgeSession.insert(question1);
+			knowledgeSession.insert(question2);
+			knowledgeSession.insert(new DomainModelAssociation("question1", name1, "value"));
+			knowledgeSession.insert(new DomainModelAssociation("question2", name2, "value"));
+			knowledgeSession.fireAllRules();
+			assertEquals("a", question1.getTextAnswer());
+			assertEquals("a", question2.getTextAnswer());
+
+			name2.setValue("b");
+			knowledgeSession.update(handle2, name2);
+			knowledgeSession.fireAllRules();
+			assertEquals("a", question1.getTextAnswer());
+			assertEquals("b", question2.getTextAnswer());
+
+			question1.setTextAnswer("b");
+			knowledgeSession.update(knowledgeSession.getFactHandle(question1), question1);
+			knowledgeSession.fireAllRules();
+			assertEquals("b", name1.getValue());
+			assertEquals("b", name2.getValue());
+
+			name1.setValue("c");
+			knowledgeSession.update(knowledgeSession.getFactHandle(name1), name1);
+			knowledgeSession.fireAllRules();
+			assertEquals("c", question1.getTextAnswer());
+			assertEquals("b", question2.getTextAnswer());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	/**
+	 * A domain object which is equal to any other with the same value.
+	 */
+	public static class Name {
+
+		private String value;
+
+		public Name(String value) {
+			this.value = value;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public void setValue(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value == null ? 0 : value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Name)) {
+				return false;
+			}
+			String otherValue = ((Name) obj).value;
+			return value == null ? otherValue == null : value.equals(otherValue);
+		}
+
+	}
+
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import org.kie.api.io.ResourceType;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.DomainModelAssociation;
+import org.tohu.DomainObjectReference;
+import org.tohu.DummyData;
+import org.tohu.Group;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+import org.tohu.domain.InMemoryDomainObjectLoader;
+
+/**
+ * <p>
+ * Compares starting a questionnaire of a number of pages, each with questions associated with its own domain object, when all the
+ * domain objects are inserted up front and when they are referenced through <code>DomainObjectReference</code>s, with only the
+ * first page active. Reports the time of the initial fire-all-rules, the number of facts in working memory and the heap used
+ * by the session.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional page count (default 200) and question count per page
+ * (default 10).
+ * </p>
+ */
+public class LazyDomainModelBenchmark {
+
+	private static final String[] PROPERTIES = { "string", "primitiveInt", "primitiveBoolean", "bigDecimal", "date" };
+
+	public static void main(String[] args) {
+		int pages = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int questions = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/DomainModel.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		// warm up
+		run(knowledgeBase, pages, questions, false, false);
+		run(knowledgeBase, pages, questions, true, false);
+		run(knowledgeBase, pages, questions, false, true);
+		run(knowledgeBase, pages, questions, true, true);
+	}
+
+	private static void run(KnowledgeBase knowledgeBase, int pages, int questions, boolean lazy, boolean report) {
+		InMemoryDomainObjectLoader loader = new InMemoryDomainObjectLoader();
+		for (int i = 0; i < pages; i++) {
+			DummyData data = new DummyData();
+			data.setString("value" + i);
+			loader.put("data" + i, data);
+		}
+		long heap = usedHeap();
+		long start = System.nanoTime();
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			Questionnaire questionnaire = new Questionnaire("questionnaire");
+			String[] pageIds = new String[pages];
+			for (int i = 0; i < pages; i++) {
+				pageIds[i] = "page" + i;
+			}
+			questionnaire.setItems(pageIds);
+			questionnaire.setActiveItem(pageIds[0]);
+			knowledgeSession.insert(questionnaire);
+			for (int i = 0; i < pages; i++) {
+				Object object;
+				if (lazy) {
+					object = new DomainObjectReference("data" + i, loader);
+				} else {
+					object = loader.load("data" + i);
+				}
+				knowledgeSession.insert(object);
+				Group page = new Group(pageIds[i]);
+				String[] questionIds = new String[questions];
+				for (int j = 0; j < questions; j++) {
+					questionIds[j] = "question" + i + "_" + j;
+					knowledgeSession.insert(new Question(questionIds[j]));
+					String property = PROPERTIES[j % PROPERTIES.length];
+					knowledgeSession.insert(lazy ? new DomainModelAssociation(questionIds[j], (DomainObjectReference) object,
+							property) : new DomainModelAssociation(questionIds[j], object, property));
+				}
+				page.setItems(questionIds);
+				knowledgeSession.insert(page);
+			}
+			int fired = knowledgeSession.fireAllRules();
+			long initial = System.nanoTime() - start;
+			heap = usedHeap() - heap;
+			if (report) {
+				System.out.println((lazy ? "lazy" : "eager") + ": " + pages + " pages of " + questions + " questions: initial "
+						+ initial / 1000000 + "ms, " + knowledgeSession.getFactCount() + " facts, " + heap / 1024 + "KB heap, "
+						+ loader.getLoads() + " objects loaded (" + fired + " rules fired)");
+			}
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tohu.DomainModelAssociation;
+import org.tohu.DomainObjectReference;
+import org.tohu.DummyData;
+import org.tohu.Group;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+import org.tohu.domain.InMemoryDomainObjectLoader;
+
+public class LazyDomainModelRulesTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(LazyDomainModelRulesTest.class);
+
+	private KnowledgeBase knowledgeBase;
+
+	private InMemoryDomainObjectLoader loader;
+
+	private DummyData data1;
+
+	private DummyData data2;
+
+	private Questionnaire questionnaire;
+
+	private Question question1;
+
+	private Question question2;
+
+	private Question question3;
+
+	private DomainObjectReference reference1;
+
+	private DomainObjectReference reference2;
+
+	private DomainModelAssociation association1;
+
+	private DomainModelAssociation association2;
+
+	private DomainModelAssociation association3;
+
+	private FactHandle handleQuestionnaire;
+
+	private FactHandle handleQuestion1;
+
+	/**
+	 * @throws java.lang.Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/DomainModel.drl"), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			logger.debug(Arrays.toString(knowledgeBuilder.getErrors().toArray()));
+		}
+		assertFalse(knowledgeBuilder.hasErrors());
+		knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+
+		loader = new InMemoryDomainObjectLoader();
+		data1 = new DummyData();
+		data1.setString("abc");
+		data1.setPrimitiveInt(123);
+		loader.put("data1", data1);
+		data2 = new DummyData();
+		data2.setString("def");
+		loader.put("data2", data2);
+	}
+
+	/**
+	 * page1 has question1 and question2, which are associated with data1. page2 has question3, which is associated with data2.
+	 */
+	private void insertFacts(StatefulKnowledgeSession knowledgeSession) {
+		questionnaire = new Questionnaire("questionnaire");
+		questionnaire.setItems(new String[] { "page1", "page2" });
+		Group page1 = new Group("page1");
+		page1.setItems(new String[] { "question1", "question2" });
+		Group page2 = new Group("page2");
+		page2.setItems(new String[] { "question3" });
+		question1 = new Question("question1");
+		question2 = new Question("question2");
+		question3 = new Question("question3");
+		reference1 = new DomainObjectReference("data1", loader);
+		reference2 = new DomainObjectReference("data2", loader);
+		association1 = new DomainModelAssociation("question1", reference1, "string");
+		association2 = new DomainModelAssociation("question2", reference1, "primitiveInt");
+		association3 = new DomainModelAssociation("question3", reference2, "string");
+
+		handleQuestionnaire = knowledgeSession.insert(questionnaire);
+		knowledgeSession.insert(page1);
+		knowledgeSession.insert(page2);
+		handleQuestion1 = knowledgeSession.insert(question1);
+		knowledgeSession.insert(question2);
+		knowledgeSession.insert(question3);
+		knowledgeSession.insert(reference1);
+		knowledgeSession.insert(reference2);
+		knowledgeSession.insert(association1);
+		knowledgeSession.insert(association2);
+		knowledgeSession.insert(association3);
+	}
+
+	private void activate(StatefulKnowledgeSession knowledgeSession, String itemId) {
+		questionnaire.setActiveItem(itemId);
+		knowledgeSession.update(handleQuestionnaire, questionnaire);
+		knowledgeSession.fireAllRules();
+	}
+
+	@Test
+	public void testLoadWhenActive() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			insertFacts(knowledgeSession);
+			activate(knowledgeSession, "none");
+			assertEquals(0, loader.getLoads());
+			assertFalse(reference1.isLoaded());
+			assertNull(association1.getObject());
+			assertNull(question1.getAnswerType());
+			assertFalse(knowledgeSession.getObjects().contains(data1));
+
+			activate(knowledgeSession, "page1");
+			assertEquals(1, loader.getLoads());
+			assertSame(data1, reference1.getObject());
+			assertSame(data1, association1.getObject());
+			assertSame(data1, association2.getObject());
+			assertTrue(knowledgeSession.getObjects().contains(data1));
+			assertEquals("abc", question1.getTextAnswer());
+			assertEquals(123, question2.getNumberAnswer());
+			assertFalse(reference2.isLoaded());
+			assertNull(question3.getAnswerType());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	@Test
+	public void testEvictWhenInactive() {
+		StatefulKnowledgeSession knowledgeSession = knowledgeBase.newStatefulKnowledgeSession();
+		try {
+			insertFacts(knowledgeSession);
+			activate(knowledgeSession, "page1");
+			question1.setAnswer("xyz");
+			knowledgeSession.update(handleQuestion1, question1);
+			knowledgeSession.fireAllRules();
+			assertEquals("xyz", data1.getString());
+
+			activate(knowledgeSession, "page2");
+			assertEquals(1, loader.getEvictions());
+			assertFalse(reference1.isLoaded());
+			assertNull(association1.getObject());
+			assertNull(association2.getObject());
+			assertFalse(knowledgeSession.getObjects().contains(data1));
+			assertTrue(reference2.isLoaded());
+			assertEquals("def", question3.getTextAnswer());
+
+			DummyData reloaded = new DummyData();
+			reloaded.setString("xyz");
+			reloaded.setPrimitiveInt(456);
+			loader.put("data1", reloaded);
+			activate(knowledgeSession, "page1");
+			assertEquals(3, loader.getLoads());
+			assertEquals(2, loader.getEvictions());
+			assertSame(reloaded, association1.getObject());
+			assertEquals("xyz", question1.getTextAnswer());
+			assertEquals(456, question2.getNumberAnswer());
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+}
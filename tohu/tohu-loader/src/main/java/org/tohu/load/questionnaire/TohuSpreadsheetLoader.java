@@ -22,12 +22,14 @@ import org.slf4j.LoggerFactory;
 import org.tohu.domain.questionnaire.Application;
 import org.tohu.load.spreadsheet.sections.SpreadsheetSection;
 import org.tohu.load.spreadsheet.sections.SpreadsheetSectionSplitter;
-import org.tohu.load.spreadsheet.WorkbookData;
+import org.tohu.load.spreadsheet.StreamingWorkbookReader;
 import org.tohu.write.questionnaire.ApplicationTemplate;
 
 /**
  * The main entry point for processing a Questionnaire based spreadsheet. 
  * 
+ * The spreadsheet is read a row at a time (see {@link StreamingWorkbookReader}) and may be either a .xls or a .xlsx file.
+ * 
  * @author Derek Rendall
  */
 public class TohuSpreadsheetLoader implements SpreadsheetSectionConstants {
@@ -37,7 +39,7 @@ public class TohuSpreadsheetLoader implements SpreadsheetSectionConstants {
 	/** useful section heading to avoid processing rest of spreadsheet - can store temp working stuff after this line */
 	public static final String SHEET_END ="END";
 		
-	private WorkbookData wbData;
+	private String filename;
 	private Application application;
 	
 	private String outputDirectory;
@@ -66,7 +68,7 @@ public class TohuSpreadsheetLoader implements SpreadsheetSectionConstants {
 	 * Start the process of loading the Questionnaire data 
 	 * 
 	 * @param filename
-	 * 			The path and file name of the spreadsheet file 
+	 * 			The path and file name of the spreadsheet file (.xls or .xlsx)
 	 * @param outputDirectory
 	 * 			Where to place the resulting DRL files.
 	 * @param importDirectory
@@ -76,21 +78,17 @@ public class TohuSpreadsheetLoader implements SpreadsheetSectionConstants {
 	 * @return
 	 */
 	public boolean processFile(String filename, String outputDirectory, String importDirectory, boolean seperatePageDirectories) {
-		wbData = new WorkbookData();
+		this.filename = filename;
 		this.outputDirectory = outputDirectory;
 		this.importDirectory = importDirectory;
 		this.seperatePageDirectories = seperatePageDirectories;
 		
-		if (!wbData.loadWorkbook(filename)) {
-			logger.debug("Data not loaded from workbook");
-			return false;
-		}
-		
 		return processData(PAGE_SECTION_HEADINGS);
 	}
 	
 	/**
-	 * Load up the data from the spreadsheet and split into sections based on the section headings.
+	 * Load up the data from the spreadsheet and split into sections based on the section headings. The rows go straight
+	 * to the splitter as they are read.
 	 * 
 	 * Then extract the application and page information.
 	 * 
@@ -101,7 +99,12 @@ public class TohuSpreadsheetLoader implements SpreadsheetSectionConstants {
 	 * 			true if everything went OK
 	 */
 	protected boolean processData(String[] sectionHeadingNames) {
-		List<SpreadsheetSection> sections = new SpreadsheetSectionSplitter(sectionHeadingNames).splitIntoSections(wbData);
+		SpreadsheetSectionSplitter splitter = new SpreadsheetSectionSplitter(sectionHeadingNames);
+		if (!StreamingWorkbookReader.forFile(filename).read(filename, splitter)) {
+			logger.debug("Data not loaded from workbook");
+			return false;
+		}
+		List<SpreadsheetSection> sections = splitter.getSections();
 		
 		application = new ExtractApplication(sections).processApp();
 		if (application == null) {
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.formula.eval.ErrorEval;
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Reads a .xls workbook with the POI event API, so the records are processed as they are read and no
+ * <code>HSSFWorkbook</code> is built.
+ */
+public class HSSFStreamingWorkbookReader extends StreamingWorkbookReader implements HSSFListener {
+
+	private FormatTrackingHSSFListener formatListener;
+	private SheetRecordCollectingListener sheetRecordListener;
+
+	private List<BoundSheetRecord> boundSheetRecords = new ArrayList<BoundSheetRecord>();
+	private BoundSheetRecord[] orderedBoundSheetRecords;
+	private SSTRecord sstRecord;
+	private boolean date1904;
+
+	private int depth;
+	private int sheetIndex;
+	private boolean inWorksheet;
+
+	// a shared formula with a string result is followed by a StringRecord with the result
+	private FormulaRecord pendingFormulaRecord;
+
+	protected void readWorkbook(String filename) throws IOException {
+		boundSheetRecords.clear();
+		orderedBoundSheetRecords = null;
+		sstRecord = null;
+		date1904 = false;
+		depth = 0;
+		sheetIndex = -1;
+		inWorksheet = false;
+		pendingFormulaRecord = null;
+
+		sheetRecordListener = new SheetRecordCollectingListener(this);
+		formatListener = new FormatTrackingHSSFListener(sheetRecordListener);
+		HSSFRequest request = new HSSFRequest();
+		request.addListenerForAllRecords(formatListener);
+		InputStream inp = new FileInputStream(filename);
+		try {
+			new HSSFEventFactory().processWorkbookEvents(request, new POIFSFileSystem(inp));
+		} finally {
+			inp.close();
+		}
+	}
+
+	/**
+	 * @see org.apache.poi.hssf.eventusermodel.HSSFListener#processRecord(org.apache.poi.hssf.record.Record)
+	 */
+	public void processRecord(Record record) {
+		switch (record.getSid()) {
+		case BOFRecord.sid:
+			BOFRecord bofRecord = (BOFRecord) record;
+			if ((depth == 0) && (bofRecord.getType() != BOFRecord.TYPE_WORKBOOK)) {
+				// a top level sheet (charts within a sheet are nested)
+				if (orderedBoundSheetRecords == null) {
+					orderedBoundSheetRecords = BoundSheetRecord.orderByBofPosition(boundSheetRecords);
+				}
+				sheetIndex++;
+				inWorksheet = bofRecord.getType() == BOFRecord.TYPE_WORKSHEET;
+				if (inWorksheet) {
+					startSheet(orderedBoundSheetRecords[sheetIndex].getSheetname());
+				}
+			}
+			depth++;
+			break;
+		case EOFRecord.sid:
+			depth--;
+			if ((depth == 0) && inWorksheet) {
+				endSheet();
+				inWorksheet = false;
+			}
+			break;
+		case BoundSheetRecord.sid:
+			boundSheetRecords.add((BoundSheetRecord) record);
+			break;
+		case SSTRecord.sid:
+			sstRecord = (SSTRecord) record;
+			break;
+		case DateWindow1904Record.sid:
+			date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+			break;
+		default:
+			if (inWorksheet && (depth == 1)) {
+				processCellRecord(record);
+			}
+		}
+	}
+
+	private void processCellRecord(Record record) {
+		switch (record.getSid()) {
+		case LabelSSTRecord.sid:
+			LabelSSTRecord labelSSTRecord = (LabelSSTRecord) record;
+			cell(labelSSTRecord, sstRecord.getString(labelSSTRecord.getSSTIndex()).getString());
+			break;
+		case LabelRecord.sid:
+			LabelRecord labelRecord = (LabelRecord) record;
+			cell(labelRecord, labelRecord.getValue());
+			break;
+		case NumberRecord.sid:
+			NumberRecord numberRecord = (NumberRecord) record;
+			cell(numberRecord, formatNumber(numberRecord, numberRecord.getValue()));
+			break;
+		case BoolErrRecord.sid:
+			BoolErrRecord boolErrRecord = (BoolErrRecord) record;
+			if (boolErrRecord.isBoolean()) {
+				cell(boolErrRecord, boolErrRecord.getBooleanValue() ? "TRUE" : "FALSE");
+			} else {
+				cell(boolErrRecord, ErrorEval.getText(boolErrRecord.getErrorValue()));
+			}
+			break;
+		case FormulaRecord.sid:
+			processFormulaRecord((FormulaRecord) record);
+			break;
+		case StringRecord.sid:
+			if (pendingFormulaRecord != null) {
+				cell(pendingFormulaRecord, ((StringRecord) record).getString());
+				pendingFormulaRecord = null;
+			}
+			break;
+		}
+	}
+
+	/**
+	 * The formula itself, as <code>HSSFCell</code> would give, except for shared formulas, which only refer to the first cell of
+	 * the range sharing the formula, so the cached result is used.
+	 */
+	private void processFormulaRecord(FormulaRecord formulaRecord) {
+		if (!formulaRecord.isSharedFormula()) {
+			cell(formulaRecord, HSSFFormulaParser.toFormulaString(sheetRecordListener.getStubHSSFWorkbook(), formulaRecord
+					.getParsedExpression()));
+			return;
+		}
+		if (formulaRecord.hasCachedResultString()) {
+			pendingFormulaRecord = formulaRecord;
+			return;
+		}
+		switch (formulaRecord.getCachedResultType()) {
+		case Cell.CELL_TYPE_BOOLEAN:
+			cell(formulaRecord, formulaRecord.getCachedBooleanValue() ? "TRUE" : "FALSE");
+			break;
+		case Cell.CELL_TYPE_ERROR:
+			cell(formulaRecord, ErrorEval.getText(formulaRecord.getCachedErrorValue()));
+			break;
+		default:
+			cell(formulaRecord, formatNumber(formulaRecord, formulaRecord.getValue()));
+		}
+	}
+
+	/**
+	 * Dates as <code>HSSFCell</code> formats them, otherwise the plain number.
+	 */
+	private String formatNumber(CellValueRecordInterface record, double value) {
+		if (HSSFDateUtil.isValidExcelDate(value)
+				&& HSSFDateUtil.isADateFormat(formatListener.getFormatIndex(record), formatListener.getFormatString(record))) {
+			return new SimpleDateFormat("dd-MMM-yyyy").format(HSSFDateUtil.getJavaDate(value, date1904));
+		}
+		return String.valueOf(value);
+	}
+
+	private void cell(CellValueRecordInterface record, String value) {
+		cell(record.getRow(), record.getColumn(), value);
+	}
+}
@@ -20,6 +20,8 @@ import org.apache.poi.ss.usermodel.Cell;
 /**
  * Contains the data for a spreadsheet cell. 
  * 
+ * Items read by a {@link StreamingWorkbookReader} only have the cell's value, not the cell itself.
+ * 
  * @author Derek Rendall
  */
 public class SpreadsheetItem {
@@ -29,6 +31,7 @@ public class SpreadsheetItem {
 	private String sheetName;
 	private int column;
 	private int row;	// often used for id purposes
+	private String value;
 	
 	/**
 	 * Extract a couple of data elements for easy reference, such as row and column
@@ -42,21 +45,62 @@ public class SpreadsheetItem {
 		this.spreadsheetCell = cell;
 		column = spreadsheetCell.getColumnIndex();
 		row = spreadsheetCell.getRowIndex();
-		this.cellIdentifier = new CellIdentifier(this.sheetName, spreadsheetCell.getRowIndex(), column);
+		value = spreadsheetCell.toString();
+	}
+
+	/**
+	 * An item without a cell, e.g. from a {@link StreamingWorkbookReader}.
+	 * 
+	 * @param sheetName
+	 * @param row
+	 * @param column
+	 * @param value
+	 * 			As the cell's <code>toString</code> would return it
+	 */
+	public SpreadsheetItem(String sheetName, int row, int column, String value) {
+		super();
+		this.sheetName = sheetName;
+		this.row = row;
+		this.column = column;
+		this.value = value;
 	}
 
+	/**
+	 * The identifier is only created when first asked for, as most items never need it.
+	 * 
+	 * @return
+	 */
 	public String getCellIdentifier() {
+		if (cellIdentifier == null) {
+			cellIdentifier = new CellIdentifier(sheetName, row, column);
+		}
 		return cellIdentifier.getCellIdentifier();
 	}
 	
 	public String toString() {
-		return spreadsheetCell.toString();
+		return value;
+	}
+
+	/**
+	 * Change the value, and the cell's value if there is a cell.
+	 * 
+	 * @param value
+	 */
+	public void setValue(String value) {
+		this.value = value;
+		if (spreadsheetCell != null) {
+			spreadsheetCell.setCellValue(value);
+		}
 	}
 
 	public String getSheetName() {
 		return sheetName;
 	}
 
+	/**
+	 * @return
+	 * 			null if the item was not loaded from a workbook object model
+	 */
 	public Cell getSpreadsheetCell() {
 		return spreadsheetCell;
 	}
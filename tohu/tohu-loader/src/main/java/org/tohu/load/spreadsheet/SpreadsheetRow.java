@@ -121,7 +121,7 @@ public class SpreadsheetRow implements Serializable {
 	 */
 	public String getHeaderTextForColumnInUpperCase(int column) {
 		SpreadsheetItem item = getHeaderEntryForColumn(column);
-		return item.getSpreadsheetCell().toString().toUpperCase();
+		return item.toString().toUpperCase();
 	}
 	
 	/**
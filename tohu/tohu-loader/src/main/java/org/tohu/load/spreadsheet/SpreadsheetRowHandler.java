@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+/**
+ * Receives the rows of a workbook one at a time, sheet by sheet, from a {@link StreamingWorkbookReader}.
+ * 
+ * Rows without any items are not passed on.
+ */
+public interface SpreadsheetRowHandler {
+
+	/**
+	 * Called before the rows of each sheet.
+	 * 
+	 * @param sheetName
+	 */
+	public void startSheet(String sheetName);
+
+	/**
+	 * @param row
+	 */
+	public void processRow(SpreadsheetRow row);
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a workbook a cell at a time, passing each row to a {@link SpreadsheetRowHandler} as soon as it is complete, rather than
+ * loading the whole workbook first as {@link WorkbookData} does. Only the items themselves are created, so the memory used is
+ * whatever the handler keeps.
+ * 
+ * The rows are the same as {@link WorkbookData} would have: sheets with an "!" in the name are ignored, as are blank cells and
+ * any cells to the left of the first item on a sheet (comments). Values are as the cell's <code>toString</code> would return
+ * them, apart from shared formulas, for which the cached result is used.
+ * 
+ * Subclasses parse a particular file format and call {@link #startSheet(String)}, {@link #cell(int, int, String)} and
+ * {@link #endSheet()}, with the cells of a sheet in order.
+ */
+public abstract class StreamingWorkbookReader {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingWorkbookReader.class);
+
+	private SpreadsheetRowHandler handler;
+	private String sheetName;
+	private boolean ignoringSheet;
+	private SpreadsheetRow currentRow;
+	private boolean firstItemFound;
+	private int keyColumn;
+
+	/**
+	 * A reader for .xlsx (and .xlsm) files, or .xls files for any other name.
+	 * 
+	 * @param filename
+	 * @return
+	 */
+	public static StreamingWorkbookReader forFile(String filename) {
+		String lowerCaseName = filename.toLowerCase();
+		if (lowerCaseName.endsWith(".xlsx") || lowerCaseName.endsWith(".xlsm")) {
+			return new XLSXStreamingWorkbookReader();
+		}
+		return new HSSFStreamingWorkbookReader();
+	}
+
+	/**
+	 * Read the workbook, passing the rows to the handler.
+	 * 
+	 * @param filename
+	 * @param handler
+	 * @return
+	 * 			false if the file could not be read
+	 */
+	public boolean read(String filename, SpreadsheetRowHandler handler) {
+		logger.debug("\n\n\nPROCESSING FILE: " + filename);
+		this.handler = handler;
+		try {
+			readWorkbook(filename);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			this.handler = null;
+			currentRow = null;
+		}
+		return true;
+	}
+
+	/**
+	 * @param filename
+	 * @throws IOException
+	 */
+	protected abstract void readWorkbook(String filename) throws IOException;
+
+	/**
+	 * @param sheetName
+	 */
+	protected void startSheet(String sheetName) {
+		this.sheetName = sheetName;
+		ignoringSheet = sheetName.indexOf("!") >= 0;
+		if (ignoringSheet) {
+			logger.debug("Ignoring sheet named: " + sheetName);
+			return;
+		}
+		firstItemFound = false;
+		keyColumn = 0;
+		handler.startSheet(sheetName);
+	}
+
+	/**
+	 * A non-blank cell of the current sheet.
+	 * 
+	 * @param row
+	 * @param column
+	 * @param value
+	 */
+	protected void cell(int row, int column, String value) {
+		if (ignoringSheet) {
+			return;
+		}
+		if ((keyColumn > 0) && (column < keyColumn)) {
+			// comments column
+			return;
+		}
+		if (!firstItemFound) {
+			// The first cell item must be sheet identifier/heading - previous columns will be treated as comments
+			firstItemFound = true;
+			keyColumn = column;
+		}
+		if ((currentRow != null) && (currentRow.getRowNumber() != row)) {
+			handler.processRow(currentRow);
+			currentRow = null;
+		}
+		if (currentRow == null) {
+			currentRow = new SpreadsheetRow(row);
+		}
+		currentRow.addRowItem(new SpreadsheetItem(sheetName, row, column, value));
+	}
+
+	protected void endSheet() {
+		if (currentRow != null) {
+			handler.processRow(currentRow);
+			currentRow = null;
+		}
+	}
+}
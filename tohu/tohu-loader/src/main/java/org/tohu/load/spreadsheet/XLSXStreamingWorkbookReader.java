@@ -0,0 +1,348 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.poi.hssf.usermodel.HSSFDataFormat;
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads a .xlsx workbook by parsing the sheets' XML with SAX, straight from the zip file, so no object model of the workbook or
+ * the sheets is built. Only the shared strings and the number formats of the cell styles are held in memory.
+ * 
+ * Values are as <code>HSSFCell</code> would give them for the same cells in a .xls workbook.
+ */
+public class XLSXStreamingWorkbookReader extends StreamingWorkbookReader {
+
+	private static final String RELATIONSHIP_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+	private static final String WORKSHEET_TYPE = RELATIONSHIP_NAMESPACE + "/worksheet";
+
+	private ZipFile zipFile;
+	private SAXParser parser;
+
+	private List<String> sharedStrings = new ArrayList<String>();
+	// the number format string of each cell style, or null if it is not a date format
+	private List<String> dateFormats = new ArrayList<String>();
+	private boolean date1904;
+
+	protected void readWorkbook(String filename) throws IOException {
+		sharedStrings.clear();
+		dateFormats.clear();
+		date1904 = false;
+		zipFile = new ZipFile(filename);
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			// workbook parts never have a DTD, so refuse one rather than resolve any entities it declares
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			parser = factory.newSAXParser();
+
+			final Map<String, String> relationships = new HashMap<String, String>();
+			final Map<String, String> relationshipIdTypes = new HashMap<String, String>();
+			final Map<String, String> relationshipTypes = new HashMap<String, String>();
+			parse("xl/_rels/workbook.xml.rels", new DefaultHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) {
+					if ("Relationship".equals(localName)) {
+						String target = resolve(attributes.getValue("Target"));
+						relationships.put(attributes.getValue("Id"), target);
+						relationshipIdTypes.put(attributes.getValue("Id"), attributes.getValue("Type"));
+						relationshipTypes.put(attributes.getValue("Type"), target);
+					}
+				}
+			});
+
+			final List<String> sheetNames = new ArrayList<String>();
+			final List<String> sheetParts = new ArrayList<String>();
+			parse("xl/workbook.xml", new DefaultHandler() {
+				@Override
+				public void startElement(String uri, String localName, String qName, Attributes attributes) {
+					if ("sheet".equals(localName)) {
+						// chart sheets and dialog sheets have no cells, and the .xls reader skips them too
+						String id = attributes.getValue(RELATIONSHIP_NAMESPACE, "id");
+						if (WORKSHEET_TYPE.equals(relationshipIdTypes.get(id))) {
+							sheetNames.add(attributes.getValue("name"));
+							sheetParts.add(relationships.get(id));
+						}
+					} else if ("workbookPr".equals(localName)) {
+						String value = attributes.getValue("date1904");
+						date1904 = "1".equals(value) || "true".equals(value);
+					}
+				}
+			});
+
+			for (Map.Entry<String, String> entry : relationshipTypes.entrySet()) {
+				if (entry.getKey().endsWith("/sharedStrings")) {
+					parse(entry.getValue(), new SharedStringsHandler());
+				} else if (entry.getKey().endsWith("/styles")) {
+					parse(entry.getValue(), new StylesHandler());
+				}
+			}
+
+			for (int i = 0; i < sheetNames.size(); i++) {
+				startSheet(sheetNames.get(i));
+				parse(sheetParts.get(i), new SheetHandler());
+				endSheet();
+			}
+		} catch (ParserConfigurationException e) {
+			throw newIOException(e);
+		} catch (SAXException e) {
+			throw newIOException(e);
+		} finally {
+			zipFile.close();
+			zipFile = null;
+			parser = null;
+		}
+	}
+
+	private static IOException newIOException(Exception e) {
+		IOException ioException = new IOException(e.getMessage());
+		ioException.initCause(e);
+		return ioException;
+	}
+
+	/**
+	 * Relationship targets are relative to the xl directory, unless they start with a "/".
+	 */
+	private static String resolve(String target) {
+		if (target.startsWith("/")) {
+			return target.substring(1);
+		}
+		return "xl/" + target;
+	}
+
+	private void parse(String name, DefaultHandler handler) throws IOException, SAXException {
+		ZipEntry entry = (name == null) ? null : zipFile.getEntry(name);
+		if (entry == null) {
+			throw new IOException("Missing workbook part: " + name);
+		}
+		InputStream inp = zipFile.getInputStream(entry);
+		try {
+			parser.parse(inp, handler);
+		} finally {
+			inp.close();
+		}
+	}
+
+	/**
+	 * Dates as <code>HSSFCell</code> formats them, otherwise the plain number.
+	 */
+	private String formatNumber(String style, double value) {
+		int styleIndex = (style == null) ? 0 : Integer.parseInt(style);
+		String formatString = (styleIndex < dateFormats.size()) ? dateFormats.get(styleIndex) : null;
+		if ((formatString != null) && HSSFDateUtil.isValidExcelDate(value)) {
+			return new SimpleDateFormat("dd-MMM-yyyy").format(HSSFDateUtil.getJavaDate(value, date1904));
+		}
+		return String.valueOf(value);
+	}
+
+	/**
+	 * The text of each string item, ignoring any phonetic runs.
+	 */
+	private class SharedStringsHandler extends DefaultHandler {
+
+		private StringBuilder text = new StringBuilder();
+		private boolean inText;
+		private boolean inPhonetic;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("si".equals(localName)) {
+				text.setLength(0);
+			} else if ("rPh".equals(localName)) {
+				inPhonetic = true;
+			} else if ("t".equals(localName)) {
+				inText = !inPhonetic;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if ("si".equals(localName)) {
+				sharedStrings.add(text.toString());
+			} else if ("rPh".equals(localName)) {
+				inPhonetic = false;
+			} else if ("t".equals(localName)) {
+				inText = false;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (inText) {
+				text.append(ch, start, length);
+			}
+		}
+	}
+
+	/**
+	 * The date formats of the cell styles.
+	 */
+	private class StylesHandler extends DefaultHandler {
+
+		private Map<Integer, String> numberFormats = new HashMap<Integer, String>();
+		private boolean inCellStyles;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("numFmt".equals(localName)) {
+				numberFormats.put(Integer.valueOf(attributes.getValue("numFmtId")), attributes.getValue("formatCode"));
+			} else if ("cellXfs".equals(localName)) {
+				inCellStyles = true;
+			} else if (inCellStyles && "xf".equals(localName)) {
+				String id = attributes.getValue("numFmtId");
+				int formatIndex = (id == null) ? 0 : Integer.parseInt(id);
+				String formatString = numberFormats.get(Integer.valueOf(formatIndex));
+				if ((formatString == null) && (formatIndex <= Short.MAX_VALUE)) {
+					formatString = HSSFDataFormat.getBuiltinFormat((short) formatIndex);
+				}
+				dateFormats.add(HSSFDateUtil.isADateFormat(formatIndex, formatString) ? formatString : null);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if ("cellXfs".equals(localName)) {
+				inCellStyles = false;
+			}
+		}
+	}
+
+	/**
+	 * Passes each cell on as it ends.
+	 */
+	private class SheetHandler extends DefaultHandler {
+
+		private int row = -1;
+		private int column;
+		private String type;
+		private String style;
+		private StringBuilder value = new StringBuilder();
+		private StringBuilder formula = new StringBuilder();
+		private StringBuilder inlineString = new StringBuilder();
+		private boolean hasValue;
+		private StringBuilder text;
+		private boolean inInlineString;
+		private boolean inPhonetic;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if ("row".equals(localName)) {
+				String reference = attributes.getValue("r");
+				row = (reference == null) ? row + 1 : Integer.parseInt(reference) - 1;
+				column = -1;
+			} else if ("c".equals(localName)) {
+				String reference = attributes.getValue("r");
+				column = (reference == null) ? column + 1 : columnIndex(reference);
+				type = attributes.getValue("t");
+				style = attributes.getValue("s");
+				value.setLength(0);
+				formula.setLength(0);
+				inlineString.setLength(0);
+				hasValue = false;
+			} else if ("v".equals(localName)) {
+				hasValue = true;
+				text = value;
+			} else if ("f".equals(localName)) {
+				text = formula;
+			} else if ("is".equals(localName)) {
+				hasValue = true;
+				inInlineString = true;
+			} else if ("rPh".equals(localName)) {
+				inPhonetic = true;
+			} else if (inInlineString && !inPhonetic && "t".equals(localName)) {
+				text = inlineString;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			if ("c".equals(localName)) {
+				String cellValue = cellValue();
+				if (cellValue != null) {
+					cell(row, column, cellValue);
+				}
+			} else if ("v".equals(localName) || "f".equals(localName) || "t".equals(localName)) {
+				text = null;
+			} else if ("is".equals(localName)) {
+				inInlineString = false;
+			} else if ("rPh".equals(localName)) {
+				inPhonetic = false;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (text != null) {
+				text.append(ch, start, length);
+			}
+		}
+
+		/**
+		 * @return null for a blank cell
+		 */
+		private String cellValue() {
+			if (formula.length() > 0) {
+				return formula.toString();
+			}
+			if (!hasValue) {
+				return null;
+			}
+			if ("s".equals(type)) {
+				return sharedStrings.get(Integer.parseInt(value.toString().trim()));
+			}
+			if ("inlineStr".equals(type)) {
+				return inlineString.toString();
+			}
+			if ("b".equals(type)) {
+				return "1".equals(value.toString().trim()) ? "TRUE" : "FALSE";
+			}
+			if ((type == null) || "n".equals(type)) {
+				return formatNumber(style, Double.parseDouble(value.toString()));
+			}
+			// str (formula string results), e (errors) and d (ISO dates) are as they are
+			return value.toString();
+		}
+
+		private int columnIndex(String reference) {
+			int index = 0;
+			for (int i = 0; i < reference.length(); i++) {
+				char c = reference.charAt(i);
+				if ((c < 'A') || (c > 'Z')) {
+					break;
+				}
+				index = index * 26 + (c - 'A' + 1);
+			}
+			return index - 1;
+		}
+	}
+}
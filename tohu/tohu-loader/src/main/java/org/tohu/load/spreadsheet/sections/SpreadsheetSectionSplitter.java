@@ -24,14 +24,18 @@ import org.tohu.load.questionnaire.TohuSpreadsheetLoader;
 import org.tohu.load.spreadsheet.SpreadsheetData;
 import org.tohu.load.spreadsheet.SpreadsheetItem;
 import org.tohu.load.spreadsheet.SpreadsheetRow;
+import org.tohu.load.spreadsheet.SpreadsheetRowHandler;
 import org.tohu.load.spreadsheet.WorkbookData;
 
 /**
  * Contains the sections of data within the spreadsheet (see {@link SpreadsheetSection}.  
  * 
+ * The rows can either come from a loaded {@link WorkbookData}, or be passed in one at a time as they are read, e.g. by a
+ * {@link org.tohu.load.spreadsheet.StreamingWorkbookReader}.
+ * 
  * @author Derek Rendall
  */
-public class SpreadsheetSectionSplitter implements Serializable {
+public class SpreadsheetSectionSplitter implements SpreadsheetRowHandler, Serializable {
 
 	private static final long serialVersionUID = 1L;
 	
@@ -44,6 +48,10 @@ public class SpreadsheetSectionSplitter implements Serializable {
 	// to access instance methods to do processing
 	private SpreadsheetSection currentSection = new SpreadsheetSection("Initialize", TohuSpreadsheetLoader.SHEET_END, new SpreadsheetRow(0));
 	
+	private String sheetName;
+	private boolean firstRowOnSheet;
+	private boolean sheetEnded;
+	
 	
 	/**
 	 * Expect to be passed a list of the section headings, which are the items expected to be the first 
@@ -77,12 +85,12 @@ public class SpreadsheetSectionSplitter implements Serializable {
 		
 		for (Iterator<SpreadsheetItem> iterator = row.getRowItems().iterator(); iterator.hasNext();) {
 			SpreadsheetItem item = (SpreadsheetItem) iterator.next();
-			String tempStr = item.getSpreadsheetCell().toString();
+			String tempStr = item.toString();
 			int pos = tempStr.indexOf(c2);
 
 			if (pos >= 0) {
 				tempStr = tempStr.replaceAll(tempCharStr, "&#8230;");
-				item.getSpreadsheetCell().setCellValue(tempStr);
+				item.setValue(tempStr);
 			}
 		}
 
@@ -99,36 +107,12 @@ public class SpreadsheetSectionSplitter implements Serializable {
 		for (Iterator<String> iterator = wbData.getSheetList().iterator(); iterator.hasNext();) {
 			String sheetName = (String) iterator.next();
 			SpreadsheetData sheetData = wbData.getSheet(sheetName);
-			if (sheetData.isProcessed() || (sheetData.getFirstItemOnSheet() == null) || 
-					(sheetData.getFirstItemOnSheet().toString().toUpperCase().startsWith(TohuSpreadsheetLoader.SHEET_END)) ) {
-				//System.out.println("Invalid sheet for: " + sheetName + ", processed: " + String.valueOf(sheetData.isProcessed()) + ", item: [" + String.valueOf(sheetData.getFirstItemOnSheet() + "]"));
-				continue;
-			}
-			
-			List<SpreadsheetRow> rows = sheetData.getRows();
-			if (rows.isEmpty()) {
-				sheetData.setProcessed(true);
+			if (sheetData.isProcessed()) {
 				continue;
 			}
-			for (Iterator<SpreadsheetRow> rowIter = rows.iterator(); rowIter.hasNext();) {
-				SpreadsheetRow spreadsheetRow = (SpreadsheetRow) rowIter.next();
-				if (spreadsheetRow.getRowItems().size() == 0) {
-					continue;
-				}
-				
-				cleanUpRowItemStrings(spreadsheetRow);				
-				
-				SpreadsheetSection newSection = currentSection.processSectionRow(sheetName, spreadsheetRow, sectionHeadings);
-				if (newSection != null) {
-					//System.out.println("Found new section: " + newSection.getSectionHeadingString());
-					if (newSection.getSectionHeadingString().toUpperCase().startsWith(TohuSpreadsheetLoader.SHEET_END)) {
-						//System.out.println("Ignoring end section");
-						break;
-					}
-					//System.out.println("Adding new section");
-					sections.add(newSection);
-					currentSection = newSection;
-				}
+			startSheet(sheetName);
+			for (Iterator<SpreadsheetRow> rowIter = sheetData.getRows().iterator(); rowIter.hasNext();) {
+				processRow((SpreadsheetRow) rowIter.next());
 			}
 			sheetData.setProcessed(true);
 		}
@@ -136,4 +120,52 @@ public class SpreadsheetSectionSplitter implements Serializable {
 		return sections;
 	}
 
+	/**
+	 * @see org.tohu.load.spreadsheet.SpreadsheetRowHandler#startSheet(java.lang.String)
+	 */
+	public void startSheet(String sheetName) {
+		this.sheetName = sheetName;
+		firstRowOnSheet = true;
+		sheetEnded = false;
+	}
+
+	/**
+	 * A sheet whose first item is the end heading is ignored, as is the rest of a sheet after an end section.
+	 * 
+	 * @see org.tohu.load.spreadsheet.SpreadsheetRowHandler#processRow(org.tohu.load.spreadsheet.SpreadsheetRow)
+	 */
+	public void processRow(SpreadsheetRow spreadsheetRow) {
+		if (sheetEnded || (spreadsheetRow.getRowItems().size() == 0)) {
+			return;
+		}
+		if (firstRowOnSheet) {
+			firstRowOnSheet = false;
+			if (spreadsheetRow.getRowItems().get(0).toString().toUpperCase().startsWith(TohuSpreadsheetLoader.SHEET_END)) {
+				sheetEnded = true;
+				return;
+			}
+		}
+		
+		cleanUpRowItemStrings(spreadsheetRow);				
+		
+		SpreadsheetSection newSection = currentSection.processSectionRow(sheetName, spreadsheetRow, sectionHeadings);
+		if (newSection != null) {
+			if (newSection.getSectionHeadingString().toUpperCase().startsWith(TohuSpreadsheetLoader.SHEET_END)) {
+				sheetEnded = true;
+				return;
+			}
+			sections.add(newSection);
+			currentSection = newSection;
+		}
+	}
+
+	/**
+	 * The sections found so far.
+	 * 
+	 * @return
+	 */
+	public List<SpreadsheetSection> getSections() {
+		return sections;
+	}
+
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tohu.load.questionnaire.SpreadsheetSectionConstants;
+import org.tohu.load.spreadsheet.sections.SpreadsheetSection;
+import org.tohu.load.spreadsheet.sections.SpreadsheetSectionSplitter;
+
+/**
+ * <p>
+ * Compares splitting a large generated workbook into sections after loading it into a {@link WorkbookData}, and streaming it
+ * into the splitter from the .xls and from the equivalent .xlsx file. Reports the wall time and the peak heap used.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional mode (dom, xls or xlsx; default all three) and row
+ * count per sheet (default 50000, in 4 sheets). The peak heap includes garbage which has not been collected yet, so for
+ * comparable figures run each mode in its own JVM with the same -Xmx.
+ * </p>
+ */
+public class StreamingWorkbookBenchmark {
+
+	private static final int SHEETS = 4;
+
+	private static final int ROWS_PER_SECTION = 1000;
+
+	public static void main(String[] args) throws IOException {
+		String mode = args.length > 0 ? args[0] : "all";
+		int rows = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		File xlsFile = File.createTempFile("benchmark", ".xls");
+		File xlsxFile = File.createTempFile("benchmark", ".xlsx");
+		try {
+			Map<String, Object[][]> sheets = createSheets(rows);
+			TestWorkbooks.writeXLS(xlsFile, sheets);
+			TestWorkbooks.writeXLSX(xlsxFile, sheets);
+			sheets = null;
+			System.out.println(SHEETS + " sheets of " + rows + " rows: " + xlsFile.length() / 1024 + "KB .xls, "
+					+ xlsxFile.length() / 1024 + "KB .xlsx");
+			if (mode.equals("all") || mode.equals("dom")) {
+				run("dom", xlsFile);
+			}
+			if (mode.equals("all") || mode.equals("xls")) {
+				run("xls", xlsFile);
+			}
+			if (mode.equals("all") || mode.equals("xlsx")) {
+				run("xlsx", xlsxFile);
+			}
+		} finally {
+			xlsFile.delete();
+			xlsxFile.delete();
+		}
+	}
+
+	private static Map<String, Object[][]> createSheets(int rows) {
+		Map<String, Object[][]> sheets = new LinkedHashMap<String, Object[][]>();
+		for (int i = 0; i < SHEETS; i++) {
+			Object[][] sheet = new Object[rows][];
+			for (int j = 0; j < rows; j++) {
+				if (j % ROWS_PER_SECTION == 0) {
+					sheet[j] = new Object[] { "Item ID", "Type", "Label", "Required", "Min", "Max", "Presentation Styles",
+							"Default" };
+				} else {
+					sheet[j] = new Object[] { "item" + i + "_" + j, "text", "What is the answer to question " + j + "?",
+							Boolean.valueOf(j % 2 == 0), Integer.valueOf(0), Integer.valueOf(j), j % 3 == 0 ? "wide" : null,
+							"default" + (j % 10) };
+				}
+			}
+			sheets.put("Page" + i, sheet);
+		}
+		return sheets;
+	}
+
+	private static void run(String mode, File file) {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		long before = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				before += pool.getUsage().getUsed();
+				pool.resetPeakUsage();
+			}
+		}
+		long start = System.nanoTime();
+		SpreadsheetSectionSplitter splitter = new SpreadsheetSectionSplitter(SpreadsheetSectionConstants.PAGE_SECTION_HEADINGS);
+		List<SpreadsheetSection> sections;
+		if (mode.equals("dom")) {
+			WorkbookData workbookData = new WorkbookData();
+			workbookData.loadWorkbook(file.getPath());
+			sections = splitter.splitIntoSections(workbookData);
+		} else {
+			StreamingWorkbookReader.forFile(file.getPath()).read(file.getPath(), splitter);
+			sections = splitter.getSections();
+		}
+		long time = System.nanoTime() - start;
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println(mode + ": " + time / 1000000 + "ms, peak heap " + (peak - before) / (1024 * 1024) + "MB ("
+				+ sections.size() + " sections)");
+	}
+}
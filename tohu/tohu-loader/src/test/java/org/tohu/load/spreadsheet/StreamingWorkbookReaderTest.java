@@ -0,0 +1,199 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tohu.load.questionnaire.SpreadsheetSectionConstants;
+import org.tohu.load.spreadsheet.TestWorkbooks.Formula;
+import org.tohu.load.spreadsheet.sections.SpreadsheetSection;
+import org.tohu.load.spreadsheet.sections.SpreadsheetSectionSplitter;
+
+public class StreamingWorkbookReaderTest {
+
+	/**
+	 * Records each sheet name and row as a string of the row number and each item's column and value.
+	 */
+	private static class RecordingHandler implements SpreadsheetRowHandler {
+
+		private List<String> lines = new ArrayList<String>();
+
+		public void startSheet(String sheetName) {
+			lines.add(sheetName);
+		}
+
+		public void processRow(SpreadsheetRow row) {
+			lines.add(toString(row));
+		}
+
+		private static String toString(SpreadsheetRow row) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(row.getRowNumber());
+			for (SpreadsheetItem item : row.getRowItems()) {
+				sb.append(' ').append(item.getColumn()).append('=').append(item.toString());
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * The rows as {@link WorkbookData} has them.
+	 */
+	private List<String> loadRows(String filename) {
+		WorkbookData workbookData = new WorkbookData();
+		assertTrue(workbookData.loadWorkbook(filename));
+		RecordingHandler handler = new RecordingHandler();
+		for (String sheetName : workbookData.getSheetList()) {
+			handler.startSheet(sheetName);
+			for (SpreadsheetRow row : workbookData.getSheet(sheetName).getRows()) {
+				if (row.getRowItems().size() > 0) {
+					handler.processRow(row);
+				}
+			}
+		}
+		return handler.lines;
+	}
+
+	private List<String> streamRows(String filename) {
+		RecordingHandler handler = new RecordingHandler();
+		assertTrue(StreamingWorkbookReader.forFile(filename).read(filename, handler));
+		return handler.lines;
+	}
+
+	private Map<String, Object[][]> createSheets() {
+		Map<String, Object[][]> sheets = new LinkedHashMap<String, Object[][]>();
+		sheets.put("Page", new Object[][] {
+				{ null, null },
+				{ null, null, "ITEM ID", "Type", "Label" },
+				{ "comment", null, "name", "text", "What is your name…" },
+				{},
+				{ null, null, "age", 42, Boolean.TRUE, 1.5 },
+				{ null, null, "born", new GregorianCalendar(1967, Calendar.MARCH, 4).getTime(), new Formula("D5*2"),
+						"a & b < c" }, });
+		sheets.put("Ignored!", new Object[][] { { "ITEM ID" } });
+		sheets.put("End", new Object[][] { { "END" }, { "ITEM ID" } });
+		return sheets;
+	}
+
+	@Test
+	public void testXLSSameAsWorkbookData() throws IOException {
+		File file = File.createTempFile("test", ".xls");
+		try {
+			TestWorkbooks.writeXLS(file, createSheets());
+			List<String> rows = loadRows(file.getPath());
+			assertEquals("[Page, 1 2=ITEM ID 3=Type 4=Label, 2 2=name 3=text 4=What is your name…, "
+					+ "4 2=age 3=42.0 4=TRUE 5=1.5, 5 2=born 3=04-Mar-1967 4=D5*2 5=a & b < c, End, 0 0=END, 1 0=ITEM ID]",
+					rows.toString());
+			assertEquals(rows, streamRows(file.getPath()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testXLSXSameAsXLS() throws IOException {
+		File xlsFile = File.createTempFile("test", ".xls");
+		File xlsxFile = File.createTempFile("test", ".xlsx");
+		try {
+			TestWorkbooks.writeXLS(xlsFile, createSheets());
+			TestWorkbooks.writeXLSX(xlsxFile, createSheets());
+			assertEquals(loadRows(xlsFile.getPath()), streamRows(xlsxFile.getPath()));
+		} finally {
+			xlsFile.delete();
+			xlsxFile.delete();
+		}
+	}
+
+	@Test
+	public void testSampleWorkbooks() {
+		String[] filenames = { "./src/test/resources/SampleDecisionTreeSimple.xls",
+				"./src/test/resources/SampleDecisionTreeComplex.xls" };
+		for (String filename : filenames) {
+			List<String> rows = loadRows(filename);
+			assertFalse(rows.isEmpty());
+			assertEquals(rows, streamRows(filename));
+		}
+	}
+
+	@Test
+	public void testSplitIntoSections() throws IOException {
+		File file = File.createTempFile("test", ".xlsx");
+		try {
+			TestWorkbooks.writeXLSX(file, createSheets());
+			SpreadsheetSectionSplitter splitter = new SpreadsheetSectionSplitter(SpreadsheetSectionConstants.PAGE_SECTION_HEADINGS);
+			assertTrue(StreamingWorkbookReader.forFile(file.getPath()).read(file.getPath(), splitter));
+			List<SpreadsheetSection> sections = splitter.getSections();
+			assertEquals(1, sections.size());
+			assertEquals("ITEM ID", sections.get(0).getSectionHeadingString());
+			assertEquals("Page", sections.get(0).getSheetName());
+			assertEquals(3, sections.get(0).getSectionRows().size());
+			assertEquals("What is your name&#8230;", sections.get(0).getSectionRows().get(0).getRowItems().get(2).toString());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testXLSXChartSheetSkipped() throws IOException {
+		File file = File.createTempFile("test", ".xlsx");
+		try {
+			TestWorkbooks.writeXLSX(file, createSheets());
+			List<String> rows = streamRows(file.getPath());
+			TestWorkbooks.editXLSX(file, "xl/workbook.xml", "</sheets>",
+					"<sheet name=\"Chart\" sheetId=\"9\" r:id=\"rIdChart\"/></sheets>");
+			TestWorkbooks.editXLSX(file, "xl/_rels/workbook.xml.rels", "</Relationships>",
+					"<Relationship Id=\"rIdChart\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/"
+							+ "relationships/chartsheet\" Target=\"chartsheets/sheet1.xml\"/></Relationships>");
+			assertEquals(rows, streamRows(file.getPath()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testXLSXDoctypeRejected() throws IOException {
+		File file = File.createTempFile("test", ".xlsx");
+		File secret = File.createTempFile("secret", ".txt");
+		try {
+			TestWorkbooks.writeXLSX(file, createSheets());
+			TestWorkbooks.editXLSX(file, "xl/sharedStrings.xml", "standalone=\"yes\"?>", "standalone=\"yes\"?>"
+					+ "<!DOCTYPE sst [<!ENTITY secret SYSTEM \"" + secret.toURI() + "\">]>");
+			TestWorkbooks.editXLSX(file, "xl/sharedStrings.xml", "ITEM ID", "&secret;");
+			assertFalse(StreamingWorkbookReader.forFile(file.getPath()).read(file.getPath(), new RecordingHandler()));
+		} finally {
+			file.delete();
+			secret.delete();
+		}
+	}
+
+	@Test
+	public void testMissingFile() {
+		assertFalse(StreamingWorkbookReader.forFile("missing.xlsx").read("missing.xlsx", new RecordingHandler()));
+		assertFalse(StreamingWorkbookReader.forFile("missing.xls").read("missing.xls", new RecordingHandler()));
+	}
+}
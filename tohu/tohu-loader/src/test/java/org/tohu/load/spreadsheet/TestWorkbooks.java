@@ -0,0 +1,260 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.load.spreadsheet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFCell;
+import org.apache.poi.hssf.usermodel.HSSFCellStyle;
+import org.apache.poi.hssf.usermodel.HSSFDataFormat;
+import org.apache.poi.hssf.usermodel.HSSFDateUtil;
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.hssf.util.CellReference;
+
+/**
+ * Writes the same sheets as a .xls and as a .xlsx file, for testing the readers. Each sheet is an array of rows of
+ * <code>String</code>, <code>Number</code>, <code>Boolean</code>, <code>Date</code> or {@link Formula} values, with null for
+ * a blank cell.
+ */
+public class TestWorkbooks {
+
+	public static class Formula {
+
+		private String formula;
+
+		public Formula(String formula) {
+			this.formula = formula;
+		}
+
+		public String getFormula() {
+			return formula;
+		}
+	}
+
+	public static void writeXLS(File file, Map<String, Object[][]> sheets) throws IOException {
+		HSSFWorkbook workbook = new HSSFWorkbook();
+		HSSFCellStyle dateStyle = workbook.createCellStyle();
+		dateStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("m/d/yy"));
+		for (Map.Entry<String, Object[][]> entry : sheets.entrySet()) {
+			HSSFSheet sheet = workbook.createSheet(entry.getKey());
+			Object[][] rows = entry.getValue();
+			for (int i = 0; i < rows.length; i++) {
+				HSSFRow row = sheet.createRow(i);
+				for (int j = 0; j < rows[i].length; j++) {
+					Object value = rows[i][j];
+					if (value == null) {
+						continue;
+					}
+					HSSFCell cell = row.createCell(j);
+					if (value instanceof String) {
+						cell.setCellValue((String) value);
+					} else if (value instanceof Number) {
+						cell.setCellValue(((Number) value).doubleValue());
+					} else if (value instanceof Boolean) {
+						cell.setCellValue(((Boolean) value).booleanValue());
+					} else if (value instanceof Date) {
+						cell.setCellValue((Date) value);
+						cell.setCellStyle(dateStyle);
+					} else {
+						cell.setCellFormula(((Formula) value).getFormula());
+					}
+				}
+			}
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void writeXLSX(File file, Map<String, Object[][]> sheets) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			StringBuilder overrides = new StringBuilder();
+			StringBuilder sheetElements = new StringBuilder();
+			StringBuilder relationships = new StringBuilder();
+			List<String> sharedStrings = new ArrayList<String>();
+			Map<String, Integer> sharedStringIndexes = new HashMap<String, Integer>();
+			int sheetNumber = 0;
+			for (Iterator<Map.Entry<String, Object[][]>> iterator = sheets.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<String, Object[][]> entry = iterator.next();
+				sheetNumber++;
+				overrides.append("<Override PartName=\"/xl/worksheets/sheet" + sheetNumber + ".xml\" ContentType=\""
+						+ "application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+				sheetElements.append("<sheet name=\"" + escape(entry.getKey()) + "\" sheetId=\"" + sheetNumber + "\" r:id=\"rId"
+						+ sheetNumber + "\"/>");
+				relationships.append("<Relationship Id=\"rId" + sheetNumber + "\" Type=\"http://schemas.openxmlformats.org/"
+						+ "officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet" + sheetNumber + ".xml\"/>");
+
+				out.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetNumber + ".xml"));
+				writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+						+ "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+				Object[][] rows = entry.getValue();
+				for (int i = 0; i < rows.length; i++) {
+					writer.write("<row r=\"" + (i + 1) + "\">");
+					for (int j = 0; j < rows[i].length; j++) {
+						Object value = rows[i][j];
+						if (value == null) {
+							continue;
+						}
+						String reference = new CellReference(i, j, false, false).formatAsString();
+						if (value instanceof String) {
+							Integer index = sharedStringIndexes.get(value);
+							if (index == null) {
+								index = Integer.valueOf(sharedStrings.size());
+								sharedStrings.add((String) value);
+								sharedStringIndexes.put((String) value, index);
+							}
+							writer.write("<c r=\"" + reference + "\" t=\"s\"><v>" + index + "</v></c>");
+						} else if (value instanceof Number) {
+							writer.write("<c r=\"" + reference + "\"><v>" + ((Number) value).doubleValue() + "</v></c>");
+						} else if (value instanceof Boolean) {
+							writer.write("<c r=\"" + reference + "\" t=\"b\"><v>" + (((Boolean) value).booleanValue() ? 1 : 0)
+									+ "</v></c>");
+						} else if (value instanceof Date) {
+							writer.write("<c r=\"" + reference + "\" s=\"1\"><v>" + HSSFDateUtil.getExcelDate((Date) value)
+									+ "</v></c>");
+						} else {
+							writer.write("<c r=\"" + reference + "\"><f>" + escape(((Formula) value).getFormula())
+									+ "</f><v>0</v></c>");
+						}
+					}
+					writer.write("</row>");
+				}
+				writer.write("</sheetData></worksheet>");
+				writer.flush();
+			}
+
+			out.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" uniqueCount=\""
+					+ sharedStrings.size() + "\">");
+			for (String string : sharedStrings) {
+				writer.write("<si><t xml:space=\"preserve\">" + escape(string) + "</t></si>");
+			}
+			writer.write("</sst>");
+			writer.flush();
+
+			out.putNextEntry(new ZipEntry("xl/styles.xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+					+ "<cellXfs count=\"2\"><xf numFmtId=\"0\"/><xf numFmtId=\"14\" applyNumberFormat=\"1\"/></cellXfs>"
+					+ "</styleSheet>");
+			writer.flush();
+
+			out.putNextEntry(new ZipEntry("xl/workbook.xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+					+ "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>" + sheetElements
+					+ "</sheets></workbook>");
+			writer.flush();
+
+			out.putNextEntry(new ZipEntry("xl/_rels/workbook.xml.rels"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" + relationships
+					+ "<Relationship Id=\"rIdStrings\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/"
+					+ "relationships/sharedStrings\" Target=\"sharedStrings.xml\"/>"
+					+ "<Relationship Id=\"rIdStyles\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/"
+					+ "relationships/styles\" Target=\"styles.xml\"/></Relationships>");
+			writer.flush();
+
+			out.putNextEntry(new ZipEntry("_rels/.rels"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+					+ "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/"
+					+ "officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>");
+			writer.flush();
+
+			out.putNextEntry(new ZipEntry("[Content_Types].xml"));
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+					+ "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+					+ "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+					+ "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+					+ "<Override PartName=\"/xl/workbook.xml\" ContentType=\""
+					+ "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+					+ "<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\""
+					+ "application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>"
+					+ "<Override PartName=\"/xl/styles.xml\" ContentType=\""
+					+ "application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" + overrides + "</Types>");
+			writer.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Replaces some text in one of the parts of a .xlsx file written by {@link #writeXLSX(File, Map)}.
+	 */
+	public static void editXLSX(File file, String part, String target, String replacement) throws IOException {
+		Map<String, String> parts = new LinkedHashMap<String, String>();
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+				ZipEntry entry = entries.nextElement();
+				Reader reader = new InputStreamReader(zipFile.getInputStream(entry), "UTF-8");
+				StringBuilder sb = new StringBuilder();
+				char[] buffer = new char[4096];
+				int length;
+				while ((length = reader.read(buffer)) != -1) {
+					sb.append(buffer, 0, length);
+				}
+				reader.close();
+				parts.put(entry.getName(), sb.toString());
+			}
+		} finally {
+			zipFile.close();
+		}
+		parts.put(part, parts.get(part).replace(target, replacement));
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			Writer writer = new OutputStreamWriter(out, "UTF-8");
+			for (Map.Entry<String, String> entry : parts.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey()));
+				writer.write(entry.getValue());
+				writer.flush();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String escape(String string) {
+		return string.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+}
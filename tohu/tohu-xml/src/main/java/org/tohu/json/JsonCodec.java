@@ -0,0 +1,511 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.core.common.DefaultFactHandle;
+import org.kie.api.command.BatchExecutionCommand;
+import org.kie.api.command.Command;
+import org.kie.api.command.Setter;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.QueryResults;
+import org.kie.api.runtime.rule.QueryResultsRow;
+import org.kie.internal.command.CommandFactory;
+import org.tohu.xml.ChangeCollector;
+import org.tohu.xml.DeltaWriter;
+import org.tohu.xml.TohuConverters;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.converters.ErrorWriter;
+import com.thoughtworks.xstream.core.TreeMarshaller;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.ExtendedHierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * <p>
+ * A compact JSON alternative to the batch-execution XML.
+ * </p>
+ *
+ * <p>
+ * A request is an array of commands, each of which is an object keyed by the command name:
+ * </p>
+ *
+ * <pre>
+ * [{"insert":{"t":"xml.ChangeCollector"},"out":"changes"},
+ *  {"insert":{"t":"Answer","questionId":"q1","value":"yes"}},
+ *  {"modify":"0:1:2:3:4:DEFAULT:NON_TRAIT","set":{"activeItem":"page2"}},
+ *  {"fire":{}},
+ *  {"query":"activeObjects"}]
+ * </pre>
+ *
+ * <p>
+ * The response is an object keyed by out identifier. Query results are an array of rows and a ChangeCollector has
+ * <code>create</code>, <code>update</code> and <code>delete</code> arrays, each omitted if empty. If the ChangeCollector was inserted
+ * with <code>"deltas":true</code> then updated items only have their id and changed fields, with cleared fields as <code>null</code>.
+ * </p>
+ *
+ * <p>
+ * Tohu objects are flat JSON objects: <code>t</code> is the XStream alias without the <code>org.tohu.</code> prefix, <code>h</code> is
+ * the fact handle (where the XML would have one) and the other fields are exactly the child elements the XML would have. They are
+ * written and read by the same converters as the XML so values are strings just as they are in the XML. Only classes in the
+ * <code>org.tohu</code> package can be read.
+ * </p>
+ */
+public class JsonCodec {
+
+	public static final String CONTENT_TYPE = "application/json";
+
+	private static final String PACKAGE_PREFIX = "org.tohu.";
+
+	private static final String TYPE = "t";
+
+	private static final String HANDLE = "h";
+
+	private final XStream xstream;
+
+	public JsonCodec() {
+		this(TohuConverters.newXStreamMarshaller());
+	}
+
+	/**
+	 * @param xstream
+	 *            used to look up the converters for Tohu objects
+	 */
+	public JsonCodec(XStream xstream) {
+		this.xstream = xstream;
+	}
+
+	/**
+	 * Returns true if the content type is JSON.
+	 *
+	 * @param contentType
+	 * @return
+	 */
+	public static boolean isJson(String contentType) {
+		return contentType != null && contentType.toLowerCase().startsWith(CONTENT_TYPE);
+	}
+
+	/**
+	 * Reads a batch of commands.
+	 *
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if the request is not valid
+	 */
+	public BatchExecutionCommand decode(Reader reader) throws IOException {
+		Object request = new JsonParser(new BufferedReader(reader)).parse();
+		if (!(request instanceof List<?>)) {
+			throw new IllegalArgumentException("Expected an array of commands");
+		}
+		List<Command<?>> commands = new ArrayList<Command<?>>();
+		for (Object command : (List<?>) request) {
+			commands.add(decodeCommand(command));
+		}
+		return CommandFactory.newBatchExecution(commands);
+	}
+
+	private Command<?> decodeCommand(Object json) {
+		if (!(json instanceof Map<?, ?>)) {
+			throw new IllegalArgumentException("Expected a command object but found " + json);
+		}
+		Map<?, ?> command = (Map<?, ?>) json;
+		String out = get(command, "out", String.class);
+		if (command.containsKey("insert")) {
+			Object object = decodeObject(command.get("insert"));
+			return out == null ? CommandFactory.newInsert(object) : CommandFactory.newInsert(object, out);
+		} else if (command.containsKey("modify")) {
+			FactHandle factHandle = decodeFactHandle(get(command, "modify", String.class));
+			List<Setter> setters = new ArrayList<Setter>();
+			Map<?, ?> set = get(command, "set", Map.class);
+			if (set != null) {
+				for (Map.Entry<?, ?> entry : set.entrySet()) {
+					if (entry.getValue() instanceof Map<?, ?> || entry.getValue() instanceof List<?>) {
+						throw new IllegalArgumentException("Field " + entry.getKey() + " must be a simple value");
+					}
+					setters.add(CommandFactory.newSetter((String) entry.getKey(), entry.getValue() == null ? null : entry
+							.getValue().toString()));
+				}
+			}
+			return CommandFactory.newModify(factHandle, setters);
+		} else if (command.containsKey("fire")) {
+			return CommandFactory.newFireAllRules();
+		} else if (command.containsKey("query")) {
+			String name = get(command, "query", String.class);
+			if (name == null) {
+				throw new IllegalArgumentException("Missing query name");
+			}
+			List<?> args = get(command, "args", List.class);
+			return CommandFactory.newQuery(out == null ? name : out, name, args == null ? new Object[0] : args.toArray());
+		}
+		throw new IllegalArgumentException("Unknown command " + command.keySet());
+	}
+
+	/**
+	 * Returns the field of the command, or null if it is missing.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the field is not of the expected type
+	 */
+	private <T> T get(Map<?, ?> command, String name, Class<T> type) {
+		Object value = command.get(name);
+		if (value != null && !type.isInstance(value)) {
+			throw new IllegalArgumentException("Expected " + name + " to be a " + type.getSimpleName() + " but found " + value);
+		}
+		return type.cast(value);
+	}
+
+	private FactHandle decodeFactHandle(String externalForm) {
+		if (externalForm == null) {
+			throw new IllegalArgumentException("Missing fact handle");
+		}
+		try {
+			return new DefaultFactHandle(externalForm);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid fact handle " + externalForm);
+		}
+	}
+
+	private Object decodeObject(Object json) {
+		if (!(json instanceof Map<?, ?>)) {
+			throw new IllegalArgumentException("Expected an object but found " + json);
+		}
+		try {
+			return xstream.unmarshal(new FlatObjectReader((Map<?, ?>) json));
+		} catch (XStreamException e) {
+			throw new IllegalArgumentException("Cannot read " + json + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the results of a batch execution.
+	 *
+	 * @param results
+	 * @param writer
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if a result cannot be written as JSON
+	 */
+	public void encode(ExecutionResults results, Writer writer) throws IOException {
+		JsonWriter json = new JsonWriter(writer);
+		json.beginObject();
+		for (String identifier : results.getIdentifiers()) {
+			json.name(identifier);
+			Object value = results.getValue(identifier);
+			if (value instanceof QueryResults) {
+				encodeQueryResults((QueryResults) value, json);
+			} else if (value instanceof ChangeCollector) {
+				encodeChangeCollector((ChangeCollector) value, json);
+			} else {
+				encodeValue(value, null, json);
+			}
+		}
+		json.endObject();
+		writer.flush();
+	}
+
+	/**
+	 * A row with a single column is written as that object, otherwise as an object keyed by column.
+	 */
+	private void encodeQueryResults(QueryResults queryResults, JsonWriter json) throws IOException {
+		String[] identifiers = queryResults.getIdentifiers();
+		json.beginArray();
+		for (QueryResultsRow row : queryResults) {
+			if (identifiers.length == 1) {
+				encodeValue(row.get(identifiers[0]), row.getFactHandle(identifiers[0]), json);
+			} else {
+				json.beginObject();
+				for (String identifier : identifiers) {
+					json.name(identifier);
+					encodeValue(row.get(identifier), row.getFactHandle(identifier), json);
+				}
+				json.endObject();
+			}
+		}
+		json.endArray();
+	}
+
+	private void encodeChangeCollector(ChangeCollector changeCollector, JsonWriter json) throws IOException {
+		json.beginObject();
+		Map<Object, FactHandle> create = changeCollector.getCreate();
+		if (create != null) {
+			json.name("create").beginArray();
+			for (Map.Entry<Object, FactHandle> entry : create.entrySet()) {
+				encodeValue(entry.getKey(), entry.getValue(), json);
+			}
+			json.endArray();
+		}
+		List<Object> update = changeCollector.getUpdate();
+		if (update != null) {
+			json.name("update").beginArray();
+			for (Object object : update) {
+				Set<String> fields = changeCollector.getChangedFields(object);
+				if (fields == null) {
+					encodeValue(object, null, json);
+				} else {
+					encodeObject(object, new DeltaWriter(new FlatObjectWriter(json, null), fields));
+				}
+			}
+			json.endArray();
+		}
+		encodeList("delete", changeCollector.getDelete(), json);
+		json.endObject();
+	}
+
+	private void encodeList(String name, List<Object> list, JsonWriter json) throws IOException {
+		if (list != null) {
+			json.name(name).beginArray();
+			for (Object object : list) {
+				encodeValue(object, null, json);
+			}
+			json.endArray();
+		}
+	}
+
+	private void encodeValue(Object value, FactHandle factHandle, JsonWriter json) throws IOException {
+		if (value == null) {
+			json.value(null);
+		} else if (value instanceof String) {
+			json.value((String) value);
+		} else if (value instanceof Number || value instanceof Boolean) {
+			json.literal(value);
+		} else if (value instanceof FactHandle) {
+			json.value(((FactHandle) value).toExternalForm());
+		} else {
+			encodeObject(value, new FlatObjectWriter(json, factHandle));
+		}
+	}
+
+	private void encodeObject(Object value, HierarchicalStreamWriter writer) throws IOException {
+		try {
+			// each object is flat so the reference tracking done by xstream.marshal() isn't needed
+			new TreeMarshaller(writer, xstream.getConverterLookup(), xstream.getMapper()).start(value, null);
+		} catch (WriteException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes the output of an XStream converter as a flat JSON object. Anything that would need nested elements is rejected.
+	 */
+	private static class FlatObjectWriter implements ExtendedHierarchicalStreamWriter {
+
+		private final JsonWriter json;
+
+		private final FactHandle factHandle;
+
+		private int depth;
+
+		private String name;
+
+		private String value;
+
+		private boolean cleared;
+
+		private FlatObjectWriter(JsonWriter json, FactHandle factHandle) {
+			this.json = json;
+			this.factHandle = factHandle;
+		}
+
+		public void startNode(String nodeName) {
+			depth++;
+			try {
+				if (depth == 1) {
+					if (!nodeName.startsWith(PACKAGE_PREFIX)) {
+						throw new IllegalArgumentException("Cannot write " + nodeName + " as JSON");
+					}
+					json.beginObject();
+					json.name(TYPE).value(nodeName.substring(PACKAGE_PREFIX.length()));
+					if (factHandle != null) {
+						json.name(HANDLE).value(factHandle.toExternalForm());
+					}
+				} else if (depth == 2) {
+					name = nodeName;
+					value = null;
+					cleared = false;
+				} else {
+					throw new IllegalArgumentException("Cannot write nested element " + name + "." + nodeName + " as JSON");
+				}
+			} catch (IOException e) {
+				throw new WriteException(e);
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		public void startNode(String nodeName, Class clazz) {
+			startNode(nodeName);
+		}
+
+		public void addAttribute(String attributeName, String attributeValue) {
+			if (depth == 2 && DeltaWriter.NULL.equals(attributeName)) {
+				cleared = Boolean.valueOf(attributeValue).booleanValue();
+			} else {
+				throw new IllegalArgumentException("Cannot write attribute " + attributeName + " as JSON");
+			}
+		}
+
+		public void setValue(String text) {
+			value = text;
+		}
+
+		public void endNode() {
+			try {
+				if (depth == 1) {
+					json.endObject();
+				} else {
+					json.name(name).value(cleared ? null : value == null ? "" : value);
+				}
+			} catch (IOException e) {
+				throw new WriteException(e);
+			}
+			depth--;
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+
+		public HierarchicalStreamWriter underlyingWriter() {
+			return this;
+		}
+
+	}
+
+	/**
+	 * Carries an IOException out through XStream.
+	 */
+	private static class WriteException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private WriteException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public IOException getCause() {
+			return (IOException) super.getCause();
+		}
+
+	}
+
+	/**
+	 * Presents a flat JSON object to an XStream converter as if it were XML.
+	 */
+	private static class FlatObjectReader implements HierarchicalStreamReader {
+
+		private final String nodeName;
+
+		private final Iterator<? extends Map.Entry<?, ?>> fields;
+
+		private Map.Entry<?, ?> next;
+
+		private Map.Entry<?, ?> current;
+
+		private FlatObjectReader(Map<?, ?> object) {
+			Object type = object.get(TYPE);
+			if (!(type instanceof String)) {
+				throw new IllegalArgumentException("Missing type " + TYPE + " in " + object);
+			}
+			nodeName = PACKAGE_PREFIX + type;
+			fields = object.entrySet().iterator();
+			advance();
+		}
+
+		private void advance() {
+			next = null;
+			while (next == null && fields.hasNext()) {
+				Map.Entry<?, ?> entry = fields.next();
+				if (!TYPE.equals(entry.getKey()) && !HANDLE.equals(entry.getKey()) && entry.getValue() != null) {
+					if (entry.getValue() instanceof Map<?, ?> || entry.getValue() instanceof List<?>) {
+						throw new IllegalArgumentException("Field " + entry.getKey() + " must be a simple value");
+					}
+					next = entry;
+				}
+			}
+		}
+
+		public boolean hasMoreChildren() {
+			return current == null && next != null;
+		}
+
+		public void moveDown() {
+			current = next;
+			advance();
+		}
+
+		public void moveUp() {
+			current = null;
+		}
+
+		public String getNodeName() {
+			return current == null ? nodeName : (String) current.getKey();
+		}
+
+		public String getValue() {
+			return current == null ? "" : current.getValue().toString();
+		}
+
+		public String getAttribute(String name) {
+			return null;
+		}
+
+		public String getAttribute(int index) {
+			return null;
+		}
+
+		public int getAttributeCount() {
+			return 0;
+		}
+
+		public String getAttributeName(int index) {
+			return null;
+		}
+
+		@SuppressWarnings("rawtypes")
+		public Iterator getAttributeNames() {
+			return new ArrayList<String>().iterator();
+		}
+
+		public void appendErrors(ErrorWriter errorWriter) {
+			errorWriter.add("json object", nodeName);
+		}
+
+		public void close() {
+		}
+
+		public HierarchicalStreamReader underlyingReader() {
+			return this;
+		}
+
+	}
+
+}
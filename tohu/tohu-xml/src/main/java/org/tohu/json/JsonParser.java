@@ -0,0 +1,246 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Minimal JSON parser for client requests.
+ * </p>
+ *
+ * <p>
+ * Objects are parsed to a LinkedHashMap (so field order is kept), arrays to an ArrayList, numbers to a BigDecimal and true, false
+ * and null to Boolean.TRUE, Boolean.FALSE and null.
+ * </p>
+ *
+ * <p>
+ * Objects and arrays may be nested at most {@link #MAX_DEPTH} deep so that a hostile request can't exhaust the stack.
+ * </p>
+ */
+class JsonParser {
+
+	static final int MAX_DEPTH = 64;
+
+	private final Reader reader;
+
+	private int depth;
+
+	private int next;
+
+	private int position;
+
+	JsonParser(Reader reader) throws IOException {
+		this.reader = reader;
+		read();
+	}
+
+	/**
+	 * Parses a single value which must make up the whole of the input.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	Object parse() throws IOException {
+		Object value = parseValue();
+		skipWhitespace();
+		if (next != -1) {
+			throw error("Unexpected data after value");
+		}
+		return value;
+	}
+
+	private Object parseValue() throws IOException {
+		skipWhitespace();
+		switch (next) {
+		case '{':
+		case '[':
+			if (depth == MAX_DEPTH) {
+				throw error("Nesting deeper than " + MAX_DEPTH);
+			}
+			depth++;
+			Object value = next == '{' ? parseObject() : parseArray();
+			depth--;
+			return value;
+		case '"':
+			return parseString();
+		case 't':
+			expect("true");
+			return Boolean.TRUE;
+		case 'f':
+			expect("false");
+			return Boolean.FALSE;
+		case 'n':
+			expect("null");
+			return null;
+		default:
+			if (next == '-' || (next >= '0' && next <= '9')) {
+				return parseNumber();
+			}
+			throw error(next == -1 ? "Unexpected end of input" : "Unexpected character '" + (char) next + "'");
+		}
+	}
+
+	private Map<String, Object> parseObject() throws IOException {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		read();
+		skipWhitespace();
+		if (next == '}') {
+			read();
+			return map;
+		}
+		while (true) {
+			skipWhitespace();
+			if (next != '"') {
+				throw error("Expected field name");
+			}
+			String name = parseString();
+			skipWhitespace();
+			consume(':');
+			map.put(name, parseValue());
+			skipWhitespace();
+			if (next == '}') {
+				read();
+				return map;
+			}
+			consume(',');
+		}
+	}
+
+	private List<Object> parseArray() throws IOException {
+		List<Object> list = new ArrayList<Object>();
+		read();
+		skipWhitespace();
+		if (next == ']') {
+			read();
+			return list;
+		}
+		while (true) {
+			list.add(parseValue());
+			skipWhitespace();
+			if (next == ']') {
+				read();
+				return list;
+			}
+			consume(',');
+		}
+	}
+
+	private String parseString() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		read();
+		while (next != '"') {
+			if (next == -1) {
+				throw error("Unterminated string");
+			}
+			if (next == '\\') {
+				read();
+				switch (next) {
+				case '"':
+				case '\\':
+				case '/':
+					sb.append((char) next);
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'u':
+					int c = 0;
+					for (int i = 0; i < 4; i++) {
+						read();
+						int digit = Character.digit(next, 16);
+						if (next == -1 || digit < 0) {
+							throw error("Invalid unicode escape");
+						}
+						c = c * 16 + digit;
+					}
+					sb.append((char) c);
+					break;
+				default:
+					throw error("Invalid escape");
+				}
+			} else {
+				sb.append((char) next);
+			}
+			read();
+		}
+		read();
+		return sb.toString();
+	}
+
+	private BigDecimal parseNumber() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (next == '-' || next == '+' || next == '.' || next == 'e' || next == 'E' || (next >= '0' && next <= '9')) {
+			sb.append((char) next);
+			read();
+		}
+		try {
+			return new BigDecimal(sb.toString());
+		} catch (NumberFormatException e) {
+			throw error("Invalid number " + sb);
+		}
+	}
+
+	private void expect(String literal) throws IOException {
+		for (int i = 0; i < literal.length(); i++) {
+			if (next != literal.charAt(i)) {
+				throw error("Expected " + literal);
+			}
+			read();
+		}
+	}
+
+	private void consume(char c) throws IOException {
+		if (next != c) {
+			throw error("Expected '" + c + "'");
+		}
+		read();
+	}
+
+	private void skipWhitespace() throws IOException {
+		while (next == ' ' || next == '\t' || next == '\n' || next == '\r') {
+			read();
+		}
+	}
+
+	private void read() throws IOException {
+		next = reader.read();
+		position++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + position);
+	}
+
+}
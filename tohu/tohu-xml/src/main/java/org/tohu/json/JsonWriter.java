@@ -0,0 +1,164 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>
+ * Writes compact JSON straight to a Writer.
+ * </p>
+ *
+ * <p>
+ * Commas are inserted automatically. Inside an object each value must be preceded by a call to name(). There is no checking that
+ * the calls are balanced.
+ * </p>
+ */
+class JsonWriter {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static final int MAX_DEPTH = 32;
+
+	private final Writer writer;
+
+	// whether the object or array at each depth has had a value written yet
+	private final boolean[] started = new boolean[MAX_DEPTH];
+
+	private int depth;
+
+	private boolean afterName;
+
+	JsonWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		return begin('{');
+	}
+
+	JsonWriter endObject() throws IOException {
+		return end('}');
+	}
+
+	JsonWriter beginArray() throws IOException {
+		return begin('[');
+	}
+
+	JsonWriter endArray() throws IOException {
+		return end(']');
+	}
+
+	JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		writer.write(':');
+		afterName = true;
+		return this;
+	}
+
+	JsonWriter value(String value) throws IOException {
+		separate();
+		if (value == null) {
+			writer.write("null");
+		} else {
+			string(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a number or boolean as is.
+	 *
+	 * @param value
+	 * @return
+	 * @throws IOException
+	 */
+	JsonWriter literal(Object value) throws IOException {
+		separate();
+		writer.write(String.valueOf(value));
+		return this;
+	}
+
+	private JsonWriter begin(char c) throws IOException {
+		separate();
+		writer.write(c);
+		depth++;
+		if (depth == MAX_DEPTH) {
+			throw new IllegalStateException("JSON nested too deeply");
+		}
+		started[depth] = false;
+		return this;
+	}
+
+	private JsonWriter end(char c) throws IOException {
+		depth--;
+		writer.write(c);
+		return this;
+	}
+
+	private void separate() throws IOException {
+		if (afterName) {
+			afterName = false;
+		} else {
+			if (started[depth]) {
+				writer.write(',');
+			}
+			started[depth] = true;
+		}
+	}
+
+	private void string(String value) throws IOException {
+		writer.write('"');
+		int length = value.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c == '"' || c == '\\' || c == '<' || c == '\u2028' || c == '\u2029') {
+				writer.write(value, start, i - start);
+				start = i + 1;
+				switch (c) {
+				case '"':
+					writer.write("\\\"");
+					break;
+				case '\\':
+					writer.write("\\\\");
+					break;
+				case '\n':
+					writer.write("\\n");
+					break;
+				case '\r':
+					writer.write("\\r");
+					break;
+				case '\t':
+					writer.write("\\t");
+					break;
+				default:
+					// < and the line separators are escaped so that the output is also safe to embed in a script element
+					writer.write("\\u");
+					writer.write(HEX[(c >> 12) & 0xf]);
+					writer.write(HEX[(c >> 8) & 0xf]);
+					writer.write(HEX[(c >> 4) & 0xf]);
+					writer.write(HEX[c & 0xf]);
+				}
+			}
+		}
+		writer.write(value, start, length - start);
+		writer.write('"');
+	}
+
+}
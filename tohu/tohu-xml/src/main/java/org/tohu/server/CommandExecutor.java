@@ -0,0 +1,195 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Runs rule executions on a fixed size pool of threads with a bounded queue.
+ * </p>
+ *
+ * <p>
+ * This limits the number of knowledge sessions executing at once so that a burst of requests (or a slow rule cascade) queues here
+ * rather than consuming every container thread. Once the queue is full further work is rejected immediately so that the caller can
+ * tell the client to retry later.
+ * </p>
+ *
+ * <p>
+ * Time spent waiting in the queue and time spent executing are recorded separately for each request. A request's execution time
+ * includes any wait for an earlier request of the same HTTP session to finish, since its pool thread is taken for that long, but
+ * never the execution of another request's work. If the caller is interrupted only its own work is cancelled.
+ * </p>
+ */
+public class CommandExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommandExecutor.class);
+
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong executed = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong queueWaitTime = new AtomicLong();
+
+	private final AtomicLong executionTime = new AtomicLong();
+
+	/**
+	 * Constructs a CommandExecutor.
+	 *
+	 * @param threads
+	 *            number of rule executions which may run at once
+	 * @param queueDepth
+	 *            number of rule executions which may wait for a thread, zero means none may wait
+	 */
+	public CommandExecutor(int threads, int queueDepth) {
+		BlockingQueue<Runnable> queue;
+		if (queueDepth > 0) {
+			queue = new ArrayBlockingQueue<Runnable>(queueDepth);
+		} else {
+			queue = new SynchronousQueue<Runnable>();
+		}
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "tohu-execution-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+
+		});
+	}
+
+	/**
+	 * Runs the callable on the pool and waits for the result.
+	 *
+	 * @param callable
+	 * @return
+	 * @throws RejectedExecutionException
+	 *             if the queue is full
+	 */
+	public <T> T execute(final Callable<T> callable) {
+		final long queued = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(new Callable<T>() {
+				public T call() throws Exception {
+					long started = System.nanoTime();
+					try {
+						return callable.call();
+					} finally {
+						record(started - queued, System.nanoTime() - started);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Stops the pool threads once any queued work has finished.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Number of rule executions completed (successfully or not).
+	 *
+	 * @return
+	 */
+	public long getExecuted() {
+		return executed.get();
+	}
+
+	/**
+	 * Number of rule executions rejected because the queue was full.
+	 *
+	 * @return
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Total time rule executions spent waiting for a thread in milliseconds.
+	 *
+	 * @return
+	 */
+	public long getQueueWaitTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(queueWaitTime.get());
+	}
+
+	/**
+	 * Total time spent executing rules in milliseconds.
+	 *
+	 * @return
+	 */
+	public long getExecutionTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(executionTime.get());
+	}
+
+	/**
+	 * Number of rule executions currently waiting for a thread.
+	 *
+	 * @return
+	 */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	private void record(long queueWait, long execution) {
+		executed.incrementAndGet();
+		queueWaitTime.addAndGet(queueWait);
+		executionTime.addAndGet(execution);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Waited " + TimeUnit.NANOSECONDS.toMillis(queueWait) + "ms, executed in "
+					+ TimeUnit.NANOSECONDS.toMillis(execution) + "ms");
+		}
+	}
+
+}
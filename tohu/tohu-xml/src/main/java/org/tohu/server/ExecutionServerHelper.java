@@ -20,11 +20,6 @@ import java.util.List;
 
 import javax.servlet.http.HttpSession;
 
-import org.kie.api.io.Resource;
-import org.kie.api.io.ResourceType;
-import org.kie.internal.builder.KnowledgeBuilder;
-import org.kie.internal.builder.KnowledgeBuilderFactory;
-import org.kie.internal.io.ResourceFactory;
 import org.kie.internal.runtime.StatefulKnowledgeSession;
 
 /**
@@ -36,13 +31,15 @@ public class ExecutionServerHelper {
 
 	private static final String KNOWLEDGE_SESSION = "knowledge.session";
 
+	private static final String SESSION_TEMPLATE = "knowledge.session.template";
+
+	private static final String MAILBOX = "knowledge.session.mailbox";
+
 	private static final String AGENT_CONFIG_DIRECTORY = "agent-config-directory";
 
-	private HttpSession session;
+	private static final String TEMPLATE_SESSIONS = "template-sessions";
 
-	static {
-		ResourceType.addResourceTypeToRegistry("CHANGE_SET", "Change Set", "src/main/resources", "xcs", "xml");
-	}
+	private HttpSession session;
 
 	/**
 	 * Constructs an ExecutionServerHelper for an HTTP session.
@@ -62,6 +59,26 @@ public class ExecutionServerHelper {
 		return (StatefulKnowledgeSession) session.getAttribute(KNOWLEDGE_SESSION);
 	}
 
+	/**
+	 * Returns the mailbox through which all work against the knowledge session for this HTTP session must go, creating it if
+	 * necessary.
+	 * 
+	 * @return
+	 */
+	public SessionMailbox getMailbox() {
+		SessionMailbox mailbox = (SessionMailbox) session.getAttribute(MAILBOX);
+		if (mailbox == null) {
+			synchronized (session) {
+				mailbox = (SessionMailbox) session.getAttribute(MAILBOX);
+				if (mailbox == null) {
+					mailbox = new SessionMailbox();
+					session.setAttribute(MAILBOX, mailbox);
+				}
+			}
+		}
+		return mailbox;
+	}
+
 	/**
 	 * Removes the knowledge session from the HTTP session.
 	 * 
@@ -72,6 +89,21 @@ public class ExecutionServerHelper {
 			knowledgeSession.dispose();
 			session.removeAttribute(KNOWLEDGE_SESSION);
 		}
+		session.removeAttribute(SESSION_TEMPLATE);
+	}
+
+	/**
+	 * Returns the template that the current knowledge session was restored from if the initial request has not yet been made, and
+	 * clears it so that it is only returned once.
+	 * 
+	 * @return
+	 */
+	public SessionTemplate removeSessionTemplate() {
+		SessionTemplate template = (SessionTemplate) session.getAttribute(SESSION_TEMPLATE);
+		if (template != null) {
+			session.removeAttribute(SESSION_TEMPLATE);
+		}
+		return template;
 	}
 
 	/**
@@ -84,7 +116,7 @@ public class ExecutionServerHelper {
 		removeKnowledgeSession();
 		String agentFile = "/" + agentName + ".xml";
 		String agentConfigDir = session.getServletContext().getInitParameter(AGENT_CONFIG_DIRECTORY);
-		return newKnowledgeSession(Collections.singletonList(agentConfigDir + agentFile));
+		return newKnowledgeSession(agentName, Collections.singletonList(agentConfigDir + agentFile));
 	}
 
 	/**
@@ -97,21 +129,39 @@ public class ExecutionServerHelper {
 	 * @return
 	 */
 	public StatefulKnowledgeSession newKnowledgeSession(List<String> fileNames) {
-		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
-		for (String fileName : fileNames) {
-			Resource resource;
-			if (fileName.startsWith("classpath:")) {
-				resource = ResourceFactory.newClassPathResource(fileName.replace("classpath:", ""));
-			} else {
-				resource = ResourceFactory.newUrlResource(fileName);
+		return newKnowledgeSession(null, fileNames);
+	}
+
+	/**
+	 * Create a knowledge session for the specified agent name using the specified resource files.
+	 * 
+	 * The rules are compiled once and the knowledge base is shared by all sessions. See <code>KnowledgeBaseCache</code>.
+	 * 
+	 * If the <code>template-sessions</code> context parameter is true then the session is restored from a snapshot taken after the
+	 * initial <code>fire-all-rules</code>. See <code>SessionTemplate</code>.
+	 * 
+	 * @param agentName
+	 * @param fileNames
+	 * @return
+	 */
+	public StatefulKnowledgeSession newKnowledgeSession(String agentName, List<String> fileNames) {
+		KnowledgeBaseCache knowledgeBaseCache = KnowledgeBaseCache.getInstance();
+		StatefulKnowledgeSession knowledgeSession = null;
+		if (isTemplateSessions()) {
+			SessionTemplate template = knowledgeBaseCache.getSessionTemplate(agentName, fileNames);
+			if (template != null) {
+				knowledgeSession = template.newKnowledgeSession();
+				session.setAttribute(SESSION_TEMPLATE, template);
 			}
-			knowledgeBuilder.add(resource, ResourceType.determineResourceType(fileName));
 		}
-		if (knowledgeBuilder.hasErrors()) {
-			throw new RuntimeException("Error in rules: " + knowledgeBuilder.getErrors());
+		if (knowledgeSession == null) {
+			knowledgeSession = knowledgeBaseCache.getKnowledgeBase(agentName, fileNames).newStatefulKnowledgeSession();
 		}
-		StatefulKnowledgeSession knowledgeSession = knowledgeBuilder.newKnowledgeBase().newStatefulKnowledgeSession();
 		session.setAttribute(KNOWLEDGE_SESSION, knowledgeSession);
 		return knowledgeSession;
 	}
+
+	private boolean isTemplateSessions() {
+		return Boolean.valueOf(session.getServletContext().getInitParameter(TEMPLATE_SESSIONS)).booleanValue();
+	}
 }
@@ -0,0 +1,422 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.drools.core.io.internal.InternalResource;
+import org.kie.api.io.Resource;
+import org.kie.api.io.ResourceType;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>
+ * Process-wide cache of compiled knowledge bases.
+ * </p>
+ *
+ * <p>
+ * There is one knowledge base per agent name (or per list of resource files if there is no agent). It is held with a
+ * fingerprint of the resource files (name and last modified time), and is replaced when a rule file changes, so only the
+ * current knowledge base of each agent stays reachable. Compilation is single-flight: concurrent requests for the same agent
+ * wait for the one build in progress rather than each compiling the rules themselves.
+ * </p>
+ *
+ * <p>
+ * The fingerprint of a change-set file includes the resources it refers to, so editing one of those also results in a
+ * recompile. The change set itself is only parsed again when it changes. A directory in a change set is fingerprinted by the
+ * directory's own last modified time.
+ * </p>
+ *
+ * <p>
+ * Checking the last modified times can mean a request per resource for URL resources, so the fingerprint of a list of resource
+ * files is only worked out again once the check interval has passed (5 seconds by default). A negative interval means the
+ * resource files are never checked again and the rules are only recompiled after {@link #clear()}.
+ * </p>
+ */
+public class KnowledgeBaseCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(KnowledgeBaseCache.class);
+
+	private static final KnowledgeBaseCache instance = new KnowledgeBaseCache();
+
+	private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 5000;
+
+	private final ConcurrentMap<String, Entry<KnowledgeBase>> knowledgeBases = new ConcurrentHashMap<String, Entry<KnowledgeBase>>();
+
+	private final ConcurrentMap<String, Entry<SessionTemplate>> sessionTemplates = new ConcurrentHashMap<String, Entry<SessionTemplate>>();
+
+	private final ConcurrentMap<String, ChangeSet> changeSets = new ConcurrentHashMap<String, ChangeSet>();
+
+	private final ConcurrentMap<List<String>, Fingerprint> fingerprints = new ConcurrentHashMap<List<String>, Fingerprint>();
+
+	private volatile long checkIntervalMillis = DEFAULT_CHECK_INTERVAL_MILLIS;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong compileTime = new AtomicLong();
+
+	/**
+	 * A cached value and the fingerprint of the resource files it was built from.
+	 */
+	private static class Entry<T> {
+
+		private final String fingerprint;
+
+		private final FutureTask<T> future;
+
+		Entry(String fingerprint, FutureTask<T> future) {
+			this.fingerprint = fingerprint;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * The fingerprint of a list of resource files and when it was worked out.
+	 */
+	private static class Fingerprint {
+
+		private final String value;
+
+		private final long checked;
+
+		Fingerprint(String value, long checked) {
+			this.value = value;
+			this.checked = checked;
+		}
+	}
+
+	/**
+	 * The resources a change-set file refers to, as of its last modified time.
+	 */
+	private static class ChangeSet {
+
+		private final long lastModified;
+
+		private final List<String> sources;
+
+		ChangeSet(long lastModified, List<String> sources) {
+			this.lastModified = lastModified;
+			this.sources = sources;
+		}
+	}
+
+	static {
+		ResourceType.addResourceTypeToRegistry("CHANGE_SET", "Change Set", "src/main/resources", "xcs", "xml");
+	}
+
+	/**
+	 * Returns the process-wide cache.
+	 *
+	 * @return
+	 */
+	public static KnowledgeBaseCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the knowledge base for the specified agent and resource files, compiling it if necessary.
+	 *
+	 * @param agentName
+	 *            may be null if the resource files are not associated with an agent
+	 * @param fileNames
+	 * @return
+	 */
+	public KnowledgeBase getKnowledgeBase(String agentName, List<String> fileNames) {
+		return getKnowledgeBase(key(agentName, fileNames), fingerprint(fileNames), fileNames);
+	}
+
+	private KnowledgeBase getKnowledgeBase(String key, String fingerprint, final List<String> fileNames) {
+		return get(knowledgeBases, key, fingerprint, new Callable<KnowledgeBase>() {
+			public KnowledgeBase call() {
+				return compile(fileNames);
+			}
+		}, true);
+	}
+
+	/**
+	 * Returns the session template for the specified agent and resource files, creating it if necessary.
+	 *
+	 * Returns null if a template session cannot be created for these rules.
+	 *
+	 * @see org.tohu.server.SessionTemplate
+	 *
+	 * @param agentName
+	 *            may be null if the resource files are not associated with an agent
+	 * @param fileNames
+	 * @return
+	 */
+	public SessionTemplate getSessionTemplate(String agentName, List<String> fileNames) {
+		String key = key(agentName, fileNames);
+		String fingerprint = fingerprint(fileNames);
+		final KnowledgeBase knowledgeBase = getKnowledgeBase(key, fingerprint, fileNames);
+		return get(sessionTemplates, key, fingerprint, new Callable<SessionTemplate>() {
+			public SessionTemplate call() {
+				return SessionTemplate.create(knowledgeBase);
+			}
+		}, false);
+	}
+
+	/**
+	 * Discards all cached knowledge bases and session templates. Existing knowledge sessions are unaffected.
+	 */
+	public void clear() {
+		knowledgeBases.clear();
+		sessionTemplates.clear();
+		changeSets.clear();
+		fingerprints.clear();
+	}
+
+	/**
+	 * How long after the resource files were last checked for changes they are checked again.
+	 *
+	 * @return
+	 */
+	public long getCheckIntervalMillis() {
+		return checkIntervalMillis;
+	}
+
+	/**
+	 * @param checkIntervalMillis
+	 *            0 to check the resource files on every request, negative to never check them again
+	 */
+	public void setCheckIntervalMillis(long checkIntervalMillis) {
+		this.checkIntervalMillis = checkIntervalMillis;
+	}
+
+	/**
+	 * Number of requests satisfied by an already compiled (or compiling) knowledge base.
+	 *
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Number of requests which resulted in the rules being compiled.
+	 *
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Total time spent compiling rules in milliseconds.
+	 *
+	 * @return
+	 */
+	public long getCompileTimeMillis() {
+		return compileTime.get();
+	}
+
+	/**
+	 * Number of knowledge bases currently cached.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return knowledgeBases.size();
+	}
+
+	/**
+	 * Gets the value for the key from the map, computing it exactly once if it is not there or was built from resource files
+	 * with a different fingerprint, in which case it replaces the old value.
+	 */
+	private <T> T get(ConcurrentMap<String, Entry<T>> map, String key, String fingerprint, Callable<T> callable, boolean count) {
+		Entry<T> entry;
+		while (true) {
+			entry = map.get(key);
+			if (entry != null && entry.fingerprint.equals(fingerprint)) {
+				if (count) {
+					hits.incrementAndGet();
+				}
+				break;
+			}
+			Entry<T> newEntry = new Entry<T>(fingerprint, new FutureTask<T>(callable));
+			boolean installed = entry == null ? map.putIfAbsent(key, newEntry) == null : map.replace(key, entry, newEntry);
+			if (installed) {
+				if (count) {
+					misses.incrementAndGet();
+				}
+				entry = newEntry;
+				entry.future.run();
+				break;
+			}
+			// another thread got there first, so use (or replace) its entry
+		}
+		try {
+			return entry.future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			// don't cache failures so that the rules can be fixed without a restart
+			map.remove(key, entry);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private String key(String agentName, List<String> fileNames) {
+		return agentName != null ? agentName : "|" + fileNames;
+	}
+
+	/**
+	 * Returns the fingerprint of the resource files, as last worked out if that was within the check interval.
+	 */
+	private String fingerprint(List<String> fileNames) {
+		long now = System.currentTimeMillis();
+		Fingerprint fingerprint = fingerprints.get(fileNames);
+		long interval = checkIntervalMillis;
+		if (fingerprint != null && (interval < 0 || now - fingerprint.checked < interval)) {
+			return fingerprint.value;
+		}
+		// concurrent requests may both check, which does no harm
+		fingerprint = new Fingerprint(checkFingerprint(fileNames), now);
+		fingerprints.put(new ArrayList<String>(fileNames), fingerprint);
+		return fingerprint.value;
+	}
+
+	private String checkFingerprint(List<String> fileNames) {
+		StringBuilder sb = new StringBuilder();
+		for (String fileName : fileNames) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			long lastModified = appendFingerprint(sb, fileName);
+			if (ResourceType.CHANGE_SET.equals(ResourceType.determineResourceType(fileName))) {
+				for (String source : getChangeSetSources(fileName, lastModified)) {
+					sb.append(',');
+					appendFingerprint(sb, source);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the file name and last modified time, if available, and returns the last modified time, or -1 if it is not
+	 * available.
+	 */
+	private long appendFingerprint(StringBuilder sb, String fileName) {
+		sb.append(fileName);
+		Resource resource = newResource(fileName);
+		if (resource instanceof InternalResource) {
+			try {
+				long lastModified = ((InternalResource) resource).getLastModified();
+				sb.append('@').append(lastModified);
+				return lastModified;
+			} catch (RuntimeException e) {
+				// last modified time is not available for all resources
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the resources the change set refers to, parsing it again only if it has changed.
+	 */
+	private List<String> getChangeSetSources(String fileName, long lastModified) {
+		ChangeSet changeSet = changeSets.get(fileName);
+		if (changeSet == null || lastModified == -1 || changeSet.lastModified != lastModified) {
+			changeSet = new ChangeSet(lastModified, parseChangeSet(fileName));
+			changeSets.put(fileName, changeSet);
+		}
+		return changeSet.sources;
+	}
+
+	private List<String> parseChangeSet(final String fileName) {
+		final List<String> sources = new ArrayList<String>();
+		try {
+			SAXParserFactory factory = SAXParserFactory.newInstance();
+			factory.setNamespaceAware(true);
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			InputStream inputStream = newResource(fileName).getInputStream();
+			try {
+				factory.newSAXParser().parse(inputStream, new DefaultHandler() {
+					@Override
+					public void startElement(String uri, String localName, String qName, Attributes attributes) {
+						String source = attributes.getValue("source");
+						if ("resource".equals(localName) && source != null) {
+							sources.add(source);
+						}
+					}
+				});
+			} finally {
+				inputStream.close();
+			}
+		} catch (IOException e) {
+			// the change set is fingerprinted by its own last modified time only, and compiling it will report the problem
+			logger.warn("Unable to read change set " + fileName, e);
+		} catch (SAXException e) {
+			logger.warn("Unable to read change set " + fileName, e);
+		} catch (ParserConfigurationException e) {
+			logger.warn("Unable to read change set " + fileName, e);
+		}
+		return sources;
+	}
+
+	private KnowledgeBase compile(List<String> fileNames) {
+		long start = System.currentTimeMillis();
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		for (String fileName : fileNames) {
+			knowledgeBuilder.add(newResource(fileName), ResourceType.determineResourceType(fileName));
+		}
+		if (knowledgeBuilder.hasErrors()) {
+			throw new RuntimeException("Error in rules: " + knowledgeBuilder.getErrors());
+		}
+		KnowledgeBase knowledgeBase = knowledgeBuilder.newKnowledgeBase();
+		long elapsed = System.currentTimeMillis() - start;
+		compileTime.addAndGet(elapsed);
+		if (logger.isInfoEnabled()) {
+			logger.info("Compiled " + fileNames + " in " + elapsed + "ms");
+		}
+		return knowledgeBase;
+	}
+
+	private Resource newResource(String fileName) {
+		if (fileName.startsWith("classpath:")) {
+			return ResourceFactory.newClassPathResource(fileName.replace("classpath:", ""));
+		}
+		return ResourceFactory.newUrlResource(fileName);
+	}
+
+}
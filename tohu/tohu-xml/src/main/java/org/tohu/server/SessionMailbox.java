@@ -0,0 +1,61 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Serializes the work done against one knowledge session.
+ * </p>
+ *
+ * <p>
+ * A knowledge session must not be executed by more than one thread at a time but overlapping requests from the same HTTP session
+ * are possible. Callers take turns in the order they arrived and each runs only its own work, so the time it takes and any
+ * interruption belong to that caller alone. A caller that is interrupted while waiting for its turn gives up its place without
+ * running anything. Each HTTP session has its own mailbox so different sessions are not serialized with each other.
+ * </p>
+ */
+public class SessionMailbox {
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+
+	/**
+	 * Runs the callable once all work queued before it has finished and returns the result.
+	 *
+	 * @param callable
+	 * @return
+	 */
+	public <T> T execute(Callable<T> callable) {
+		try {
+			lock.lockInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+		try {
+			return callable.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
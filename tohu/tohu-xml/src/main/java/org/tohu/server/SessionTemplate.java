@@ -0,0 +1,341 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.drools.core.command.impl.GenericCommand;
+import org.drools.core.command.runtime.BatchExecutionCommandImpl;
+import org.drools.core.command.runtime.rule.FireAllRulesCommand;
+import org.drools.core.command.runtime.rule.QueryCommand;
+import org.drools.core.common.InternalFactHandle;
+import org.kie.api.command.Command;
+import org.kie.api.marshalling.Marshaller;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.marshalling.MarshallerFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tohu.GroupMembership;
+import org.tohu.SharedMetadata;
+import org.tohu.TohuObject;
+import org.tohu.xml.TohuConverters;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * <p>
+ * A snapshot of a knowledge session taken after the initial <code>fire-all-rules</code>.
+ * </p>
+ *
+ * <p>
+ * The initial state of a questionnaire is identical for every user of the same agent so the rules are fired once in a template session
+ * which is then marshalled. New sessions are restored from the snapshot. Tohu objects are cloned from the template rather than
+ * serialized since their <code>active</code> flag is transient. Clones are shallow so the labels, possible answers, item lists etc.
+ * of every restored session are shared with the template rather than copied. <code>GroupMembership</code> facts are immutable so
+ * the template's instances are inserted into every restored session. Any other facts are serialized in the normal way.
+ * </p>
+ *
+ * <p>
+ * The response to the initial <code>activeObjects</code> query is also cached. Only the fact handles in it differ between sessions so
+ * these are substituted when it is returned.
+ * </p>
+ *
+ * <p>
+ * This is only suitable for rules whose initial state depends on nothing but the rules themselves (and not on e.g. the current time).
+ * Event listeners added by rules in the template session are not carried across to the restored sessions.
+ * </p>
+ */
+public class SessionTemplate {
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionTemplate.class);
+
+	private static final String ACTIVE_OBJECTS = "activeObjects";
+
+	private static final String EXTERNAL_FORM = "external-form=\"";
+
+	private final KnowledgeBase knowledgeBase;
+
+	private final TohuObjectCloningStrategy strategy;
+
+	private final byte[] snapshot;
+
+	/**
+	 * The initial response split either side of each fact handle external form.
+	 */
+	private String[] initialResponseText;
+
+	/**
+	 * Fact handle ids corresponding to the gaps in <code>initialResponseText</code>.
+	 */
+	private int[] initialResponseHandleIds;
+
+	private SessionTemplate(KnowledgeBase knowledgeBase, TohuObjectCloningStrategy strategy, byte[] snapshot) {
+		this.knowledgeBase = knowledgeBase;
+		this.strategy = strategy;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Fires the rules in a new template session and takes a snapshot of it.
+	 *
+	 * Returns null if the session cannot be marshalled e.g. because it contains facts which are not serializable.
+	 *
+	 * @param knowledgeBase
+	 * @return
+	 */
+	public static SessionTemplate create(KnowledgeBase knowledgeBase) {
+		long start = System.currentTimeMillis();
+		TohuObjectCloningStrategy strategy = new TohuObjectCloningStrategy();
+		StatefulKnowledgeSession templateSession = knowledgeBase.newStatefulKnowledgeSession();
+		byte[] snapshot;
+		try {
+			// labels etc. set by the rules here are what every restored session will have so they are shared
+			SharedMetadata.startSharing();
+			try {
+				templateSession.fireAllRules();
+			} finally {
+				SharedMetadata.stopSharing();
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			newMarshaller(knowledgeBase, strategy).marshall(out, templateSession);
+			snapshot = out.toByteArray();
+		} catch (Exception e) {
+			logger.warn("Unable to create template session, sessions will be created individually", e);
+			return null;
+		} finally {
+			templateSession.dispose();
+		}
+		SessionTemplate template = new SessionTemplate(knowledgeBase, strategy, snapshot);
+		template.initialiseResponse();
+		if (logger.isInfoEnabled()) {
+			logger.info("Created template session of " + snapshot.length + " bytes in " + (System.currentTimeMillis() - start) + "ms");
+		}
+		return template;
+	}
+
+	/**
+	 * Restores a new knowledge session from the snapshot.
+	 *
+	 * @return
+	 */
+	public StatefulKnowledgeSession newKnowledgeSession() {
+		try {
+			return (StatefulKnowledgeSession) newMarshaller(knowledgeBase, strategy).unmarshall(new ByteArrayInputStream(snapshot));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns true if the command is the initial questionnaire request i.e. <code>fire-all-rules</code> followed by the
+	 * <code>activeObjects</code> query.
+	 *
+	 * @param command
+	 * @return
+	 */
+	public boolean isInitialRequest(Command<?> command) {
+		if (!(command instanceof BatchExecutionCommandImpl)) {
+			return false;
+		}
+		List<?> commands = ((BatchExecutionCommandImpl) command).getCommands();
+		if (commands == null || commands.size() != 2 || !(commands.get(0) instanceof FireAllRulesCommand)
+				|| !(commands.get(1) instanceof QueryCommand)) {
+			return false;
+		}
+		FireAllRulesCommand fireAllRules = (FireAllRulesCommand) commands.get(0);
+		QueryCommand query = (QueryCommand) commands.get(1);
+		return fireAllRules.getOutIdentifier() == null && fireAllRules.getAgendaFilter() == null
+				&& ACTIVE_OBJECTS.equals(query.getName()) && ACTIVE_OBJECTS.equals(query.getOutIdentifier())
+				&& (query.getArguments() == null || query.getArguments().isEmpty());
+	}
+
+	/**
+	 * Writes the response to the initial questionnaire request for a session restored from this template.
+	 *
+	 * @param knowledgeSession
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeInitialResponse(StatefulKnowledgeSession knowledgeSession, Writer writer) throws IOException {
+		writeInitialResponse(getExternalForms(knowledgeSession), writer);
+	}
+
+	/**
+	 * Returns the external form of each fact handle in a session restored from this template, by id, for
+	 * {@link #writeInitialResponse(Map, Writer)}.
+	 *
+	 * @param knowledgeSession
+	 * @return
+	 */
+	public Map<Integer, String> getExternalForms(StatefulKnowledgeSession knowledgeSession) {
+		Map<Integer, String> externalForms = new HashMap<Integer, String>();
+		for (FactHandle factHandle : knowledgeSession.getFactHandles()) {
+			externalForms.put(((InternalFactHandle) factHandle).getId(), factHandle.toExternalForm());
+		}
+		return externalForms;
+	}
+
+	/**
+	 * Writes the response to the initial questionnaire request given the external forms of the restored session's fact handles.
+	 *
+	 * @param externalForms
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeInitialResponse(Map<Integer, String> externalForms, Writer writer) throws IOException {
+		for (int i = 0; i < initialResponseHandleIds.length; i++) {
+			writer.write(initialResponseText[i]);
+			writer.write(externalForms.get(initialResponseHandleIds[i]));
+		}
+		writer.write(initialResponseText[initialResponseHandleIds.length]);
+	}
+
+	/**
+	 * Runs the initial questionnaire request against a restored session and splits the response around the fact handles.
+	 */
+	private void initialiseResponse() {
+		StatefulKnowledgeSession knowledgeSession = newKnowledgeSession();
+		String xml;
+		try {
+			List<GenericCommand<?>> commands = new ArrayList<GenericCommand<?>>();
+			commands.add(new FireAllRulesCommand());
+			commands.add(new QueryCommand(ACTIVE_OBJECTS, ACTIVE_OBJECTS));
+			XStream xstream = TohuConverters.newXStreamMarshaller();
+			xml = xstream.toXML(knowledgeSession.execute(new BatchExecutionCommandImpl(commands)));
+		} finally {
+			knowledgeSession.dispose();
+		}
+		List<String> text = new ArrayList<String>();
+		List<Integer> handleIds = new ArrayList<Integer>();
+		int from = 0;
+		int start;
+		while ((start = xml.indexOf(EXTERNAL_FORM, from)) >= 0) {
+			start += EXTERNAL_FORM.length();
+			int end = xml.indexOf('"', start);
+			text.add(xml.substring(from, start));
+			// external form is 0:id:identityHashCode:hashCode:recency:...
+			handleIds.add(Integer.valueOf(xml.substring(start, end).split(":")[1]));
+			from = end;
+		}
+		text.add(xml.substring(from));
+		initialResponseText = text.toArray(new String[text.size()]);
+		initialResponseHandleIds = new int[handleIds.size()];
+		for (int i = 0; i < initialResponseHandleIds.length; i++) {
+			initialResponseHandleIds[i] = handleIds.get(i);
+		}
+	}
+
+	private static Marshaller newMarshaller(KnowledgeBase knowledgeBase, TohuObjectCloningStrategy strategy) {
+		return MarshallerFactory.newMarshaller(knowledgeBase, new ObjectMarshallingStrategy[] { strategy,
+				MarshallerFactory.newSerializeMarshallingStrategy() });
+	}
+
+	/**
+	 * Marshals Tohu objects by keeping the template instances in memory and unmarshals them as clones of these. Group memberships
+	 * are unmarshalled as the template instances themselves.
+	 */
+	private static class TohuObjectCloningStrategy implements ObjectMarshallingStrategy {
+
+		private final List<Object> objects = new ArrayList<Object>();
+
+		public boolean accept(Object object) {
+			return object instanceof TohuObject || object instanceof GroupMembership;
+		}
+
+		public void write(ObjectOutputStream os, Object object) throws IOException {
+			os.writeInt(add(object));
+		}
+
+		public Object read(ObjectInputStream os) throws IOException, ClassNotFoundException {
+			return copy(os.readInt());
+		}
+
+		public byte[] marshal(Context context, ObjectOutputStream os, Object object) throws IOException {
+			int index = add(object);
+			return new byte[] { (byte) (index >>> 24), (byte) (index >>> 16), (byte) (index >>> 8), (byte) index };
+		}
+
+		public Object unmarshal(Context context, ObjectInputStream is, byte[] object, ClassLoader classloader) throws IOException,
+				ClassNotFoundException {
+			int index = ((object[0] & 0xFF) << 24) | ((object[1] & 0xFF) << 16) | ((object[2] & 0xFF) << 8) | (object[3] & 0xFF);
+			if (context instanceof CloningContext) {
+				return ((CloningContext) context).copy(this, index);
+			}
+			return copy(index);
+		}
+
+		public Context createContext() {
+			return new CloningContext();
+		}
+
+		private synchronized int add(Object object) {
+			objects.add(object);
+			return objects.size() - 1;
+		}
+
+		private synchronized Object copy(int index) {
+			Object object = objects.get(index);
+			if (!(object instanceof TohuObject)) {
+				return object;
+			}
+			try {
+				return ((TohuObject) object).clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Ensures that an object is only cloned once per unmarshal.
+	 */
+	private static class CloningContext implements ObjectMarshallingStrategy.Context {
+
+		private final Map<Integer, Object> copies = new HashMap<Integer, Object>();
+
+		private Object copy(TohuObjectCloningStrategy strategy, int index) {
+			Object copy = copies.get(index);
+			if (copy == null) {
+				copy = strategy.copy(index);
+				copies.put(index, copy);
+			}
+			return copy;
+		}
+
+		public void read(ObjectInputStream ois) {
+		}
+
+		public void write(ObjectOutputStream oos) {
+		}
+
+	}
+
+}
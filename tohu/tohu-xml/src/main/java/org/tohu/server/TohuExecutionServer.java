@@ -16,7 +16,12 @@
 package org.tohu.server;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -24,15 +29,21 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
-import org.drools.core.runtime.help.impl.XStreamXML;
 import org.kie.api.command.Command;
+import org.kie.api.runtime.ExecutionResults;
 import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.SharedMetadata;
+import org.tohu.TohuObject;
+import org.tohu.json.JsonCodec;
+import org.tohu.xml.TohuConverters;
 
 import com.thoughtworks.xstream.XStream;
 
 /**
  * Servlet that provides an XML interface to the Drools knowledge session.
  * 
+ * Requests with a content type of application/json are handled by {@link JsonCodec} instead and get a JSON response.
+ * 
  * A separate knowledge session is maintained per HTTP session so that each user sees a different instance of the questionnaire.
  * 
  * This class provides equivalent functionality to drools-camel and was created because that module doesn't support a session-scoped
@@ -49,10 +60,80 @@ public class TohuExecutionServer extends HttpServlet {
 
 	private static final String AGENT = "agent";
 
+	private static final String EXECUTION_THREADS = "execution-threads";
+
+	private static final String EXECUTION_QUEUE_DEPTH = "execution-queue-depth";
+
+	private static final String RETRY_AFTER = "retry-after";
+
+	private static final String RULE_CHECK_INTERVAL = "rule-check-interval";
+
+	private static final int DEFAULT_QUEUE_DEPTH = 100;
+
+	private static final String DEFAULT_RETRY_AFTER = "1";
+
+	private static final String DEFAULT_ENCODING = "UTF-8";
+
 	private XStream xstream;
 
+	private JsonCodec jsonCodec;
+
+	private CommandExecutor executor;
+
+	private String retryAfter;
+
 	public TohuExecutionServer() {
-		xstream = XStreamXML.newXStreamMarshaller(new XStream());
+		xstream = TohuConverters.newXStreamMarshaller();
+		jsonCodec = new JsonCodec(xstream);
+	}
+
+	/**
+	 * If the <code>execution-threads</code> init parameter is set then rules are executed on a bounded pool of that many threads
+	 * rather than on the container thread. The <code>execution-queue-depth</code> init parameter limits how many requests may wait
+	 * for a pool thread (default 100); beyond that requests are rejected with a 503 and a <code>Retry-After</code> of
+	 * <code>retry-after</code> seconds (default 1).
+	 * 
+	 * The <code>rule-check-interval</code> init parameter is how often, in seconds, the rule files are checked for changes (default
+	 * 5). If it is negative they are never checked again once compiled. See <code>KnowledgeBaseCache</code>.
+	 * 
+	 * @see javax.servlet.GenericServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		String threads = getInitParameter(EXECUTION_THREADS);
+		if (threads != null) {
+			String queueDepth = getInitParameter(EXECUTION_QUEUE_DEPTH);
+			executor = new CommandExecutor(Integer.parseInt(threads), queueDepth == null ? DEFAULT_QUEUE_DEPTH : Integer
+					.parseInt(queueDepth));
+		}
+		retryAfter = getInitParameter(RETRY_AFTER);
+		if (retryAfter == null) {
+			retryAfter = DEFAULT_RETRY_AFTER;
+		}
+		String ruleCheckInterval = getInitParameter(RULE_CHECK_INTERVAL);
+		if (ruleCheckInterval != null) {
+			long seconds = Long.parseLong(ruleCheckInterval);
+			KnowledgeBaseCache.getInstance().setCheckIntervalMillis(seconds < 0 ? -1 : seconds * 1000);
+		}
+	}
+
+	/**
+	 * @see javax.servlet.GenericServlet#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the executor used to run rules, or null if they are run on the container thread.
+	 * 
+	 * @return
+	 */
+	public CommandExecutor getExecutor() {
+		return executor;
 	}
 
 	/**
@@ -61,29 +142,134 @@ public class TohuExecutionServer extends HttpServlet {
 	@Override
 	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		HttpSession session = request.getSession();
-		ExecutionServerHelper helper = new ExecutionServerHelper(session);
-		StatefulKnowledgeSession knowledgeSession = helper.getKnowledgeSession();
-		if (knowledgeSession == null) {
-			String agentName = request.getParameter(AGENT);
-			knowledgeSession = helper.newKnowledgeSession(agentName);
+		final ExecutionServerHelper helper = new ExecutionServerHelper(session);
+		final String agentName = request.getParameter(AGENT);
+		final boolean json = JsonCodec.isJson(request.getContentType());
+		final Command<?> command;
+		if (json) {
+			String encoding = request.getCharacterEncoding();
+			try {
+				command = jsonCodec.decode(new InputStreamReader(request.getInputStream(), encoding == null ? DEFAULT_ENCODING
+						: encoding));
+			} catch (IllegalArgumentException e) {
+				response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+				return;
+			}
+			response.setContentType(JsonCodec.CONTENT_TYPE + "; charset=" + DEFAULT_ENCODING);
+		} else {
+			command = (Command<?>) xstream.fromXML(request.getInputStream());
+			response.setContentType("text/xml");
+		}
+		Response results;
+		if (executor != null) {
+			try {
+				results = executor.execute(new Callable<Response>() {
+					public Response call() {
+						return execute(helper, agentName, command, json);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				response.setHeader("Retry-After", retryAfter);
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				return;
+			}
+		} else {
+			results = execute(helper, agentName, command, json);
 		}
-		Command<?> command = (Command<?>) xstream.fromXML(request.getInputStream());
-		Object results = knowledgeSession.execute(command);
-		String xml = xstream.toXML(results);
-		response.setContentType("text/xml");
 		PrintWriter writer = response.getWriter();
-		writer.write(xml);
+		results.write(writer);
 		writer.close();
 	}
 
+	/**
+	 * The results of a request, ready to be written to the response.
+	 */
+	private interface Response {
+
+		void write(Writer writer) throws IOException;
+
+	}
+
+	/**
+	 * Executes the command and returns the results to be written to the response.
+	 * 
+	 * This goes through the HTTP session's mailbox so that overlapping requests from the same user are run one at a time. The
+	 * results are streamed to the response after the mailbox job has returned so that a slow client doesn't hold up the
+	 * mailbox, and without being buffered. They refer to live objects in the knowledge session, so if the same user sends
+	 * overlapping requests (which the clients don't) a response may show changes made by the later request.
+	 * 
+	 * The session template's pre-marshalled initial response is XML so JSON requests always execute the command.
+	 * 
+	 * @param helper
+	 * @param agentName
+	 * @param command
+	 * @param json
+	 * @return
+	 */
+	private Response execute(final ExecutionServerHelper helper, final String agentName, final Command<?> command,
+			final boolean json) {
+		return helper.getMailbox().execute(new Callable<Response>() {
+			public Response call() {
+				StatefulKnowledgeSession knowledgeSession = helper.getKnowledgeSession();
+				boolean created = false;
+				if (knowledgeSession == null) {
+					knowledgeSession = helper.newKnowledgeSession(agentName);
+					created = true;
+				}
+				SessionTemplate template = helper.removeSessionTemplate();
+				try {
+					if (!json && template != null && template.isInitialRequest(command)) {
+						final SessionTemplate initialTemplate = template;
+						final Map<Integer, String> externalForms = template.getExternalForms(knowledgeSession);
+						return new Response() {
+							public void write(Writer writer) throws IOException {
+								initialTemplate.writeInitialResponse(externalForms, writer);
+							}
+						};
+					}
+					// the first request to a new session builds the questionnaire, so share its labels etc. with other sessions
+					boolean sharing = created && template == null;
+					if (sharing) {
+						SharedMetadata.startSharing();
+					}
+					final Object results;
+					try {
+						results = knowledgeSession.execute(command);
+					} finally {
+						if (sharing) {
+							SharedMetadata.stopSharing();
+						}
+					}
+					return new Response() {
+						public void write(Writer writer) throws IOException {
+							if (json) {
+								jsonCodec.encode((ExecutionResults) results, writer);
+							} else {
+								xstream.toXML(results, writer);
+							}
+						}
+					};
+				} finally {
+					// normally done by the ChangeCollector's cleanup rule but mailbox threads are pooled
+					TohuObject.stopTracking();
+				}
+			}
+		});
+	}
+
 	/**
 	 * @see javax.servlet.http.HttpServlet#doDelete(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
 	 */
 	@Override
 	protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		HttpSession session = request.getSession();
-		ExecutionServerHelper helper = new ExecutionServerHelper(session);
-		helper.removeKnowledgeSession();
+		final ExecutionServerHelper helper = new ExecutionServerHelper(session);
+		helper.getMailbox().execute(new Callable<Object>() {
+			public Object call() {
+				helper.removeKnowledgeSession();
+				return null;
+			}
+		});
 	}
 
 }
@@ -15,13 +15,15 @@
  */
 package org.tohu.xml;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.kie.api.event.rule.ObjectDeletedEvent;
 import org.kie.api.event.rule.ObjectInsertedEvent;
@@ -33,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import org.tohu.Answer;
 import org.tohu.InvalidAnswer;
 import org.tohu.Item;
+import org.tohu.ModificationTracker;
 import org.tohu.Question;
 import org.tohu.TohuObject;
 
@@ -41,7 +44,24 @@ import org.tohu.TohuObject;
  * Builds up lists of the Tohu objects created, updated or deleted as a result of a question being answered.
  * </p>
  * <p>
- * These lists are built up as the changes occur because they are read via reflection and we won't know when this happens.
+ * These lists are built up as the changes occur because they are read by the converters when the results are marshalled and we won't
+ * know when this happens. Each is kept as a map from id to object, in the order that the objects were last changed, so that a later
+ * change to the same object replaces the earlier one in constant time.
+ * </p>
+ * <p>
+ * Rather than copying every object up front, the collector tracks modifications made by the current thread (see
+ * {@link TohuObject#startTracking(ModificationTracker)}) and only copies an object when it is about to be changed for the first time,
+ * or when an event is received for it. The cost is therefore proportional to what changes rather than to the size of the session.
+ * </p>
+ * <p>
+ * An object changed without {@link TohuObject#changing()} being called (e.g. by a subclass setter or a mutable value changed in
+ * place) is only copied when its update event arrives, after the change. For these the collector falls back to comparing against the
+ * fingerprint taken when the object was last reported (see {@link #stopTracking()}) and sends the whole object if it differs or if
+ * there is no fingerprint.
+ * </p>
+ * <p>
+ * If the client asks for deltas then only the fields of an updated item which have changed are sent back, along with its id (see
+ * {@link DeltaWriter}).
  * </p>
  * <p>
  * There is special handling for:
@@ -60,7 +80,7 @@ import org.tohu.TohuObject;
  * 
  * @author Damon Horrell
  */
-public class ChangeCollector implements RuleRuntimeEventListener {
+public class ChangeCollector implements RuleRuntimeEventListener, ModificationTracker {
 
 	private final static Logger logger = LoggerFactory.getLogger(ChangeCollector.class);
 
@@ -76,32 +96,152 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 	 */
 	private transient Map<String, String> clientAnswers;
 
-	private Map<Object, FactHandle> create;
+	/**
+	 * The modification tracking epoch or zero if the original objects were all supplied up front.
+	 */
+	private transient long epoch;
 
-	private List<Object> update;
+	/**
+	 * Whether the client wants only the changed fields of updated items. This is set from the client's request and isn't written back.
+	 */
+	private transient boolean deltas;
 
-	// delete list contains ItemId and InvalidAnswer
-	private List<Object> delete;
+	/**
+	 * The names of the changed fields of each updated item, by id. Only used for deltas.
+	 */
+	private transient Map<String, Set<String>> changedFields;
+
+	/**
+	 * The ids of objects which were changed without being tracked.
+	 */
+	private transient Set<String> untrackedChanges;
 
-	Map<Object, FactHandle> getCreate() {
-		return create;
+	/**
+	 * The objects we have received insert or update events for, by id. Their fingerprints are taken when tracking stops.
+	 */
+	private transient Map<String, TohuObject> seen = new HashMap<String, TohuObject>();
+
+	private transient Map<String, TohuObject> create = new LinkedHashMap<String, TohuObject>();
+
+	private transient Map<String, FactHandle> createFactHandles = new HashMap<String, FactHandle>();
+
+	private transient Map<String, TohuObject> update = new LinkedHashMap<String, TohuObject>();
+
+	// delete contains ItemId and InvalidAnswer
+	private transient Map<String, Object> delete = new LinkedHashMap<String, Object>();
+
+	/**
+	 * @return the created objects and their fact handles or null if there are none
+	 */
+	public Map<Object, FactHandle> getCreate() {
+		if (create.isEmpty()) {
+			return null;
+		}
+		Map<Object, FactHandle> result = new LinkedHashMap<Object, FactHandle>();
+		for (Map.Entry<String, TohuObject> entry : create.entrySet()) {
+			result.put(entry.getValue(), createFactHandles.get(entry.getKey()));
+		}
+		return result;
 	}
 
-	List<Object> getUpdate() {
-		return update;
+	/**
+	 * @return the updated objects or null if there are none
+	 */
+	public List<Object> getUpdate() {
+		return update.isEmpty() ? null : new ArrayList<Object>(update.values());
 	}
 
-	List<Object> getDelete() {
-		return delete;
+	/**
+	 * @return the ids of deleted items and deleted invalid answers or null if there are none
+	 */
+	public List<Object> getDelete() {
+		return delete.isEmpty() ? null : new ArrayList<Object>(delete.values());
+	}
+
+	public boolean isDeltas() {
+		return deltas;
+	}
+
+	public void setDeltas(boolean deltas) {
+		this.deltas = deltas;
+	}
+
+	/**
+	 * Returns the names of the fields which have changed on an updated item.
+	 * 
+	 * @param object
+	 *            an object from the update list
+	 * @return null if the whole object should be sent
+	 */
+	public Set<String> getChangedFields(Object object) {
+		if (changedFields == null || !(object instanceof Item)) {
+			return null;
+		}
+		return changedFields.get(((Item) object).getId());
 	}
 
 	public boolean initialised() {
 		return originalObjects != null;
 	}
 
+	/**
+	 * Starts tracking modifications to Tohu objects made by the current thread. Original values are copied as objects are first
+	 * changed.
+	 */
+	public void initialise() {
+		originalObjects = new HashMap<String, TohuObject>();
+		epoch = TohuObject.nextEpoch();
+		TohuObject.startTracking(this);
+	}
+
+	/**
+	 * Stops tracking modifications and takes a fingerprint of each object that we have received an event for, which the next
+	 * collector can compare against if one of them is changed without being tracked.
+	 */
+	public void stopTracking() {
+		if (epoch != 0) {
+			TohuObject.stopTracking();
+		}
+		for (TohuObject object : seen.values()) {
+			object.setFingerprint(FieldComparator.fingerprint(object));
+		}
+		seen.clear();
+	}
+
+	/**
+	 * @see org.tohu.ModificationTracker#getEpoch()
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * @see org.tohu.ModificationTracker#beforeFirstChange(org.tohu.TohuObject)
+	 */
+	public void beforeFirstChange(TohuObject object) {
+		String id = object.getId();
+		// keep the first original if a different instance with the same id has already been seen
+		if (!originalObjects.containsKey(id)) {
+			try {
+				originalObjects.put(id, (TohuObject) object.clone());
+			} catch (CloneNotSupportedException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Records an answer provided by the client before the collector was initialised.
+	 * 
+	 * @param answer
+	 */
+	public void addClientAnswer(Answer answer) {
+		storeClientAnswer(answer);
+	}
+
 	/**
 	 * <p>
-	 * Makes copies of the original value all the objects that we wish to track.
+	 * Makes copies of the original value all the objects that we wish to track. Modifications are not tracked.
 	 * </p>
 	 * <p>
 	 * Shallow copies are sufficient since none of our objects contain children. (All lists are stored as comma-delimited strings so they
@@ -135,8 +275,10 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 		if (event.getObject() instanceof TohuObject) {
 			TohuObject newObject = (TohuObject) event.getObject();
 			String id = newObject.getId();
+			// a newly inserted object is never its own original
 			TohuObject originalObject = getOriginalObject(id);
 			logger.debug("==>ObjectInserted: Inserting Tohu Fact with ID [" + id + "] into working memry");
+			seen.put(id, newObject);
 			processChange(id, originalObject, newObject, newObject, event.getFactHandle());
 		} else if (event.getObject() instanceof Answer) {
 			Answer answer = (Answer) event.getObject();
@@ -154,7 +296,17 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 			TohuObject newObject = (TohuObject) event.getObject();
 			String id = newObject.getId();
 			logger.debug("==> ObjectUpdated: Updating Fact with ID [" + id + "] that exists in Working Memry");
-			TohuObject originalObject = getOriginalObject(id);
+			// if tracking and this is the first we've heard of it then the copy taken now already has any changes
+			boolean untracked = epoch != 0 && (originalObjects == null || !originalObjects.containsKey(id));
+			TohuObject originalObject = getOriginalObject(newObject);
+			if (untracked && newObject.getFingerprint() != FieldComparator.fingerprint(newObject)) {
+				logger.debug("==> ObjectUpdated: Fact with ID [" + id + "] was changed without being tracked");
+				if (untrackedChanges == null) {
+					untrackedChanges = new HashSet<String>();
+				}
+				untrackedChanges.add(id);
+			}
+			seen.put(id, newObject);
 			processChange(id, originalObject, newObject, newObject, event.getFactHandle());
 		}
 	}
@@ -168,11 +320,25 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 			TohuObject oldObject = (TohuObject) event.getOldObject();
 			String id = oldObject.getId();
 			logger.debug("==> ObjectRemoved: Removing Fact with ID [" + id + "] from Working Memry");
-			TohuObject originalObject = getOriginalObject(id);
+			TohuObject originalObject = getOriginalObject(oldObject);
 			processChange(id, originalObject, null, oldObject, event.getFactHandle());
 		}
 	}
 
+	/**
+	 * Fetches the original version of an object already in working memory. If modifications are being tracked and the object hasn't
+	 * been changed yet then it is copied now.
+	 * 
+	 * @param object
+	 * @return
+	 */
+	private TohuObject getOriginalObject(TohuObject object) {
+		if (epoch != 0) {
+			object.changing();
+		}
+		return getOriginalObject(object.getId());
+	}
+
 	/**
 	 * Fetches the original version of the object for the specified id. If we don't have one then this must be a new object being created so
 	 * we add it (as null to indicate that it didn't orginally exist).
@@ -204,67 +370,58 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 	 * @param originalObject
 	 * @param newObject
 	 * @param recentObject
-	 *            A recent instance of this object which is used only for removing objects from lists. This is required because it is
-	 *            possible for both oldObject and newObject to be null if we are processing a delete right after a create.
+	 *            A recent instance of this object which is used for the delete list. This is required because it is possible for both
+	 *            oldObject and newObject to be null if we are processing a delete right after a create.
 	 */
 	private void processChange(String id, TohuObject originalObject, TohuObject newObject, TohuObject recentObject, FactHandle factHandle) {
 		// remove previous change
-		if (create != null) {
-			create.remove(recentObject);
-		}
-		if (update != null) {
-			update.remove(recentObject);
+		create.remove(id);
+		createFactHandles.remove(id);
+		update.remove(id);
+		delete.remove(id);
+		// determine what we need to do
+		boolean isCreate = (originalObject == null || !originalObject.isActive()) && newObject != null && newObject.isActive();
+		boolean isUpdate = originalObject != null && originalObject.isActive() && newObject != null && newObject.isActive();
+		if (changedFields != null) {
+			changedFields.remove(id);
 		}
-		if (delete != null) {
-			if (recentObject instanceof InvalidAnswer) {
-				delete.remove(recentObject);
+		if (isUpdate && untrackedChanges != null && untrackedChanges.contains(id)) {
+			// the original is unknown so send the whole object
+		} else if (isUpdate) {
+			if (deltas && newObject instanceof Item && originalObject.equals(newObject)) {
+				Set<String> fields = getChangedFields(originalObject, newObject);
+				isUpdate = !fields.isEmpty();
+				if (isUpdate) {
+					if (changedFields == null) {
+						changedFields = new HashMap<String, Set<String>>();
+					}
+					changedFields.put(id, fields);
+				}
 			} else {
-				delete.remove(new ItemId((Item) recentObject));
+				isUpdate = different(originalObject, newObject);
 			}
 		}
-		// determine what we need to do
-		boolean isCreate = (originalObject == null || !originalObject.isActive()) && newObject != null && newObject.isActive();
-		boolean isUpdate = originalObject != null && originalObject.isActive() && newObject != null && newObject.isActive()
-				&& different(originalObject, newObject);
 		boolean isDelete = originalObject != null && originalObject.isActive() && (newObject == null || !newObject.isActive());
 		// make the change
 		if (isCreate) {
-			if (create == null) {
-				create = new HashMap<Object, FactHandle>();
-			}
-			create.put(newObject, factHandle);
+			create.put(id, newObject);
+			createFactHandles.put(id, factHandle);
 		}
 		if (isUpdate) {
-			if (update == null) {
-				update = new ArrayList<Object>();
-			}
-			update.add(newObject);
+			update.put(id, newObject);
 		}
 		if (isDelete) {
-			if (delete == null) {
-				delete = new ArrayList<Object>();
-			}
 			if (recentObject instanceof InvalidAnswer) {
-				delete.add(recentObject);
+				delete.put(id, recentObject);
 			} else {
-				delete.add(new ItemId((Item) recentObject));
+				delete.put(id, new ItemId((Item) recentObject));
 			}
 		}
-		// remove empty lists
-		if (create != null && create.isEmpty()) {
-			create = null;
-		}
-		if (update != null && update.isEmpty()) {
-			update = null;
-		}
-		if (delete != null && delete.isEmpty()) {
-			delete = null;
-		}
 	}
 
 	/**
 	 * <p>
-	 * Performs a deep comparison (using reflection) of two objects to determine whether they are different.
+	 * Performs a deep comparison (using cached per-class field comparators) of two objects to determine whether they are different.
 	 * </p>
 	 * <p>
 	 * If the object is a Question then the answer is treated specially because the original value of the answer from our point of view is
@@ -288,6 +445,38 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 			return true;
 		}
 		// special handling for Question answers
+		if (answerChanged(originalObject, newObject)) {
+			return true;
+		}
+		return FieldComparator.different(originalObject, newObject);
+	}
+
+	/**
+	 * Returns the names of the fields which are different on two versions of the same object. A changed answer is reported as the answer
+	 * field for the question's type.
+	 * 
+	 * @param originalObject
+	 * @param newObject
+	 * @return
+	 */
+	private Set<String> getChangedFields(TohuObject originalObject, TohuObject newObject) {
+		Set<String> fields = new LinkedHashSet<String>();
+		FieldComparator.addChangedFields(originalObject, newObject, fields);
+		if (answerChanged(originalObject, newObject)) {
+			fields.add(((Question) newObject).getBasicAnswerType() + "Answer");
+		}
+		return fields;
+	}
+
+	/**
+	 * Compares question answers, taking into account the value provided by the client.
+	 * 
+	 * @param originalObject
+	 * @param newObject
+	 * @return
+	 * @see #different(TohuObject, TohuObject)
+	 */
+	private boolean answerChanged(TohuObject originalObject, TohuObject newObject) {
 		if (originalObject instanceof Question) {
 			Question originalQuestion = (Question) originalObject;
 			String originalAnswer;
@@ -300,38 +489,9 @@ public class ChangeCollector implements RuleRuntimeEventListener {
 			}
 			Question newQuestion = (Question) newObject;
 			String newAnswer = newQuestion.getAnswer() == null ? null : newQuestion.getAnswer().toString();
-			if (originalAnswer == null ? newAnswer != null : !originalAnswer.equals(newAnswer)) {
-				return true;
-			}
+			return originalAnswer == null ? newAnswer != null : !originalAnswer.equals(newAnswer);
 		}
-		Class<?> clazz = originalObject.getClass();
-		do {
-			// compare all non-static non-transient fields
-			for (Field field : clazz.getDeclaredFields()) {
-				int modifiers = field.getModifiers();
-				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
-					boolean answerField = field.isAnnotationPresent(Question.AnswerField.class);
-					// answer fields are skipped because we have checked this already
-					if (!answerField) {
-						field.setAccessible(true);
-						try {
-							Object originalValue = field.get(originalObject);
-							Object newValue = field.get(newObject);
-							if (originalValue == null ? newValue != null : !originalValue.equals(newValue)) {
-								return true;
-							}
-						} catch (IllegalArgumentException e) {
-							throw new RuntimeException(e);
-						} catch (IllegalAccessException e) {
-							throw new RuntimeException(e);
-						}
-					}
-				}
-			}
-			clazz = clazz.getSuperclass();
-		} while (clazz != null);
 		return false;
-
 	}
 
 	private void storeClientAnswer(Answer answer) {
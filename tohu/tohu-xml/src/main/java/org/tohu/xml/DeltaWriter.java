@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.WriterWrapper;
+
+/**
+ * <p>
+ * Filters the output of a Tohu converter down to the id and the fields that have changed.
+ * </p>
+ * <p>
+ * The whole object, including its root node, must be written through this writer. Changed fields that the converter didn't write
+ * (because they are now null) are written as empty elements with a <code>null="true"</code> attribute so that the client knows to
+ * clear them, and can tell them apart from fields that are now empty strings.
+ * </p>
+ */
+public class DeltaWriter extends WriterWrapper {
+
+	private static final String ID = "id";
+
+	/**
+	 * The attribute marking a field that has been cleared.
+	 */
+	public static final String NULL = "null";
+
+	private final Set<String> fields;
+
+	private final Set<String> written = new HashSet<String>();
+
+	private int depth;
+
+	// the depth of the field being skipped or zero if not skipping
+	private int skipping;
+
+	/**
+	 * @param writer
+	 * @param fields
+	 *            the names of the fields to write
+	 */
+	public DeltaWriter(HierarchicalStreamWriter writer, Set<String> fields) {
+		super(writer);
+		this.fields = fields;
+	}
+
+	@Override
+	public void startNode(String name) {
+		if (start(name)) {
+			super.startNode(name);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void startNode(String name, Class clazz) {
+		if (start(name)) {
+			super.startNode(name, clazz);
+		}
+	}
+
+	private boolean start(String name) {
+		depth++;
+		if (skipping == 0 && depth == 2) {
+			if (name.equals(ID) || fields.contains(name)) {
+				written.add(name);
+			} else {
+				skipping = depth;
+			}
+		}
+		return skipping == 0;
+	}
+
+	@Override
+	public void addAttribute(String name, String value) {
+		if (skipping == 0) {
+			super.addAttribute(name, value);
+		}
+	}
+
+	@Override
+	public void setValue(String text) {
+		if (skipping == 0) {
+			super.setValue(text);
+		}
+	}
+
+	@Override
+	public void endNode() {
+		if (skipping == 0) {
+			if (depth == 1) {
+				// fields that have been cleared
+				for (String field : fields) {
+					if (!written.contains(field)) {
+						super.startNode(field);
+						super.addAttribute(NULL, "true");
+						super.endNode();
+					}
+				}
+			}
+			super.endNode();
+		} else if (skipping == depth) {
+			skipping = 0;
+		}
+		depth--;
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.tohu.Question;
+
+/**
+ * <p>
+ * Compares all the non-static non-transient fields of two objects of the same class, except for those marked with
+ * {@link Question.AnswerField}. Also computes a fingerprint of all the non-static non-transient fields of an object, including
+ * the answer fields.
+ * </p>
+ * <p>
+ * The fields are looked up and made accessible once per class and the comparators are cached, so the only reflection left per call
+ * is reading the values. Primitive fields are read with the primitive accessors to avoid boxing.
+ * </p>
+ */
+abstract class FieldComparator {
+
+	private static final ConcurrentMap<Class<?>, FieldComparator[]> comparators = new ConcurrentHashMap<Class<?>, FieldComparator[]>();
+
+	protected final Field field;
+
+	private final boolean answerField;
+
+	private FieldComparator(Field field) {
+		this.field = field;
+		answerField = field.isAnnotationPresent(Question.AnswerField.class);
+	}
+
+	/**
+	 * Returns true if any of the compared fields are different.
+	 * 
+	 * @param originalObject
+	 * @param newObject
+	 * @return
+	 */
+	static boolean different(Object originalObject, Object newObject) {
+		try {
+			for (FieldComparator comparator : forClass(originalObject.getClass())) {
+				if (!comparator.answerField && comparator.differs(originalObject, newObject)) {
+					return true;
+				}
+			}
+			return false;
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Adds the names of all the compared fields which are different.
+	 * 
+	 * @param originalObject
+	 * @param newObject
+	 * @param names
+	 */
+	static void addChangedFields(Object originalObject, Object newObject, Collection<String> names) {
+		try {
+			for (FieldComparator comparator : forClass(originalObject.getClass())) {
+				if (!comparator.answerField && comparator.differs(originalObject, newObject)) {
+					names.add(comparator.field.getName());
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns a hash of the current values of all the fields, answer fields included. Values are hashed when this is called, so a
+	 * mutable value such as a Date or an array which is later changed in place gives a different fingerprint.
+	 * 
+	 * @param object
+	 * @return
+	 */
+	static long fingerprint(Object object) {
+		try {
+			long result = 1;
+			for (FieldComparator comparator : forClass(object.getClass())) {
+				result = 31 * result + comparator.hash(object);
+			}
+			return result;
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static FieldComparator[] forClass(Class<?> clazz) {
+		FieldComparator[] result = comparators.get(clazz);
+		if (result == null) {
+			// a race here just builds the same comparators twice
+			result = create(clazz);
+			comparators.put(clazz, result);
+		}
+		return result;
+	}
+
+	private static FieldComparator[] create(Class<?> clazz) {
+		List<FieldComparator> result = new ArrayList<FieldComparator>();
+		do {
+			for (Field field : clazz.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					field.setAccessible(true);
+					result.add(create(field));
+				}
+			}
+			clazz = clazz.getSuperclass();
+		} while (clazz != null);
+		return result.toArray(new FieldComparator[result.size()]);
+	}
+
+	private static FieldComparator create(Field field) {
+		Class<?> type = field.getType();
+		if (type == boolean.class) {
+			return new BooleanComparator(field);
+		}
+		if (type == float.class || type == double.class) {
+			return new DoubleComparator(field);
+		}
+		if (type.isPrimitive()) {
+			// byte, short, char, int and long all widen to long
+			return new LongComparator(field);
+		}
+		return new ObjectComparator(field);
+	}
+
+	protected abstract boolean differs(Object originalObject, Object newObject) throws IllegalAccessException;
+
+	protected abstract long hash(Object object) throws IllegalAccessException;
+
+	private static class ObjectComparator extends FieldComparator {
+
+		ObjectComparator(Field field) {
+			super(field);
+		}
+
+		@Override
+		protected boolean differs(Object originalObject, Object newObject) throws IllegalAccessException {
+			Object originalValue = field.get(originalObject);
+			Object newValue = field.get(newObject);
+			return originalValue == null ? newValue != null : !originalValue.equals(newValue);
+		}
+
+		@Override
+		protected long hash(Object object) throws IllegalAccessException {
+			Object value = field.get(object);
+			if (value == null) {
+				return 0;
+			}
+			return value.getClass().isArray() ? Arrays.deepHashCode(new Object[] { value }) : value.hashCode();
+		}
+
+	}
+
+	private static class BooleanComparator extends FieldComparator {
+
+		BooleanComparator(Field field) {
+			super(field);
+		}
+
+		@Override
+		protected boolean differs(Object originalObject, Object newObject) throws IllegalAccessException {
+			return field.getBoolean(originalObject) != field.getBoolean(newObject);
+		}
+
+		@Override
+		protected long hash(Object object) throws IllegalAccessException {
+			return field.getBoolean(object) ? 1231 : 1237;
+		}
+
+	}
+
+	private static class LongComparator extends FieldComparator {
+
+		LongComparator(Field field) {
+			super(field);
+		}
+
+		@Override
+		protected boolean differs(Object originalObject, Object newObject) throws IllegalAccessException {
+			return field.getLong(originalObject) != field.getLong(newObject);
+		}
+
+		@Override
+		protected long hash(Object object) throws IllegalAccessException {
+			return field.getLong(object);
+		}
+
+	}
+
+	private static class DoubleComparator extends FieldComparator {
+
+		DoubleComparator(Field field) {
+			super(field);
+		}
+
+		@Override
+		protected boolean differs(Object originalObject, Object newObject) throws IllegalAccessException {
+			// same as Double.equals so NaN is equal to itself
+			return Double.doubleToLongBits(field.getDouble(originalObject)) != Double.doubleToLongBits(field.getDouble(newObject));
+		}
+
+		@Override
+		protected long hash(Object object) throws IllegalAccessException {
+			return Double.doubleToLongBits(field.getDouble(object));
+		}
+
+	}
+
+}
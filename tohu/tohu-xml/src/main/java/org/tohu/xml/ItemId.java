@@ -29,6 +29,10 @@ public class ItemId {
 		this.id = item.getId();
 	}
 
+	ItemId(String id) {
+		this.id = id;
+	}
+
 	public String getId() {
 		return id;
 	}
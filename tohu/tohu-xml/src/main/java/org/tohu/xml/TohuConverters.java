@@ -0,0 +1,628 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.core.runtime.help.impl.XStreamXML;
+import org.kie.api.runtime.rule.FactHandle;
+import org.tohu.Answer;
+import org.tohu.DelimitedTokenizer;
+import org.tohu.Group;
+import org.tohu.InvalidAnswer;
+import org.tohu.Item;
+import org.tohu.ItemIds;
+import org.tohu.MultipleChoiceQuestion;
+import org.tohu.Note;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.ConverterLookup;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.converters.basic.AbstractSingleValueConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.mapper.Mapper;
+
+/**
+ * <p>
+ * Hand-written XStream converters for the Tohu model.
+ * </p>
+ *
+ * <p>
+ * These produce exactly the same XML as XStream's reflection converter (fields in declaration order, superclass fields first,
+ * null fields omitted) so they are transparent to the client, but without the per-field reflection. Only the exact classes are
+ * handled; subclasses of the Tohu model classes still fall back to reflection.
+ * </p>
+ */
+public class TohuConverters {
+
+	private static final String COMMA_SEPARATOR = ",";
+
+	private TohuConverters() {
+	}
+
+	/**
+	 * Returns the Drools batch-execution XStream with the Tohu converters registered.
+	 *
+	 * @return
+	 */
+	public static XStream newXStreamMarshaller() {
+		XStream xstream = XStreamXML.newXStreamMarshaller(new XStream());
+		register(xstream);
+		return xstream;
+	}
+
+	/**
+	 * Registers the Tohu converters with an XStream instance.
+	 *
+	 * @param xstream
+	 */
+	public static void register(XStream xstream) {
+		xstream.registerConverter(new NoteConverter());
+		xstream.registerConverter(new GroupConverter(Group.class));
+		xstream.registerConverter(new QuestionnaireConverter());
+		xstream.registerConverter(new QuestionConverter(Question.class));
+		xstream.registerConverter(new MultipleChoiceQuestionConverter());
+		xstream.registerConverter(new InvalidAnswerConverter());
+		xstream.registerConverter(new AnswerConverter());
+		xstream.registerConverter(new ItemIdConverter());
+		xstream.registerConverter(new ItemIdsConverter());
+		xstream.registerConverter(new ChangeCollectorConverter(xstream.getMapper(), xstream.getConverterLookup()));
+		xstream.registerConverter(new GroupSubclassConverter(xstream.getMapper(), xstream.getReflectionProvider()),
+				XStream.PRIORITY_LOW + 1);
+	}
+
+	private static void write(HierarchicalStreamWriter writer, String name, Object value) {
+		if (value != null) {
+			writer.startNode(name);
+			writer.setValue(value.toString());
+			writer.endNode();
+		}
+	}
+
+	private static String join(String[] values) {
+		if (values == null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append(COMMA_SEPARATOR);
+			}
+			sb.append(values[i]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Base class for converters of simple objects whose fields are all written as child elements.
+	 */
+	private abstract static class SimpleConverter<T> implements Converter {
+
+		private final Class<? extends T> type;
+
+		protected SimpleConverter(Class<? extends T> type) {
+			this.type = type;
+		}
+
+		@SuppressWarnings("rawtypes")
+		public boolean canConvert(Class clazz) {
+			return type.equals(clazz);
+		}
+
+		@SuppressWarnings("unchecked")
+		public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+			write((T) source, writer);
+		}
+
+		public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+			T object = newInstance();
+			while (reader.hasMoreChildren()) {
+				reader.moveDown();
+				String name = reader.getNodeName();
+				boolean known;
+				try {
+					known = read(object, name, reader.getValue());
+				} catch (ConversionException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new ConversionException("Invalid value for " + name, e);
+				}
+				if (!known) {
+					throw new ConversionException("Unknown field " + type.getName() + "." + name);
+				}
+				reader.moveUp();
+			}
+			return object;
+		}
+
+		protected abstract T newInstance();
+
+		protected abstract void write(T object, HierarchicalStreamWriter writer);
+
+		/**
+		 * Sets the field from its XML value.
+		 *
+		 * @return false if there is no such field
+		 */
+		protected abstract boolean read(T object, String name, String value) throws Exception;
+
+	}
+
+	@SuppressWarnings("deprecation")
+	private abstract static class ItemConverter<T extends Item> extends SimpleConverter<T> {
+
+		protected ItemConverter(Class<? extends T> type) {
+			super(type);
+		}
+
+		@Override
+		protected void write(T item, HierarchicalStreamWriter writer) {
+			TohuConverters.write(writer, "id", item.getId());
+			TohuConverters.write(writer, "presentationStyles", item.getPresentationStylesAsString());
+			TohuConverters.write(writer, "category", item.getCategory());
+		}
+
+		@Override
+		protected boolean read(T item, String name, String value) throws Exception {
+			if (name.equals("id")) {
+				item.setId(value);
+			} else if (name.equals("presentationStyles")) {
+				item.setPresentationStylesAsString(value);
+			} else if (name.equals("category")) {
+				item.setCategory(value);
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	private static class NoteConverter extends ItemConverter<Note> {
+
+		private NoteConverter() {
+			super(Note.class);
+		}
+
+		@Override
+		protected Note newInstance() {
+			return new Note();
+		}
+
+		@Override
+		protected void write(Note note, HierarchicalStreamWriter writer) {
+			super.write(note, writer);
+			TohuConverters.write(writer, "label", note.getLabel());
+		}
+
+		@Override
+		protected boolean read(Note note, String name, String value) throws Exception {
+			if (name.equals("label")) {
+				note.setLabel(value);
+				return true;
+			}
+			return super.read(note, name, value);
+		}
+
+	}
+
+	@SuppressWarnings("deprecation")
+	private static class GroupConverter extends ItemConverter<Group> {
+
+		private GroupConverter(Class<? extends Group> type) {
+			super(type);
+		}
+
+		@Override
+		protected Group newInstance() {
+			return new Group();
+		}
+
+		@Override
+		protected void write(Group group, HierarchicalStreamWriter writer) {
+			super.write(group, writer);
+			TohuConverters.write(writer, "label", group.getLabel());
+			TohuConverters.write(writer, "items", group.getItemsAsString());
+		}
+
+		@Override
+		protected boolean read(Group group, String name, String value) throws Exception {
+			if (name.equals("label")) {
+				group.setLabel(value);
+			} else if (name.equals("items")) {
+				group.setItemsAsString(value);
+			} else {
+				return super.read(group, name, value);
+			}
+			return true;
+		}
+
+	}
+
+	private static class QuestionnaireConverter extends GroupConverter {
+
+		private QuestionnaireConverter() {
+			super(Questionnaire.class);
+		}
+
+		@Override
+		protected Group newInstance() {
+			Questionnaire questionnaire = new Questionnaire();
+			// as with reflection, fields missing from the XML are left null rather than defaulted
+			questionnaire.setClientDateFormat(null);
+			return questionnaire;
+		}
+
+		@Override
+		protected void write(Group group, HierarchicalStreamWriter writer) {
+			super.write(group, writer);
+			Questionnaire questionnaire = (Questionnaire) group;
+			TohuConverters.write(writer, "activeItem", questionnaire.getActiveItem());
+			TohuConverters.write(writer, "completionAction", questionnaire.getCompletionAction());
+			TohuConverters.write(writer, "invalidAnswers", String.valueOf(questionnaire.isInvalidAnswers()));
+			TohuConverters.write(writer, "enableActionValidation", String.valueOf(questionnaire.isEnableActionValidation()));
+			TohuConverters.write(writer, "availableItems", join(questionnaire.getAvailableItems()));
+			TohuConverters.write(writer, "clientDateFormat", questionnaire.getClientDateFormat());
+			TohuConverters.write(writer, "markupAllowed", String.valueOf(questionnaire.isMarkupAllowed()));
+		}
+
+		@Override
+		protected boolean read(Group group, String name, String value) throws Exception {
+			Questionnaire questionnaire = (Questionnaire) group;
+			if (name.equals("activeItem")) {
+				questionnaire.setActiveItem(value);
+			} else if (name.equals("completionAction")) {
+				questionnaire.setCompletionAction(value);
+			} else if (name.equals("invalidAnswers")) {
+				questionnaire.setInvalidAnswers(Boolean.valueOf(value).booleanValue());
+			} else if (name.equals("enableActionValidation")) {
+				questionnaire.setEnableActionValidation(Boolean.valueOf(value).booleanValue());
+			} else if (name.equals("availableItems")) {
+				questionnaire.setAvailableItems(DelimitedTokenizer.splitPlain(value, ','));
+			} else if (name.equals("clientDateFormat")) {
+				questionnaire.setClientDateFormat(value);
+			} else if (name.equals("markupAllowed")) {
+				questionnaire.setMarkupAllowed(Boolean.valueOf(value).booleanValue());
+			} else {
+				return super.read(group, name, value);
+			}
+			return true;
+		}
+
+	}
+
+	private static class QuestionConverter extends ItemConverter<Question> {
+
+		private QuestionConverter(Class<? extends Question> type) {
+			super(type);
+		}
+
+		@Override
+		protected Question newInstance() {
+			return new Question();
+		}
+
+		@Override
+		protected void write(Question question, HierarchicalStreamWriter writer) {
+			super.write(question, writer);
+			TohuConverters.write(writer, "preLabel", question.getPreLabel());
+			TohuConverters.write(writer, "postLabel", question.getPostLabel());
+			TohuConverters.write(writer, "required", String.valueOf(question.isRequired()));
+			TohuConverters.write(writer, "answerType", question.getAnswerType());
+			// only the answer field for the current type can be set
+			String basicAnswerType = question.getBasicAnswerType();
+			if (Question.TYPE_TEXT.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "textAnswer", question.getTextAnswer());
+			} else if (Question.TYPE_NUMBER.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "numberAnswer", question.getNumberAnswer());
+			} else if (Question.TYPE_DECIMAL.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "decimalAnswer", question.getDecimalAnswer());
+			} else if (Question.TYPE_BOOLEAN.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "booleanAnswer", question.getBooleanAnswer());
+			} else if (Question.TYPE_DATE.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "dateAnswer", question.getDateAnswerString());
+			} else if (Question.TYPE_LIST.equals(basicAnswerType)) {
+				TohuConverters.write(writer, "listAnswer", question.getListAnswer());
+			}
+		}
+
+		@Override
+		protected boolean read(Question question, String name, String value) throws Exception {
+			if (name.equals("preLabel")) {
+				question.setPreLabel(value);
+			} else if (name.equals("postLabel")) {
+				question.setPostLabel(value);
+			} else if (name.equals("required")) {
+				question.setRequired(Boolean.valueOf(value).booleanValue());
+			} else if (name.equals("answerType")) {
+				question.setAnswerType(value);
+			} else if (name.equals("textAnswer")) {
+				question.setTextAnswer(value);
+			} else if (name.equals("numberAnswer")) {
+				question.setNumberAnswer(Long.valueOf(value));
+			} else if (name.equals("decimalAnswer")) {
+				question.setDecimalAnswer(new BigDecimal(value));
+			} else if (name.equals("booleanAnswer")) {
+				question.setBooleanAnswer(Boolean.valueOf(value));
+			} else if (name.equals("dateAnswer")) {
+				question.setDateAnswer(value);
+			} else if (name.equals("listAnswer")) {
+				question.setListAnswer(value);
+			} else {
+				return super.read(question, name, value);
+			}
+			return true;
+		}
+
+	}
+
+	@SuppressWarnings("deprecation")
+	private static class MultipleChoiceQuestionConverter extends QuestionConverter {
+
+		private MultipleChoiceQuestionConverter() {
+			super(MultipleChoiceQuestion.class);
+		}
+
+		@Override
+		protected Question newInstance() {
+			return new MultipleChoiceQuestion();
+		}
+
+		@Override
+		protected void write(Question question, HierarchicalStreamWriter writer) {
+			super.write(question, writer);
+			TohuConverters.write(writer, "possibleAnswers", ((MultipleChoiceQuestion) question).getPossibleAnswersAsString());
+		}
+
+		@Override
+		protected boolean read(Question question, String name, String value) throws Exception {
+			if (name.equals("possibleAnswers")) {
+				((MultipleChoiceQuestion) question).setPossibleAnswersAsString(value);
+				return true;
+			}
+			return super.read(question, name, value);
+		}
+
+	}
+
+	private static class InvalidAnswerConverter extends SimpleConverter<InvalidAnswer> {
+
+		private InvalidAnswerConverter() {
+			super(InvalidAnswer.class);
+		}
+
+		@Override
+		protected InvalidAnswer newInstance() {
+			return new InvalidAnswer();
+		}
+
+		@Override
+		protected void write(InvalidAnswer invalidAnswer, HierarchicalStreamWriter writer) {
+			TohuConverters.write(writer, "questionId", invalidAnswer.getQuestionId());
+			TohuConverters.write(writer, "reason", invalidAnswer.getReason());
+			TohuConverters.write(writer, "type", invalidAnswer.getType());
+		}
+
+		@Override
+		protected boolean read(InvalidAnswer invalidAnswer, String name, String value) {
+			if (name.equals("questionId")) {
+				invalidAnswer.setQuestionId(value);
+			} else if (name.equals("reason")) {
+				invalidAnswer.setReason(value);
+			} else if (name.equals("type")) {
+				invalidAnswer.setType(value);
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	private static class AnswerConverter extends SimpleConverter<Answer> {
+
+		private AnswerConverter() {
+			super(Answer.class);
+		}
+
+		@Override
+		protected Answer newInstance() {
+			return new Answer();
+		}
+
+		@Override
+		protected void write(Answer answer, HierarchicalStreamWriter writer) {
+			TohuConverters.write(writer, "questionId", answer.getQuestionId());
+			TohuConverters.write(writer, "value", answer.getValue());
+		}
+
+		@Override
+		protected boolean read(Answer answer, String name, String value) {
+			if (name.equals("questionId")) {
+				answer.setQuestionId(value);
+			} else if (name.equals("value")) {
+				answer.setValue(value);
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+	}
+
+	private static class ItemIdConverter extends SimpleConverter<ItemId> {
+
+		private ItemIdConverter() {
+			super(ItemId.class);
+		}
+
+		@Override
+		protected ItemId newInstance() {
+			return new ItemId((String) null);
+		}
+
+		@Override
+		protected void write(ItemId itemId, HierarchicalStreamWriter writer) {
+			TohuConverters.write(writer, "id", itemId.getId());
+		}
+
+		@Override
+		protected boolean read(ItemId itemId, String name, String value) {
+			if (name.equals("id")) {
+				itemId.setId(value);
+				return true;
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * Writes a Group's item ids as the comma-delimited string, for Group subclasses that fall back to reflection.
+	 */
+	private static class ItemIdsConverter extends AbstractSingleValueConverter {
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public boolean canConvert(Class clazz) {
+			return ItemIds.class.equals(clazz);
+		}
+
+		@Override
+		public Object fromString(String str) {
+			return ItemIds.parse(str);
+		}
+
+	}
+
+	/**
+	 * Group has a custom serialized form, so without this XStream would use its serialization converter rather than reflection
+	 * for Group subclasses. It is registered just above the serialization converter so that any other converter comes first.
+	 */
+	private static class GroupSubclassConverter extends ReflectionConverter {
+
+		private GroupSubclassConverter(Mapper mapper, ReflectionProvider reflectionProvider) {
+			super(mapper, reflectionProvider);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public boolean canConvert(Class clazz) {
+			return clazz != null && Group.class.isAssignableFrom(clazz);
+		}
+
+	}
+
+	/**
+	 * The client only ever sends an empty ChangeCollector, apart from optionally asking for deltas, so that is all that is
+	 * unmarshalled. The objects in the lists are marshalled by whichever converter handles them.
+	 */
+	private static class ChangeCollectorConverter implements Converter {
+
+		private final Mapper mapper;
+
+		private final ConverterLookup converterLookup;
+
+		private ChangeCollectorConverter(Mapper mapper, ConverterLookup converterLookup) {
+			this.mapper = mapper;
+			this.converterLookup = converterLookup;
+		}
+
+		@SuppressWarnings("rawtypes")
+		public boolean canConvert(Class clazz) {
+			return ChangeCollector.class.equals(clazz);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+			ChangeCollector changeCollector = (ChangeCollector) source;
+			Map<Object, FactHandle> create = changeCollector.getCreate();
+			if (create != null) {
+				writer.startNode("create");
+				for (Map.Entry<Object, FactHandle> entry : create.entrySet()) {
+					writer.startNode("entry");
+					writeObject(entry.getKey(), writer, context);
+					writeObject(entry.getValue(), writer, context);
+					writer.endNode();
+				}
+				writer.endNode();
+			}
+			List<Object> update = changeCollector.getUpdate();
+			if (update != null) {
+				writer.startNode("update");
+				for (Object object : update) {
+					Set<String> fields = changeCollector.getChangedFields(object);
+					if (fields == null) {
+						writeObject(object, writer, context);
+					} else {
+						// the converter writes straight to the filter rather than via the context
+						HierarchicalStreamWriter deltaWriter = new DeltaWriter(writer, fields);
+						deltaWriter.startNode(mapper.serializedClass(object.getClass()));
+						converterLookup.lookupConverterForType(object.getClass()).marshal(object, deltaWriter, context);
+						deltaWriter.endNode();
+					}
+				}
+				writer.endNode();
+			}
+			writeList("delete", changeCollector.getDelete(), writer, context);
+		}
+
+		private void writeList(String name, List<Object> list, HierarchicalStreamWriter writer, MarshallingContext context) {
+			if (list != null) {
+				writer.startNode(name);
+				for (Object object : list) {
+					writeObject(object, writer, context);
+				}
+				writer.endNode();
+			}
+		}
+
+		private void writeObject(Object object, HierarchicalStreamWriter writer, MarshallingContext context) {
+			if (object == null) {
+				writer.startNode(mapper.serializedClass(null));
+			} else {
+				writer.startNode(mapper.serializedClass(object.getClass()));
+				context.convertAnother(object);
+			}
+			writer.endNode();
+		}
+
+		public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+			ChangeCollector changeCollector = new ChangeCollector();
+			while (reader.hasMoreChildren()) {
+				reader.moveDown();
+				if (!reader.getNodeName().equals("deltas")) {
+					throw new ConversionException("Only an empty ChangeCollector can be unmarshalled");
+				}
+				changeCollector.setDeltas(Boolean.valueOf(reader.getValue()).booleanValue());
+				reader.moveUp();
+			}
+			return changeCollector;
+		}
+
+	}
+
+}
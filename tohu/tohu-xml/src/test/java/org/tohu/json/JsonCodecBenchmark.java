@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.kie.api.command.Command;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.server.KnowledgeBaseCache;
+import org.tohu.xml.TohuConverters;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * <p>
+ * Compares the bytes sent and received for each of the jQuery client's interactions using XML and JSON, and the time taken to encode
+ * the response.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional iteration count (default 10000).
+ * </p>
+ */
+public class JsonCodecBenchmark {
+
+	private static final String[] XML_REQUESTS = {
+			"<batch-execution>\n" + "	<fire-all-rules />\n" + "	<query out-identifier='activeObjects' name='activeObjects'/>\n"
+					+ "</batch-execution>\n",
+			"<batch-execution>\n" + "		<insert out-identifier='changes'>\n" + "			<org.tohu.xml.ChangeCollector/>\n"
+					+ "		</insert>\n" + "		<insert>\n" + "			<org.tohu.Answer>\n"
+					+ "				<questionId>question1</questionId>\n" + "				<value>answer</value>\n"
+					+ "			</org.tohu.Answer>\n" + "		</insert>\n" + "		<fire-all-rules />\n" + "</batch-execution>",
+			"<batch-execution>\n" + "		<modify fact-handle='${handle}'>\n"
+					+ "			<set accessor='activeItem' value='page2' />\n" + "		</modify>\n" + "		<fire-all-rules />\n"
+					+ "		<query out-identifier='activeObjects' name='activeObjects' />\n" + "</batch-execution>" };
+
+	private static final String[] JSON_REQUESTS = {
+			"[{\"fire\":{}},{\"query\":\"activeObjects\"}]",
+			"[{\"insert\":{\"t\":\"xml.ChangeCollector\"},\"out\":\"changes\"},"
+					+ "{\"insert\":{\"t\":\"Answer\",\"questionId\":\"question1\",\"value\":\"answer\"}},{\"fire\":{}}]",
+			"[{\"modify\":\"${handle}\",\"set\":{\"activeItem\":\"page2\"}},{\"fire\":{}},{\"query\":\"activeObjects\"}]" };
+
+	private static final String[] NAMES = { "initial questionnaire", "answer question", "change page" };
+
+	private static final Pattern XML_HANDLE = Pattern.compile("<org.tohu.Questionnaire>.*?external-form=\"([^\"]*)\"",
+			Pattern.DOTALL);
+
+	private static final Pattern JSON_HANDLE = Pattern.compile("\"t\":\"Questionnaire\",\"h\":\"([^\"]*)\"");
+
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		KnowledgeBase knowledgeBase = new KnowledgeBaseCache().getKnowledgeBase(null, Arrays.asList(new String[] {
+				"classpath:org/tohu/Active.drl", "classpath:org/tohu/Queries.drl", "classpath:org/tohu/Item.drl",
+				"classpath:org/tohu/Question.drl", "classpath:org/tohu/Changes.drl", "classpath:org/tohu/server/Template.drl" }));
+		XStream xstream = TohuConverters.newXStreamMarshaller();
+		JsonCodec codec = new JsonCodec(xstream);
+		StatefulKnowledgeSession xmlSession = knowledgeBase.newStatefulKnowledgeSession();
+		StatefulKnowledgeSession jsonSession = knowledgeBase.newStatefulKnowledgeSession();
+		String xmlHandle = null;
+		String jsonHandle = null;
+		for (int i = 0; i < NAMES.length; i++) {
+			String xmlRequest = XML_REQUESTS[i].replace("${handle}", String.valueOf(xmlHandle));
+			ExecutionResults xmlResults = xmlSession.execute((Command<ExecutionResults>) xstream.fromXML(xmlRequest));
+			String xmlResponse = xstream.toXML(xmlResults);
+			String jsonRequest = JSON_REQUESTS[i].replace("${handle}", String.valueOf(jsonHandle));
+			ExecutionResults jsonResults = jsonSession.execute(codec.decode(new StringReader(jsonRequest)));
+			StringWriter writer = new StringWriter();
+			codec.encode(jsonResults, writer);
+			String jsonResponse = writer.toString();
+			if (i == 0) {
+				xmlHandle = find(XML_HANDLE, xmlResponse);
+				jsonHandle = find(JSON_HANDLE, jsonResponse);
+			}
+			System.out.println(NAMES[i] + ": XML " + bytes(xmlRequest) + " + " + bytes(xmlResponse) + " bytes, JSON "
+					+ bytes(jsonRequest) + " + " + bytes(jsonResponse) + " bytes");
+			long xmlTime = time(xstream, null, xmlResults, iterations);
+			long jsonTime = time(null, codec, jsonResults, iterations);
+			System.out.println(NAMES[i] + ": XML " + xmlTime + "ns, JSON " + jsonTime + "ns per encode");
+		}
+		xmlSession.dispose();
+		jsonSession.dispose();
+	}
+
+	private static long time(XStream xstream, JsonCodec codec, ExecutionResults results, int iterations) throws IOException {
+		long start = 0;
+		for (int i = -iterations; i < iterations; i++) {
+			if (i == 0) {
+				start = System.nanoTime();
+			}
+			StringWriter writer = new StringWriter();
+			if (xstream != null) {
+				xstream.toXML(results, writer);
+			} else {
+				codec.encode(results, writer);
+			}
+		}
+		return (System.nanoTime() - start) / iterations;
+	}
+
+	private static String find(Pattern pattern, String response) {
+		Matcher matcher = pattern.matcher(response);
+		if (!matcher.find()) {
+			throw new IllegalStateException("No questionnaire fact handle in " + response);
+		}
+		return matcher.group(1);
+	}
+
+	private static int bytes(String s) throws IOException {
+		return s.getBytes("UTF-8").length;
+	}
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.drools.core.command.runtime.BatchExecutionCommandImpl;
+import org.drools.core.command.runtime.rule.InsertObjectCommand;
+import org.drools.core.runtime.impl.ExecutionResultImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Group;
+import org.tohu.InvalidAnswer;
+import org.tohu.Note;
+import org.tohu.Question;
+import org.tohu.server.KnowledgeBaseCache;
+import org.tohu.xml.ChangeCollector;
+import org.tohu.xml.event.ObjectDeletedEventMock;
+import org.tohu.xml.event.ObjectInsertedEventMock;
+import org.tohu.xml.event.ObjectUpdatedEventMock;
+
+public class JsonCodecTest {
+
+	private static final String INITIAL_REQUEST = "[{\"fire\":{}},{\"query\":\"activeObjects\"}]";
+
+	private JsonCodec codec;
+
+	@Before
+	public void setUp() {
+		codec = new JsonCodec();
+	}
+
+	/**
+	 * Runs through the same interactions as the jQuery client.
+	 */
+	@Test
+	public void testInteraction() throws Exception {
+		StatefulKnowledgeSession knowledgeSession = new KnowledgeBaseCache().getKnowledgeBase(null, Arrays.asList(new String[] {
+				"classpath:org/tohu/Active.drl", "classpath:org/tohu/Queries.drl", "classpath:org/tohu/Item.drl",
+				"classpath:org/tohu/Question.drl", "classpath:org/tohu/Changes.drl", "classpath:org/tohu/server/Template.drl" }))
+				.newStatefulKnowledgeSession();
+		try {
+			Map<?, ?> response = execute(knowledgeSession, INITIAL_REQUEST);
+			List<?> activeObjects = (List<?>) response.get("activeObjects");
+			assertEquals(ids("questionnaire", "page1", "question1", "note1"), getIds(activeObjects));
+			Map<?, ?> questionnaire = find(activeObjects, "questionnaire");
+			assertEquals("Questionnaire", questionnaire.get("t"));
+			assertEquals("page1", questionnaire.get("activeItem"));
+			assertEquals("page1,page2", questionnaire.get("items"));
+			assertEquals("false", questionnaire.get("invalidAnswers"));
+			assertNotNull(questionnaire.get("h"));
+			Map<?, ?> question = find(activeObjects, "question1");
+			assertEquals("Question", question.get("t"));
+			assertEquals("Question 1", question.get("preLabel"));
+			assertEquals("text", question.get("answerType"));
+
+			response = execute(knowledgeSession, "[{\"insert\":{\"t\":\"xml.ChangeCollector\"},\"out\":\"changes\"},"
+					+ "{\"insert\":{\"t\":\"Answer\",\"questionId\":\"question1\",\"value\":\"answer \\\"1\\\"\"}},{\"fire\":{}}]");
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "changes" })), response.keySet());
+			assertEquals("answer \"1\"", question(knowledgeSession).getAnswer());
+
+			response = execute(knowledgeSession, "[{\"modify\":\"" + questionnaire.get("h")
+					+ "\",\"set\":{\"activeItem\":\"page2\"}},{\"fire\":{}},{\"query\":\"activeObjects\"}]");
+			assertEquals(ids("questionnaire", "page2", "note2"), getIds((List<?>) response.get("activeObjects")));
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	@Test
+	public void testChangeCollector() throws Exception {
+		ChangeCollector changeCollector = new ChangeCollector();
+		Note note1 = new Note("note1", "Note 1");
+		note1.setActive(true);
+		Note note2 = new Note("note2", "Note 2");
+		note2.setActive(true);
+		Group group = new Group("group");
+		group.setActive(true);
+		InvalidAnswer invalidAnswer = new InvalidAnswer("question", "reason");
+		invalidAnswer.setActive(true);
+		changeCollector.initialise(Arrays.asList(new Object[] { group, note2, invalidAnswer }));
+		changeCollector.objectInserted(new ObjectInsertedEventMock("0:1:2:3:4:DEFAULT:NON_TRAIT", note1));
+		Group updatedGroup = new Group("group", "label");
+		updatedGroup.setActive(true);
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("0:2:3:4:5:DEFAULT:NON_TRAIT", updatedGroup, group));
+		changeCollector.objectDeleted(new ObjectDeletedEventMock("0:3:4:5:6:DEFAULT:NON_TRAIT", note2));
+		changeCollector.objectDeleted(new ObjectDeletedEventMock("0:4:5:6:7:DEFAULT:NON_TRAIT", invalidAnswer));
+
+		Map<?, ?> changes = (Map<?, ?>) encode("changes", changeCollector).get("changes");
+		Map<?, ?> created = (Map<?, ?>) ((List<?>) changes.get("create")).get(0);
+		assertEquals("Note", created.get("t"));
+		assertEquals("0:1:2:3:4:DEFAULT:NON_TRAIT", created.get("h"));
+		assertEquals("note1", created.get("id"));
+		assertEquals("Note 1", created.get("label"));
+		Map<?, ?> updated = (Map<?, ?>) ((List<?>) changes.get("update")).get(0);
+		assertEquals("Group", updated.get("t"));
+		assertNull(updated.get("h"));
+		assertEquals("label", updated.get("label"));
+		List<?> deleted = (List<?>) changes.get("delete");
+		assertEquals(2, deleted.size());
+		assertEquals("xml.ItemId", ((Map<?, ?>) deleted.get(0)).get("t"));
+		assertEquals("note2", ((Map<?, ?>) deleted.get(0)).get("id"));
+		assertEquals("InvalidAnswer", ((Map<?, ?>) deleted.get(1)).get("t"));
+		assertEquals("question", ((Map<?, ?>) deleted.get(1)).get("questionId"));
+
+		// empty lists are left out
+		assertEquals(0, ((Map<?, ?>) encode("changes", new ChangeCollector()).get("changes")).size());
+	}
+
+	@Test
+	public void testChangeCollectorDeltas() throws Exception {
+		ChangeCollector changeCollector = (ChangeCollector) ((InsertObjectCommand) ((BatchExecutionCommandImpl) codec.decode(
+				new StringReader("[{\"insert\":{\"t\":\"xml.ChangeCollector\",\"deltas\":true}}]")))
+				.getCommands().get(0)).getObject();
+		assertTrue(changeCollector.isDeltas());
+		Question question = new Question("question", "Question");
+		question.setAnswerType(Question.TYPE_TEXT);
+		question.setPostLabel("after");
+		question.setActive(true);
+		changeCollector.initialise(Arrays.asList(new Object[] { question }));
+		Question updatedQuestion = (Question) question.clone();
+		updatedQuestion.setPreLabel("");
+		updatedQuestion.setPostLabel(null);
+		updatedQuestion.setAnswer("answer");
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("0:2:3:4:5:DEFAULT:NON_TRAIT", updatedQuestion, question));
+
+		Map<?, ?> changes = (Map<?, ?>) encode("changes", changeCollector).get("changes");
+		Map<?, ?> updated = (Map<?, ?>) ((List<?>) changes.get("update")).get(0);
+		assertEquals(5, updated.size());
+		assertEquals("Question", updated.get("t"));
+		assertEquals("question", updated.get("id"));
+		assertEquals("", updated.get("preLabel"));
+		assertTrue(updated.containsKey("postLabel"));
+		assertNull(updated.get("postLabel"));
+		assertEquals("answer", updated.get("textAnswer"));
+	}
+
+	@Test
+	public void testEscaping() throws Exception {
+		String value = "quote \" backslash \\ slash / tab \t new line \n control \u0001 tag </script> unicode \u00e9\u2028";
+		StringWriter writer = new StringWriter();
+		new JsonWriter(writer).beginArray().value(value).literal(Long.valueOf(-12)).literal(Boolean.TRUE).value(null).beginObject()
+				.endObject().endArray();
+		String json = writer.toString();
+		assertTrue(json.indexOf('<') < 0);
+		assertTrue(json.indexOf('\u2028') < 0);
+		List<?> list = (List<?>) new JsonParser(new StringReader(json)).parse();
+		assertEquals(value, list.get(0));
+		assertEquals(-12, ((Number) list.get(1)).intValue());
+		assertEquals(Boolean.TRUE, list.get(2));
+		assertNull(list.get(3));
+		assertEquals(0, ((Map<?, ?>) list.get(4)).size());
+	}
+
+	@Test
+	public void testInvalidRequests() throws Exception {
+		assertInvalid("{\"fire\":{}}");
+		assertInvalid("[{\"explode\":{}}]");
+		assertInvalid("[{\"insert\":{\"questionId\":\"question1\"}}]");
+		assertInvalid("[{\"insert\":{\"t\":\"Answer\",\"value\":[1,2]}}]");
+		assertInvalid("[{\"fire\":{}}");
+		assertInvalid("[{\"fire\":{}}] x");
+		assertInvalid("[{\"fire\":{},\"out\":1}]");
+		assertInvalid("[{\"modify\":[\"0:1:2:3:4\"]}]");
+		assertInvalid("[{\"modify\":\"rubbish\"}]");
+		assertInvalid("[{\"modify\":\"0:1:2:3:4:DEFAULT:NON_TRAIT\",\"set\":\"x\"}]");
+		assertInvalid("[{\"modify\":\"0:1:2:3:4:DEFAULT:NON_TRAIT\",\"set\":{\"x\":[1]}}]");
+		assertInvalid("[{\"query\":{}}]");
+		assertInvalid("[{\"query\":\"activeObjects\",\"args\":{}}]");
+		assertInvalid("[{\"insert\":{\"t\":\"NoSuchClass\"}}]");
+	}
+
+	@Test
+	public void testNestingLimit() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < JsonParser.MAX_DEPTH; i++) {
+			sb.append('[');
+		}
+		for (int i = 0; i < JsonParser.MAX_DEPTH; i++) {
+			sb.append(']');
+		}
+		new JsonParser(new StringReader(sb.toString())).parse();
+		assertInvalid("[" + sb + "]");
+		StringBuilder deep = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			deep.append("{\"a\":");
+		}
+		assertInvalid(deep.toString());
+	}
+
+	private void assertInvalid(String request) throws IOException {
+		try {
+			codec.decode(new StringReader(request));
+			fail("Expected " + request + " to be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private Map<?, ?> execute(StatefulKnowledgeSession knowledgeSession, String request) throws IOException {
+		ExecutionResults results = knowledgeSession.execute(codec.decode(new StringReader(request)));
+		StringWriter writer = new StringWriter();
+		codec.encode(results, writer);
+		return (Map<?, ?>) new JsonParser(new StringReader(writer.toString())).parse();
+	}
+
+	private Map<?, ?> encode(String identifier, Object value) throws IOException {
+		ExecutionResultImpl results = new ExecutionResultImpl();
+		results.getResults().put(identifier, value);
+		StringWriter writer = new StringWriter();
+		codec.encode(results, writer);
+		return (Map<?, ?>) new JsonParser(new StringReader(writer.toString())).parse();
+	}
+
+	private Question question(StatefulKnowledgeSession knowledgeSession) {
+		for (Object object : knowledgeSession.getObjects()) {
+			if (object instanceof Question) {
+				return (Question) object;
+			}
+		}
+		return null;
+	}
+
+	private Map<?, ?> find(List<?> objects, String id) {
+		for (Object object : objects) {
+			if (id.equals(((Map<?, ?>) object).get("id"))) {
+				return (Map<?, ?>) object;
+			}
+		}
+		fail("No object with id " + id);
+		return null;
+	}
+
+	private Set<String> getIds(List<?> objects) {
+		Set<String> ids = new HashSet<String>();
+		for (Object object : objects) {
+			ids.add((String) ((Map<?, ?>) object).get("id"));
+		}
+		return ids;
+	}
+
+	private Set<String> ids(String... ids) {
+		return new HashSet<String>(Arrays.asList(ids));
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommandExecutorTest {
+
+	private CommandExecutor executor;
+
+	@Before
+	public void setUp() {
+		executor = new CommandExecutor(1, 1);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testExecute() {
+		String result = executor.execute(new Callable<String>() {
+			public String call() {
+				return "result";
+			}
+		});
+		assertEquals("result", result);
+		assertEquals(1, executor.getExecuted());
+		assertEquals(0, executor.getRejected());
+	}
+
+	@Test
+	public void testException() {
+		try {
+			executor.execute(new Callable<String>() {
+				public String call() {
+					throw new IllegalStateException("error");
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("error", e.getMessage());
+		}
+		assertEquals(1, executor.getExecuted());
+	}
+
+	@Test
+	public void testQueueFull() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<String> blocking = new Callable<String>() {
+			public String call() throws Exception {
+				started.countDown();
+				release.await();
+				return "done";
+			}
+		};
+		// one running and one queued
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					executor.execute(blocking);
+				}
+			};
+			threads[i].start();
+			if (i == 0) {
+				started.await();
+			}
+		}
+		while (executor.getQueueSize() == 0) {
+			Thread.sleep(10);
+		}
+		try {
+			executor.execute(blocking);
+			fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(1, executor.getRejected());
+		Thread.sleep(50);
+		release.countDown();
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+		assertEquals(2, executor.getExecuted());
+		assertTrue(executor.getQueueWaitTimeMillis() >= 50);
+		assertTrue(executor.getExecutionTimeMillis() >= 50);
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.internal.KnowledgeBase;
+
+public class KnowledgeBaseCacheTest {
+
+	private static final List<String> FILES = Arrays.asList(new String[] { "classpath:org/tohu/Item.drl",
+			"classpath:org/tohu/Queries.drl" });
+
+	private static final String RULES = "package org.tohu.test\n\nrule \"%s\"\nwhen\nthen\nend\n";
+
+	private static final String CHANGE_SET = "<change-set xmlns=\"http://drools.org/drools-5.0/change-set\" "
+			+ "xmlns:xs=\"http://www.w3.org/2001/XMLSchema-instance\" "
+			+ "xs:schemaLocation=\"http://drools.org/drools-5.0/change-set drools-change-set-5.0.xsd\">\n"
+			+ "<add><resource source=\"%s\" type=\"DRL\" /></add>\n</change-set>\n";
+
+	private KnowledgeBaseCache cache;
+
+	@Before
+	public void setUp() {
+		cache = new KnowledgeBaseCache();
+	}
+
+	@Test
+	public void testHit() {
+		KnowledgeBase knowledgeBase1 = cache.getKnowledgeBase("agent", FILES);
+		KnowledgeBase knowledgeBase2 = cache.getKnowledgeBase("agent", FILES);
+		assertSame(knowledgeBase1, knowledgeBase2);
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDifferentAgent() {
+		KnowledgeBase knowledgeBase1 = cache.getKnowledgeBase("agent1", FILES);
+		KnowledgeBase knowledgeBase2 = cache.getKnowledgeBase("agent2", FILES);
+		assertNotSame(knowledgeBase1, knowledgeBase2);
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+	}
+
+	@Test
+	public void testErrorNotCached() {
+		List<String> files = Arrays.asList(new String[] { "classpath:org/tohu/DoesNotExist.drl" });
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.getKnowledgeBase("agent", files);
+				fail();
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testConcurrentRequestsCompileOnce() throws Exception {
+		final int threadCount = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		final KnowledgeBase[] results = new KnowledgeBase[threadCount];
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					results[index] = cache.getKnowledgeBase("agent", FILES);
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].join();
+		}
+		for (int i = 0; i < threadCount; i++) {
+			assertSame(results[0], results[i]);
+		}
+		assertEquals(1, cache.getMisses());
+		assertEquals(threadCount - 1, cache.getHits());
+	}
+
+	@Test
+	public void testChangedFileReplacesEntry() throws Exception {
+		File rules = File.createTempFile("Rules", ".drl");
+		try {
+			write(rules, String.format(RULES, "first"));
+			List<String> files = Arrays.asList(new String[] { rules.toURI().toString() });
+			cache.setCheckIntervalMillis(0);
+			KnowledgeBase knowledgeBase1 = cache.getKnowledgeBase("agent", files);
+			write(rules, String.format(RULES, "second"));
+			rules.setLastModified(rules.lastModified() + 10000);
+			KnowledgeBase knowledgeBase2 = cache.getKnowledgeBase("agent", files);
+			assertNotSame(knowledgeBase1, knowledgeBase2);
+			assertNotNull(knowledgeBase2.getRule("org.tohu.test", "second"));
+			assertEquals(2, cache.getMisses());
+			assertEquals(1, cache.size());
+		} finally {
+			rules.delete();
+		}
+	}
+
+	@Test
+	public void testChangedChangeSetResource() throws Exception {
+		File rules = File.createTempFile("Rules", ".drl");
+		File changeSet = new File(rules.getParentFile(), rules.getName() + ".xml");
+		try {
+			write(rules, String.format(RULES, "first"));
+			write(changeSet, String.format(CHANGE_SET, rules.toURI()));
+			List<String> files = Arrays.asList(new String[] { changeSet.toURI().toString() });
+			cache.setCheckIntervalMillis(0);
+			KnowledgeBase knowledgeBase1 = cache.getKnowledgeBase("agent", files);
+			assertSame(knowledgeBase1, cache.getKnowledgeBase("agent", files));
+			write(rules, String.format(RULES, "second"));
+			rules.setLastModified(rules.lastModified() + 10000);
+			KnowledgeBase knowledgeBase2 = cache.getKnowledgeBase("agent", files);
+			assertNotSame(knowledgeBase1, knowledgeBase2);
+			assertNotNull(knowledgeBase2.getRule("org.tohu.test", "second"));
+			assertEquals(1, cache.size());
+		} finally {
+			changeSet.delete();
+			rules.delete();
+		}
+	}
+
+	@Test
+	public void testNotCheckedWithinInterval() throws Exception {
+		File rules = File.createTempFile("Rules", ".drl");
+		try {
+			write(rules, String.format(RULES, "first"));
+			List<String> files = Arrays.asList(new String[] { rules.toURI().toString() });
+			cache.setCheckIntervalMillis(60000);
+			KnowledgeBase knowledgeBase1 = cache.getKnowledgeBase("agent", files);
+			write(rules, String.format(RULES, "second"));
+			rules.setLastModified(rules.lastModified() + 10000);
+			assertSame(knowledgeBase1, cache.getKnowledgeBase("agent", files));
+			cache.setCheckIntervalMillis(0);
+			assertNotSame(knowledgeBase1, cache.getKnowledgeBase("agent", files));
+		} finally {
+			rules.delete();
+		}
+	}
+
+	private void write(File file, String content) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+}
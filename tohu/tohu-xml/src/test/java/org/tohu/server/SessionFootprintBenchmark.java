@@ -0,0 +1,149 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kie.api.io.ResourceType;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Group;
+import org.tohu.MultipleChoiceQuestion;
+import org.tohu.MultipleChoiceQuestion.PossibleAnswer;
+import org.tohu.Note;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+import org.tohu.SharedMetadata;
+
+/**
+ * <p>
+ * Reports the heap used per session when many sessions are created, either by firing the rules in each session (with and without
+ * sharing metadata, as the execution server does for the first request to a session) or by restoring them from a
+ * <code>SessionTemplate</code>. The questionnaire has 5 pages of 10 questions (every other one multiple choice with 300
+ * possible answers) and a note.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional session count (default 10000) and enough heap, e.g.
+ * -Xmx4g.
+ * </p>
+ */
+public class SessionFootprintBenchmark {
+
+	private static final int PAGES = 5;
+
+	private static final int QUESTIONS = 10;
+
+	private static final int POSSIBLE_ANSWERS = 300;
+
+	private static final String RULE = "package org.tohu.server\n" + "rule \"create questionnaire\"\n" + "when\n"
+			+ "	not(org.tohu.Questionnaire());\n" + "then\n"
+			+ "	java.util.Iterator iterator = org.tohu.server.SessionFootprintBenchmark.createItems().iterator();\n"
+			+ "	while (iterator.hasNext()) {\n" + "		insert(iterator.next());\n" + "	}\n" + "end\n";
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		KnowledgeBuilder knowledgeBuilder = KnowledgeBuilderFactory.newKnowledgeBuilder();
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Active.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Question.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newClassPathResource("org/tohu/Queries.drl"), ResourceType.DRL);
+		knowledgeBuilder.add(ResourceFactory.newByteArrayResource(RULE.getBytes()), ResourceType.DRL);
+		if (knowledgeBuilder.hasErrors()) {
+			throw new IllegalStateException(knowledgeBuilder.getErrors().toString());
+		}
+		KnowledgeBase knowledgeBase = KnowledgeBaseFactory.newKnowledgeBase();
+		knowledgeBase.addKnowledgePackages(knowledgeBuilder.getKnowledgePackages());
+		run(knowledgeBase, null, false, count);
+		run(knowledgeBase, null, true, count);
+		run(knowledgeBase, SessionTemplate.create(knowledgeBase), false, count);
+	}
+
+	private static void run(KnowledgeBase knowledgeBase, SessionTemplate template, boolean share, int count) {
+		List<StatefulKnowledgeSession> sessions = new ArrayList<StatefulKnowledgeSession>(count);
+		long before = usedMemory();
+		for (int i = 0; i < count; i++) {
+			if (template == null) {
+				StatefulKnowledgeSession session = knowledgeBase.newStatefulKnowledgeSession();
+				if (share) {
+					SharedMetadata.startSharing();
+				}
+				try {
+					session.fireAllRules();
+				} finally {
+					SharedMetadata.stopSharing();
+				}
+				sessions.add(session);
+			} else {
+				sessions.add(template.newKnowledgeSession());
+			}
+		}
+		long after = usedMemory();
+		System.out.println(count + (template != null ? " restored" : share ? " fresh shared" : " fresh") + " sessions: " + (after - before) / 1024 / 1024
+				+ "MB, " + (after - before) / count / 1024 + "KB per session");
+		for (StatefulKnowledgeSession session : sessions) {
+			session.dispose();
+		}
+	}
+
+	public static List<Object> createItems() {
+		List<Object> items = new ArrayList<Object>();
+		PossibleAnswer[] possibleAnswers = new PossibleAnswer[POSSIBLE_ANSWERS];
+		for (int i = 0; i < POSSIBLE_ANSWERS; i++) {
+			possibleAnswers[i] = new PossibleAnswer("code" + i, "Label for code " + i);
+		}
+		Questionnaire questionnaire = new Questionnaire("questionnaire", "Footprint");
+		for (int i = 0; i < PAGES; i++) {
+			Group page = new Group("page" + i, "Page " + i);
+			for (int j = 0; j < QUESTIONS; j++) {
+				Question question;
+				if (j % 2 == 0) {
+					question = new Question(page.getId() + "_question" + j, "Question " + j + " on page " + i);
+				} else {
+					MultipleChoiceQuestion multipleChoiceQuestion = new MultipleChoiceQuestion(page.getId() + "_question" + j,
+							"Question " + j + " on page " + i);
+					multipleChoiceQuestion.setPossibleAnswers(possibleAnswers);
+					question = multipleChoiceQuestion;
+				}
+				question.setAnswerType(Question.TYPE_TEXT);
+				question.setPresentationStyles(new String[] { "wide" });
+				page.addItem(question.getId());
+				items.add(question);
+			}
+			Note note = new Note(page.getId() + "_note", "A note about page " + i);
+			page.addItem(note.getId());
+			items.add(note);
+			questionnaire.addItem(page.getId());
+			items.add(page);
+		}
+		questionnaire.setActiveItem("page0");
+		items.add(questionnaire);
+		return items;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
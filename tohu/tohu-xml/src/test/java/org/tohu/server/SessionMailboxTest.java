@@ -0,0 +1,235 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.kie.api.runtime.ClassObjectFilter;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.Item;
+import org.tohu.Note;
+
+public class SessionMailboxTest {
+
+	private static final int THREAD_COUNT = 16;
+
+	private static final int ITERATIONS = 200;
+
+	/**
+	 * Hammers one knowledge session from many threads. Every insert must be seen exactly once and the fact count read inside the
+	 * mailbox must never go backwards or skip.
+	 */
+	@Test
+	public void testSerializedExecution() throws Exception {
+		final StatefulKnowledgeSession knowledgeSession = new KnowledgeBaseCache().getKnowledgeBase(null,
+				Arrays.asList(new String[] { "classpath:org/tohu/Item.drl", "classpath:org/tohu/Queries.drl" }))
+				.newStatefulKnowledgeSession();
+		final SessionMailbox mailbox = new SessionMailbox();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		final List<Integer> counts = Collections.synchronizedList(new ArrayList<Integer>());
+		Thread[] threads = new Thread[THREAD_COUNT];
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			final int threadIndex = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int j = 0; j < ITERATIONS; j++) {
+							final String id = "note" + threadIndex + "_" + j;
+							counts.add(mailbox.execute(new Callable<Integer>() {
+								public Integer call() {
+									int before = knowledgeSession.getObjects(new ClassObjectFilter(Item.class)).size();
+									knowledgeSession.insert(new Note(id));
+									knowledgeSession.fireAllRules();
+									int after = knowledgeSession.getObjects(new ClassObjectFilter(Item.class)).size();
+									if (after != before + 1) {
+										throw new IllegalStateException("Expected " + (before + 1) + " items but found " + after);
+									}
+									return after;
+								}
+							}));
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			threads[i].join();
+		}
+		try {
+			assertEquals(Collections.emptyList(), errors);
+			int total = THREAD_COUNT * ITERATIONS;
+			assertEquals(total, knowledgeSession.getObjects(new ClassObjectFilter(Item.class)).size());
+			// each execution saw a distinct count from 1 to total
+			Set<Integer> distinctCounts = new HashSet<Integer>(counts);
+			assertEquals(total, distinctCounts.size());
+			assertTrue(distinctCounts.contains(1));
+			assertTrue(distinctCounts.contains(total));
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	/**
+	 * Different mailboxes must be able to run at the same time.
+	 */
+	@Test
+	public void testMailboxesRunInParallel() throws Exception {
+		final CountDownLatch bothRunning = new CountDownLatch(2);
+		final boolean[] results = new boolean[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < 2; i++) {
+			final int index = i;
+			final SessionMailbox mailbox = new SessionMailbox();
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					results[index] = mailbox.execute(new Callable<Boolean>() {
+						public Boolean call() throws Exception {
+							bothRunning.countDown();
+							return bothRunning.await(10, TimeUnit.SECONDS);
+						}
+					});
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < 2; i++) {
+			threads[i].join();
+		}
+		assertTrue(results[0]);
+		assertTrue(results[1]);
+	}
+
+	/**
+	 * Each caller runs its own work on its own thread, even if it has to wait for another caller's work to finish.
+	 */
+	@Test
+	public void testCallerRunsOwnWork() throws Exception {
+		final SessionMailbox mailbox = new SessionMailbox();
+		final CountDownLatch firstRunning = new CountDownLatch(1);
+		final CountDownLatch releaseFirst = new CountDownLatch(1);
+		final Thread[] ranOn = new Thread[2];
+		Thread first = new Thread() {
+			@Override
+			public void run() {
+				mailbox.execute(new Callable<Object>() {
+					public Object call() throws Exception {
+						ranOn[0] = Thread.currentThread();
+						firstRunning.countDown();
+						releaseFirst.await();
+						return null;
+					}
+				});
+			}
+		};
+		first.start();
+		firstRunning.await();
+		Thread second = new Thread() {
+			@Override
+			public void run() {
+				mailbox.execute(new Callable<Object>() {
+					public Object call() {
+						ranOn[1] = Thread.currentThread();
+						return null;
+					}
+				});
+			}
+		};
+		second.start();
+		Thread.sleep(100);
+		releaseFirst.countDown();
+		first.join();
+		second.join();
+		assertSame(first, ranOn[0]);
+		assertSame(second, ranOn[1]);
+	}
+
+	/**
+	 * Interrupting a caller that is waiting for its turn doesn't run its work or interrupt the work that is running.
+	 */
+	@Test
+	public void testInterruptWhileWaiting() throws Exception {
+		final SessionMailbox mailbox = new SessionMailbox();
+		final CountDownLatch firstRunning = new CountDownLatch(1);
+		final CountDownLatch releaseFirst = new CountDownLatch(1);
+		final AtomicBoolean firstInterrupted = new AtomicBoolean();
+		final AtomicBoolean secondRan = new AtomicBoolean();
+		Thread first = new Thread() {
+			@Override
+			public void run() {
+				mailbox.execute(new Callable<Object>() {
+					public Object call() {
+						firstRunning.countDown();
+						try {
+							releaseFirst.await();
+						} catch (InterruptedException e) {
+							firstInterrupted.set(true);
+						}
+						return null;
+					}
+				});
+			}
+		};
+		first.start();
+		firstRunning.await();
+		Thread second = new Thread() {
+			@Override
+			public void run() {
+				try {
+					mailbox.execute(new Callable<Object>() {
+						public Object call() {
+							secondRan.set(true);
+							return null;
+						}
+					});
+				} catch (RuntimeException e) {
+					// expected
+				}
+			}
+		};
+		second.start();
+		Thread.sleep(100);
+		second.interrupt();
+		second.join();
+		releaseFirst.countDown();
+		first.join();
+		assertFalse(secondRan.get());
+		assertFalse(firstInterrupted.get());
+	}
+
+}
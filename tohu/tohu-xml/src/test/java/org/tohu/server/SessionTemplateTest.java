@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.command.Command;
+import org.kie.api.runtime.ClassObjectFilter;
+import org.kie.internal.KnowledgeBase;
+import org.kie.internal.runtime.StatefulKnowledgeSession;
+import org.tohu.GroupMembership;
+import org.tohu.Questionnaire;
+import org.tohu.TohuObject;
+import org.tohu.util.KnowledgeSessionHelper;
+import org.tohu.xml.TohuConverters;
+
+import com.thoughtworks.xstream.XStream;
+
+public class SessionTemplateTest {
+
+	private static final String INITIAL_REQUEST = "<batch-execution>\n" + "	<fire-all-rules />\n"
+			+ "	<query out-identifier='activeObjects' name='activeObjects'/>\n" + "</batch-execution>\n";
+
+	private KnowledgeBase knowledgeBase;
+
+	private XStream xstream;
+
+	@Before
+	public void setUp() {
+		knowledgeBase = new KnowledgeBaseCache().getKnowledgeBase(null, Arrays.asList(new String[] { "classpath:org/tohu/Active.drl",
+				"classpath:org/tohu/Queries.drl", "classpath:org/tohu/Item.drl", "classpath:org/tohu/Question.drl",
+				"classpath:org/tohu/server/Template.drl" }));
+		xstream = TohuConverters.newXStreamMarshaller();
+	}
+
+	@Test
+	public void testRestoredSession() {
+		StatefulKnowledgeSession freshSession = knowledgeBase.newStatefulKnowledgeSession();
+		freshSession.fireAllRules();
+		SessionTemplate template = SessionTemplate.create(knowledgeBase);
+		assertNotNull(template);
+		StatefulKnowledgeSession restoredSession = template.newKnowledgeSession();
+		try {
+			assertEquals(0, restoredSession.fireAllRules());
+			assertEquals(new KnowledgeSessionHelper(freshSession).getActiveObjects().keySet(), new KnowledgeSessionHelper(
+					restoredSession).getActiveObjects().keySet());
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "page1", "question1", "note1" })),
+					new KnowledgeSessionHelper(restoredSession).getActiveObjects().keySet());
+		} finally {
+			freshSession.dispose();
+			restoredSession.dispose();
+		}
+	}
+
+	@Test
+	public void testRestoredSessionsAreIndependent() {
+		SessionTemplate template = SessionTemplate.create(knowledgeBase);
+		StatefulKnowledgeSession session1 = template.newKnowledgeSession();
+		StatefulKnowledgeSession session2 = template.newKnowledgeSession();
+		try {
+			Questionnaire questionnaire1 = new KnowledgeSessionHelper(session1).getQuestionnaire();
+			Questionnaire questionnaire2 = new KnowledgeSessionHelper(session2).getQuestionnaire();
+			assertNotSame(questionnaire1, questionnaire2);
+			questionnaire1.setActiveItem("page2");
+			session1.update(session1.getFactHandle(questionnaire1), questionnaire1);
+			session1.fireAllRules();
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "page2", "note2" })),
+					new KnowledgeSessionHelper(session1).getActiveObjects().keySet());
+			assertEquals("page1", questionnaire2.getActiveItem());
+			assertEquals(new HashSet<String>(Arrays.asList(new String[] { "questionnaire", "page1", "question1", "note1" })),
+					new KnowledgeSessionHelper(session2).getActiveObjects().keySet());
+		} finally {
+			session1.dispose();
+			session2.dispose();
+		}
+	}
+
+	@Test
+	public void testRestoredSessionsShareMetadata() {
+		SessionTemplate template = SessionTemplate.create(knowledgeBase);
+		StatefulKnowledgeSession session1 = template.newKnowledgeSession();
+		StatefulKnowledgeSession session2 = template.newKnowledgeSession();
+		try {
+			Questionnaire questionnaire1 = new KnowledgeSessionHelper(session1).getQuestionnaire();
+			Questionnaire questionnaire2 = new KnowledgeSessionHelper(session2).getQuestionnaire();
+			assertSame(questionnaire1.getItemIds(), questionnaire2.getItemIds());
+			Set<Object> memberships = new HashSet<Object>(session1.getObjects(new ClassObjectFilter(GroupMembership.class)));
+			assertFalse(memberships.isEmpty());
+			for (Object membership : session2.getObjects(new ClassObjectFilter(GroupMembership.class))) {
+				assertTrue(memberships.contains(membership));
+				assertSame(membership, session1.getObject(session1.getFactHandle(membership)));
+			}
+		} finally {
+			session1.dispose();
+			session2.dispose();
+		}
+	}
+
+	@Test
+	public void testInitialResponse() throws Exception {
+		SessionTemplate template = SessionTemplate.create(knowledgeBase);
+		assertTrue(template.isInitialRequest((Command<?>) xstream.fromXML(INITIAL_REQUEST)));
+		assertFalse(template.isInitialRequest((Command<?>) xstream.fromXML("<batch-execution><fire-all-rules /></batch-execution>")));
+		StatefulKnowledgeSession knowledgeSession = template.newKnowledgeSession();
+		try {
+			StringWriter writer = new StringWriter();
+			template.writeInitialResponse(knowledgeSession, writer);
+			String xml = writer.toString();
+			String expectedXml = xstream.toXML(knowledgeSession.execute((Command<?>) xstream.fromXML(INITIAL_REQUEST)));
+			assertEquals(getExternalForms(expectedXml), getExternalForms(xml));
+			assertEquals(expectedXml.length(), xml.length());
+
+			// the client uses the questionnaire's fact handle from the initial response to change page
+			Questionnaire questionnaire = (Questionnaire) knowledgeSession.getObjects(new ClassObjectFilter(Questionnaire.class))
+					.iterator().next();
+			String factHandle = knowledgeSession.getFactHandle(questionnaire).toExternalForm();
+			assertTrue(xml.contains(factHandle));
+			knowledgeSession.execute((Command<?>) xstream.fromXML("<batch-execution><modify fact-handle='" + factHandle
+					+ "'><set accessor='activeItem' value='page2' /></modify><fire-all-rules /></batch-execution>"));
+			assertEquals("page2", questionnaire.getActiveItem());
+			for (TohuObject object : new KnowledgeSessionHelper(knowledgeSession).getActiveObjects().values()) {
+				assertFalse("page1".equals(object.getId()));
+			}
+		} finally {
+			knowledgeSession.dispose();
+		}
+	}
+
+	private Set<String> getExternalForms(String xml) {
+		Set<String> externalForms = new HashSet<String>();
+		Matcher matcher = Pattern.compile("external-form=\"([^\"]*)\"").matcher(xml);
+		while (matcher.find()) {
+			externalForms.add(matcher.group(1));
+		}
+		return externalForms;
+	}
+
+}
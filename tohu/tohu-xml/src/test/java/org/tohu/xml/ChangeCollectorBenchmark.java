@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.tohu.Group;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+import org.tohu.xml.event.ObjectDeletedEventMock;
+import org.tohu.xml.event.ObjectUpdatedEventMock;
+
+/**
+ * <p>
+ * Compares the cost of a typical request (one question answered) with the ChangeCollector copying all of working memory up front
+ * and with it tracking modifications, then times a cascade where every question is changed twice and a third of them are deactivated
+ * in the same request.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional question count (default 5000).
+ * </p>
+ */
+public class ChangeCollectorBenchmark {
+
+	private static final int ITERATIONS = 500;
+
+	// fewer iterations because each cascade changes every question
+	private static final int CASCADE_ITERATIONS = 20;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		final List<Object> objects = createObjects(count);
+		final Question question = (Question) objects.get(objects.size() / 2);
+		System.out.println("Objects: " + objects.size());
+		run("snapshot", ITERATIONS, new Request() {
+			public ChangeCollector execute(int i) {
+				ChangeCollector changeCollector = new ChangeCollector();
+				changeCollector.initialise(objects);
+				answer(changeCollector, question, i);
+				return changeCollector;
+			}
+		});
+		run("tracking", ITERATIONS, new Request() {
+			public ChangeCollector execute(int i) {
+				ChangeCollector changeCollector = new ChangeCollector();
+				changeCollector.initialise();
+				answer(changeCollector, question, i);
+				changeCollector.stopTracking();
+				return changeCollector;
+			}
+		});
+		run("cascade", CASCADE_ITERATIONS, new Request() {
+			public ChangeCollector execute(int i) {
+				ChangeCollector changeCollector = new ChangeCollector();
+				changeCollector.initialise();
+				for (int j = 2; j < objects.size(); j++) {
+					Question question = (Question) objects.get(j);
+					question.setRequired(!question.isRequired());
+					changeCollector.objectUpdated(new ObjectUpdatedEventMock("1", question, question));
+					question.setPostLabel(question.isRequired() ? "*" : null);
+					changeCollector.objectUpdated(new ObjectUpdatedEventMock("1", question, question));
+					if (j % 3 == 0) {
+						changeCollector.objectDeleted(new ObjectDeletedEventMock("1", question));
+					}
+				}
+				changeCollector.stopTracking();
+				return changeCollector;
+			}
+		});
+	}
+
+	private static void answer(ChangeCollector changeCollector, Question question, int i) {
+		question.setAnswer("answer " + i);
+		question.setPreLabel("Question " + i);
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("1", question, question));
+	}
+
+	private static void run(String name, int iterations, Request request) {
+		for (int i = 0; i < iterations / 2; i++) {
+			check(request.execute(i));
+		}
+		System.gc();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			check(request.execute(i));
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(name + ": " + (elapsed / iterations / 1000) + "us per request");
+	}
+
+	private static void check(ChangeCollector changeCollector) {
+		if (changeCollector.getUpdate() == null) {
+			throw new IllegalStateException("Expected updates");
+		}
+	}
+
+	private static List<Object> createObjects(int count) {
+		List<Object> objects = new ArrayList<Object>();
+		Questionnaire questionnaire = new Questionnaire("questionnaire", "Questionnaire");
+		questionnaire.setItems(new String[] { "page" });
+		questionnaire.setActiveItem("page");
+		questionnaire.setActive(true);
+		objects.add(questionnaire);
+		Group page = new Group("page", "Page");
+		page.setActive(true);
+		objects.add(page);
+		for (int i = 0; i < count; i++) {
+			Question question = new Question("question" + i, "Question " + i);
+			question.setAnswerType(Question.TYPE_TEXT);
+			question.setActive(true);
+			page.addItem(question.getId());
+			objects.add(question);
+		}
+		return objects;
+	}
+
+	private interface Request {
+
+		ChangeCollector execute(int i);
+
+	}
+
+}
@@ -17,6 +17,7 @@ package org.tohu.xml;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,6 +29,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.kie.api.runtime.rule.FactHandle;
@@ -35,6 +37,7 @@ import org.tohu.Answer;
 import org.tohu.InvalidAnswer;
 import org.tohu.Item;
 import org.tohu.Question;
+import org.tohu.TohuObject;
 import org.tohu.xml.event.ObjectDeletedEventMock;
 import org.tohu.xml.event.ObjectInsertedEventMock;
 import org.tohu.xml.event.ObjectUpdatedEventMock;
@@ -99,6 +102,11 @@ public class ChangeCollectorTest {
 		dummy = new Dummy();
 	}
 
+	@After
+	public void tearDown() {
+		TohuObject.stopTracking();
+	}
+
 	@Test
 	public void testCreate() {
 		c = new ChangeCollector();
@@ -390,6 +398,121 @@ public class ChangeCollectorTest {
 		assertNull(c.getDelete());
 	}
 
+	@Test
+	public void testTrackedUpdate() {
+		report(question3);
+		c = new ChangeCollector();
+		c.initialise();
+
+		question1.setPreLabel("What is answer 1a?");
+		question1.setAnswer("answer1a");
+		question2.setPreLabel("What is answer 2a?");
+		question2.setAnswer("answer2a");
+		question2.setPreLabel("What is answer 2?");
+		question2.setAnswer("answer2");
+
+		c.objectUpdated(new ObjectUpdatedEventMock("1", question1, question1));
+		c.objectUpdated(new ObjectUpdatedEventMock("2", question2, question2));
+		// not touched since it was last reported
+		c.objectUpdated(new ObjectUpdatedEventMock("3", question3, question3));
+		c.stopTracking();
+		// not tracked any more
+		question3.setPreLabel("What is answer 3a?");
+
+		assertNull(c.getCreate());
+		assertEquals(1, c.getUpdate().size());
+		updateIterator = getUpdateSorted(c).iterator();
+		assertEquals("answer1a", ((Question) updateIterator.next()).getAnswer());
+		assertNull(c.getDelete());
+	}
+
+	@Test
+	public void testTrackedCreateThenUpdate() {
+		c = new ChangeCollector();
+		c.initialise();
+
+		Question question6 = new Question("question6");
+		question6.setAnswerType(Question.TYPE_TEXT);
+		question6.setActive(true);
+		c.objectInserted(new ObjectInsertedEventMock("6", question6));
+		question6.setAnswer("answer6");
+		c.objectUpdated(new ObjectUpdatedEventMock("6", question6, question6));
+
+		assertEquals(1, c.getCreate().size());
+		assertEquals("answer6", ((Question) c.getCreate().keySet().iterator().next()).getAnswer());
+		assertNull(c.getUpdate());
+		assertNull(c.getDelete());
+	}
+
+	@Test
+	public void testTrackedUpdateThenDelete() {
+		c = new ChangeCollector();
+		c.initialise();
+
+		question4.setActive(false);
+		c.objectUpdated(new ObjectUpdatedEventMock("4", question4, question4));
+		question1.setAnswer("answer1a");
+		c.objectDeleted(new ObjectDeletedEventMock("1", question1));
+		c.objectDeleted(new ObjectDeletedEventMock("ia1", invalidAnswer1));
+
+		assertNull(c.getCreate());
+		assertNull(c.getUpdate());
+		assertEquals(3, c.getDelete().size());
+		deleteIterator = getDeleteSorted(c).iterator();
+		assertEquals("question1", ((ItemId) deleteIterator.next()).getId());
+		assertEquals("question1", ((InvalidAnswer) deleteIterator.next()).getQuestionId());
+		assertEquals("question4", ((ItemId) deleteIterator.next()).getId());
+	}
+
+	@Test
+	public void testUntrackedUpdate() {
+		UntrackedQuestion question6 = new UntrackedQuestion("question6");
+		question6.setAnswerType(Question.TYPE_TEXT);
+		question6.setActive(true);
+		UntrackedQuestion question7 = new UntrackedQuestion("question7");
+		question7.setAnswerType(Question.TYPE_TEXT);
+		question7.setActive(true);
+		report(question6, question7);
+		c = new ChangeCollector();
+		c.setDeltas(true);
+		c.initialise();
+
+		question6.setHint("hint");
+		c.objectUpdated(new ObjectUpdatedEventMock("6", question6, question6));
+		// updated but not changed
+		c.objectUpdated(new ObjectUpdatedEventMock("7", question7, question7));
+		// never reported so can't tell
+		c.objectUpdated(new ObjectUpdatedEventMock("3", question3, question3));
+
+		assertNull(c.getCreate());
+		assertEquals(2, c.getUpdate().size());
+		assertSame(question6, c.getUpdate().get(0));
+		assertSame(question3, c.getUpdate().get(1));
+		// sent whole
+		assertNull(c.getChangedFields(question6));
+		assertNull(c.getChangedFields(question3));
+		assertNull(c.getDelete());
+		c.stopTracking();
+
+		// reported now so no longer different
+		c = new ChangeCollector();
+		c.initialise();
+		c.objectUpdated(new ObjectUpdatedEventMock("6", question6, question6));
+		assertNull(c.getUpdate());
+	}
+
+	/**
+	 * Gives the objects fingerprints as if they had been reported by an earlier request.
+	 */
+	private void report(TohuObject... objects) {
+		ChangeCollector collector = new ChangeCollector();
+		collector.initialise();
+		for (TohuObject object : objects) {
+			collector.objectInserted(new ObjectInsertedEventMock(object.getId(), object));
+		}
+		collector.stopTracking();
+	}
+
 	private Map<Object, FactHandle> getCreateSorted(ChangeCollector c2) {
 		TreeMap<Object, FactHandle> map = new TreeMap<Object, FactHandle>(new ItemComparator());
 		map.putAll(c.getCreate());
@@ -436,4 +559,23 @@ public class ChangeCollectorTest {
 
 	private class Dummy {
 	}
+
+	/**
+	 * Has a setter which doesn't call {@link TohuObject#changing()}.
+	 */
+	private static class UntrackedQuestion extends Question {
+
+		private static final long serialVersionUID = 1L;
+
+		private String hint;
+
+		UntrackedQuestion(String id) {
+			super(id);
+		}
+
+		public void setHint(String hint) {
+			this.hint = hint;
+		}
+
+	}
 }
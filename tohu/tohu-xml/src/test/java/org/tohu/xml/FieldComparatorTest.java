@@ -0,0 +1,90 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.tohu.Note;
+import org.tohu.Question;
+
+public class FieldComparatorTest {
+
+	@Test
+	public void testInheritedFields() throws Exception {
+		Question question = new Question("question", "Question");
+		question.setAnswerType(Question.TYPE_TEXT);
+		Question copy = (Question) question.clone();
+		assertFalse(FieldComparator.different(question, copy));
+		copy.setRequired(true);
+		assertTrue(FieldComparator.different(question, copy));
+		copy.setRequired(false);
+		copy.setPostLabel("after");
+		assertTrue(FieldComparator.different(question, copy));
+		copy.setPostLabel(null);
+		copy.setPresentationStyles(new String[] { "large" });
+		assertTrue(FieldComparator.different(question, copy));
+	}
+
+	@Test
+	public void testAnswerFieldsSkipped() throws Exception {
+		Question question = new Question("question", "Question");
+		question.setAnswerType(Question.TYPE_TEXT);
+		Question copy = (Question) question.clone();
+		copy.setAnswer("answer");
+		assertFalse(FieldComparator.different(question, copy));
+	}
+
+	@Test
+	public void testCustomSubclass() throws Exception {
+		CustomNote note = new CustomNote();
+		CustomNote copy = (CustomNote) note.clone();
+		assertFalse(FieldComparator.different(note, copy));
+		copy.count = 1;
+		assertTrue(FieldComparator.different(note, copy));
+		copy.count = 0;
+		copy.ratio = Double.NaN;
+		note.ratio = Double.NaN;
+		assertFalse(FieldComparator.different(note, copy));
+		copy.ratio = 1.5;
+		assertTrue(FieldComparator.different(note, copy));
+		copy.ratio = Double.NaN;
+		copy.scratch = "ignored";
+		assertFalse(FieldComparator.different(note, copy));
+		copy.flag = true;
+		assertTrue(FieldComparator.different(note, copy));
+	}
+
+	private static class CustomNote extends Note {
+
+		private static final long serialVersionUID = 1L;
+
+		private int count;
+
+		private double ratio;
+
+		private boolean flag;
+
+		private transient String scratch;
+
+		CustomNote() {
+			super("custom", "Custom");
+		}
+
+	}
+
+}
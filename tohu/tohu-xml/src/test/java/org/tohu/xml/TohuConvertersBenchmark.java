@@ -0,0 +1,145 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.drools.core.runtime.help.impl.XStreamXML;
+import org.tohu.Group;
+import org.tohu.Item;
+import org.tohu.MultipleChoiceQuestion;
+import org.tohu.Note;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * <p>
+ * Compares marshalling a large set of active objects the old way (reflection into a String) with the Tohu converters streaming
+ * to a Writer.
+ * </p>
+ *
+ * <p>
+ * This is not run as part of the build. Run the main method with an optional object count (default 5000).
+ * </p>
+ */
+public class TohuConvertersBenchmark {
+
+	private static final int WARMUP = 20;
+
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		List<Object> objects = createObjects(count);
+		final XStream reflective = XStreamXML.newXStreamMarshaller(new XStream());
+		final XStream converters = TohuConverters.newXStreamMarshaller();
+		System.out.println("Objects: " + objects.size() + ", XML size: " + reflective.toXML(objects).length() + " chars");
+		run("reflection to String", objects, new Marshaller() {
+			public void marshal(Object object, CountingWriter writer) throws IOException {
+				writer.write(reflective.toXML(object));
+			}
+		});
+		run("converters to Writer", objects, new Marshaller() {
+			public void marshal(Object object, CountingWriter writer) {
+				converters.toXML(object, writer);
+			}
+		});
+	}
+
+	private static void run(String name, List<Object> objects, Marshaller marshaller) {
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				marshaller.marshal(objects, new CountingWriter());
+			}
+			System.gc();
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				marshaller.marshal(objects, new CountingWriter());
+			}
+			long elapsed = System.nanoTime() - start;
+			System.out.println(name + ": " + (elapsed / ITERATIONS / 1000) + "us per marshal");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static List<Object> createObjects(int count) {
+		List<Object> objects = new ArrayList<Object>();
+		Questionnaire questionnaire = new Questionnaire("questionnaire", "Questionnaire");
+		questionnaire.setItems(new String[] { "page" });
+		questionnaire.setActiveItem("page");
+		objects.add(questionnaire);
+		Group page = new Group("page", "Page");
+		objects.add(page);
+		for (int i = 0; i < count; i++) {
+			Object object;
+			switch (i % 3) {
+			case 0:
+				Question question = new Question("question" + i, "Question " + i);
+				question.setAnswerType(Question.TYPE_TEXT);
+				question.setAnswer("answer " + i);
+				question.setRequired(true);
+				object = question;
+				break;
+			case 1:
+				MultipleChoiceQuestion multipleChoiceQuestion = new MultipleChoiceQuestion("choice" + i, "Choice " + i);
+				multipleChoiceQuestion.setAnswerType(Question.TYPE_TEXT);
+				multipleChoiceQuestion.setPossibleAnswersAsString("a=Apple,b=Banana,c=Cherry");
+				object = multipleChoiceQuestion;
+				break;
+			default:
+				object = new Note("note" + i, "Note " + i + " <b>with markup</b>");
+			}
+			page.addItem(((Item) object).getId());
+			objects.add(object);
+		}
+		return objects;
+	}
+
+	private interface Marshaller {
+
+		void marshal(Object object, CountingWriter writer) throws IOException;
+
+	}
+
+	/**
+	 * Stands in for the servlet response.
+	 */
+	private static class CountingWriter extends Writer {
+
+		private long count;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
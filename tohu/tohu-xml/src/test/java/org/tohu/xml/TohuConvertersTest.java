@@ -0,0 +1,268 @@
+/*
+ * Copyright 2009 Solnet Solutions Limited (http://www.solnetsolutions.co.nz/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.tohu.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.drools.core.runtime.help.impl.XStreamXML;
+import org.junit.Before;
+import org.junit.Test;
+import org.tohu.Answer;
+import org.tohu.Group;
+import org.tohu.InvalidAnswer;
+import org.tohu.ItemIds;
+import org.tohu.MultipleChoiceQuestion;
+import org.tohu.Note;
+import org.tohu.Question;
+import org.tohu.Questionnaire;
+import org.tohu.MultipleChoiceQuestion.PossibleAnswer;
+import org.tohu.xml.event.ObjectDeletedEventMock;
+import org.tohu.xml.event.ObjectInsertedEventMock;
+import org.tohu.xml.event.ObjectUpdatedEventMock;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.basic.AbstractSingleValueConverter;
+import com.thoughtworks.xstream.converters.reflection.ReflectionConverter;
+
+/**
+ * Checks that the hand-written converters produce the same XML as XStream's reflection converter.
+ */
+public class TohuConvertersTest {
+
+	private XStream reflective;
+
+	private XStream converters;
+
+	@Before
+	public void setUp() {
+		reflective = XStreamXML.newXStreamMarshaller(new XStream());
+		// Group items were a comma-delimited string field before they were indexed
+		reflective.registerConverter(new AbstractSingleValueConverter() {
+
+			@SuppressWarnings("rawtypes")
+			public boolean canConvert(Class clazz) {
+				return ItemIds.class.equals(clazz);
+			}
+
+			@Override
+			public Object fromString(String str) {
+				return ItemIds.parse(str);
+			}
+
+		});
+		// Group's custom serialized form would otherwise make XStream use its serialization converter
+		reflective.registerConverter(new ReflectionConverter(reflective.getMapper(), reflective.getReflectionProvider()) {
+
+			@SuppressWarnings("rawtypes")
+			@Override
+			public boolean canConvert(Class clazz) {
+				return Group.class.isAssignableFrom(clazz);
+			}
+
+		});
+		converters = TohuConverters.newXStreamMarshaller();
+	}
+
+	@Test
+	public void testQuestionnaire() {
+		Questionnaire questionnaire = new Questionnaire("questionnaire", "Label & <title>");
+		assertConverted(questionnaire);
+		questionnaire.setItems(new String[] { "page1", "page2" });
+		questionnaire.setActiveItem("page1");
+		questionnaire.setCompletionAction("#return");
+		questionnaire.setInvalidAnswers(true);
+		questionnaire.setEnableActionValidation(true);
+		questionnaire.setAvailableItems(new String[] { "page1", "page2" });
+		questionnaire.setClientDateFormat(null);
+		questionnaire.setMarkupAllowed(true);
+		questionnaire.setPresentationStyles(new String[] { "wide", "tall" });
+		questionnaire.setCategory("category");
+		assertConverted(questionnaire);
+	}
+
+	@Test
+	public void testGroupAndNote() {
+		Group group = new Group("group");
+		assertConverted(group);
+		group.setLabel("Group");
+		group.setItems(new String[] { "a", "b" });
+		assertConverted(group);
+		Note note = new Note("note");
+		assertConverted(note);
+		note.setLabel("Note with \"quotes\" and\nnew line");
+		assertConverted(note);
+	}
+
+	@Test
+	public void testGroupSubclass() {
+		Group group = new CustomGroup("group");
+		group.setItems(new String[] { "a", "b" });
+		String xml = converters.toXML(group);
+		assertEquals("<org.tohu.xml.TohuConvertersTest_-CustomGroup>\n  <id>group</id>\n"
+				+ "  <items>a,b</items>\n</org.tohu.xml.TohuConvertersTest_-CustomGroup>", xml);
+		assertEquals(Arrays.asList("a", "b"), ((Group) converters.fromXML(xml)).getItemIds());
+	}
+
+	@Test
+	public void testQuestion() throws Exception {
+		Question question = new Question("question");
+		assertConverted(question);
+		question.setPreLabel("pre");
+		question.setPostLabel("post");
+		question.setRequired(true);
+		question.setAnswerType(Question.TYPE_TEXT);
+		assertConverted(question);
+		question.setAnswer("text answer");
+		assertConverted(question);
+		question.setAnswerType(Question.TYPE_NUMBER);
+		question.setAnswer(Long.valueOf(-42));
+		assertConverted(question);
+		question.setAnswerType("decimal.currency");
+		question.setAnswer(new BigDecimal("12.50"));
+		assertConverted(question);
+		question.setAnswerType(Question.TYPE_BOOLEAN);
+		question.setAnswer(Boolean.TRUE);
+		assertConverted(question);
+		question.setAnswerType(Question.TYPE_DATE);
+		question.setAnswer(new Date());
+		assertConverted(question);
+		question.setAnswerType(Question.TYPE_LIST);
+		question.setAnswer("a,b\\,c");
+		assertConverted(question);
+	}
+
+	@Test
+	public void testMultipleChoiceQuestion() {
+		MultipleChoiceQuestion question = new MultipleChoiceQuestion("question", "Choose");
+		question.setAnswerType(Question.TYPE_TEXT);
+		assertConverted(question);
+		question.setPossibleAnswers(new PossibleAnswer[] { new PossibleAnswer("a", "Apple"), new PossibleAnswer("b=c", null) });
+		question.setAnswer("a");
+		assertConverted(question);
+	}
+
+	@Test
+	public void testInvalidAnswerAnswerAndItemId() {
+		InvalidAnswer invalidAnswer = new InvalidAnswer("question", "reason");
+		assertConverted(invalidAnswer);
+		invalidAnswer.setType("required");
+		assertConverted(invalidAnswer);
+		assertConverted(new Answer("question", "value"));
+		assertConverted(new Answer());
+		assertConverted(new ItemId(new Note("note")));
+	}
+
+	@Test
+	public void testChangeCollector() {
+		ChangeCollector changeCollector = new ChangeCollector();
+		assertConverted(changeCollector);
+		Note note1 = new Note("note1", "Note 1");
+		note1.setActive(true);
+		Note note2 = new Note("note2", "Note 2");
+		note2.setActive(true);
+		Group group = new Group("group");
+		group.setActive(true);
+		InvalidAnswer invalidAnswer = new InvalidAnswer("question", "reason");
+		invalidAnswer.setActive(true);
+		changeCollector.initialise(Arrays.asList(new Object[] { group, note2, invalidAnswer }));
+		changeCollector.objectInserted(new ObjectInsertedEventMock("1", note1));
+		Group updatedGroup = new Group("group", "label");
+		updatedGroup.setActive(true);
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("2", updatedGroup, group));
+		changeCollector.objectDeleted(new ObjectDeletedEventMock("3", note2));
+		changeCollector.objectDeleted(new ObjectDeletedEventMock("4", invalidAnswer));
+		// the changes are no longer held in fields so this is what reflection used to produce
+		assertEquals("<org.tohu.xml.ChangeCollector>\n" + "  <create>\n" + "    <entry>\n" + "      <org.tohu.Note>\n"
+				+ "        <id>note1</id>\n" + "        <label>Note 1</label>\n" + "      </org.tohu.Note>\n"
+				+ "      <org.tohu.xml.event.WorkingMemoryEventMock_-1 external-form=\"1\"/>\n" + "    </entry>\n"
+				+ "  </create>\n" + "  <update>\n" + "    <org.tohu.Group>\n" + "      <id>group</id>\n"
+				+ "      <label>label</label>\n" + "    </org.tohu.Group>\n" + "  </update>\n" + "  <delete>\n"
+				+ "    <org.tohu.xml.ItemId>\n" + "      <id>note2</id>\n" + "    </org.tohu.xml.ItemId>\n"
+				+ "    <org.tohu.InvalidAnswer>\n" + "      <questionId>question</questionId>\n" + "      <reason>reason</reason>\n"
+				+ "    </org.tohu.InvalidAnswer>\n" + "  </delete>\n" + "</org.tohu.xml.ChangeCollector>", converters
+				.toXML(changeCollector));
+		assertEquals(ChangeCollector.class, converters.fromXML("<org.tohu.xml.ChangeCollector/>").getClass());
+	}
+
+	@Test
+	public void testChangeCollectorDeltas() throws Exception {
+		ChangeCollector changeCollector = (ChangeCollector) converters
+				.fromXML("<org.tohu.xml.ChangeCollector><deltas>true</deltas></org.tohu.xml.ChangeCollector>");
+		assertTrue(changeCollector.isDeltas());
+		Question question = new Question("question", "Question");
+		question.setAnswerType(Question.TYPE_TEXT);
+		question.setPostLabel("after");
+		question.setAnswer("answer");
+		question.setActive(true);
+		Note note = new Note("note", "Note");
+		note.setActive(true);
+		changeCollector.initialise(Arrays.asList(new Object[] { question, note }));
+		Question updatedQuestion = (Question) question.clone();
+		updatedQuestion.setPreLabel("Changed");
+		updatedQuestion.setPostLabel(null);
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("1", updatedQuestion, question));
+		Note updatedNote = (Note) note.clone();
+		updatedNote.setPresentationStyles(new String[] { "large" });
+		updatedNote.setLabel("");
+		changeCollector.objectUpdated(new ObjectUpdatedEventMock("2", updatedNote, note));
+		String xml = converters.toXML(changeCollector);
+		assertTrue(xml, xml.indexOf("<org.tohu.Question>\n      <id>question</id>\n      <preLabel>Changed</preLabel>\n"
+				+ "      <postLabel null=\"true\"/>\n    </org.tohu.Question>") >= 0);
+		assertTrue(xml, xml.indexOf("<org.tohu.Note>\n      <id>note</id>\n      <presentationStyles>large</presentationStyles>\n"
+				+ "      <label></label>\n    </org.tohu.Note>") >= 0);
+		assertFalse(xml, xml.indexOf("answer") >= 0);
+	}
+
+	@Test
+	public void testReferences() {
+		Note note = new Note("note", "Note");
+		List<Object> list = new ArrayList<Object>();
+		list.add(note);
+		list.add(Collections.singletonList(note));
+		assertEquals(reflective.toXML(list), converters.toXML(list));
+	}
+
+	/**
+	 * Checks the output is identical to reflection and that it can be read back in.
+	 */
+	private void assertConverted(Object object) {
+		String xml = reflective.toXML(object);
+		assertEquals(xml, converters.toXML(object));
+		if (!(object instanceof ItemId || object instanceof ChangeCollector)) {
+			assertEquals(xml, converters.toXML(converters.fromXML(xml)));
+		}
+	}
+
+	private static class CustomGroup extends Group {
+
+		private static final long serialVersionUID = 1L;
+
+		private CustomGroup(String id) {
+			super(id);
+		}
+
+	}
+
+}